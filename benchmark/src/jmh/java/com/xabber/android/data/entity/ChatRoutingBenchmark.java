@@ -0,0 +1,86 @@
+package com.xabber.android.data.entity;
+
+import org.jxmpp.jid.Jid;
+import org.jxmpp.jid.impl.JidCreate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing of incoming stanza to the chat of account: lookup by sender address compared with
+ * offering stanza to every chat, as MessageManager.onStanza did before.
+ * Chats are replaced with objects which accept only their own address like AbstractChat does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChatRoutingBenchmark {
+
+    private static class Chat {
+
+        private final Jid user;
+
+        Chat(Jid user) {
+            this.user = user;
+        }
+
+        boolean onPacket(Jid from) {
+            return user.equals(from);
+        }
+
+    }
+
+    @Param({"1000"})
+    public int chats;
+
+    private AccountJid account;
+    private Jid[] senders;
+    private EntityRegistry<Chat> registry;
+    private int index;
+
+    @Setup
+    public void setUp() throws Exception {
+        account = AccountJid.from("account@example.com/xabber");
+        registry = new EntityRegistry<>();
+        for (int chat = 0; chat < chats; chat++) {
+            Jid user = JidCreate.bareFrom("user" + chat + "@example.com");
+            registry.put(account, user, new Chat(user));
+        }
+        // senders are separate instances, as parsed from stanzas
+        senders = new Jid[chats];
+        for (int chat = 0; chat < chats; chat++) {
+            senders[chat] = JidCreate.bareFrom("user" + chat + "@example.com");
+        }
+    }
+
+    private Jid next() {
+        index = (index + 1) % chats;
+        return senders[index];
+    }
+
+    @Benchmark
+    public Chat lookup() {
+        Jid from = next();
+        Chat chat = registry.get(account, from);
+        return chat != null && chat.onPacket(from) ? chat : null;
+    }
+
+    @Benchmark
+    public Chat scan() {
+        Jid from = next();
+        for (Chat chat : registry.values(account)) {
+            if (chat.onPacket(from)) {
+                return chat;
+            }
+        }
+        return null;
+    }
+
+}
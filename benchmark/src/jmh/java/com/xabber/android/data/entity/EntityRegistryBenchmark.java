@@ -0,0 +1,103 @@
+package com.xabber.android.data.entity;
+
+import org.jxmpp.jid.Jid;
+import org.jxmpp.jid.impl.JidCreate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and snapshots of {@link EntityRegistry} compared with {@link NestedMap} keyed by strings,
+ * which was used for chats and contacts before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EntityRegistryBenchmark {
+
+    private static final int ACCOUNTS = 3;
+
+    @Param({"100", "2000"})
+    public int users;
+
+    private AccountJid[] accounts;
+    private Jid[] jids;
+    private EntityRegistry<Object> registry;
+    private NestedMap<Object> nestedMap;
+    private int index;
+
+    @Setup
+    public void setUp() throws Exception {
+        accounts = new AccountJid[ACCOUNTS];
+        registry = new EntityRegistry<>();
+        nestedMap = new NestedMap<>();
+        jids = new Jid[users];
+        for (int user = 0; user < users; user++) {
+            jids[user] = JidCreate.bareFrom("user" + user + "@example.com");
+        }
+        for (int account = 0; account < ACCOUNTS; account++) {
+            accounts[account] = AccountJid.from("account" + account + "@example.com/xabber");
+            for (Jid jid : jids) {
+                Object value = new Object();
+                registry.put(accounts[account], jid, value);
+                nestedMap.put(accounts[account].toString(), jid.toString(), value);
+            }
+        }
+    }
+
+    private int next() {
+        index = (index + 1) % users;
+        return index;
+    }
+
+    @Benchmark
+    public Object registryGet() {
+        return registry.get(accounts[1], jids[next()]);
+    }
+
+    @Benchmark
+    public Object nestedMapGet() {
+        return nestedMap.get(accounts[1].toString(), jids[next()].toString());
+    }
+
+    @Benchmark
+    public void registryIterate(Blackhole blackhole) {
+        for (Object value : registry.values(accounts[1])) {
+            blackhole.consume(value);
+        }
+    }
+
+    @Benchmark
+    public void nestedMapIterate(Blackhole blackhole) {
+        for (Object value : nestedMap.getNested(accounts[1].toString()).values()) {
+            blackhole.consume(value);
+        }
+    }
+
+    /**
+     * Snapshot is rebuilt after every change.
+     */
+    @Benchmark
+    public List<Object> registryPutAndSnapshot() {
+        Jid jid = jids[next()];
+        registry.put(accounts[1], jid, registry.get(accounts[1], jid));
+        return registry.values(accounts[1]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object registryGetConcurrent() {
+        return registry.get(accounts[1], jids[next()]);
+    }
+
+}
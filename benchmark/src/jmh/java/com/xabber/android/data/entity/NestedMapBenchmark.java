@@ -0,0 +1,81 @@
+package com.xabber.android.data.entity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link NestedMap} still holds per account and user state of many managers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NestedMapBenchmark {
+
+    private static final int ACCOUNTS = 3;
+
+    @Param({"100", "2000"})
+    public int users;
+
+    private String[] accounts;
+    private String[] jids;
+    private NestedMap<Object> nestedMap;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        accounts = new String[ACCOUNTS];
+        jids = new String[users];
+        nestedMap = new NestedMap<>();
+        for (int user = 0; user < users; user++) {
+            jids[user] = "user" + user + "@example.com";
+        }
+        for (int account = 0; account < ACCOUNTS; account++) {
+            accounts[account] = "account" + account + "@example.com/xabber";
+            for (String jid : jids) {
+                nestedMap.put(accounts[account], jid, new Object());
+            }
+        }
+    }
+
+    private String nextJid() {
+        index = (index + 1) % users;
+        return jids[index];
+    }
+
+    @Benchmark
+    public Object get() {
+        return nestedMap.get(accounts[1], nextJid());
+    }
+
+    @Benchmark
+    public Object removeAndPut() {
+        String jid = nextJid();
+        Object value = nestedMap.remove(accounts[1], jid);
+        nestedMap.put(accounts[1], jid, value);
+        return value;
+    }
+
+    @Benchmark
+    public void iterateAll(Blackhole blackhole) {
+        for (NestedMap.Entry<Object> entry : nestedMap) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void values(Blackhole blackhole) {
+        for (Object value : nestedMap.values()) {
+            blackhole.consume(value);
+        }
+    }
+
+}
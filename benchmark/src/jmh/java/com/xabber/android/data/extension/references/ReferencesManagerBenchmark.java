@@ -0,0 +1,74 @@
+package com.xabber.android.data.extension.references;
+
+import android.util.Pair;
+
+import org.jivesoftware.smack.packet.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ReferencesManager#modifyBodyWithReferences(Message, String)} is called for every
+ * message with references, both received and loaded from archive.
+ * Samples are the same as in ReferencesManagerTest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReferencesManagerBenchmark {
+
+    private static final String FORWARD_BODY = "> Wednesday, June 5, 2019\n> [11:08:45] Валерий Миллер:\n> один\nдва";
+    private static final String MARKUP_BODY = "Тест форматирования текста. Использование нескольких стилей.";
+    private static final String QUOTE_BODY = "> This is a quote\n> of two lines\nHello world!";
+    private static final String MENTION_BODY = "Пользователь, привет!";
+
+    private Message forward;
+    private Message markup;
+    private Message quote;
+    private Message mention;
+
+    @Setup
+    public void setUp() throws Exception {
+        forward = new Message("test@jabber.com", FORWARD_BODY);
+        forward.addExtension(new Forward(0, 70, null));
+
+        markup = new Message("test@jabber.com", MARKUP_BODY);
+        markup.addExtension(new Markup(5, 18, true, true, false, false, null));
+        markup.addExtension(new Markup(20, 25, false, true, false, false, null));
+        markup.addExtension(new Markup(28, 40, false, false, true, false, null));
+        markup.addExtension(new Markup(42, 51, false, false, false, true, "www.xabber.com"));
+
+        quote = new Message("test@jabber.com", QUOTE_BODY);
+        quote.addExtension(new Quote(0, 37, "> "));
+
+        mention = new Message("test@jabber.com", MENTION_BODY);
+        mention.addExtension(new Mention(0, 11, "xmpp:test@jabber.com"));
+    }
+
+    @Benchmark
+    public Pair<String, String> forward() {
+        return ReferencesManager.modifyBodyWithReferences(forward, FORWARD_BODY);
+    }
+
+    @Benchmark
+    public Pair<String, String> markup() {
+        return ReferencesManager.modifyBodyWithReferences(markup, MARKUP_BODY);
+    }
+
+    @Benchmark
+    public Pair<String, String> quote() {
+        return ReferencesManager.modifyBodyWithReferences(quote, QUOTE_BODY);
+    }
+
+    @Benchmark
+    public Pair<String, String> mention() {
+        return ReferencesManager.modifyBodyWithReferences(mention, MENTION_BODY);
+    }
+
+}
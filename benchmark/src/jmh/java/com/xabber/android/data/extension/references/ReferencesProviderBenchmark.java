@@ -0,0 +1,138 @@
+package com.xabber.android.data.extension.references;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of references, which are attached to most of messages with markup, media and forwards.
+ * Samples are the same as in ReferencesProviderTest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReferencesProviderBenchmark {
+
+    private static final String FORWARD = "<reference xmlns=\"urn:xmpp:reference:0\" type=\"forward\" begin=\"11\" end=\"179\">" +
+            "<forwarded xmlns=\"urn:xmpp:forward:0\">" +
+            "<delay xmlns=\"urn:xmpp:delay\" stamp=\"2010-07-10T23:08:25Z\"/>" +
+            "<message from=\"valery\" to=\"xabber\" type=\"chat\" id=\"97\">" +
+            "<body>hello</body>" +
+            "</message>" +
+            "</forwarded>" +
+            "</reference>";
+
+    private static final String MEDIA = "<reference xmlns='urn:xmpp:reference:0' type='media' begin=\"0\" end=\"89\"><media><file><media-type>" +
+            "application/pdf</media-type><name>Android-Architecture_1-1.pdf</name><size>4255465" +
+            "</size></file><uri>https://upload02.xabber.org/5f70e738285c44c82039a73d42eccf27" +
+            "44e91/lQk6DkRJ/Android-Architecture_1-1.pdf</uri></media><media><file><media-type>" +
+            "image/png</media-type><name>Screenshot_20190414-194652.png</name><size>251184</size>" +
+            "<height>1280</height><width>720</width></file><uri>https://upload02.xabber.org/5f70" +
+            "e738285c44c82039a73d42eccf2744e91/rUdy3rHt/Screenshot_20190414-194652.png</uri>" +
+            "</media><bold/><italic/></reference>";
+
+    private static final String MARKUP = "<reference xmlns='urn:xmpp:reference:0' begin='34' end='37'  type='markup'>" +
+            "<bold/><uri>https://www.xabber.com</uri></reference>";
+
+    private static final String GROUPCHAT = "<reference xmlns='urn:xmpp:reference:0' end='16' begin='0' type='groupchat'>" +
+            "<user xmlns='http://xabber.com/protocol/groupchat' id='kubsgzldk3csvtez'>" +
+            "<role>member</role>" +
+            "<nickname>john.doe</nickname>" +
+            "<badge />" +
+            "<jid>john.doe@xabber.org</jid>" +
+            "<metadata xmlns='urn:xmpp:avatar:metadata'>" +
+            "<info url='http://xabber.org/images/d7072b2bc4652580911649870699787b18.jpeg' " +
+            "type='image/jpeg' id='d7072b2bc4652580911649870699787b18' bytes='9145' />" +
+            "</metadata>" +
+            "</user>" +
+            "</reference>";
+
+    /**
+     * References of archive page, like for messages of media heavy group chat.
+     */
+    private static final int PAGE_SIZE = 50;
+
+    private ReferencesProvider provider;
+    private XmlPullParserFactory factory;
+    private String mediaPage;
+    private String forwardPage;
+
+    @Setup
+    public void setUp() throws Exception {
+        provider = new ReferencesProvider();
+        factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        mediaPage = page(MEDIA);
+        forwardPage = page(FORWARD);
+    }
+
+    private static String page(String reference) {
+        StringBuilder builder = new StringBuilder("<page>");
+        for (int index = 0; index < PAGE_SIZE; index++) {
+            builder.append(reference);
+        }
+        return builder.append("</page>").toString();
+    }
+
+    private ReferenceElement parse(String source) throws Exception {
+        XmlPullParser parser = factory.newPullParser();
+        parser.setInput(new StringReader(source));
+        return provider.parse(parser, 0);
+    }
+
+    /**
+     * Page is read by one parser as connection does, so creation of parser doesn't hide
+     * cost of provider.
+     */
+    private int parsePage(String source) throws Exception {
+        XmlPullParser parser = factory.newPullParser();
+        parser.setInput(new StringReader(source));
+        int count = 0;
+        for (int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+            if (event == XmlPullParser.START_TAG && ReferenceElement.ELEMENT.equals(parser.getName())) {
+                if (provider.parse(parser, parser.getDepth()) != null) count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public ReferenceElement forward() throws Exception {
+        return parse(FORWARD);
+    }
+
+    @Benchmark
+    public ReferenceElement media() throws Exception {
+        return parse(MEDIA);
+    }
+
+    @Benchmark
+    public ReferenceElement markup() throws Exception {
+        return parse(MARKUP);
+    }
+
+    @Benchmark
+    public ReferenceElement groupchat() throws Exception {
+        return parse(GROUPCHAT);
+    }
+
+    @Benchmark
+    public int mediaPage() throws Exception {
+        return parsePage(mediaPage);
+    }
+
+    @Benchmark
+    public int forwardPage() throws Exception {
+        return parsePage(forwardPage);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.xabber.android.data.extension.xtoken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class XTokenProviderBenchmark {
+
+    private static final String TOKEN = "<x xmlns='http://xabber.com/protocol/auth-tokens'>" +
+            "<token>VkpTYqfpPcLpwciTRtgHaV7BC9O9kY</token>" +
+            "<expire>1536322632</expire>" +
+            "<token-uid>49975a48609793c5c93f5e9264f6706f04164</token-uid>" +
+            "</x>";
+
+    private XTokenProvider provider;
+    private XmlPullParserFactory factory;
+
+    @Setup
+    public void setUp() throws Exception {
+        provider = new XTokenProvider();
+        factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+    }
+
+    @Benchmark
+    public XTokenIQ parse() throws Exception {
+        XmlPullParser parser = factory.newPullParser();
+        parser.setInput(new StringReader(TOKEN));
+        return provider.parse(parser, 0);
+    }
+
+}
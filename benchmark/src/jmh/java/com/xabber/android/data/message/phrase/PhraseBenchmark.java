@@ -0,0 +1,56 @@
+package com.xabber.android.data.message.phrase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Phrase#matches(String, String, Collection)} is checked for every incoming message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PhraseBenchmark {
+
+    private static final String TEXT = "Hi! Are we still meeting at the conference room at five? "
+            + "Please bring the slides and the report, the deadline is tomorrow.";
+    private static final String USER = "juliet@capulet.lit";
+
+    private Phrase plainPhrase;
+    private Phrase regexpPhrase;
+    private Phrase missingPhrase;
+    private Collection<String> groups;
+
+    @Setup
+    public void setUp() {
+        plainPhrase = new Phrase(1L, "deadline", "", "", false, null);
+        regexpPhrase = new Phrase(2L, "\\b(report|slides)\\b", "capulet\\.lit$", "work|friends", true, null);
+        missingPhrase = new Phrase(3L, "urgent", "", "", false, null);
+        groups = Arrays.asList("family", "friends", "work");
+    }
+
+    @Benchmark
+    public boolean plain() {
+        return plainPhrase.matches(TEXT, USER, Collections.<String>emptyList());
+    }
+
+    @Benchmark
+    public boolean regexp() {
+        return regexpPhrase.matches(TEXT, USER, groups);
+    }
+
+    @Benchmark
+    public boolean missing() {
+        return missingPhrase.matches(TEXT, USER, groups);
+    }
+
+}
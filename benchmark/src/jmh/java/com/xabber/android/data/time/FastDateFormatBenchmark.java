@@ -0,0 +1,62 @@
+package com.xabber.android.data.time;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of message times with cached {@link FastDateFormat} compared with
+ * {@link SimpleDateFormat}, created per call as it was done in adapters or shared.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FastDateFormatBenchmark {
+
+    private static final String TIME_PATTERN = "HH:mm";
+    private static final String DATE_PATTERN = "d MMMM yyyy";
+
+    private Date date;
+    private SimpleDateFormat simpleTimeFormat;
+
+    @Setup
+    public void setUp() {
+        date = new Date(1571486400000L);
+        simpleTimeFormat = new SimpleDateFormat(TIME_PATTERN, Locale.US);
+    }
+
+    @Benchmark
+    public String fastTime() {
+        return FastDateFormat.getInstance(TIME_PATTERN, Locale.US).format(date);
+    }
+
+    @Benchmark
+    public String simpleTimeShared() {
+        return simpleTimeFormat.format(date);
+    }
+
+    @Benchmark
+    public String simpleTimeNew() {
+        return new SimpleDateFormat(TIME_PATTERN, Locale.US).format(date);
+    }
+
+    @Benchmark
+    public String fastDate() {
+        return FastDateFormat.getInstance(DATE_PATTERN, Locale.US).format(date);
+    }
+
+    @Benchmark
+    public String simpleDateNew() {
+        return new SimpleDateFormat(DATE_PATTERN, Locale.US).format(date);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.xabber.android.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HtmlUtils#escapeHtml(String)} is called for every message of exported chat,
+ * {@link HtmlUtils#xmlEncode(String)} for every message with references.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HtmlUtilsBenchmark {
+
+    private static final String LATIN = "Hi! Are we still meeting at the \"conference room\" at five? "
+            + "Please bring the slides & the report, <b>the deadline</b> is tomorrow.\nThanks";
+    private static final String CYRILLIC = "Привет! Встречаемся в \"переговорной\" в пять? "
+            + "Возьми слайды и отчёт, <b>срок</b> завтра.\nСпасибо 😄";
+
+    // not constants, so JIT can't fold the escaping
+    private String latin = LATIN;
+    private String cyrillic = CYRILLIC;
+
+    @Benchmark
+    public String escapeHtmlLatin() {
+        return HtmlUtils.escapeHtml(latin);
+    }
+
+    @Benchmark
+    public String escapeHtmlCyrillic() {
+        return HtmlUtils.escapeHtml(cyrillic);
+    }
+
+    @Benchmark
+    public String xmlEncodeLatin() {
+        return HtmlUtils.xmlEncode(latin);
+    }
+
+    @Benchmark
+    public String xmlEncodeCyrillic() {
+        return HtmlUtils.xmlEncode(cyrillic);
+    }
+
+}
@@ -0,0 +1,61 @@
+package github.ankushsachdeva.emojicon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scan of {@link EmojiconHandler#addEmojis} runs for every bound message and on every
+ * change of input text. Creation of spans needs resources and is not measured.
+ * <p/>
+ * There is no latin only text: desktop JIT removes the scan of such string altogether,
+ * the app runtime doesn't.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EmojiconHandlerBenchmark {
+
+    private static final String CYRILLIC = "Привет! Встречаемся в переговорной в пять? "
+            + "Возьми слайды и отчёт, срок завтра.";
+    private static final String EMOJI = "Hi 😄😃! Meeting at 5⃣ ☕ in the room 🇩🇪 "
+            + " please bring the slides 👍👍👍 and the report ❤";
+
+    private final Counter counter = new Counter();
+    // not constants, so JIT can't fold the scan
+    private String cyrillic = CYRILLIC;
+    private String emoji = EMOJI;
+
+    @Benchmark
+    public int cyrillic() {
+        return find(cyrillic);
+    }
+
+    @Benchmark
+    public int emoji() {
+        return find(emoji);
+    }
+
+    private int find(String text) {
+        counter.count = 0;
+        EmojiconHandler.findEmojis(text, 0, -1, counter);
+        return counter.count;
+    }
+
+    private static class Counter implements EmojiconHandler.EmojiListener {
+
+        private int count;
+
+        @Override
+        public void onEmoji(int icon, int start, int end) {
+            count++;
+        }
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.xabber.android.data.database.messagerealm;
+
+/**
+ * Replacement of the Realm object for benchmarks, the app one needs Realm runtime.
+ * Only methods used by benchmarked classes are present.
+ */
+public class Attachment {
+
+    private String title;
+    private String mimeType;
+    private Long duration;
+    private Long fileSize;
+    private Integer imageHeight;
+    private Integer imageWidth;
+    private String fileUrl;
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public Long getDuration() {
+        return duration;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public Integer getImageHeight() {
+        return imageHeight;
+    }
+
+    public Integer getImageWidth() {
+        return imageWidth;
+    }
+
+    public String getFileUrl() {
+        return fileUrl;
+    }
+
+}
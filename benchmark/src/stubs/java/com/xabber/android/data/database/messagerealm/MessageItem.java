@@ -0,0 +1,20 @@
+package com.xabber.android.data.database.messagerealm;
+
+/**
+ * Replacement of the Realm object for benchmarks, the app one needs Realm runtime.
+ * Only methods used by benchmarked classes are present.
+ */
+public class MessageItem {
+
+    private String originalStanza;
+    private Long timestamp;
+
+    public String getOriginalStanza() {
+        return originalStanza;
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+}
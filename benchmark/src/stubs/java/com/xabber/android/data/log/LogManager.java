@@ -0,0 +1,30 @@
+package com.xabber.android.data.log;
+
+/**
+ * Replacement of the app log for benchmarks, the app one depends on Application.
+ * Only methods used by benchmarked classes are present.
+ */
+public class LogManager {
+
+    private LogManager() {
+    }
+
+    public static void d(Object obj, String msg) {
+    }
+
+    public static void i(Object obj, String msg) {
+    }
+
+    public static void w(Object obj, String msg) {
+        System.err.println(obj + ": " + msg);
+    }
+
+    public static void e(Object obj, String msg) {
+        System.err.println(obj + ": " + msg);
+    }
+
+    public static void exception(Object obj, Throwable throwable) {
+        System.err.println(obj + ": " + throwable);
+    }
+
+}
@@ -0,0 +1,25 @@
+package dalvik.system;
+
+import java.lang.reflect.Array;
+
+/**
+ * Replacement of the native runtime from android-all jar, the same way Robolectric
+ * shadows it. Used by android.text and android.util collections.
+ * Only methods used by benchmarked classes are present.
+ */
+public final class VMRuntime {
+
+    private static final VMRuntime RUNTIME = new VMRuntime();
+
+    private VMRuntime() {
+    }
+
+    public static VMRuntime getRuntime() {
+        return RUNTIME;
+    }
+
+    public Object newUnpaddedArray(Class<?> componentClass, int minLength) {
+        return Array.newInstance(componentClass, minLength);
+    }
+
+}
@@ -44,7 +44,6 @@ import android.os.Handler;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.cert.*;
@@ -62,8 +61,6 @@ import java.util.Locale;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLSession;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
 
 /**
@@ -97,10 +94,9 @@ public class MemorizingTrustManager implements X509TrustManager {
 	private static SparseArray<MTMDecision> openDecisions = new SparseArray<MTMDecision>();
 
 	Handler masterHandler;
-	private File keyStoreFile;
+	private SharedTrustStore sharedTrustStore;
 	private KeyStore appKeyStore;
 	private X509TrustManager defaultTrustManager;
-	private X509TrustManager appTrustManager;
 
 	/** Creates an instance of the MemorizingTrustManager class that falls back to a custom TrustManager.
 	 *
@@ -117,7 +113,6 @@ public class MemorizingTrustManager implements X509TrustManager {
 	 */
 	public MemorizingTrustManager(Context m, X509TrustManager defaultTrustManager) {
 		init(m);
-		this.appTrustManager = getTrustManager(appKeyStore);
 		this.defaultTrustManager = defaultTrustManager;
 	}
 
@@ -135,8 +130,7 @@ public class MemorizingTrustManager implements X509TrustManager {
 	 */
 	public MemorizingTrustManager(Context m) {
 		init(m);
-		this.appTrustManager = getTrustManager(appKeyStore);
-		this.defaultTrustManager = getTrustManager(null);
+		this.defaultTrustManager = SharedTrustStore.getSystemTrustManager();
 	}
 
 	void init(Context m) {
@@ -154,9 +148,10 @@ public class MemorizingTrustManager implements X509TrustManager {
 		} else throw new ClassCastException("MemorizingTrustManager context must be either Activity or Service!");
 
 		File dir = app.getDir(KEYSTORE_DIR, Context.MODE_PRIVATE);
-		keyStoreFile = new File(dir + File.separator + KEYSTORE_FILE);
+		File keyStoreFile = new File(dir + File.separator + KEYSTORE_FILE);
 
-		appKeyStore = loadAppKeyStore();
+		sharedTrustStore = SharedTrustStore.getInstance(keyStoreFile);
+		appKeyStore = sharedTrustStore.getKeyStore();
 	}
 
 	
@@ -298,55 +293,6 @@ public class MemorizingTrustManager implements X509TrustManager {
 		return new MemorizingHostnameVerifier(defaultVerifier);
 	}
 	
-	X509TrustManager getTrustManager(KeyStore ks) {
-		try {
-			TrustManagerFactory tmf = TrustManagerFactory.getInstance("X509");
-			tmf.init(ks);
-			for (TrustManager t : tmf.getTrustManagers()) {
-				if (t instanceof X509TrustManager) {
-					return (X509TrustManager)t;
-				}
-			}
-		} catch (Exception e) {
-			// Here, we are covering up errors. It might be more useful
-			// however to throw them out of the constructor so the
-			// embedding app knows something went wrong.
-			LOGGER.log(Level.SEVERE, "getTrustManager(" + ks + ")", e);
-		}
-		return null;
-	}
-
-	KeyStore loadAppKeyStore() {
-		KeyStore ks;
-		try {
-			ks = KeyStore.getInstance(KeyStore.getDefaultType());
-		} catch (KeyStoreException e) {
-			LOGGER.log(Level.SEVERE, "getAppKeyStore()", e);
-			return null;
-		}
-		try {
-			ks.load(null, null);
-		} catch (NoSuchAlgorithmException | CertificateException | IOException e) {
-			LOGGER.log(Level.SEVERE, "getAppKeyStore(" + keyStoreFile + ")", e);
-		}
-		InputStream is = null;
-		try {
-			is = new java.io.FileInputStream(keyStoreFile);
-			ks.load(is, "MTM".toCharArray());
-		} catch (NoSuchAlgorithmException | CertificateException | IOException e) {
-			LOGGER.log(Level.INFO, "getAppKeyStore(" + keyStoreFile + ") - exception loading file key store", e);
-		} finally {
-			if (is != null) {
-				try {
-					is.close();
-				} catch (IOException e) {
-					LOGGER.log(Level.FINE, "getAppKeyStore(" + keyStoreFile + ") - exception closing file key store input stream", e);
-				}
-			}
-		}
-		return ks;
-	}
-
 	void storeCert(String alias, Certificate cert) {
 		try {
 			appKeyStore.setCertificateEntry(alias, cert);
@@ -362,25 +308,7 @@ public class MemorizingTrustManager implements X509TrustManager {
 	}
 
 	void keyStoreUpdated() {
-		// reload appTrustManager
-		appTrustManager = getTrustManager(appKeyStore);
-
-		// store KeyStore to file
-		java.io.FileOutputStream fos = null;
-		try {
-			fos = new java.io.FileOutputStream(keyStoreFile);
-			appKeyStore.store(fos, "MTM".toCharArray());
-		} catch (Exception e) {
-			LOGGER.log(Level.SEVERE, "storeCert(" + keyStoreFile + ")", e);
-		} finally {
-			if (fos != null) {
-				try {
-					fos.close();
-				} catch (IOException e) {
-					LOGGER.log(Level.SEVERE, "storeCert(" + keyStoreFile + ")", e);
-				}
-			}
-		}
+		sharedTrustStore.keyStoreUpdated();
 	}
 
 	// if the certificate is stored in the app key store, it is considered "known"
@@ -414,12 +342,18 @@ public class MemorizingTrustManager implements X509TrustManager {
 		throws CertificateException
 	{
 		LOGGER.log(Level.FINE, "checkCertTrusted(" + chain + ", " + authType + ", " + isServer + ")");
+		if (sharedTrustStore.isVerified(chain, authType, isServer, defaultTrustManager)) {
+			LOGGER.log(Level.FINE, "checkCertTrusted: chain was verified recently");
+			return;
+		}
 		try {
 			LOGGER.log(Level.FINE, "checkCertTrusted: trying appTrustManager");
+			X509TrustManager appTrustManager = sharedTrustStore.getTrustManager();
 			if (isServer)
 				appTrustManager.checkServerTrusted(chain, authType);
 			else
 				appTrustManager.checkClientTrusted(chain, authType);
+			sharedTrustStore.setVerified(chain, authType, isServer, appTrustManager);
 		} catch (CertificateException ae) {
 			LOGGER.log(Level.FINER, "checkCertTrusted: appTrustManager did not verify certificate. Will fall back to secondary verification mechanisms (if any).", ae);
 			// if the cert is stored in our appTrustManager, we ignore expiredness
@@ -441,6 +375,7 @@ public class MemorizingTrustManager implements X509TrustManager {
 					defaultTrustManager.checkServerTrusted(chain, authType);
 				else
 					defaultTrustManager.checkClientTrusted(chain, authType);
+				sharedTrustStore.setVerified(chain, authType, isServer, defaultTrustManager);
 			} catch (CertificateException e) {
 				LOGGER.log(Level.FINER, "checkCertTrusted: defaultTrustManager failed", e);
 				interactCert(chain, authType, e);
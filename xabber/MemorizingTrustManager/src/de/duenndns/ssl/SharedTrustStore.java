@@ -0,0 +1,277 @@
+/* MemorizingTrustManager - a TrustManager which asks the user about invalid
+ *  certificates and memorizes their decision.
+ *
+ * SharedTrustStore.java contains the app key store shared by all
+ * MemorizingTrustManager instances and the cache of verified chains.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.duenndns.ssl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * App key store loaded once per file and shared by all MemorizingTrustManager
+ * instances, together with trust manager built from it.
+ * <p>
+ * Chains that passed the check are remembered for {@link #VERIFIED_CHAIN_TTL} together
+ * with trust manager that accepted them, so reconnects and file transfers to the same
+ * server skip the path validation. Chain accepted by default trust manager of one
+ * MemorizingTrustManager is not accepted by instances with another default trust manager.
+ * Remembered chains are forgotten on every key store change.
+ */
+class SharedTrustStore {
+	private final static Logger LOGGER = Logger.getLogger(SharedTrustStore.class.getName());
+
+	final static int MAX_VERIFIED_CHAINS = 32;
+	final static long VERIFIED_CHAIN_TTL = 60 * 60 * 1000L;
+
+	private final static char[] PASSWORD = "MTM".toCharArray();
+
+	private static final Map<String, SharedTrustStore> instances = new HashMap<String, SharedTrustStore>();
+	private static X509TrustManager systemTrustManager;
+
+	private final File keyStoreFile;
+	private final KeyStore keyStore;
+	private volatile X509TrustManager trustManager;
+
+	/**
+	 * Verified chains by chain digest and trust manager, least recently used first.
+	 */
+	private final LinkedHashMap<String, VerifiedChain> verifiedChains =
+			new LinkedHashMap<String, VerifiedChain>(MAX_VERIFIED_CHAINS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, VerifiedChain> eldest) {
+			return size() > MAX_VERIFIED_CHAINS;
+		}
+	};
+
+	static synchronized SharedTrustStore getInstance(File keyStoreFile) {
+		SharedTrustStore store = instances.get(keyStoreFile.getPath());
+		if (store == null) {
+			store = new SharedTrustStore(keyStoreFile);
+			instances.put(keyStoreFile.getPath(), store);
+		}
+		return store;
+	}
+
+	/**
+	 * @return trust manager of the system key store, created once.
+	 */
+	static synchronized X509TrustManager getSystemTrustManager() {
+		if (systemTrustManager == null)
+			systemTrustManager = createTrustManager(null);
+		return systemTrustManager;
+	}
+
+	private SharedTrustStore(File keyStoreFile) {
+		this.keyStoreFile = keyStoreFile;
+		this.keyStore = load(keyStoreFile);
+		this.trustManager = createTrustManager(keyStore);
+	}
+
+	KeyStore getKeyStore() {
+		return keyStore;
+	}
+
+	X509TrustManager getTrustManager() {
+		return trustManager;
+	}
+
+	/**
+	 * Rebuilds trust manager, drops verified chains and writes key store to file.
+	 */
+	void keyStoreUpdated() {
+		trustManager = createTrustManager(keyStore);
+		synchronized (verifiedChains) {
+			verifiedChains.clear();
+		}
+
+		synchronized (this) {
+			FileOutputStream fos = null;
+			try {
+				fos = new FileOutputStream(keyStoreFile);
+				keyStore.store(fos, PASSWORD);
+			} catch (Exception e) {
+				LOGGER.log(Level.SEVERE, "storeCert(" + keyStoreFile + ")", e);
+			} finally {
+				if (fos != null) {
+					try {
+						fos.close();
+					} catch (IOException e) {
+						LOGGER.log(Level.SEVERE, "storeCert(" + keyStoreFile + ")", e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return whether chain was accepted by trust manager of the app key store
+	 * or by the given default trust manager.
+	 */
+	boolean isVerified(X509Certificate[] chain, String authType, boolean isServer,
+			X509TrustManager defaultTrustManager) {
+		String key = getChainKey(chain, authType, isServer);
+		if (key == null)
+			return false;
+		return isVerified(key, trustManager)
+				|| (defaultTrustManager != null && isVerified(key, defaultTrustManager));
+	}
+
+	private boolean isVerified(String chainKey, X509TrustManager verifier) {
+		String key = getVerifiedKey(chainKey, verifier);
+		synchronized (verifiedChains) {
+			VerifiedChain verifiedChain = verifiedChains.get(key);
+			if (verifiedChain == null || verifiedChain.verifier != verifier)
+				return false;
+			if (verifiedChain.expiration < System.currentTimeMillis()) {
+				verifiedChains.remove(key);
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Remembers chain accepted by the trust manager until TTL passes
+	 * or any of its certificates expires.
+	 */
+	void setVerified(X509Certificate[] chain, String authType, boolean isServer,
+			X509TrustManager verifier) {
+		String chainKey = getChainKey(chain, authType, isServer);
+		if (chainKey == null || verifier == null)
+			return;
+		long expiration = System.currentTimeMillis() + VERIFIED_CHAIN_TTL;
+		for (X509Certificate cert : chain)
+			expiration = Math.min(expiration, cert.getNotAfter().getTime());
+		if (expiration < System.currentTimeMillis())
+			return;
+		synchronized (verifiedChains) {
+			verifiedChains.put(getVerifiedKey(chainKey, verifier), new VerifiedChain(verifier, expiration));
+		}
+	}
+
+	/**
+	 * Identity hash can be the same for different trust managers,
+	 * so the entry keeps trust manager itself and it is compared on lookup.
+	 */
+	private static String getVerifiedKey(String chainKey, X509TrustManager verifier) {
+		return chainKey + '/' + System.identityHashCode(verifier);
+	}
+
+	/**
+	 * @return digest of the chain or <code>null</code> if chain can't be encoded.
+	 */
+	private static String getChainKey(X509Certificate[] chain, String authType, boolean isServer) {
+		if (chain == null || chain.length == 0)
+			return null;
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			for (X509Certificate cert : chain)
+				md.update(cert.getEncoded());
+			StringBuilder key = new StringBuilder();
+			for (byte b : md.digest())
+				key.append(String.format("%02x", b));
+			return key.append('/').append(authType).append('/').append(isServer).toString();
+		} catch (NoSuchAlgorithmException | CertificateEncodingException e) {
+			LOGGER.log(Level.FINE, "getChainKey()", e);
+			return null;
+		}
+	}
+
+	private static class VerifiedChain {
+		final X509TrustManager verifier;
+		final long expiration;
+
+		VerifiedChain(X509TrustManager verifier, long expiration) {
+			this.verifier = verifier;
+			this.expiration = expiration;
+		}
+	}
+
+	static X509TrustManager createTrustManager(KeyStore ks) {
+		try {
+			TrustManagerFactory tmf = TrustManagerFactory.getInstance("X509");
+			tmf.init(ks);
+			for (TrustManager t : tmf.getTrustManagers()) {
+				if (t instanceof X509TrustManager) {
+					return (X509TrustManager)t;
+				}
+			}
+		} catch (Exception e) {
+			// Here, we are covering up errors. It might be more useful
+			// however to throw them out of the constructor so the
+			// embedding app knows something went wrong.
+			LOGGER.log(Level.SEVERE, "getTrustManager(" + ks + ")", e);
+		}
+		return null;
+	}
+
+	private static KeyStore load(File keyStoreFile) {
+		KeyStore ks;
+		try {
+			ks = KeyStore.getInstance(KeyStore.getDefaultType());
+		} catch (KeyStoreException e) {
+			LOGGER.log(Level.SEVERE, "getAppKeyStore()", e);
+			return null;
+		}
+		try {
+			ks.load(null, null);
+		} catch (NoSuchAlgorithmException | CertificateException | IOException e) {
+			LOGGER.log(Level.SEVERE, "getAppKeyStore(" + keyStoreFile + ")", e);
+		}
+		InputStream is = null;
+		try {
+			is = new FileInputStream(keyStoreFile);
+			ks.load(is, PASSWORD);
+		} catch (NoSuchAlgorithmException | CertificateException | IOException e) {
+			LOGGER.log(Level.INFO, "getAppKeyStore(" + keyStoreFile + ") - exception loading file key store", e);
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException e) {
+					LOGGER.log(Level.FINE, "getAppKeyStore(" + keyStoreFile + ") - exception closing file key store input stream", e);
+				}
+			}
+		}
+		return ks;
+	}
+}
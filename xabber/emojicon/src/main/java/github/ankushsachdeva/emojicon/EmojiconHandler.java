@@ -1366,7 +1366,7 @@ public final class EmojiconHandler {
         return ((c >> 12) == 0xe);
     }
 
-    private static int getEmojiResource(Context context, int codePoint) {
+    private static int getEmojiResource(int codePoint) {
         return sEmojisMap.get(codePoint);
     }
 
@@ -1394,17 +1394,38 @@ public final class EmojiconHandler {
      * @param index
      * @param length
      */
-    public static void addEmojis(Context context, Spannable text, int emojiSize, int index, int length) {
-        int textLength = text.length();
-        int textLengthToProcessMax = textLength - index;
-        int textLengthToProcess = length < 0 || length >= textLengthToProcessMax ? textLength : (length+index);
-
+    public static void addEmojis(final Context context, final Spannable text, final int emojiSize,
+                                 int index, int length) {
         // remove spans throughout all text
-        EmojiconSpan[] oldSpans = text.getSpans(0, textLength, EmojiconSpan.class);
+        EmojiconSpan[] oldSpans = text.getSpans(0, text.length(), EmojiconSpan.class);
         for (int i = 0; i < oldSpans.length; i++) {
             text.removeSpan(oldSpans[i]);
         }
 
+        findEmojis(text, index, length, new EmojiListener() {
+            @Override
+            public void onEmoji(int icon, int start, int end) {
+                Drawable myIcon = context.getResources().getDrawable(icon);
+                myIcon.setBounds(0, 0, emojiSize, emojiSize);
+                text.setSpan(new ImageSpan(myIcon, DynamicDrawableSpan.ALIGN_BOTTOM),
+                        start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+        });
+    }
+
+    /**
+     * Finds emoji characters in the given text. Doesn't need Android runtime.
+     *
+     * @param text
+     * @param index
+     * @param length
+     * @param listener
+     */
+    static void findEmojis(CharSequence text, int index, int length, EmojiListener listener) {
+        int textLength = text.length();
+        int textLengthToProcessMax = textLength - index;
+        int textLengthToProcess = length < 0 || length >= textLengthToProcessMax ? textLength : (length+index);
+
         int skip;
         for (int i = index; i < textLengthToProcess; i += skip) {
             skip = 0;
@@ -1420,7 +1441,7 @@ public final class EmojiconHandler {
                 skip = Character.charCount(unicode);
 
                 if (unicode > 0xff) {
-                    icon = getEmojiResource(context, unicode);
+                    icon = getEmojiResource(unicode);
                 }
 
                 if (icon == 0 && i + skip < textLengthToProcess) {
@@ -1509,11 +1530,19 @@ public final class EmojiconHandler {
             }
 
             if (icon > 0) {
-                Drawable myIcon = context.getResources().getDrawable(icon);
-                myIcon.setBounds(0, 0, emojiSize, emojiSize);
-                text.setSpan(new ImageSpan(myIcon, DynamicDrawableSpan.ALIGN_BOTTOM),
-                        i, i + skip, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                listener.onEmoji(icon, i, i + skip);
             }
         }
     }
+
+    interface EmojiListener {
+
+        /**
+         * @param icon  drawable resource of emoji.
+         * @param start
+         * @param end
+         */
+        void onEmoji(int icon, int start, int end);
+
+    }
 }
@@ -24,6 +24,7 @@ import com.xabber.android.R;
 import com.xabber.android.data.account.AccountManager;
 import com.xabber.android.data.connection.CertificateManager;
 import com.xabber.android.data.extension.avatar.AvatarManager;
+import com.xabber.android.data.extension.csi.ClientStateManager;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.push.SyncManager;
 import com.xabber.android.data.roster.RosterManager;
@@ -188,6 +189,7 @@ public class ActivityManager implements OnUnloadListener {
             LogManager.i(activity, "onPause");
 
         CertificateManager.getInstance().unregisterActivity(activity);
+        ClientStateManager.getInstance().onActivityPaused();
 
         if (onErrorListener != null)
             application
@@ -206,6 +208,7 @@ public class ActivityManager implements OnUnloadListener {
         if (LOG) {
             LogManager.i(activity, "onResume");
         }
+        ClientStateManager.getInstance().onActivityResumed();
         if((!application.isInitialized() || SyncManager.getInstance().isSyncMode())
                 && !Application.getInstance().isClosing()) {
 
@@ -214,22 +217,12 @@ public class ActivityManager implements OnUnloadListener {
             }
             AccountManager.getInstance().onPreInitialize();
             RosterManager.getInstance().onPreInitialize();
-            Application.getInstance().runInBackground(new Runnable() {
+            Application.getInstance().runOnUiThreadDelay(new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                        Thread.sleep(START_SERVICE_DELAY);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    Application.getInstance().runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            activity.startService(XabberService.createIntent(activity));
-                        }
-                    });
+                    activity.startService(XabberService.createIntent(activity));
                 }
-            });
+            }, START_SERVICE_DELAY);
         }
         if (onErrorListener != null) {
             application.removeUIListener(OnErrorListener.class, onErrorListener);
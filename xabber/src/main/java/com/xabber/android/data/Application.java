@@ -20,7 +20,7 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.os.Handler;
 import android.os.StrictMode;
-import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.multidex.MultiDex;
 
 import com.frogermcs.androiddevmetrics.AndroidDevMetrics;
@@ -35,6 +35,9 @@ import com.xabber.android.data.connection.ConnectionManager;
 import com.xabber.android.data.connection.NetworkManager;
 import com.xabber.android.data.connection.ReconnectionManager;
 import com.xabber.android.data.database.DatabaseManager;
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.executor.Lane;
+import com.xabber.android.data.executor.TaskScheduler;
 import com.xabber.android.data.extension.attention.AttentionManager;
 import com.xabber.android.data.extension.avatar.AvatarManager;
 import com.xabber.android.data.extension.avatar.AvatarStorage;
@@ -59,6 +62,8 @@ import com.xabber.android.data.message.MessageManager;
 import com.xabber.android.data.message.ReceiptManager;
 import com.xabber.android.data.message.chat.ChatManager;
 import com.xabber.android.data.message.phrase.PhraseManager;
+import com.xabber.android.data.message.search.MessageSearchManager;
+import com.xabber.android.data.metrics.MetricsManager;
 import com.xabber.android.data.notification.DelayedNotificationActionManager;
 import com.xabber.android.data.notification.NotificationManager;
 import com.xabber.android.data.notification.custom_notification.CustomNotifyPrefsManager;
@@ -83,10 +88,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.ThreadFactory;
 
 /**
  * Base entry point.
@@ -99,10 +101,9 @@ public class Application extends android.app.Application {
     private static Application instance;
     private final ArrayList<Object> registeredManagers;
     /**
-     * Thread to execute tasks in background..
+     * Executes tasks in background.
      */
-    private final ExecutorService backgroundExecutor;
-    private final ExecutorService backgroundExecutorForUserActions;
+    private final TaskScheduler taskScheduler;
     /**
      * Handler to execute runnable in UI thread.
      */
@@ -165,18 +166,7 @@ public class Application extends android.app.Application {
         registeredManagers = new ArrayList<>();
 
         handler = new Handler();
-        backgroundExecutor = createSingleThreadExecutor("Background executor service");
-        backgroundExecutorForUserActions = Executors.newFixedThreadPool(
-                Runtime.getRuntime().availableProcessors(),
-                new ThreadFactory() {
-            @Override
-            public Thread newThread(@NonNull Runnable runnable) {
-                Thread thread = new Thread(runnable);
-                thread.setPriority(Thread.MIN_PRIORITY);
-                thread.setDaemon(true);
-                return thread;
-            }
-        });
+        taskScheduler = new TaskScheduler();
     }
 
     @Override
@@ -185,19 +175,6 @@ public class Application extends android.app.Application {
         MultiDex.install(this);
     }
 
-    @NonNull
-    private ExecutorService createSingleThreadExecutor(final String threadName) {
-        return Executors.newSingleThreadExecutor(new ThreadFactory() {
-            @Override
-            public Thread newThread(@NonNull Runnable runnable) {
-                Thread thread = new Thread(runnable, threadName);
-                thread.setPriority(Thread.MIN_PRIORITY);
-                thread.setDaemon(true);
-                return thread;
-                }
-            });
-    }
-
     public static Application getInstance() {
         if (instance == null) {
             throw new IllegalStateException();
@@ -217,7 +194,10 @@ public class Application extends android.app.Application {
 
         for (OnLoadListener listener : getManagers(OnLoadListener.class)) {
             LogManager.i(listener, "onLoad");
+            long startTime = System.nanoTime();
             listener.onLoad();
+            MetricsManager.getInstance().getHistogram("startup.onLoad."
+                    + listener.getClass().getSimpleName()).recordNanosSince(startTime);
         }
     }
 
@@ -274,7 +254,7 @@ public class Application extends android.app.Application {
         }
         serviceStarted = true;
         LogManager.i(this, "onStart");
-        loadFuture = backgroundExecutor.submit(new Callable<Void>() {
+        loadFuture = taskScheduler.submit(Lane.BACKGROUND, new Callable<Void>() {
             @Override
             public Void call() throws Exception {
                 try {
@@ -365,6 +345,7 @@ public class Application extends android.app.Application {
         addManager(CrowdfundingManager.getInstance());
         addManager(MUCManager.getInstance());
         addManager(MessageManager.getInstance());
+        addManager(MessageSearchManager.getInstance());
         addManager(ChatManager.getInstance());
         addManager(VCardManager.getInstance());
         addManager(AvatarManager.getInstance());
@@ -572,20 +553,28 @@ public class Application extends android.app.Application {
      * Submits request to be executed in background.
      */
     public void runInBackground(final Runnable runnable) {
-        backgroundExecutor.submit(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    runnable.run();
-                } catch (Exception e) {
-                    LogManager.exception(runnable, e);
-                }
-            }
-        });
+        runInBackground(Lane.BACKGROUND, null, runnable);
     }
 
     public void runInBackgroundUserRequest(final Runnable runnable) {
-        backgroundExecutorForUserActions.submit(new Runnable() {
+        runInBackground(Lane.USER_REQUEST, null, runnable);
+    }
+
+    /**
+     * Submits request to be executed in given lane.
+     */
+    public void runInBackground(Lane lane, final Runnable runnable) {
+        runInBackground(lane, null, runnable);
+    }
+
+    /**
+     * Submits request to be executed in given lane.
+     *
+     * @param account account of the request, request will be cancelled with
+     *                {@link #cancelBackgroundTasks(AccountJid)} if it is not started yet.
+     */
+    public Future<?> runInBackground(Lane lane, @Nullable AccountJid account, final Runnable runnable) {
+        return taskScheduler.submit(lane, account, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -597,6 +586,20 @@ public class Application extends android.app.Application {
         });
     }
 
+    /**
+     * Cancels not started requests of the account.
+     */
+    public void cancelBackgroundTasks(AccountJid account) {
+        taskScheduler.cancel(account);
+    }
+
+    /**
+     * @return statistics and queued requests of background lanes.
+     */
+    public String dumpBackgroundTasks() {
+        return taskScheduler.dump();
+    }
+
     /**
      * Submits request to be executed in UI thread.
      */
@@ -611,6 +614,13 @@ public class Application extends android.app.Application {
         handler.postDelayed(runnable, delayMillis);
     }
 
+    /**
+     * Removes pending request to be executed in UI thread.
+     */
+    public void removeOnUiThread(final Runnable runnable) {
+        handler.removeCallbacks(runnable);
+    }
+
     public boolean isServiceStarted() {
         return serviceStarted;
     }
@@ -101,6 +101,16 @@ public class SettingsManager implements OnInitializedListener,
         editor.commit();
     }
 
+    private static long getLong(int key, long def) {
+        return getSharedPreferences().getLong(Application.getInstance().getString(key), def);
+    }
+
+    private static void setLong(int key, long value) {
+        Editor editor = getSharedPreferences().edit();
+        editor.putLong(Application.getInstance().getString(key), value);
+        editor.commit();
+    }
+
     private static boolean getBoolean(int key, boolean def) {
         return getSharedPreferences().getBoolean(
                 Application.getInstance().getString(key), def);
@@ -862,6 +872,28 @@ public class SettingsManager implements OnInitializedListener,
         return getInteger(R.string.crowdfunding_last_position_key, 0);
     }
 
+    public static void setSearchIndexVersion(int version) {
+        setInt(R.string.search_index_version_key, version);
+    }
+
+    /**
+     * @return version of tokenizer used to build message search index, 0 if index was never built.
+     */
+    public static int getSearchIndexVersion() {
+        return getInteger(R.string.search_index_version_key, 0);
+    }
+
+    public static void setSearchIndexRebuildCursor(long timestamp) {
+        setLong(R.string.search_index_rebuild_cursor_key, timestamp);
+    }
+
+    /**
+     * @return timestamp of the first message not indexed by running rebuild, -1 if rebuild wasn't started.
+     */
+    public static long getSearchIndexRebuildCursor() {
+        return getLong(R.string.search_index_rebuild_cursor_key, -1);
+    }
+
     public static void setEnabledPushNodes(String enabledPushNodes) {
         setString(R.string.enabled_push_nodes, enabledPushNodes);
     }
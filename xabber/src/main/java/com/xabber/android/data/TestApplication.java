@@ -17,7 +17,7 @@ package com.xabber.android.data;
 import android.app.Activity;
 import android.content.Context;
 import android.os.Handler;
-import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.multidex.MultiDex;
 
 import com.xabber.android.BuildConfig;
@@ -29,6 +29,9 @@ import com.xabber.android.data.connection.ConnectionManager;
 import com.xabber.android.data.connection.NetworkManager;
 import com.xabber.android.data.connection.ReconnectionManager;
 import com.xabber.android.data.database.DatabaseManager;
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.executor.Lane;
+import com.xabber.android.data.executor.TaskScheduler;
 import com.xabber.android.data.extension.attention.AttentionManager;
 import com.xabber.android.data.extension.avatar.AvatarManager;
 import com.xabber.android.data.extension.avatar.AvatarStorage;
@@ -51,6 +54,7 @@ import com.xabber.android.data.message.MessageManager;
 import com.xabber.android.data.message.ReceiptManager;
 import com.xabber.android.data.message.chat.ChatManager;
 import com.xabber.android.data.message.phrase.PhraseManager;
+import com.xabber.android.data.message.search.MessageSearchManager;
 import com.xabber.android.data.notification.DelayedNotificationActionManager;
 import com.xabber.android.data.notification.NotificationManager;
 import com.xabber.android.data.notification.custom_notification.CustomNotifyPrefsManager;
@@ -73,10 +77,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.ThreadFactory;
 
 /**
  * Base entry point.
@@ -89,10 +90,9 @@ public class TestApplication extends android.app.Application {
     private static TestApplication instance;
     private final ArrayList<Object> registeredManagers;
     /**
-     * Thread to execute tasks in background..
+     * Executes tasks in background.
      */
-    private final ExecutorService backgroundExecutor;
-    private final ExecutorService backgroundExecutorForUserActions;
+    private final TaskScheduler taskScheduler;
     /**
      * Handler to execute runnable in UI thread.
      */
@@ -155,18 +155,7 @@ public class TestApplication extends android.app.Application {
         registeredManagers = new ArrayList<>();
 
         handler = new Handler();
-        backgroundExecutor = createSingleThreadExecutor("Background executor service");
-        backgroundExecutorForUserActions = Executors.newFixedThreadPool(
-                Runtime.getRuntime().availableProcessors(),
-                new ThreadFactory() {
-                    @Override
-                    public Thread newThread(@NonNull Runnable runnable) {
-                        Thread thread = new Thread(runnable);
-                        thread.setPriority(Thread.MIN_PRIORITY);
-                        thread.setDaemon(true);
-                        return thread;
-                    }
-                });
+        taskScheduler = new TaskScheduler();
     }
 
     @Override
@@ -175,19 +164,6 @@ public class TestApplication extends android.app.Application {
         MultiDex.install(this);
     }
 
-    @NonNull
-    private ExecutorService createSingleThreadExecutor(final String threadName) {
-        return Executors.newSingleThreadExecutor(new ThreadFactory() {
-            @Override
-            public Thread newThread(@NonNull Runnable runnable) {
-                Thread thread = new Thread(runnable, threadName);
-                thread.setPriority(Thread.MIN_PRIORITY);
-                thread.setDaemon(true);
-                return thread;
-            }
-        });
-    }
-
     public static TestApplication getInstance() {
         if (instance == null) {
             throw new IllegalStateException();
@@ -264,7 +240,7 @@ public class TestApplication extends android.app.Application {
         }
         serviceStarted = true;
         LogManager.i(this, "onStart");
-        loadFuture = backgroundExecutor.submit(new Callable<Void>() {
+        loadFuture = taskScheduler.submit(Lane.BACKGROUND, new Callable<Void>() {
             @Override
             public Void call() throws Exception {
                 try {
@@ -330,6 +306,7 @@ public class TestApplication extends android.app.Application {
         addManager(CrowdfundingManager.getInstance());
         addManager(MUCManager.getInstance());
         addManager(MessageManager.getInstance());
+        addManager(MessageSearchManager.getInstance());
         addManager(ChatManager.getInstance());
         addManager(VCardManager.getInstance());
         addManager(AvatarManager.getInstance());
@@ -535,20 +512,28 @@ public class TestApplication extends android.app.Application {
      * Submits request to be executed in background.
      */
     public void runInBackground(final Runnable runnable) {
-        backgroundExecutor.submit(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    runnable.run();
-                } catch (Exception e) {
-                    LogManager.exception(runnable, e);
-                }
-            }
-        });
+        runInBackground(Lane.BACKGROUND, null, runnable);
     }
 
     public void runInBackgroundUserRequest(final Runnable runnable) {
-        backgroundExecutorForUserActions.submit(new Runnable() {
+        runInBackground(Lane.USER_REQUEST, null, runnable);
+    }
+
+    /**
+     * Submits request to be executed in given lane.
+     */
+    public void runInBackground(Lane lane, final Runnable runnable) {
+        runInBackground(lane, null, runnable);
+    }
+
+    /**
+     * Submits request to be executed in given lane.
+     *
+     * @param account account of the request, request will be cancelled with
+     *                {@link #cancelBackgroundTasks(AccountJid)} if it is not started yet.
+     */
+    public Future<?> runInBackground(Lane lane, @Nullable AccountJid account, final Runnable runnable) {
+        return taskScheduler.submit(lane, account, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -560,6 +545,20 @@ public class TestApplication extends android.app.Application {
         });
     }
 
+    /**
+     * Cancels not started requests of the account.
+     */
+    public void cancelBackgroundTasks(AccountJid account) {
+        taskScheduler.cancel(account);
+    }
+
+    /**
+     * @return statistics and queued requests of background lanes.
+     */
+    public String dumpBackgroundTasks() {
+        return taskScheduler.dump();
+    }
+
     /**
      * Submits request to be executed in UI thread.
      */
@@ -574,6 +573,13 @@ public class TestApplication extends android.app.Application {
         handler.postDelayed(runnable, delayMillis);
     }
 
+    /**
+     * Removes pending request to be executed in UI thread.
+     */
+    public void removeOnUiThread(final Runnable runnable) {
+        handler.removeCallbacks(runnable);
+    }
+
     public boolean isServiceStarted() {
         return serviceStarted;
     }
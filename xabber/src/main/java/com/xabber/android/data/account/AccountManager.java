@@ -46,6 +46,7 @@ import com.xabber.android.data.database.realm.AccountRealm;
 import com.xabber.android.data.database.sqlite.AccountTable;
 import com.xabber.android.data.database.sqlite.StatusTable;
 import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.extension.mam.LoadHistorySettings;
 import com.xabber.android.data.extension.mam.NextMamManager;
 import com.xabber.android.data.extension.vcard.VCardManager;
@@ -539,6 +540,7 @@ public class AccountManager implements OnLoadListener, OnUnloadListener, OnWipeL
         });
 
         accountItems.remove(account);
+        application.cancelBackgroundTasks(account);
         for (OnAccountRemovedListener listener : application.getManagers(OnAccountRemovedListener.class)) {
             listener.onAccountRemoved(accountItem);
         }
@@ -1260,6 +1262,7 @@ public class AccountManager implements OnLoadListener, OnUnloadListener, OnWipeL
     }
 
     public void onAccountDisabled(AccountItem accountItem) {
+        application.cancelBackgroundTasks(accountItem.getAccount());
         for (OnAccountDisabledListener listener : application.getManagers(OnAccountDisabledListener.class)) {
             listener.onAccountDisabled(accountItem);
         }
@@ -1317,7 +1320,7 @@ public class AccountManager implements OnLoadListener, OnUnloadListener, OnWipeL
     public void setPushEnabled(final AccountItem accountItem, final boolean enabled) {
         accountItem.setPushEnabled(enabled);
         requestToWriteAccount(accountItem);
-        Application.getInstance().runInBackground(new Runnable() {
+        Application.getInstance().runInBackground(Lane.NETWORK, accountItem.getAccount(), new Runnable() {
             @Override
             public void run() {
                 if (enabled) PushManager.getInstance().enablePushNotificationsIfNeed(accountItem);
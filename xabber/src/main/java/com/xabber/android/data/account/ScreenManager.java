@@ -74,6 +74,7 @@ public class ScreenManager implements OnInitializedListener, OnCloseListener {
         filter.addAction(Intent.ACTION_SCREEN_ON);
         filter.addAction(Intent.ACTION_SCREEN_OFF);
         Application.getInstance().registerReceiver(screenReceiver, filter);
+        ClientStateManager.getInstance().onInitialized();
     }
 
     @Override
@@ -109,11 +110,11 @@ public class ScreenManager implements OnInitializedListener, OnCloseListener {
             Application.getInstance().runInBackgroundUserRequest(new Runnable() {
                 @Override
                 public void run() {
-                    // notify server(s) that client is now active
                     AccountManager.getInstance().wakeUp();
-                    ClientStateManager.setActive();
                 }
             });
+            // notify server(s) that client is now active if app is visible
+            ClientStateManager.getInstance().onScreenOn();
         } else if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction())) {
             LogManager.i(LOG_TAG, "onScreen ACTION_SCREEN_OFF isOptimizingBattery: " + BatteryHelper.isOptimizingBattery());
 
@@ -124,13 +125,8 @@ public class ScreenManager implements OnInitializedListener, OnCloseListener {
                 alarmManager.set(AlarmManager.RTC_WAKEUP, getTime(goXa),
                         goXaPendingIntent);
 
-            Application.getInstance().runInBackgroundUserRequest(new Runnable() {
-                @Override
-                public void run() {
-                    // notify server(s) that client is now inactive
-                    ClientStateManager.setInactive();
-                }
-            });
+            // notify server(s) that client is now inactive
+            ClientStateManager.getInstance().onScreenOff();
         }
     }
 
@@ -9,9 +9,15 @@ import com.xabber.android.data.account.AccountItem;
 import com.xabber.android.data.account.listeners.OnAccountRemovedListener;
 import com.xabber.android.data.entity.AccountJid;
 
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.X509TrustManager;
+
 import de.duenndns.ssl.MemorizingTrustManager;
 
 public class CertificateManager implements OnAccountRemovedListener {
@@ -29,28 +35,82 @@ public class CertificateManager implements OnAccountRemovedListener {
 
     private Map<AccountJid, MemorizingTrustManager> memorizingTrustManagerMap;
     private Map<AccountJid, MemorizingTrustManager> fileUploadMap;
+    private Map<AccountJid, SSLContext> sslContextMap;
+    private Map<AccountJid, SSLContext> fileUploadSslContextMap;
 
     private CertificateManager() {
         this.memorizingTrustManagerMap = new ConcurrentHashMap<>();
         this.fileUploadMap = new ConcurrentHashMap<>();
+        this.sslContextMap = new ConcurrentHashMap<>();
+        this.fileUploadSslContextMap = new ConcurrentHashMap<>();
     }
 
+    /**
+     * @return trust manager used by XMPP connections of the account, created on first request.
+     */
     @NonNull
-    MemorizingTrustManager getNewMemorizingTrustManager(@NonNull final AccountJid accountJid) {
-        MemorizingTrustManager mtm = new MemorizingTrustManager(Application.getInstance());
-        if (currentActivityForBind != null) mtm.bindDisplayActivity(currentActivityForBind);
-        memorizingTrustManagerMap.put(accountJid, mtm);
+    synchronized MemorizingTrustManager getMemorizingTrustManager(@NonNull final AccountJid accountJid) {
+        MemorizingTrustManager mtm = memorizingTrustManagerMap.get(accountJid);
+        if (mtm == null) {
+            mtm = new MemorizingTrustManager(Application.getInstance());
+            if (currentActivityForBind != null) mtm.bindDisplayActivity(currentActivityForBind);
+            memorizingTrustManagerMap.put(accountJid, mtm);
+        }
         return mtm;
     }
 
+    /**
+     * Returns TLS context for XMPP connections of the account.
+     * <p/>
+     * Context keeps cache of TLS sessions, so sharing it between connections
+     * allows to resume session with the same host instead of full handshake.
+     */
+    @NonNull
+    synchronized SSLContext getSSLContext(@NonNull final AccountJid accountJid)
+            throws NoSuchAlgorithmException, KeyManagementException {
+        SSLContext sslContext = sslContextMap.get(accountJid);
+        if (sslContext == null) {
+            sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new X509TrustManager[]{getMemorizingTrustManager(accountJid)},
+                    new SecureRandom());
+            sslContextMap.put(accountJid, sslContext);
+        }
+        return sslContext;
+    }
+
+    /**
+     * @return trust manager used by HTTP file transfers of the account, created on first request.
+     */
     @NonNull
-    public MemorizingTrustManager getNewFileUploadManager(@NonNull final AccountJid accountJid) {
-        MemorizingTrustManager mtm = new MemorizingTrustManager(Application.getInstance());
-        if (currentActivityForBind != null) mtm.bindDisplayActivity(currentActivityForBind);
-        fileUploadMap.put(accountJid, mtm);
+    public synchronized MemorizingTrustManager getFileUploadManager(@NonNull final AccountJid accountJid) {
+        MemorizingTrustManager mtm = fileUploadMap.get(accountJid);
+        if (mtm == null) {
+            mtm = new MemorizingTrustManager(Application.getInstance());
+            if (currentActivityForBind != null) mtm.bindDisplayActivity(currentActivityForBind);
+            fileUploadMap.put(accountJid, mtm);
+        }
         return mtm;
     }
 
+    /**
+     * Returns TLS context for HTTP file transfers of the account.
+     * <p/>
+     * Like {@link #getSSLContext(AccountJid)}, shared context allows to resume
+     * TLS sessions between uploads and downloads.
+     */
+    @NonNull
+    public synchronized SSLContext getFileUploadSSLContext(@NonNull final AccountJid accountJid)
+            throws NoSuchAlgorithmException, KeyManagementException {
+        SSLContext sslContext = fileUploadSslContextMap.get(accountJid);
+        if (sslContext == null) {
+            sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new X509TrustManager[]{getFileUploadManager(accountJid)},
+                    new SecureRandom());
+            fileUploadSslContextMap.put(accountJid, sslContext);
+        }
+        return sslContext;
+    }
+
     public void registerActivity(Activity activity) {
         for (MemorizingTrustManager memorizingTrustManager : memorizingTrustManagerMap.values()) {
             memorizingTrustManager.bindDisplayActivity(activity);
@@ -77,5 +137,7 @@ public class CertificateManager implements OnAccountRemovedListener {
     public void onAccountRemoved(AccountItem accountItem) {
         memorizingTrustManagerMap.remove(accountItem.getAccount());
         fileUploadMap.remove(accountItem.getAccount());
+        sslContextMap.remove(accountItem.getAccount());
+        fileUploadSslContextMap.remove(accountItem.getAccount());
     }
 }
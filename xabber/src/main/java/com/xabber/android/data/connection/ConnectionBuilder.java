@@ -23,9 +23,6 @@ import java.net.UnknownHostException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.X509TrustManager;
-
 import de.duenndns.ssl.MemorizingTrustManager;
 
 class ConnectionBuilder {
@@ -55,10 +52,8 @@ class ConnectionBuilder {
             LogManager.i(LOG_TAG, "SettingsManager.securityCheckCertificate: " + SettingsManager.securityCheckCertificate());
 
             if (SettingsManager.securityCheckCertificate()) {
-                SSLContext sslContext = SSLContext.getInstance("TLS");
-                MemorizingTrustManager mtm = CertificateManager.getInstance().getNewMemorizingTrustManager(account);
-                sslContext.init(null, new X509TrustManager[]{mtm}, new java.security.SecureRandom());
-                builder.setCustomSSLContext(sslContext);
+                MemorizingTrustManager mtm = CertificateManager.getInstance().getMemorizingTrustManager(account);
+                builder.setCustomSSLContext(CertificateManager.getInstance().getSSLContext(account));
                 builder.setHostnameVerifier(
                         mtm.wrapHostnameVerifier(new CustomDomainVerifier()));
             } else {
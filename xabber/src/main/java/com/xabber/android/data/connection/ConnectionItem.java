@@ -23,6 +23,9 @@ import com.xabber.android.data.account.AccountManager;
 import com.xabber.android.data.connection.listeners.OnPacketListener;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.metrics.Counter;
+import com.xabber.android.data.metrics.LatencyHistogram;
+import com.xabber.android.data.metrics.MetricsManager;
 import com.xabber.android.data.roster.AccountRosterListener;
 import com.xabber.android.data.extension.xtoken.XToken;
 
@@ -293,15 +296,27 @@ public abstract class ConnectionItem {
     }
 
 
+    private static final Counter STANZA_RECEIVED = MetricsManager.getInstance().getCounter("stanza.received");
+    /**
+     * Time between receiving of stanza and start of its processing in UI thread.
+     */
+    private static final LatencyHistogram STANZA_WAIT = MetricsManager.getInstance().getHistogram("stanza.wait");
+    private static final LatencyHistogram STANZA_DISPATCH = MetricsManager.getInstance().getHistogram("stanza.dispatch");
+
     private StanzaListener everyStanzaListener = new StanzaListener() {
         @Override
         public void processStanza(final Stanza stanza) throws SmackException.NotConnectedException {
+            STANZA_RECEIVED.increment();
+            final long receivedTime = System.nanoTime();
             Application.getInstance().runOnUiThread(new Runnable() {
                 @Override
                 public void run() {
+                    long startTime = System.nanoTime();
+                    STANZA_WAIT.record((startTime - receivedTime) / 1000);
                     for (OnPacketListener listener : Application.getInstance().getManagers(OnPacketListener.class)) {
                         listener.onStanza(ConnectionItem.this, stanza);
                     }
+                    STANZA_DISPATCH.recordNanosSince(startTime);
                 }
             });
         }
@@ -16,21 +16,42 @@ package com.xabber.android.data.connection;
 
 import com.xabber.android.data.OnCloseListener;
 import com.xabber.android.data.OnInitializedListener;
+import com.xabber.android.data.OnLoadListener;
 import com.xabber.android.data.account.AccountItem;
 import com.xabber.android.data.account.AccountManager;
 import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.extension.forward.ForwardComment;
+import com.xabber.android.data.extension.forward.ForwardCommentProvider;
+import com.xabber.android.data.extension.httpfileupload.CustomDataProvider;
+import com.xabber.android.data.extension.references.ReferenceElement;
+import com.xabber.android.data.extension.references.ReferencesProvider;
+import com.xabber.android.data.extension.xtoken.SessionsIQ;
+import com.xabber.android.data.extension.xtoken.SessionsProvider;
+import com.xabber.android.data.extension.xtoken.XTokenIQ;
+import com.xabber.android.data.extension.xtoken.XTokenProvider;
+import com.xabber.android.data.log.AndroidLoggingHandler;
 import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.xaccount.HttpConfirmIq;
+import com.xabber.android.data.xaccount.HttpConfirmIqProvider;
+import com.xabber.xmpp.smack.XMPPTCPConnection;
 
+import org.jivesoftware.smack.AbstractXMPPConnection;
 import org.jivesoftware.smack.SmackConfiguration;
+import org.jivesoftware.smack.provider.ProviderManager;
+import org.jivesoftware.smack.util.DNSUtil;
+import org.jivesoftware.smackx.xdata.packet.DataForm;
 
 import java.util.ArrayList;
+import java.util.logging.Level;
+
+import de.measite.minidns.AbstractDNSClient;
 
 /**
  * Connection manager.
  *
  * @author alexander.ivanov
  */
-public class ConnectionManager implements OnInitializedListener, OnCloseListener {
+public class ConnectionManager implements OnLoadListener, OnInitializedListener, OnCloseListener {
 
     private static String LOG_TAG = ConnectionManager.class.getSimpleName();
 
@@ -68,6 +89,41 @@ public class ConnectionManager implements OnInitializedListener, OnCloseListener
         SmackConfiguration.addDisabledSmackClass("org.jivesoftware.smackx.httpfileupload.HttpFileUploadManager");
     }
 
+    /**
+     * Registers custom providers, DNS resolver and logging once per process
+     * instead of doing it before each connection attempt.
+     * Called after smack providers were loaded, so custom providers replace default ones.
+     */
+    @Override
+    public void onLoad() {
+        AndroidLoggingHandler.reset(new AndroidLoggingHandler());
+        java.util.logging.Logger.getLogger(XMPPTCPConnection.class.getName()).setLevel(Level.FINEST);
+        java.util.logging.Logger.getLogger(AbstractDNSClient.class.getName()).setLevel(Level.FINEST);
+        java.util.logging.Logger.getLogger(AbstractXMPPConnection.class.getName()).setLevel(Level.FINEST);
+        java.util.logging.Logger.getLogger(DNSUtil.class.getName()).setLevel(Level.FINEST);
+
+        LogManager.i(LOG_TAG, "Use DNS Java resolver");
+        ExtDNSJavaResolver.setup();
+
+        ProviderManager.addExtensionProvider(DataForm.ELEMENT,
+                DataForm.NAMESPACE, new CustomDataProvider());
+
+        ProviderManager.addExtensionProvider(ForwardComment.ELEMENT,
+                ForwardComment.NAMESPACE, new ForwardCommentProvider());
+
+        ProviderManager.addExtensionProvider(ReferenceElement.ELEMENT,
+                ReferenceElement.NAMESPACE, new ReferencesProvider());
+
+        ProviderManager.addIQProvider(XTokenIQ.ELEMENT,
+                XTokenIQ.NAMESPACE, new XTokenProvider());
+
+        ProviderManager.addIQProvider(SessionsIQ.ELEMENT,
+                SessionsIQ.NAMESPACE, new SessionsProvider());
+
+        ProviderManager.addIQProvider(HttpConfirmIq.ELEMENT,
+                HttpConfirmIq.NAMESPACE, new HttpConfirmIqProvider());
+    }
+
     @Override
     public void onInitialized() {
         LogManager.i(LOG_TAG, "onInitialized");
@@ -91,6 +147,7 @@ public class ConnectionManager implements OnInitializedListener, OnCloseListener
         for (AccountJid account : accountManager.getEnabledAccounts()) {
             ReconnectionManager.getInstance().requestReconnect(account);
         }
+        ReconnectionManager.getInstance().checkConnections();
     }
 }
 
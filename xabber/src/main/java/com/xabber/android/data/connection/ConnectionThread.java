@@ -21,54 +21,63 @@ import androidx.annotation.NonNull;
 import com.xabber.android.data.account.AccountErrorEvent;
 import com.xabber.android.data.account.AccountItem;
 import com.xabber.android.data.account.AccountManager;
-import com.xabber.android.data.extension.forward.ForwardComment;
-import com.xabber.android.data.extension.forward.ForwardCommentProvider;
-import com.xabber.android.data.extension.httpfileupload.CustomDataProvider;
-import com.xabber.android.data.extension.references.ReferenceElement;
-import com.xabber.android.data.extension.references.ReferencesProvider;
-import com.xabber.android.data.extension.xtoken.SessionsIQ;
-import com.xabber.android.data.extension.xtoken.SessionsProvider;
-import com.xabber.android.data.extension.xtoken.XTokenIQ;
-import com.xabber.android.data.extension.xtoken.XTokenProvider;
-import com.xabber.android.data.log.AndroidLoggingHandler;
 import com.xabber.android.data.log.LogManager;
-import com.xabber.android.data.xaccount.HttpConfirmIq;
-import com.xabber.android.data.xaccount.HttpConfirmIqProvider;
 import com.xabber.xmpp.smack.SASLXTOKENMechanism;
 import com.xabber.xmpp.smack.XMPPTCPConnection;
 
 import org.greenrobot.eventbus.EventBus;
-import org.jivesoftware.smack.AbstractXMPPConnection;
 import org.jivesoftware.smack.SmackException;
 import org.jivesoftware.smack.XMPPException;
-import org.jivesoftware.smack.provider.ProviderManager;
 import org.jivesoftware.smack.sasl.SASLErrorException;
-import org.jivesoftware.smack.util.DNSUtil;
-import org.jivesoftware.smackx.xdata.packet.DataForm;
 
 import java.io.IOException;
-import java.util.logging.Level;
-
-import de.measite.minidns.AbstractDNSClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 class ConnectionThread {
 
+    /**
+     * Number of threads shared by connection attempts of all accounts.
+     */
+    private static final int CONNECTION_THREADS = 3;
+
+    private static final ExecutorService connectionExecutor = Executors.newFixedThreadPool(
+            CONNECTION_THREADS, new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Connection thread");
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     @NonNull
     private final XMPPTCPConnection connection;
     @SuppressWarnings("WeakerAccess")
     @NonNull
     final ConnectionItem connectionItem;
-    private Thread thread;
+    private Future<?> future;
 
     ConnectionThread(@NonNull XMPPTCPConnection connection, @NonNull ConnectionItem connectionItem) {
         this.connection = connection;
         this.connectionItem = connectionItem;
-        createNewThread();
     }
 
-    private void createNewThread() {
-        LogManager.i(this, "Creating new connection thread");
-        thread = new Thread(new Runnable() {
+    /**
+     *
+     * @return true if connection task submitted, false if already queued or running - nothing changed
+     */
+    synchronized boolean start() {
+        if (future != null && !future.isDone()) {
+            LogManager.i(this, "Connection task is running already");
+            return false;
+        }
+
+        LogManager.i(this, "Submitting new connection task");
+        future = connectionExecutor.submit(new Runnable() {
             @Override
             public void run() {
                 if (NetworkManager.isNetworkAvailable()) {
@@ -79,38 +88,11 @@ class ConnectionThread {
                 }
             }
         });
-        thread.setPriority(Thread.MIN_PRIORITY);
-        thread.setDaemon(true);
-    }
-
-    /**
-     *
-     * @return true if connection thread started, false if already running - nothing changed
-     */
-    boolean start() {
-        if (thread.getState() == Thread.State.TERMINATED) {
-            LogManager.i(this, "Connection thread is finished, creating new one...");
-            createNewThread();
-        }
-
-        if (thread.getState() == Thread.State.NEW) {
-            LogManager.i(this, "Connection thread is new, starting...");
-            thread.start();
-            return true;
-        } else {
-            LogManager.i(this, "Connection thread is running already");
-            return false;
-        }
+        return true;
     }
 
     @SuppressWarnings("WeakerAccess")
     void connectAndLogin() {
-        AndroidLoggingHandler.reset(new AndroidLoggingHandler());
-        java.util.logging.Logger.getLogger(XMPPTCPConnection.class.getName()).setLevel(Level.FINEST);
-        java.util.logging.Logger.getLogger(AbstractDNSClient.class.getName()).setLevel(Level.FINEST);
-        java.util.logging.Logger.getLogger(AbstractXMPPConnection.class.getName()).setLevel(Level.FINEST);
-        java.util.logging.Logger.getLogger(DNSUtil.class.getName()).setLevel(Level.FINEST);
-
         if (connection.getConfiguration().getPassword().isEmpty()) {
             AccountErrorEvent accountErrorEvent = new AccountErrorEvent(connectionItem.getAccount(),
                     AccountErrorEvent.Type.PASS_REQUIRED, "");
@@ -121,35 +103,6 @@ class ConnectionThread {
             return;
         }
 
-//        switch (SettingsManager.connectionDnsResolver()) {
-//            case dnsJavaResolver:
-//                LogManager.i(this, "Use DNS Java resolver");
-//                ExtDNSJavaResolver.setup();
-//                break;
-//            case miniDnsResolver:
-//                LogManager.i(this, "Use Mini DNS resolver");
-//                MiniDnsResolver.setup();
-//                break;
-//        }
-
-        LogManager.i(this, "Use DNS Java resolver");
-        ExtDNSJavaResolver.setup();
-
-        ProviderManager.addExtensionProvider(DataForm.ELEMENT,
-                DataForm.NAMESPACE, new CustomDataProvider());
-
-        ProviderManager.addExtensionProvider(ForwardComment.ELEMENT,
-                ForwardComment.NAMESPACE, new ForwardCommentProvider());
-
-        ProviderManager.addExtensionProvider(ReferenceElement.ELEMENT,
-                ReferenceElement.NAMESPACE, new ReferencesProvider());
-
-        ProviderManager.addIQProvider(XTokenIQ.ELEMENT,
-                XTokenIQ.NAMESPACE, new XTokenProvider());
-
-        ProviderManager.addIQProvider(SessionsIQ.ELEMENT,
-                SessionsIQ.NAMESPACE, new SessionsProvider());
-
         try {
             LogManager.i(this, "Trying to connect and login...");
             if (!connection.isConnected()) {
@@ -160,9 +113,6 @@ class ConnectionThread {
             }
 
             if (!connection.isAuthenticated()) {
-                ProviderManager.addIQProvider(HttpConfirmIq.ELEMENT,
-                        HttpConfirmIq.NAMESPACE, new HttpConfirmIqProvider());
-
                 connection.login();
 
             } else {
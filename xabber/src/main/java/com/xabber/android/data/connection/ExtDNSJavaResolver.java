@@ -22,7 +22,10 @@ import org.xbill.DNS.Type;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by valery.miller on 12.05.17.
@@ -30,8 +33,25 @@ import java.util.List;
 
 public class ExtDNSJavaResolver extends DNSResolver implements SmackInitializer {
 
+    /**
+     * Bounds for lifetime of cached SRV records, real TTL of records is used between them.
+     */
+    private static final long MIN_SRV_CACHE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_SRV_CACHE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Lifetime of cached host addresses.
+     */
+    private static final long HOST_CACHE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
     private static ExtDNSJavaResolver instance = new ExtDNSJavaResolver();
 
+    /**
+     * Resolved records shared by all accounts and connection attempts.
+     */
+    private final Map<String, CacheEntry<List<SrvTarget>>> srvCache = new HashMap<>();
+    private final Map<String, CacheEntry<List<InetAddress>>> hostCache = new HashMap<>();
+
     public static DNSResolver getInstance() {
         return instance;
     }
@@ -40,9 +60,47 @@ public class ExtDNSJavaResolver extends DNSResolver implements SmackInitializer
         super(false);
     }
 
+    /**
+     * Removes all cached records. Should be called when network changes.
+     */
+    public static void clearCache() {
+        synchronized (instance.srvCache) {
+            instance.srvCache.clear();
+        }
+        synchronized (instance.hostCache) {
+            instance.hostCache.clear();
+        }
+    }
+
     @Override
     protected List<SRVRecord> lookupSRVRecords0(String name, List<HostAddress> failedAddresses, ConnectionConfiguration.DnssecMode dnssecMode) {
-        List<SRVRecord> res = new ArrayList<SRVRecord>();
+        List<SrvTarget> targets = getCached(srvCache, name);
+        if (targets == null) {
+            targets = lookupSrvTargets(name);
+            if (targets == null) {
+                return new ArrayList<>();
+            }
+        }
+
+        // records are built on every lookup: smack marks failed addresses in them
+        // and host addresses have their own cache lifetime
+        List<SRVRecord> res = new ArrayList<>(targets.size());
+        for (SrvTarget target : targets) {
+            List<InetAddress> hostAddresses = lookupHostAddress0(target.host, failedAddresses, dnssecMode);
+            if (hostAddresses == null) {
+                continue;
+            }
+            res.add(new SRVRecord(target.host, target.port, target.priority, target.weight, hostAddresses));
+        }
+        return res;
+    }
+
+    /**
+     * Queries SRV records and caches their targets.
+     *
+     * @return targets or <code>null</code> if there are no records.
+     */
+    private List<SrvTarget> lookupSrvTargets(String name) {
         org.xbill.DNS.ResolverConfig.refresh();
 
         ExtLookup lookup;
@@ -61,27 +119,58 @@ public class ExtDNSJavaResolver extends DNSResolver implements SmackInitializer
 
         Record[] recs = lookup.run();
         if (recs == null)
-            return res;
+            return null;
 
+        List<SrvTarget> targets = new ArrayList<>();
+        long ttlMillis = MAX_SRV_CACHE_MILLIS;
         for (Record record : recs) {
             org.xbill.DNS.SRVRecord srvRecord = (org.xbill.DNS.SRVRecord) record;
             if (srvRecord != null && srvRecord.getTarget() != null) {
-                String host = srvRecord.getTarget().toString();
-                int port = srvRecord.getPort();
-                int priority = srvRecord.getPriority();
-                int weight = srvRecord.getWeight();
-
-                List<InetAddress> hostAddresses = lookupHostAddress0(host, failedAddresses, dnssecMode);
-                if (hostAddresses == null) {
-                    continue;
-                }
-
-                SRVRecord r = new SRVRecord(host, port, priority, weight, hostAddresses);
-                res.add(r);
+                ttlMillis = Math.min(ttlMillis, TimeUnit.SECONDS.toMillis(srvRecord.getTTL()));
+                targets.add(new SrvTarget(srvRecord.getTarget().toString(), srvRecord.getPort(),
+                        srvRecord.getPriority(), srvRecord.getWeight()));
             }
         }
 
-        return res;
+        if (targets.isEmpty()) {
+            return null;
+        }
+        putCached(srvCache, name, targets, Math.max(MIN_SRV_CACHE_MILLIS, ttlMillis));
+        return targets;
+    }
+
+    @Override
+    protected List<InetAddress> lookupHostAddress0(String name, List<HostAddress> failedAddresses, ConnectionConfiguration.DnssecMode dnssecMode) {
+        List<InetAddress> cached = getCached(hostCache, name);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+
+        List<InetAddress> addresses = super.lookupHostAddress0(name, failedAddresses, dnssecMode);
+        if (addresses != null && !addresses.isEmpty()) {
+            putCached(hostCache, name, new ArrayList<>(addresses), HOST_CACHE_MILLIS);
+        }
+        return addresses;
+    }
+
+    private static <T> T getCached(Map<String, CacheEntry<T>> cache, String name) {
+        synchronized (cache) {
+            CacheEntry<T> entry = cache.get(name);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expirationTimeMillis < System.currentTimeMillis()) {
+                cache.remove(name);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private static <T> void putCached(Map<String, CacheEntry<T>> cache, String name, T value, long ttlMillis) {
+        synchronized (cache) {
+            cache.put(name, new CacheEntry<>(value, System.currentTimeMillis() + ttlMillis));
+        }
     }
 
     public static void setup() {
@@ -115,4 +204,31 @@ public class ExtDNSJavaResolver extends DNSResolver implements SmackInitializer
         return result.toArray(new String[0]);
     }
 
+    /**
+     * Target of SRV record without resolved addresses.
+     */
+    private static class SrvTarget {
+        private final String host;
+        private final int port;
+        private final int priority;
+        private final int weight;
+
+        SrvTarget(String host, int port, int priority, int weight) {
+            this.host = host;
+            this.port = port;
+            this.priority = priority;
+            this.weight = weight;
+        }
+    }
+
+    private static class CacheEntry<T> {
+        private final T value;
+        private final long expirationTimeMillis;
+
+        CacheEntry(T value, long expirationTimeMillis) {
+            this.value = value;
+            this.expirationTimeMillis = expirationTimeMillis;
+        }
+    }
+
 }
@@ -17,8 +17,11 @@ package com.xabber.android.data.connection;
 import android.content.Context;
 import android.content.IntentFilter;
 import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
 import android.net.NetworkInfo.State;
+import android.os.Build;
 
 import com.xabber.android.data.Application;
 import com.xabber.android.data.OnCloseListener;
@@ -79,6 +82,8 @@ public class  NetworkManager implements OnCloseListener, OnInitializedListener {
         NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
         LogManager.i(LOG_TAG, "Active network info: " + networkInfo);
 
+        ExtDNSJavaResolver.clearCache();
+
         if (networkInfo != null && networkInfo.getState() == State.CONNECTED) {
             onAvailable();
         }
@@ -89,7 +94,24 @@ public class  NetworkManager implements OnCloseListener, OnInitializedListener {
      */
     private void onAvailable() {
         LogManager.i(LOG_TAG, "onAvailable");
-        ConnectionManager.getInstance().connectAll();
+        ReconnectionManager.getInstance().onNetworkAvailable(isActiveNetworkValidated());
+    }
+
+    /**
+     * @return Whether system has verified that active network provides internet access.
+     * Always <code>true</code> before Android M, where validation is not available.
+     */
+    private boolean isActiveNetworkValidated() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return true;
+        }
+        Network network = connectivityManager.getActiveNetwork();
+        if (network == null) {
+            return false;
+        }
+        NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(network);
+        return capabilities != null
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
     }
 
     public static boolean isNetworkAvailable() {
@@ -5,7 +5,7 @@ package com.xabber.android.data.connection;
  *
  * @author alexander.ivanov
  */
-class ReconnectionInfo {
+public class ReconnectionInfo {
 
     /**
      * Number of attempts to reconnect without success.
@@ -17,6 +17,36 @@ class ReconnectionInfo {
      */
     private long lastReconnectionTimeMillis;
 
+    /**
+     * Time when next attempt is allowed, 0 if next attempt is not scheduled yet.
+     */
+    private long nextAttemptTimeMillis;
+
+    /**
+     * Time of first attempt since connection was lost, 0 if connected.
+     */
+    private long disconnectedSinceMillis;
+
+    /**
+     * Total number of connection attempts.
+     */
+    private int totalAttempts;
+
+    /**
+     * Total number of successful connections.
+     */
+    private int successfulConnections;
+
+    /**
+     * Time from first attempt to connection for last successful connection.
+     */
+    private long lastTimeToConnectedMillis;
+
+    /**
+     * Sum of times from first attempt to connection for all successful connections.
+     */
+    private long totalTimeToConnectedMillis;
+
     public ReconnectionInfo() {
         reset();
     }
@@ -29,6 +59,18 @@ class ReconnectionInfo {
         return lastReconnectionTimeMillis;
     }
 
+    long getNextAttemptTimeMillis() {
+        return nextAttemptTimeMillis;
+    }
+
+    boolean isAttemptScheduled() {
+        return nextAttemptTimeMillis != 0;
+    }
+
+    void scheduleAttempt(long nextAttemptTimeMillis) {
+        this.nextAttemptTimeMillis = nextAttemptTimeMillis;
+    }
+
     public void reset() {
         reconnectAttempts = 0;
         resetReconnectionTime();
@@ -36,10 +78,54 @@ class ReconnectionInfo {
 
     void resetReconnectionTime() {
         lastReconnectionTimeMillis = System.currentTimeMillis();
+        nextAttemptTimeMillis = 0;
     }
 
     public void nextAttempt() {
         resetReconnectionTime();
         reconnectAttempts += 1;
+        totalAttempts += 1;
+        if (disconnectedSinceMillis == 0) {
+            disconnectedSinceMillis = lastReconnectionTimeMillis;
+        }
+    }
+
+    void onConnected() {
+        successfulConnections += 1;
+        if (disconnectedSinceMillis != 0) {
+            lastTimeToConnectedMillis = System.currentTimeMillis() - disconnectedSinceMillis;
+            totalTimeToConnectedMillis += lastTimeToConnectedMillis;
+            disconnectedSinceMillis = 0;
+        }
+        reset();
+    }
+
+    public int getTotalAttempts() {
+        return totalAttempts;
+    }
+
+    public int getSuccessfulConnections() {
+        return successfulConnections;
+    }
+
+    public long getLastTimeToConnectedMillis() {
+        return lastTimeToConnectedMillis;
+    }
+
+    /**
+     * @return average time from first attempt to connection, 0 if there was no connections.
+     */
+    public long getAverageTimeToConnectedMillis() {
+        if (successfulConnections == 0) {
+            return 0;
+        }
+        return totalTimeToConnectedMillis / successfulConnections;
+    }
+
+    @Override
+    public String toString() {
+        return "attempts " + totalAttempts + ", successes " + successfulConnections
+                + ", last time to connected " + lastTimeToConnectedMillis
+                + " ms, average " + getAverageTimeToConnectedMillis() + " ms";
     }
 }
@@ -1,6 +1,7 @@
 package com.xabber.android.data.connection;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.xabber.android.data.OnTimerListener;
 import com.xabber.android.data.account.AccountItem;
@@ -13,17 +14,24 @@ import com.xabber.android.data.push.SyncManager;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 public class ReconnectionManager implements OnConnectedListener,
         OnAccountRemovedListener, OnTimerListener {
 
     /**
-     * Intervals in seconds to be used for attempt to reconnect. First value
-     * will be used on first attempt. Next value will be used if reconnection
-     * fails. Last value will be used if there is no more values in array.
+     * Delay before second attempt to reconnect. First attempt is made immediately,
+     * each next delay is doubled until {@link #MAX_RECONNECT_DELAY_MILLIS}.
      */
-    private final static int RECONNECT_AFTER[] = new int[]{0, 2, 10, 30, 60};
+    private static final long MIN_RECONNECT_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    private static final long MAX_RECONNECT_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    /**
+     * Minimal interval between immediate attempts of different accounts to the same server.
+     */
+    private static final long SERVER_STAGGER_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
     private static final String LOG_TAG = ReconnectionManager.class.getSimpleName();
 
     /**
@@ -31,6 +39,14 @@ public class ReconnectionManager implements OnConnectedListener,
      */
     private final HashMap<AccountJid, ReconnectionInfo> connections;
 
+    /**
+     * Time before which next immediate attempt to each server host can't be made.
+     * Expired slots are removed.
+     */
+    private final HashMap<String, Long> serverSlots;
+
+    private final Random random;
+
     private static ReconnectionManager instance;
 
     public static ReconnectionManager getInstance() {
@@ -43,10 +59,19 @@ public class ReconnectionManager implements OnConnectedListener,
 
     private ReconnectionManager() {
         connections = new HashMap<>();
+        serverSlots = new HashMap<>();
+        random = new Random();
     }
 
     @Override
     public void onTimer() {
+        checkConnections();
+    }
+
+    /**
+     * Checks all accounts and starts connection for those ones whose time has come.
+     */
+    public void checkConnections() {
         Collection<AccountJid> allAccounts = AccountManager.getInstance().getAllAccounts();
 
         for (AccountJid accountJid : allAccounts) {
@@ -73,6 +98,10 @@ public class ReconnectionManager implements OnConnectedListener,
             return;
         }
 
+        if (!reconnectionInfo.isAttemptScheduled()) {
+            scheduleAttempt(accountItem, reconnectionInfo);
+        }
+
         if (!isTimeToReconnect(reconnectionInfo)) {
             LogManager.i(LOG_TAG, accountItem.getAccount()
                     + " not authenticated. State: " + accountItem.getState()
@@ -101,15 +130,58 @@ public class ReconnectionManager implements OnConnectedListener,
                 && SyncManager.getInstance().isAccountNeedConnection(accountItem);
     }
 
-    private boolean isTimeToReconnect(ReconnectionInfo reconnectionInfo) {
-        int reconnectAfter;
-        if (reconnectionInfo.getReconnectAttempts() < RECONNECT_AFTER.length) {
-            reconnectAfter = RECONNECT_AFTER[reconnectionInfo.getReconnectAttempts()];
-        } else {
-            reconnectAfter = RECONNECT_AFTER[RECONNECT_AFTER.length - 1];
+    /**
+     * Schedules next attempt using exponential backoff with jitter. Immediate attempts
+     * of accounts on the same server are spread by {@link #SERVER_STAGGER_MILLIS},
+     * later attempts are already spread by jitter and don't delay other accounts.
+     */
+    private synchronized void scheduleAttempt(AccountItem accountItem,
+                                              ReconnectionInfo reconnectionInfo) {
+        long now = System.currentTimeMillis();
+        int reconnectAttempts = reconnectionInfo.getReconnectAttempts();
+        long attemptTime = now + getReconnectDelayMillis(reconnectAttempts);
+
+        String server = getServerKey(accountItem);
+        Long serverSlot = serverSlots.get(server);
+        if (serverSlot != null && serverSlot <= now) {
+            serverSlots.remove(server);
+            serverSlot = null;
+        }
+        if (reconnectAttempts == 0) {
+            if (serverSlot != null) {
+                attemptTime = Math.max(attemptTime, serverSlot);
+            }
+            serverSlots.put(server, attemptTime + SERVER_STAGGER_MILLIS);
         }
 
-        return getTimeSinceLastReconnectionSeconds(reconnectionInfo) >= reconnectAfter;
+        reconnectionInfo.scheduleAttempt(attemptTime);
+        LogManager.i(LOG_TAG, accountItem.getAccount() + " next attempt in "
+                + (attemptTime - now) + " ms");
+    }
+
+    private long getReconnectDelayMillis(int reconnectAttempts) {
+        if (reconnectAttempts == 0) {
+            return 0;
+        }
+        long delay = MAX_RECONNECT_DELAY_MILLIS;
+        if (reconnectAttempts <= 16) {
+            delay = Math.min(MAX_RECONNECT_DELAY_MILLIS,
+                    MIN_RECONNECT_DELAY_MILLIS << (reconnectAttempts - 1));
+        }
+        // half of delay is fixed, another half is random
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    private static String getServerKey(AccountItem accountItem) {
+        ConnectionSettings connectionSettings = accountItem.getConnectionSettings();
+        if (connectionSettings.isCustomHostAndPort()) {
+            return connectionSettings.getHost();
+        }
+        return connectionSettings.getServerName().toString();
+    }
+
+    private boolean isTimeToReconnect(ReconnectionInfo reconnectionInfo) {
+        return System.currentTimeMillis() >= reconnectionInfo.getNextAttemptTimeMillis();
     }
 
     private long getTimeSinceLastReconnectionSeconds(ReconnectionInfo reconnectionInfo) {
@@ -121,8 +193,33 @@ public class ReconnectionManager implements OnConnectedListener,
         getReconnectionInfo(accountJid).reset();
     }
 
+    /**
+     * Network became available. Resets backoff of all accounts and,
+     * if network is validated, starts connection without waiting for the timer.
+     */
+    void onNetworkAvailable(boolean validated) {
+        LogManager.i(LOG_TAG, "onNetworkAvailable validated: " + validated);
+        synchronized (this) {
+            serverSlots.clear();
+        }
+        for (AccountJid account : AccountManager.getInstance().getEnabledAccounts()) {
+            requestReconnect(account);
+        }
+        if (validated) {
+            checkConnections();
+        }
+    }
+
+    /**
+     * @return reconnection statistics of account or <code>null</code> if there was no attempts.
+     */
+    @Nullable
+    public synchronized ReconnectionInfo getStatistics(AccountJid accountJid) {
+        return connections.get(accountJid);
+    }
+
     @NonNull
-    private ReconnectionInfo getReconnectionInfo(AccountJid accountJid) {
+    private synchronized ReconnectionInfo getReconnectionInfo(AccountJid accountJid) {
         ReconnectionInfo reconnectionInfo = connections.get(accountJid);
         if (reconnectionInfo == null) {
             LogManager.i(LOG_TAG, "getReconnectionInfo new reconnection info for  " + accountJid);
@@ -133,7 +230,7 @@ public class ReconnectionManager implements OnConnectedListener,
     }
 
     void resetReconnectionInfo(AccountJid accountJid) {
-        ReconnectionInfo info = connections.get(accountJid);
+        ReconnectionInfo info = getStatistics(accountJid);
         if (info != null) {
             info.reset();
         }
@@ -142,12 +239,16 @@ public class ReconnectionManager implements OnConnectedListener,
     @Override
     public void onConnected(ConnectionItem connection) {
         LogManager.i(LOG_TAG, "onConnected " + connection.getAccount());
-        resetReconnectionInfo(connection.getAccount());
+        ReconnectionInfo info = getStatistics(connection.getAccount());
+        if (info != null) {
+            info.onConnected();
+            LogManager.i(LOG_TAG, "reconnection statistics for " + connection.getAccount() + ": " + info);
+        }
     }
 
     @Override
-    public void onAccountRemoved(AccountItem accountItem) {
+    public synchronized void onAccountRemoved(AccountItem accountItem) {
         connections.remove(accountItem.getAccount());
     }
 
-}
\ No newline at end of file
+}
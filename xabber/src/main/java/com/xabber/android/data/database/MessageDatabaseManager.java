@@ -8,6 +8,7 @@ import com.xabber.android.data.Application;
 import com.xabber.android.data.database.messagerealm.Attachment;
 import com.xabber.android.data.database.messagerealm.ForwardId;
 import com.xabber.android.data.database.messagerealm.MessageItem;
+import com.xabber.android.data.database.messagerealm.SearchToken;
 import com.xabber.android.data.database.messagerealm.SyncInfo;
 import com.xabber.android.data.database.realm.ContactGroup;
 import com.xabber.android.data.database.realm.ContactRealm;
@@ -15,6 +16,8 @@ import com.xabber.android.data.database.sqlite.MessageTable;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
 import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.metrics.Counter;
+import com.xabber.android.data.metrics.MetricsManager;
 
 import org.jxmpp.stringprep.XmppStringprepException;
 
@@ -36,7 +39,8 @@ import io.realm.annotations.RealmModule;
 
 public class MessageDatabaseManager {
     private static final String REALM_MESSAGE_DATABASE_NAME = "xabber.realm";
-    static final int REALM_MESSAGE_DATABASE_VERSION = 23;
+    static final int REALM_MESSAGE_DATABASE_VERSION = 27;
+    private static final Counter REALM_OPENED = MetricsManager.getInstance().getCounter("realm.open.message");
     private final RealmConfiguration realmConfiguration;
 
     private static MessageDatabaseManager instance;
@@ -72,6 +76,7 @@ public class MessageDatabaseManager {
             throw new IllegalStateException("Request background thread message realm from UI thread");
         }
 
+        REALM_OPENED.increment();
         return Realm.getInstance(realmConfiguration);
     }
 
@@ -134,6 +139,11 @@ public class MessageDatabaseManager {
                         .equalTo(SyncInfo.FIELD_ACCOUNT, account.toString())
                         .findAll()
                         .deleteAllFromRealm();
+
+                realm.where(SearchToken.class)
+                        .equalTo(SearchToken.Fields.ACCOUNT, account.toString())
+                        .findAll()
+                        .deleteAllFromRealm();
             }
         });
         realm.close();
@@ -141,7 +151,7 @@ public class MessageDatabaseManager {
 
 
     @RealmModule(classes = {MessageItem.class, SyncInfo.class, Attachment.class, ForwardId.class,
-            ContactRealm.class, ContactGroup.class})
+            ContactRealm.class, ContactGroup.class, SearchToken.class})
     static class MessageRealmDatabaseModule {
     }
 
@@ -366,6 +376,41 @@ public class MessageDatabaseManager {
                             oldVersion++;
                         }
 
+                        if (oldVersion == 23) {
+                            schema.create(SearchToken.class.getSimpleName())
+                                    .addField(SearchToken.Fields.ID, String.class,
+                                            FieldAttribute.PRIMARY_KEY, FieldAttribute.REQUIRED)
+                                    .addField(SearchToken.Fields.TERM, String.class, FieldAttribute.INDEXED)
+                                    .addField(SearchToken.Fields.MESSAGE_ID, String.class, FieldAttribute.INDEXED)
+                                    .addField(SearchToken.Fields.ACCOUNT, String.class)
+                                    .addField(SearchToken.Fields.USER, String.class)
+                                    .addField(SearchToken.Fields.TIMESTAMP, long.class)
+                                    .addField(SearchToken.Fields.COUNT, int.class);
+                            oldVersion++;
+                        }
+
+                        if (oldVersion == 24) {
+                            schema.get(Attachment.class.getSimpleName())
+                                    .addField(Attachment.Fields.ORIENTATION, int.class)
+                                    .addField(Attachment.Fields.THUMBNAIL, byte[].class);
+                            oldVersion++;
+                        }
+
+                        if (oldVersion == 25) {
+                            // prefixes are filled by rebuild of the index
+                            schema.get(SearchToken.class.getSimpleName())
+                                    .addField(SearchToken.Fields.PREFIX, String.class, FieldAttribute.INDEXED)
+                                    .addIndex(SearchToken.Fields.ACCOUNT)
+                                    .addIndex(SearchToken.Fields.USER);
+                            oldVersion++;
+                        }
+
+                        if (oldVersion == 26) {
+                            schema.get(SyncInfo.class.getSimpleName())
+                                    .addField(SyncInfo.FIELD_FULL_HISTORY_REQUESTED, boolean.class);
+                            oldVersion++;
+                        }
+
                     }
                 })
                 .build();
@@ -8,6 +8,7 @@ import com.xabber.android.data.database.messagerealm.GroupchatUserRealm;
 import com.xabber.android.data.database.realm.AccountRealm;
 import com.xabber.android.data.database.realm.ChatDataRealm;
 import com.xabber.android.data.database.realm.CrowdfundingMessage;
+import com.xabber.android.data.database.realm.DiscoveryFailureCache;
 import com.xabber.android.data.database.realm.DiscoveryInfoCache;
 import com.xabber.android.data.database.realm.EmailRealm;
 import com.xabber.android.data.database.realm.NotifChatRealm;
@@ -24,6 +25,8 @@ import com.xabber.android.data.database.realm.XabberAccountRealm;
 import com.xabber.android.data.database.sqlite.AccountTable;
 import com.xabber.android.data.extension.httpfileupload.UploadServer;
 import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.metrics.Counter;
+import com.xabber.android.data.metrics.MetricsManager;
 import com.xabber.android.data.notification.custom_notification.NotifyPrefsRealm;
 
 import io.realm.DynamicRealm;
@@ -37,8 +40,9 @@ import io.realm.annotations.RealmModule;
 
 public class RealmManager {
     private static final String REALM_DATABASE_NAME = "realm_database.realm";
-    private static final int REALM_DATABASE_VERSION = 29;
+    private static final int REALM_DATABASE_VERSION = 30;
     private static final String LOG_TAG = RealmManager.class.getSimpleName();
+    private static final Counter REALM_OPENED = MetricsManager.getInstance().getCounter("realm.open.main");
     private final RealmConfiguration realmConfiguration;
 
     private static RealmManager instance;
@@ -68,8 +72,8 @@ public class RealmManager {
         realm.close();
     }
 
-    @RealmModule(classes = {DiscoveryInfoCache.class, AccountRealm.class, XabberAccountRealm.class,
-            XMPPUserRealm.class, EmailRealm.class, SocialBindingRealm.class, SyncStateRealm.class,
+    @RealmModule(classes = {DiscoveryInfoCache.class, DiscoveryFailureCache.class, AccountRealm.class,
+            XabberAccountRealm.class, XMPPUserRealm.class, EmailRealm.class, SocialBindingRealm.class, SyncStateRealm.class,
             PatreonGoalRealm.class, PatreonRealm.class, ChatDataRealm.class, NotificationStateRealm.class,
             CrowdfundingMessage.class, NotifChatRealm.class, NotifMessageRealm.class, NotifyPrefsRealm.class,
             UploadServer.class, PushLogRecord.class, XTokenRealm.class, GroupchatUserRealm.class})
@@ -385,6 +389,15 @@ public class RealmManager {
 
                             oldVersion++;
                         }
+
+                        if (oldVersion == 29) {
+                            schema.create(DiscoveryFailureCache.class.getSimpleName())
+                                    .addField(DiscoveryFailureCache.Fields.KEY, String.class,
+                                            FieldAttribute.PRIMARY_KEY, FieldAttribute.REQUIRED)
+                                    .addField(DiscoveryFailureCache.Fields.EXPIRE, long.class);
+
+                            oldVersion++;
+                        }
                     }
                 })
                 .modules(new RealmDatabaseModule())
@@ -426,6 +439,7 @@ public class RealmManager {
      * @return new realm instance
      */
     public Realm getNewRealm() {
+        REALM_OPENED.increment();
         return Realm.getInstance(realmConfiguration);
     }
 
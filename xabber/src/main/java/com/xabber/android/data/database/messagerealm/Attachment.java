@@ -21,6 +21,8 @@ public class Attachment extends RealmObject {
         public static final String IMAGE_HEIGHT = "imageHeight";
         public static final String DURATION = "duration";
         public static final String MIME_TYPE = "mimeType";
+        public static final String ORIENTATION = "orientation";
+        public static final String THUMBNAIL = "thumbnail";
     }
 
     @PrimaryKey
@@ -54,6 +56,17 @@ public class Attachment extends RealmObject {
     /** Duration in seconds */
     private Long duration;
 
+    /**
+     * EXIF orientation of local image, image sizes are already given as displayed.
+     */
+    private int orientation;
+
+    /**
+     * Small JPEG preview of local image, shown while image is loading.
+     */
+    @Nullable
+    private byte[] thumbnail;
+
     public Attachment() {
         this.uniqueId = UUID.randomUUID().toString();
     }
@@ -135,4 +148,21 @@ public class Attachment extends RealmObject {
     public void setDuration(Long duration) {
         this.duration = duration;
     }
+
+    public int getOrientation() {
+        return orientation;
+    }
+
+    public void setOrientation(int orientation) {
+        this.orientation = orientation;
+    }
+
+    @Nullable
+    public byte[] getThumbnail() {
+        return thumbnail;
+    }
+
+    public void setThumbnail(@Nullable byte[] thumbnail) {
+        this.thumbnail = thumbnail;
+    }
 }
@@ -15,6 +15,7 @@
 package com.xabber.android.data.database.messagerealm;
 
 import androidx.annotation.Nullable;
+import android.os.Looper;
 import android.text.Spannable;
 import android.text.SpannableString;
 import android.text.TextUtils;
@@ -24,6 +25,7 @@ import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.message.ChatAction;
+import com.xabber.android.data.message.MessageSnapshotCache;
 import com.xabber.android.data.roster.RosterManager;
 import com.xabber.android.utils.StringUtils;
 
@@ -31,6 +33,7 @@ import org.jxmpp.jid.parts.Resourcepart;
 import org.jxmpp.stringprep.XmppStringprepException;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import io.realm.RealmList;
@@ -628,13 +631,22 @@ public class MessageItem extends RealmObject {
         if (haveForwardedMessages()) {
             String[] forwardedIDs = getForwardedIdsAsArray();
             if (!Arrays.asList(forwardedIDs).contains(null)) {
-                RealmResults<MessageItem> forwardedMessages =
-                        MessageDatabaseManager.getInstance().getRealmUiThread().where(MessageItem.class)
-                                .in(MessageItem.Fields.UNIQUE_ID, forwardedIDs)
-                                .findAllSorted(MessageItem.Fields.TIMESTAMP, Sort.ASCENDING);
+                MessageItem message = null;
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    RealmResults<MessageItem> forwardedMessages =
+                            MessageDatabaseManager.getInstance().getRealmUiThread().where(MessageItem.class)
+                                    .in(MessageItem.Fields.UNIQUE_ID, forwardedIDs)
+                                    .findAllSorted(MessageItem.Fields.TIMESTAMP, Sort.ASCENDING);
+                    if (forwardedMessages.size() > 0) message = forwardedMessages.last();
+                } else if (getAccount() != null && getUser() != null) {
+                    // forwarded messages are stored in the chat of the parent message
+                    List<MessageItem> forwardedMessages = MessageSnapshotCache.getInstance()
+                            .getMessages(getAccount(), getUser(), forwardedIDs);
+                    if (!forwardedMessages.isEmpty())
+                        message = forwardedMessages.get(forwardedMessages.size() - 1);
+                }
 
-                if (forwardedMessages.size() > 0) {
-                    MessageItem message = forwardedMessages.last();
+                if (message != null) {
                     String author = RosterManager.getDisplayAuthorName(message);
                     StringBuilder stringBuilder = new StringBuilder();
                     if (!author.isEmpty()) {
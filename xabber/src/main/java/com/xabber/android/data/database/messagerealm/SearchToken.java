@@ -0,0 +1,122 @@
+package com.xabber.android.data.database.messagerealm;
+
+import io.realm.RealmObject;
+import io.realm.annotations.Index;
+import io.realm.annotations.PrimaryKey;
+import io.realm.annotations.Required;
+
+/**
+ * Entry of the message search index: occurrence of the term in the message.
+ */
+public class SearchToken extends RealmObject {
+
+    /**
+     * Length of indexed term prefix used to find terms by prefix.
+     */
+    public static final int PREFIX_LENGTH = 2;
+
+    public static class Fields {
+        public static final String ID = "id";
+        public static final String TERM = "term";
+        public static final String PREFIX = "prefix";
+        public static final String MESSAGE_ID = "messageId";
+        public static final String ACCOUNT = "account";
+        public static final String USER = "user";
+        public static final String TIMESTAMP = "timestamp";
+        public static final String COUNT = "count";
+    }
+
+    /**
+     * Term and message id, so the same message can't be indexed twice.
+     */
+    @PrimaryKey
+    @Required
+    private String id;
+
+    @Index
+    private String term;
+    /**
+     * First {@link #PREFIX_LENGTH} characters of the term, realm doesn't use index for beginsWith.
+     */
+    @Index
+    private String prefix;
+    @Index
+    private String messageId;
+
+    @Index
+    private String account;
+    @Index
+    private String user;
+    private long timestamp;
+
+    /**
+     * Number of occurrences of the term in the message.
+     */
+    private int count;
+
+    public SearchToken() {
+    }
+
+    public SearchToken(String term, String messageId) {
+        this.id = getId(term, messageId);
+        this.term = term;
+        this.prefix = getPrefix(term);
+        this.messageId = messageId;
+    }
+
+    public static String getPrefix(String term) {
+        return term.length() > PREFIX_LENGTH ? term.substring(0, PREFIX_LENGTH) : term;
+    }
+
+    public static String getId(String term, String messageId) {
+        return term + "/" + messageId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTerm() {
+        return term;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
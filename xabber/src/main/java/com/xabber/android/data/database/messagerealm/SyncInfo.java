@@ -14,6 +14,7 @@ public class SyncInfo extends RealmObject {
     public static final String FIELD_FIRST_MAM_MESSAGE_STANZA_ID = "firstMamMessageStanzaId";
     public static final String FIELD_LAST_MESSAGE_MAM_ID = "lastMessageMamId";
     public static final String FIELD_REMOTE_HISTORY_COMPLETELY_LOADED = "isRemoteHistoryCompletelyLoaded";
+    public static final String FIELD_FULL_HISTORY_REQUESTED = "isFullHistoryRequested";
 
     @Index
     private String account;
@@ -24,6 +25,10 @@ public class SyncInfo extends RealmObject {
     private String firstMamMessageStanzaId;
     private String lastMessageMamId;
     private boolean isRemoteHistoryCompletelyLoaded = false;
+    /**
+     * Whether download of full history was started and is not finished yet.
+     */
+    private boolean isFullHistoryRequested = false;
 
 
     public String getAccount() {
@@ -66,6 +71,14 @@ public class SyncInfo extends RealmObject {
         isRemoteHistoryCompletelyLoaded = remoteHistoryCompletelyLoaded;
     }
 
+    public boolean isFullHistoryRequested() {
+        return isFullHistoryRequested;
+    }
+
+    public void setFullHistoryRequested(boolean fullHistoryRequested) {
+        isFullHistoryRequested = fullHistoryRequested;
+    }
+
     public String getFirstMamMessageStanzaId() {
         return firstMamMessageStanzaId;
     }
@@ -0,0 +1,37 @@
+package com.xabber.android.data.database.realm;
+
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+import io.realm.annotations.Required;
+
+/**
+ * Failed disco#info request by caps node#ver or, for entities without caps, by jid.
+ */
+public class DiscoveryFailureCache extends RealmObject {
+
+    public static class Fields {
+        public static final String KEY = "key";
+        public static final String EXPIRE = "expire";
+    }
+
+    @PrimaryKey
+    @Required
+    private String key;
+    private long expire;
+
+    public DiscoveryFailureCache() {
+    }
+
+    public DiscoveryFailureCache(String key, long expire) {
+        this.key = key;
+        this.expire = expire;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getExpire() {
+        return expire;
+    }
+}
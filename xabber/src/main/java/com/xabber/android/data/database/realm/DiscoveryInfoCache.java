@@ -31,6 +31,14 @@ public class DiscoveryInfoCache extends RealmObject {
         this.discoveryInfoXml = discoveryInfo.toXML().toString();
     }
 
+    public String getNodeVer() {
+        return nodeVer;
+    }
+
+    public String getDiscoveryInfoXml() {
+        return discoveryInfoXml;
+    }
+
     public DiscoverInfo getDiscoveryInfo() {
         try {
             return PacketParserUtils.parseStanza(discoveryInfoXml);
@@ -0,0 +1,189 @@
+package com.xabber.android.data.entity;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drop-in replacement of {@link NestedMap} for objects accessed from several threads.
+ * <p/>
+ * Used where keys are not account and user, e.g. group names and session ids, or
+ * come as strings from a library. Values by account and user are kept in
+ * {@link EntityRegistry}.
+ * <p/>
+ * Reads don't take locks. Writes are synchronized with each other, so nested map is
+ * removed together with its last value. Iteration doesn't fail on concurrent changes
+ * and may or may not reflect them.
+ *
+ * @param <T> type of values. <code>null</code> values are not stored,
+ *            {@link #put(String, String, Object)} of <code>null</code> removes the value.
+ */
+public class ConcurrentNestedMap<T> implements Iterable<NestedMap.Entry<T>> {
+
+    private final Map<String, Map<String, T>> map = new ConcurrentHashMap<>();
+
+    /**
+     * @return <code>null</code> if there is no such first or second level.
+     */
+    @Nullable
+    public T get(String first, String second) {
+        Map<String, T> nested = map.get(first);
+        if (nested == null) {
+            return null;
+        }
+        return nested.get(second);
+    }
+
+    /**
+     * Puts value. Nested map will be created if necessary.
+     */
+    synchronized public void put(String first, String second, @Nullable T value) {
+        if (value == null) {
+            remove(first, second);
+            return;
+        }
+        Map<String, T> nested = map.get(first);
+        if (nested == null) {
+            nested = new ConcurrentHashMap<>();
+            map.put(first, nested);
+        }
+        nested.put(second, value);
+    }
+
+    /**
+     * Removes value. Nested map will be removed if necessary.
+     */
+    @Nullable
+    synchronized public T remove(String first, String second) {
+        Map<String, T> nested = map.get(first);
+        if (nested == null) {
+            return null;
+        }
+        T value = nested.remove(second);
+        if (nested.isEmpty()) {
+            map.remove(first);
+        }
+        return value;
+    }
+
+    /**
+     * Removes all information associated with first level.
+     */
+    synchronized public void clear(String first) {
+        map.remove(first);
+    }
+
+    /**
+     * Removes all information.
+     */
+    synchronized public void clear() {
+        map.clear();
+    }
+
+    /**
+     * @return Whether there is no values.
+     */
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public Iterator<NestedMap.Entry<T>> iterator() {
+        return new EntryIterator();
+    }
+
+    /**
+     * @return unmodifiable view of nested map, empty map if there is no such first level.
+     */
+    public Map<String, T> getNested(String first) {
+        Map<String, T> nested = map.get(first);
+        if (nested == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(nested);
+    }
+
+    /**
+     * @return snapshot of values.
+     */
+    public Collection<T> values() {
+        List<T> values = new ArrayList<>();
+        for (Map<String, T> nested : map.values()) {
+            values.addAll(nested.values());
+        }
+        return values;
+    }
+
+    /**
+     * Adds all elements from another map.
+     */
+    public void addAll(ConcurrentNestedMap<T> nestedMap) {
+        for (NestedMap.Entry<T> entry : nestedMap) {
+            put(entry.getFirst(), entry.getSecond(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return unmodifiable view of first level keys.
+     */
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(map.keySet());
+    }
+
+    private class EntryIterator implements Iterator<NestedMap.Entry<T>> {
+
+        private final Iterator<Map.Entry<String, Map<String, T>>> firstIterator;
+        private String first;
+        private Iterator<Map.Entry<String, T>> secondIterator;
+        private NestedMap.Entry<T> last;
+
+        private EntryIterator() {
+            firstIterator = map.entrySet().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (secondIterator != null && secondIterator.hasNext()) {
+                return true;
+            }
+            while (firstIterator.hasNext()) {
+                Map.Entry<String, Map<String, T>> nested = firstIterator.next();
+                first = nested.getKey();
+                secondIterator = nested.getValue().entrySet().iterator();
+                if (secondIterator.hasNext()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public NestedMap.Entry<T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, T> entry = secondIterator.next();
+            last = new NestedMap.Entry<>(first, entry.getKey(), entry.getValue());
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentNestedMap.this.remove(last.getFirst(), last.getSecond());
+            last = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.xabber.android.data.entity;
+
+import androidx.annotation.Nullable;
+
+import org.jxmpp.jid.Jid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Values by account and user, replacement of {@link NestedMap} for objects accessed
+ * from several threads.
+ * <p/>
+ * Keys are {@link AccountJid} and {@link Jid} instances, so lookups don't build strings.
+ * Reads don't take locks. Writes are synchronized with each other.
+ * <p/>
+ * {@link #values(AccountJid)} and {@link #values()} return unmodifiable snapshots.
+ * A snapshot is built on the first read after a change and then shared by all readers
+ * until the next change, so iteration neither copies nor fails on concurrent changes.
+ *
+ * @param <T> type of values, <code>null</code> values are not allowed.
+ */
+public class EntityRegistry<T> {
+
+    private static class Snapshot<T> {
+        final long version;
+        final List<T> values;
+
+        Snapshot(long version, List<T> values) {
+            this.version = version;
+            this.values = values;
+        }
+    }
+
+    private static class Bucket<T> {
+        final Map<Jid, T> values = new ConcurrentHashMap<>();
+        volatile long version;
+        volatile Snapshot<T> snapshot;
+
+        List<T> getSnapshot() {
+            Snapshot<T> current = snapshot;
+            long version = this.version;
+            if (current != null && current.version == version) {
+                return current.values;
+            }
+            List<T> values = Collections.unmodifiableList(new ArrayList<>(this.values.values()));
+            if (this.version == version) {
+                snapshot = new Snapshot<>(version, values);
+            }
+            return values;
+        }
+    }
+
+    private final Map<AccountJid, Bucket<T>> buckets = new ConcurrentHashMap<>();
+    private volatile long version;
+    private volatile Snapshot<T> snapshot;
+
+    /**
+     * @return <code>null</code> if there is no such value.
+     */
+    @Nullable
+    public T get(AccountJid account, Jid user) {
+        Bucket<T> bucket = buckets.get(account);
+        if (bucket == null) {
+            return null;
+        }
+        return bucket.values.get(user);
+    }
+
+    /**
+     * @return previous value.
+     */
+    @Nullable
+    synchronized public T put(AccountJid account, Jid user, T value) {
+        Bucket<T> bucket = buckets.get(account);
+        if (bucket == null) {
+            bucket = new Bucket<>();
+            buckets.put(account, bucket);
+        }
+        T previous = bucket.values.put(user, value);
+        if (previous != value) {
+            bucket.version++;
+            version++;
+        }
+        return previous;
+    }
+
+    /**
+     * Puts value unless there is one already.
+     *
+     * @return value in the registry.
+     */
+    synchronized public T putIfAbsent(AccountJid account, Jid user, T value) {
+        T current = get(account, user);
+        if (current != null) {
+            return current;
+        }
+        put(account, user, value);
+        return value;
+    }
+
+    /**
+     * @return removed value.
+     */
+    @Nullable
+    synchronized public T remove(AccountJid account, Jid user) {
+        Bucket<T> bucket = buckets.get(account);
+        if (bucket == null) {
+            return null;
+        }
+        T value = bucket.values.remove(user);
+        if (value != null) {
+            bucket.version++;
+            version++;
+            if (bucket.values.isEmpty()) {
+                buckets.remove(account);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Removes all values of the account.
+     */
+    synchronized public void clear(AccountJid account) {
+        Bucket<T> bucket = buckets.remove(account);
+        if (bucket != null) {
+            bucket.values.clear();
+            bucket.version++;
+            version++;
+        }
+    }
+
+    /**
+     * Removes all values.
+     */
+    synchronized public void clear() {
+        for (AccountJid account : new ArrayList<>(buckets.keySet())) {
+            clear(account);
+        }
+    }
+
+    public boolean isEmpty() {
+        return buckets.isEmpty();
+    }
+
+    /**
+     * @return accounts with at least one value.
+     */
+    public Set<AccountJid> getAccounts() {
+        return Collections.unmodifiableSet(buckets.keySet());
+    }
+
+    /**
+     * @return unmodifiable snapshot of account's values.
+     */
+    public List<T> values(AccountJid account) {
+        Bucket<T> bucket = buckets.get(account);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        return bucket.getSnapshot();
+    }
+
+    /**
+     * @return unmodifiable snapshot of all values.
+     */
+    public List<T> values() {
+        Snapshot<T> current = snapshot;
+        long version = this.version;
+        if (current != null && current.version == version) {
+            return current.values;
+        }
+        List<T> values = new ArrayList<>();
+        for (Bucket<T> bucket : buckets.values()) {
+            values.addAll(bucket.getSnapshot());
+        }
+        values = Collections.unmodifiableList(values);
+        if (this.version == version) {
+            snapshot = new Snapshot<>(version, values);
+        }
+        return values;
+    }
+
+}
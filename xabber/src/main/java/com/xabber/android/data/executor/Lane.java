@@ -0,0 +1,73 @@
+package com.xabber.android.data.executor;
+
+/**
+ * Kinds of background work. Each lane has own threads, so slow work of one kind
+ * doesn't delay work of another.
+ */
+public enum Lane {
+
+    /**
+     * Tasks submitted with {@link com.xabber.android.data.Application#runInBackground(Runnable)}.
+     * Single thread, tasks are executed in order of submission.
+     */
+    BACKGROUND("Background executor service", 1, Thread.MIN_PRIORITY),
+
+    /**
+     * Tasks submitted with {@link com.xabber.android.data.Application#runInBackgroundUserRequest(Runnable)}.
+     */
+    USER_REQUEST("User request", Runtime.getRuntime().availableProcessors(), Thread.MIN_PRIORITY),
+
+    /**
+     * Requests waiting for server response: IQs, MAM queries, push registration.
+     */
+    NETWORK("Network", 4, Thread.MIN_PRIORITY),
+
+    /**
+     * Bulk history downloads. Single thread, so they don't take threads of {@link #NETWORK}
+     * from interactive requests.
+     */
+    HISTORY("History", 1, Thread.MIN_PRIORITY),
+
+    /**
+     * Database transactions. Single thread, so writes are applied in order of submission.
+     */
+    DATABASE_WRITE("Database write", 1, Thread.NORM_PRIORITY - 1),
+
+    DATABASE_READ("Database read", 2, Thread.NORM_PRIORITY - 1),
+
+    /**
+     * Files: avatars, attachments, backups.
+     */
+    DISK("Disk", 2, Thread.MIN_PRIORITY),
+
+    CPU("CPU", Runtime.getRuntime().availableProcessors(), Thread.MIN_PRIORITY);
+
+    private final String threadName;
+    private final int concurrency;
+    private final int priority;
+
+    Lane(String threadName, int concurrency, int priority) {
+        this.threadName = threadName;
+        this.concurrency = concurrency;
+        this.priority = priority;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * @return maximum number of tasks executed at the same time.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return priority of lane threads.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+}
@@ -0,0 +1,253 @@
+package com.xabber.android.data.executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.log.LogManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes background tasks in {@link Lane}s.
+ * <p/>
+ * Tasks related to account are cancelled with {@link #cancel(AccountJid)} if they are not
+ * started yet. Lanes count waiting and execution time of tasks, {@link #dump()} describes
+ * statistics and tasks in queues. Task that waited longer than {@link #SLOW_WAIT} is logged
+ * together with the dump.
+ */
+public class TaskScheduler {
+
+    private static final String LOG_TAG = TaskScheduler.class.getSimpleName();
+
+    static final long SLOW_WAIT = TimeUnit.SECONDS.toMillis(5);
+    private static final long SLOW_WAIT_LOG_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final int DUMP_QUEUED_TASKS = 10;
+
+    private final Map<Lane, LaneExecutor> executors = new EnumMap<>(Lane.class);
+    /**
+     * Not started tasks by account.
+     */
+    private final Map<AccountJid, Set<Task<?>>> accountTasks = new HashMap<>();
+    private final AtomicLong lastSlowWaitLog = new AtomicLong();
+
+    public TaskScheduler() {
+        for (Lane lane : Lane.values()) {
+            executors.put(lane, new LaneExecutor(lane));
+        }
+    }
+
+    public Future<?> submit(Lane lane, @Nullable AccountJid account, Runnable runnable) {
+        return submit(new Task<>(lane, account, runnable.getClass().getName(),
+                Executors.callable(runnable)));
+    }
+
+    public <T> Future<T> submit(Lane lane, Callable<T> callable) {
+        return submit(new Task<>(lane, null, callable.getClass().getName(), callable));
+    }
+
+    private <T> Future<T> submit(Task<T> task) {
+        if (task.account != null) {
+            synchronized (accountTasks) {
+                Set<Task<?>> tasks = accountTasks.get(task.account);
+                if (tasks == null) {
+                    tasks = new HashSet<>();
+                    accountTasks.put(task.account, tasks);
+                }
+                tasks.add(task);
+            }
+        }
+        executors.get(task.lane).submitted.incrementAndGet();
+        executors.get(task.lane).execute(task);
+        return task;
+    }
+
+    /**
+     * Cancels tasks of the account that are not started yet.
+     *
+     * @return number of cancelled tasks.
+     */
+    public int cancel(AccountJid account) {
+        Set<Task<?>> tasks;
+        synchronized (accountTasks) {
+            tasks = accountTasks.remove(account);
+        }
+        if (tasks == null) {
+            return 0;
+        }
+        int cancelled = 0;
+        for (Task<?> task : tasks) {
+            if (task.cancel(false)) {
+                executors.get(task.lane).cancelled.incrementAndGet();
+                cancelled++;
+            }
+        }
+        for (LaneExecutor executor : executors.values()) {
+            executor.purge();
+        }
+        LogManager.i(LOG_TAG, "Cancelled " + cancelled + " tasks of " + account);
+        return cancelled;
+    }
+
+    public int getQueueSize(Lane lane) {
+        return executors.get(lane).getQueue().size();
+    }
+
+    /**
+     * @return statistics of lanes, running tasks and first tasks in queues.
+     */
+    public String dump() {
+        long now = System.currentTimeMillis();
+        StringBuilder builder = new StringBuilder();
+        for (LaneExecutor executor : executors.values()) {
+            long completed = executor.completed.get();
+            builder.append(executor.lane)
+                    .append(": queued ").append(executor.getQueue().size())
+                    .append(", running ").append(executor.getActiveCount())
+                    .append("/").append(executor.lane.getConcurrency())
+                    .append(", submitted ").append(executor.submitted.get())
+                    .append(", completed ").append(completed)
+                    .append(", cancelled ").append(executor.cancelled.get())
+                    .append(", avg wait ").append(completed == 0 ? 0 : executor.waitTime.get() / completed)
+                    .append(" ms, max wait ").append(executor.maxWaitTime.get())
+                    .append(" ms, avg run ").append(completed == 0 ? 0 : executor.runTime.get() / completed)
+                    .append(" ms\n");
+
+            for (Task<?> task : executor.getRunning()) {
+                builder.append("  running ").append(task.describe(now)).append('\n');
+            }
+            int count = 0;
+            for (Runnable runnable : executor.getQueue()) {
+                if (count++ == DUMP_QUEUED_TASKS) {
+                    builder.append("  ...\n");
+                    break;
+                }
+                builder.append("  queued ").append(((Task<?>) runnable).describe(now)).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private void onStarted(Task<?> task, long waitTime) {
+        if (task.account != null) {
+            synchronized (accountTasks) {
+                Set<Task<?>> tasks = accountTasks.get(task.account);
+                if (tasks != null) {
+                    tasks.remove(task);
+                    if (tasks.isEmpty()) {
+                        accountTasks.remove(task.account);
+                    }
+                }
+            }
+        }
+
+        if (waitTime < SLOW_WAIT) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long last = lastSlowWaitLog.get();
+        if (now - last > SLOW_WAIT_LOG_INTERVAL && lastSlowWaitLog.compareAndSet(last, now)) {
+            LogManager.w(LOG_TAG, task.name + " waited " + waitTime + " ms in " + task.lane
+                    + "\n" + dump());
+        }
+    }
+
+    private static class Task<T> extends FutureTask<T> {
+        final Lane lane;
+        @Nullable
+        final AccountJid account;
+        final String name;
+        final long created;
+        volatile long started;
+
+        Task(Lane lane, @Nullable AccountJid account, String name, Callable<T> callable) {
+            super(callable);
+            this.lane = lane;
+            this.account = account;
+            this.name = name;
+            this.created = System.currentTimeMillis();
+        }
+
+        String describe(long now) {
+            long since = started == 0 ? created : started;
+            return name + (account == null ? "" : " (" + account + ")") + " " + (now - since) + " ms";
+        }
+    }
+
+    private class LaneExecutor extends ThreadPoolExecutor {
+        final Lane lane;
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+        final AtomicLong waitTime = new AtomicLong();
+        final AtomicLong maxWaitTime = new AtomicLong();
+        final AtomicLong runTime = new AtomicLong();
+        private final Set<Task<?>> running = Collections.synchronizedSet(new HashSet<Task<?>>());
+
+        LaneExecutor(final Lane lane) {
+            super(lane.getConcurrency(), lane.getConcurrency(), 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger number = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    String name = lane.getConcurrency() == 1 ? lane.getThreadName()
+                            : lane.getThreadName() + " " + number.incrementAndGet();
+                    Thread thread = new Thread(runnable, name);
+                    thread.setPriority(lane.getPriority());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.lane = lane;
+        }
+
+        List<Task<?>> getRunning() {
+            synchronized (running) {
+                return new ArrayList<>(running);
+            }
+        }
+
+        @Override
+        protected void beforeExecute(Thread thread, Runnable runnable) {
+            super.beforeExecute(thread, runnable);
+            Task<?> task = (Task<?>) runnable;
+            task.started = System.currentTimeMillis();
+            long wait = task.started - task.created;
+            waitTime.addAndGet(wait);
+            long max;
+            do {
+                max = maxWaitTime.get();
+            } while (wait > max && !maxWaitTime.compareAndSet(max, wait));
+            running.add(task);
+            onStarted(task, wait);
+        }
+
+        @Override
+        protected void afterExecute(Runnable runnable, Throwable throwable) {
+            super.afterExecute(runnable, throwable);
+            Task<?> task = (Task<?>) runnable;
+            running.remove(task);
+            runTime.addAndGet(System.currentTimeMillis() - task.started);
+            completed.incrementAndGet();
+        }
+    }
+
+}
@@ -43,8 +43,10 @@ import com.xabber.android.data.connection.listeners.OnPacketListener;
 import com.xabber.android.data.database.sqlite.AvatarTable;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.extension.vcard.VCardManager;
 import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.roster.ContactVersions;
 import com.xabber.android.data.roster.OnContactChangedListener;
 import com.xabber.android.data.roster.RosterContact;
 import com.xabber.android.ui.color.ColorManager;
@@ -238,6 +240,7 @@ public class AvatarManager implements OnLoadListener, OnLowMemoryListener, OnPac
     private void onLoaded(Map<Jid, String> hashes, Map<String, Bitmap> bitmaps) {
         this.hashes.putAll(hashes);
         this.bitmaps.putAll(bitmaps);
+        ContactVersions.bumpAll();
         for (OnContactChangedListener onContactChangedListener : Application
                 .getInstance().getUIListeners(OnContactChangedListener.class)) {
             onContactChangedListener.onContactsChanged(Collections.<RosterContact>emptyList());
@@ -254,7 +257,7 @@ public class AvatarManager implements OnLoadListener, OnLowMemoryListener, OnPac
         hashes.put(jid, hash == null ? EMPTY_HASH : hash);
         contactListDrawables.remove(jid);
         contactListDefaultDrawables.remove(jid);
-        application.runInBackground(new Runnable() {
+        application.runInBackground(Lane.DATABASE_WRITE, new Runnable() {
             @Override
             public void run() {
                 AvatarTable.getInstance().write(jid.toString(), hash);
@@ -299,7 +302,7 @@ public class AvatarManager implements OnLoadListener, OnLowMemoryListener, OnPac
         }
         Bitmap bitmap = makeBitmap(value);
         bitmaps.put(hash, bitmap == null ? EMPTY_BITMAP : bitmap);
-        application.runInBackground(new Runnable() {
+        application.runInBackground(Lane.DISK, new Runnable() {
             @Override
             public void run() {
                 AvatarStorage.getInstance().write(hash, value);
@@ -532,7 +535,7 @@ public class AvatarManager implements OnLoadListener, OnLowMemoryListener, OnPac
             setHash(user.getJid(), hash);
             return;
         }
-        Application.getInstance().runInBackground(new Runnable() {
+        Application.getInstance().runInBackground(Lane.DISK, new Runnable() {
             @Override
             public void run() {
                 loadBitmap(account, user.getJid(), hash);
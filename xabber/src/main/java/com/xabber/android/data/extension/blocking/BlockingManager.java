@@ -11,6 +11,7 @@ import com.xabber.android.data.entity.UserJid;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.message.MessageManager;
 import com.xabber.android.data.notification.NotificationManager;
+import com.xabber.android.data.roster.ContactVersions;
 import com.xabber.android.data.roster.OnContactChangedListener;
 import com.xabber.android.data.roster.RosterContact;
 
@@ -138,6 +139,7 @@ public class BlockingManager {
     }
 
     static void notify(final AccountJid account) {
+        ContactVersions.bumpAll();
         Application.getInstance().runOnUiThread(new Runnable() {
             @Override
             public void run() {
@@ -20,16 +20,12 @@ import androidx.annotation.Nullable;
 import com.xabber.android.BuildConfig;
 import com.xabber.android.R;
 import com.xabber.android.data.Application;
-import com.xabber.android.data.account.AccountItem;
-import com.xabber.android.data.account.AccountManager;
+import com.xabber.android.data.OnLoadListener;
 import com.xabber.android.data.entity.AccountJid;
-import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.roster.OnContactChangedListener;
 import com.xabber.android.data.roster.RosterContact;
 import com.xabber.android.data.roster.RosterManager;
 
-import org.jivesoftware.smack.SmackException;
-import org.jivesoftware.smack.XMPPException;
 import org.jivesoftware.smack.packet.Presence;
 import org.jivesoftware.smackx.caps.EntityCapsManager;
 import org.jivesoftware.smackx.disco.ServiceDiscoveryManager;
@@ -45,7 +41,7 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * @author alexander.ivanov
  */
-public class CapabilitiesManager {
+public class CapabilitiesManager implements OnLoadListener {
 
     @SuppressWarnings("WeakerAccess")
     static final String LOG_TAG = CapabilitiesManager.class.getSimpleName();
@@ -57,6 +53,9 @@ public class CapabilitiesManager {
     Map<Jid, DiscoverInfo> discoverInfoCache;
     private Map<Jid, ClientInfo> clientInfoCache;
 
+    private final EntityCapsCache entityCapsCache;
+    private final CapsDiscovery capsDiscovery;
+
     public static CapabilitiesManager getInstance() {
         if (instance == null) {
             instance = new CapabilitiesManager();
@@ -69,7 +68,9 @@ public class CapabilitiesManager {
         Context applicationContext = Application.getInstance().getApplicationContext();
 
         EntityCapsManager.setDefaultEntityNode(applicationContext.getString(R.string.caps_entity_node));
-        EntityCapsManager.setPersistentCache(new EntityCapsCache());
+        entityCapsCache = new EntityCapsCache();
+        capsDiscovery = new CapsDiscovery(this, entityCapsCache);
+        EntityCapsManager.setPersistentCache(entityCapsCache);
 
         setServiceDiscoveryClientIdentity(applicationContext);
 
@@ -77,6 +78,11 @@ public class CapabilitiesManager {
         clientInfoCache = new ConcurrentHashMap<>();
     }
 
+    @Override
+    public void onLoad() {
+        entityCapsCache.load();
+    }
+
     private void setServiceDiscoveryClientIdentity(Context applicationContext) {
         String identityName = applicationContext.getString(R.string.application_title_full)
                 + " Android "
@@ -121,52 +127,30 @@ public class CapabilitiesManager {
             return;
         }
 
-        Application.getInstance().runInBackground(new Runnable() {
-            @Override
-            public void run() {
-                updateClientInfo(accountJid, from);
-            }
-        });
+        capsDiscovery.request(accountJid, from, false);
     }
 
     public void requestClientInfoByUser(final AccountJid account, final Jid jid) {
-        Application.getInstance().runInBackgroundUserRequest(new Runnable() {
-            @Override
-            public void run() {
-                updateClientInfo(account, jid);
-            }
-        });
+        capsDiscovery.request(account, jid, true);
     }
 
-    @SuppressWarnings("WeakerAccess")
-    void updateClientInfo(final AccountJid account, final Jid jid) {
-        DiscoverInfo discoverInfo = EntityCapsManager.getDiscoverInfoByUser(jid);
-
+    /**
+     * Stores result of disco#info request and notifies UI.
+     *
+     * @param discoverInfo <code>null</code> if request wasn't sent or failed.
+     * @param failed       whether request failed recently.
+     */
+    void onDiscoverInfo(AccountJid account, Jid jid, @Nullable DiscoverInfo discoverInfo, boolean failed) {
         if (discoverInfo != null) {
-            return;
-        }
-
-        AccountItem accountItem = AccountManager.getInstance().getAccount(account);
-        if (accountItem == null) {
-            return;
-        }
-
-        try {
-            discoverInfo = ServiceDiscoveryManager.getInstanceFor(accountItem.getConnection())
-                    .discoverInfo(jid);
-
-            EntityCapsManager.NodeVerHash nodeVerHashByJid = EntityCapsManager.getNodeVerHashByJid(jid);
-            if (nodeVerHashByJid == null) {
+            // entities without caps or with unverified caps aren't cached by smack
+            if (EntityCapsManager.getDiscoverInfoByUser(jid) == null) {
                 discoverInfoCache.put(jid, discoverInfo);
             }
-
-            if (discoverInfo != null) {
-                clientInfoCache.put(jid, ClientInfo.fromDiscoveryInfo(discoverInfo));
-            }
-
-        } catch (SmackException.NoResponseException | XMPPException.XMPPErrorException | InterruptedException | SmackException.NotConnectedException e) {
-            LogManager.exception(this, e);
+            clientInfoCache.put(jid, ClientInfo.fromDiscoveryInfo(discoverInfo));
+        } else if (failed) {
             clientInfoCache.put(jid, ClientInfo.INVALID_CLIENT_INFO);
+        } else {
+            return;
         }
 
         RosterContact rosterContact = RosterManager.getInstance().getRosterContact(account, jid.asBareJid());
@@ -0,0 +1,248 @@
+package com.xabber.android.data.extension.capability;
+
+import com.xabber.android.data.Application;
+import com.xabber.android.data.account.AccountItem;
+import com.xabber.android.data.account.AccountManager;
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.executor.Lane;
+import com.xabber.android.data.extension.csi.ClientStateManager;
+import com.xabber.android.data.log.LogManager;
+
+import org.jivesoftware.smack.SmackException;
+import org.jivesoftware.smack.XMPPException;
+import org.jivesoftware.smackx.caps.EntityCapsManager;
+import org.jivesoftware.smackx.disco.ServiceDiscoveryManager;
+import org.jivesoftware.smackx.disco.packet.DiscoverInfo;
+import org.jxmpp.jid.Jid;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends disco#info requests for {@link CapabilitiesManager}.
+ * <p/>
+ * Entities with the same caps node#ver are queried once, others wait for the result.
+ * Each account has at most {@link #MAX_IN_FLIGHT_PER_ACCOUNT} requests at the same time.
+ * Failed requests are not repeated for {@link #FAILURE_EXPIRE}.
+ */
+class CapsDiscovery {
+
+    private static final String LOG_TAG = CapsDiscovery.class.getSimpleName();
+
+    static final int MAX_IN_FLIGHT_PER_ACCOUNT = 3;
+    static final long FAILURE_EXPIRE = TimeUnit.DAYS.toMillis(1);
+
+    private static class Waiter {
+        final AccountJid account;
+        final Jid jid;
+
+        Waiter(AccountJid account, Jid jid) {
+            this.account = account;
+            this.jid = jid;
+        }
+    }
+
+    private static class Query {
+        final String key;
+        final AccountJid account;
+        final Jid jid;
+        final List<Waiter> waiters = new ArrayList<>();
+        boolean userRequest;
+        boolean sent;
+        boolean started;
+
+        Query(String key, AccountJid account, Jid jid, boolean userRequest) {
+            this.key = key;
+            this.account = account;
+            this.jid = jid;
+            this.userRequest = userRequest;
+            waiters.add(new Waiter(account, jid));
+        }
+    }
+
+    private final CapabilitiesManager capabilitiesManager;
+    private final EntityCapsCache cache;
+
+    /**
+     * Queued and sent queries by key.
+     */
+    private final Map<String, Query> queries = new HashMap<>();
+    private final Map<AccountJid, Integer> inFlight = new HashMap<>();
+    private final Map<AccountJid, Deque<Query>> queued = new HashMap<>();
+
+    CapsDiscovery(CapabilitiesManager capabilitiesManager, EntityCapsCache cache) {
+        this.capabilitiesManager = capabilitiesManager;
+        this.cache = cache;
+    }
+
+    /**
+     * Requests disco#info of the entity unless it is already requested
+     * for the same node#ver or failed recently.
+     *
+     * @param userRequest whether user waits for the result. Such requests are sent before
+     *                    others and are not deferred while client is inactive.
+     */
+    void request(AccountJid account, Jid jid, boolean userRequest) {
+        DiscoverInfo discoverInfo = EntityCapsManager.getDiscoverInfoByUser(jid);
+        if (discoverInfo != null) {
+            capabilitiesManager.onDiscoverInfo(account, jid, discoverInfo, false);
+            return;
+        }
+
+        EntityCapsManager.NodeVerHash nodeVerHash = EntityCapsManager.getNodeVerHashByJid(jid);
+        String key = nodeVerHash == null ? jid.toString() : nodeVerHash.getNodeVer();
+        if (cache.isFailed(key)) {
+            capabilitiesManager.onDiscoverInfo(account, jid, null, true);
+            return;
+        }
+
+        synchronized (this) {
+            Query query = queries.get(key);
+            if (query != null) {
+                query.waiters.add(new Waiter(account, jid));
+                if (userRequest && !query.userRequest) {
+                    promote(query);
+                }
+                return;
+            }
+            query = new Query(key, account, jid, userRequest);
+            queries.put(key, query);
+
+            if (getInFlight(account) < MAX_IN_FLIGHT_PER_ACCOUNT) {
+                send(query);
+            } else {
+                Deque<Query> accountQueue = queued.get(account);
+                if (accountQueue == null) {
+                    accountQueue = new ArrayDeque<>();
+                    queued.put(account, accountQueue);
+                }
+                if (userRequest) {
+                    accountQueue.addFirst(query);
+                } else {
+                    accountQueue.addLast(query);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives user priority to the background query which is not started yet.
+     * Must be called with lock held.
+     */
+    private void promote(Query query) {
+        query.userRequest = true;
+        if (query.started) {
+            return;
+        }
+        if (query.sent) {
+            // may be deferred while client is inactive, execute() runs it only once
+            Application.getInstance().runInBackground(Lane.USER_REQUEST, createRunnable(query));
+            return;
+        }
+        Deque<Query> accountQueue = queued.get(query.account);
+        if (accountQueue != null && accountQueue.remove(query)) {
+            accountQueue.addFirst(query);
+        }
+    }
+
+    private int getInFlight(AccountJid account) {
+        Integer count = inFlight.get(account);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Must be called with lock held.
+     */
+    private void send(final Query query) {
+        inFlight.put(query.account, getInFlight(query.account) + 1);
+        query.sent = true;
+
+        Runnable runnable = createRunnable(query);
+        if (query.userRequest) {
+            Application.getInstance().runInBackground(Lane.USER_REQUEST, runnable);
+        } else {
+            ClientStateManager.getInstance().runWhenActive("caps " + query.key, null, runnable);
+        }
+    }
+
+    private Runnable createRunnable(final Query query) {
+        // not bound to account: query must finish to release its slot and waiters
+        return new Runnable() {
+            @Override
+            public void run() {
+                execute(query);
+            }
+        };
+    }
+
+    private void execute(Query query) {
+        synchronized (this) {
+            if (query.started) {
+                return;
+            }
+            query.started = true;
+        }
+
+        DiscoverInfo discoverInfo = null;
+        boolean failed = false;
+        try {
+            AccountItem accountItem = AccountManager.getInstance().getAccount(query.account);
+            if (accountItem != null) {
+                try {
+                    discoverInfo = ServiceDiscoveryManager.getInstanceFor(accountItem.getConnection())
+                            .discoverInfo(query.jid);
+                } catch (SmackException.NoResponseException | XMPPException.XMPPErrorException e) {
+                    LogManager.exception(LOG_TAG, e);
+                    failed = true;
+                } catch (SmackException.NotConnectedException | InterruptedException e) {
+                    // will be requested again on next presence
+                    LogManager.exception(LOG_TAG, e);
+                }
+            }
+        } finally {
+            finish(query);
+        }
+
+        if (failed) {
+            cache.addFailure(query.key, System.currentTimeMillis() + FAILURE_EXPIRE);
+        }
+        List<Waiter> waiters;
+        synchronized (this) {
+            waiters = new ArrayList<>(query.waiters);
+        }
+        for (Waiter waiter : waiters) {
+            capabilitiesManager.onDiscoverInfo(waiter.account, waiter.jid, discoverInfo, failed);
+        }
+    }
+
+    /**
+     * Releases slot of the query and sends the next queued one.
+     */
+    private synchronized void finish(Query query) {
+        queries.remove(query.key);
+
+        int count = getInFlight(query.account) - 1;
+        if (count > 0) {
+            inFlight.put(query.account, count);
+        } else {
+            inFlight.remove(query.account);
+        }
+
+        Deque<Query> accountQueue = queued.get(query.account);
+        if (accountQueue != null) {
+            Query next = accountQueue.pollFirst();
+            if (accountQueue.isEmpty()) {
+                queued.remove(query.account);
+            }
+            if (next != null) {
+                send(next);
+            }
+        }
+    }
+
+}
@@ -1,42 +1,112 @@
 package com.xabber.android.data.extension.capability;
 
+import com.xabber.android.data.Application;
 import com.xabber.android.data.database.RealmManager;
+import com.xabber.android.data.database.realm.DiscoveryFailureCache;
 import com.xabber.android.data.database.realm.DiscoveryInfoCache;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.metrics.MetricsManager;
 
+import org.jivesoftware.smack.util.PacketParserUtils;
 import org.jivesoftware.smackx.caps.cache.EntityCapsPersistentCache;
 import org.jivesoftware.smackx.disco.packet.DiscoverInfo;
 
-import io.realm.Realm;
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import io.realm.Realm;
+import io.realm.RealmResults;
+
+/**
+ * Persistent cache of disco#info results by caps node#ver and of failed requests.
+ * <p/>
+ * Both are read from Realm at once by {@link #load()}, after that lookups don't touch
+ * Realm and writes are made in {@link Lane#DATABASE_WRITE}.
+ */
 class EntityCapsCache implements EntityCapsPersistentCache {
 
     private static final String LOG_TAG = EntityCapsCache.class.getSimpleName();
 
-    @Override
-    public void addDiscoverInfoByNodePersistent(final String nodeVer, final DiscoverInfo info) {
+    /**
+     * Disco#info XML by node#ver, parsed on lookup.
+     */
+    private final Map<String, String> discoverInfos = new ConcurrentHashMap<>();
+    /**
+     * Expiration time of failed requests by key.
+     */
+    private final Map<String, Long> failures = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Reads cached disco#info results and failures. Must not be called from UI thread.
+     */
+    void load() {
         final long startTime = System.currentTimeMillis();
-        if (nodeVer == null || info == null) {
-            return;
-        }
-
-        // TODO: 13.03.18 ANR - WRITE
-        Realm realm = RealmManager.getInstance().getNewRealm();
-        realm.beginTransaction();
-
-        DiscoveryInfoCache discoveryInfoCache = new DiscoveryInfoCache(nodeVer, info);
-        realm.copyToRealmOrUpdate(discoveryInfoCache);
+        final long now = System.currentTimeMillis();
+        boolean hasExpired = false;
 
-        realm.commitTransaction();
+        Realm realm = RealmManager.getInstance().getNewBackgroundRealm();
+        for (DiscoveryInfoCache item : realm.where(DiscoveryInfoCache.class).findAll()) {
+            discoverInfos.put(item.getNodeVer(), item.getDiscoveryInfoXml());
+        }
+        for (DiscoveryFailureCache item : realm.where(DiscoveryFailureCache.class).findAll()) {
+            if (item.getExpire() > now) {
+                failures.put(item.getKey(), item.getExpire());
+            } else {
+                hasExpired = true;
+            }
+        }
         realm.close();
+        loaded = true;
+
+        if (hasExpired) {
+            removeExpiredFailures(now);
+        }
         LogManager.d("REALM", Thread.currentThread().getName()
-                + " save discover info: " + (System.currentTimeMillis() - startTime));
+                + " load discover cache: " + (System.currentTimeMillis() - startTime)
+                + " ms, " + discoverInfos.size() + " items, " + failures.size() + " failures");
+        MetricsManager.getInstance().getHistogram("realm.caps.load").recordMillisSince(startTime);
+    }
 
+    @Override
+    public void addDiscoverInfoByNodePersistent(final String nodeVer, final DiscoverInfo info) {
+        if (nodeVer == null || info == null) {
+            return;
+        }
+        final DiscoveryInfoCache discoveryInfoCache = new DiscoveryInfoCache(nodeVer, info);
+        discoverInfos.put(nodeVer, discoveryInfoCache.getDiscoveryInfoXml());
+        failures.remove(nodeVer);
+
+        Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
+            @Override
+            public void run() {
+                final long startTime = System.currentTimeMillis();
+                Realm realm = RealmManager.getInstance().getNewBackgroundRealm();
+                realm.executeTransaction(new Realm.Transaction() {
+                    @Override
+                    public void execute(Realm realm) {
+                        realm.copyToRealmOrUpdate(discoveryInfoCache);
+                        realm.where(DiscoveryFailureCache.class)
+                                .equalTo(DiscoveryFailureCache.Fields.KEY, nodeVer)
+                                .findAll().deleteAllFromRealm();
+                    }
+                });
+                realm.close();
+                LogManager.d("REALM", Thread.currentThread().getName()
+                        + " save discover info: " + (System.currentTimeMillis() - startTime));
+                MetricsManager.getInstance().getHistogram("realm.caps.save").recordMillisSince(startTime);
+            }
+        });
     }
 
     @Override
     public DiscoverInfo lookup(String nodeVer) {
+        if (loaded) {
+            String xml = discoverInfos.get(nodeVer);
+            return xml == null ? null : parse(xml);
+        }
+
         Realm realm = RealmManager.getInstance().getNewRealm();
 
         DiscoveryInfoCache discoveryInfoCache = realm.where(DiscoveryInfoCache.class)
@@ -56,18 +126,87 @@ class EntityCapsCache implements EntityCapsPersistentCache {
 
     @Override
     public void emptyCache() {
-        final long startTime = System.currentTimeMillis();
-        // TODO: 13.03.18 ANR - WRITE
-        Realm realm = RealmManager.getInstance().getNewRealm();
+        discoverInfos.clear();
+        failures.clear();
+
+        Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
+            @Override
+            public void run() {
+                final long startTime = System.currentTimeMillis();
+                Realm realm = RealmManager.getInstance().getNewBackgroundRealm();
+                realm.executeTransaction(new Realm.Transaction() {
+                    @Override
+                    public void execute(Realm realm) {
+                        realm.where(DiscoveryInfoCache.class).findAll().deleteAllFromRealm();
+                        realm.where(DiscoveryFailureCache.class).findAll().deleteAllFromRealm();
+                    }
+                });
+                realm.close();
+                LogManager.d("REALM", Thread.currentThread().getName()
+                        + " delete discover cache: " + (System.currentTimeMillis() - startTime));
+                MetricsManager.getInstance().getHistogram("realm.caps.delete").recordMillisSince(startTime);
+            }
+        });
+    }
+
+    /**
+     * @return whether request with given key failed and shouldn't be repeated yet.
+     */
+    boolean isFailed(String key) {
+        Long expire = failures.get(key);
+        if (expire == null) {
+            return false;
+        }
+        if (expire > System.currentTimeMillis()) {
+            return true;
+        }
+        failures.remove(key);
+        return false;
+    }
 
-        realm.beginTransaction();
-        realm.where(DiscoveryInfoCache.class)
-                .findAll()
-                .deleteAllFromRealm();
-        realm.commitTransaction();
+    void addFailure(final String key, final long expire) {
+        failures.put(key, expire);
+
+        Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
+            @Override
+            public void run() {
+                Realm realm = RealmManager.getInstance().getNewBackgroundRealm();
+                realm.executeTransaction(new Realm.Transaction() {
+                    @Override
+                    public void execute(Realm realm) {
+                        realm.copyToRealmOrUpdate(new DiscoveryFailureCache(key, expire));
+                    }
+                });
+                realm.close();
+            }
+        });
+    }
 
-        realm.close();
-        LogManager.d("REALM", Thread.currentThread().getName()
-                + " delete discover cache: " + (System.currentTimeMillis() - startTime));
+    private void removeExpiredFailures(final long now) {
+        Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
+            @Override
+            public void run() {
+                Realm realm = RealmManager.getInstance().getNewBackgroundRealm();
+                realm.executeTransaction(new Realm.Transaction() {
+                    @Override
+                    public void execute(Realm realm) {
+                        RealmResults<DiscoveryFailureCache> expired = realm.where(DiscoveryFailureCache.class)
+                                .lessThanOrEqualTo(DiscoveryFailureCache.Fields.EXPIRE, now)
+                                .findAll();
+                        expired.deleteAllFromRealm();
+                    }
+                });
+                realm.close();
+            }
+        });
+    }
+
+    private static DiscoverInfo parse(String xml) {
+        try {
+            return PacketParserUtils.parseStanza(xml);
+        } catch (Exception e) {
+            LogManager.exception(LOG_TAG, e);
+            return null;
+        }
     }
 }
@@ -33,8 +33,7 @@ import com.xabber.android.data.connection.StanzaSender;
 import com.xabber.android.data.connection.listeners.OnDisconnectListener;
 import com.xabber.android.data.connection.listeners.OnPacketListener;
 import com.xabber.android.data.entity.AccountJid;
-import com.xabber.android.data.entity.NestedMap;
-import com.xabber.android.data.entity.NestedNestedMaps;
+import com.xabber.android.data.entity.EntityRegistry;
 import com.xabber.android.data.entity.UserJid;
 import com.xabber.android.data.extension.muc.RoomChat;
 import com.xabber.android.data.message.AbstractChat;
@@ -62,6 +61,7 @@ import org.jxmpp.stringprep.XmppStringprepException;
 
 import java.util.Calendar;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provide information about chat state.
@@ -96,31 +96,30 @@ public class ChatStateManager implements OnDisconnectListener,
     }
 
     /**
-     * Chat states for lower cased resource for bareAddress in account.
+     * Chat states for resource for bareAddress in account.
      */
-    private final NestedNestedMaps<Resourcepart, ChatState> chatStates;
+    private final EntityRegistry<Map<Resourcepart, ChatState>> chatStates;
 
     /**
-     * Cleaners for chat states for lower cased resource for bareAddress in
-     * account.
+     * Cleaners for chat states for resource for bareAddress in account.
      */
-    private final NestedNestedMaps<Resourcepart, Runnable> stateCleaners;
+    private final EntityRegistry<Map<Resourcepart, Runnable>> stateCleaners;
 
     /**
-     * Information about chat state notification support for lower cased
-     * resource for bareAddress in account.
+     * Information about chat state notification support for resource for
+     * bareAddress in account.
      */
-    private final NestedNestedMaps<Resourcepart, Boolean> supports;
+    private final EntityRegistry<Map<Resourcepart, Boolean>> supports;
 
     /**
-     * Sent chat state notifications for bareAddress in account.
+     * Sent chat state notifications for user in account.
      */
-    private final NestedMap<ChatState> sent;
+    private final EntityRegistry<ChatState> sent;
 
     /**
-     * Scheduled pause intents for bareAddress in account.
+     * Scheduled pause intents for user in account.
      */
-    private final NestedMap<PendingIntent> pauseIntents;
+    private final EntityRegistry<PendingIntent> pauseIntents;
 
     /**
      * Alarm manager.
@@ -133,11 +132,11 @@ public class ChatStateManager implements OnDisconnectListener,
     private final Handler handler;
 
     private ChatStateManager() {
-        chatStates = new NestedNestedMaps<>();
-        stateCleaners = new NestedNestedMaps<>();
-        supports = new NestedNestedMaps<>();
-        sent = new NestedMap<>();
-        pauseIntents = new NestedMap<>();
+        chatStates = new EntityRegistry<>();
+        stateCleaners = new EntityRegistry<>();
+        supports = new EntityRegistry<>();
+        sent = new EntityRegistry<>();
+        pauseIntents = new EntityRegistry<>();
         alarmManager = (AlarmManager) Application.getInstance()
                 .getSystemService(Context.ALARM_SERVICE);
         handler = new Handler();
@@ -149,7 +148,7 @@ public class ChatStateManager implements OnDisconnectListener,
      * @return <code>null</code> if there is no available information.
      */
     public ChatState getChatState(AccountJid account, UserJid bareAddress) {
-        Map<Resourcepart, ChatState> map = chatStates.get(account.toString(), bareAddress.toString());
+        Map<Resourcepart, ChatState> map = chatStates.get(account, bareAddress.getBareJid());
         if (map == null) {
             return null;
         }
@@ -171,7 +170,7 @@ public class ChatStateManager implements OnDisconnectListener,
         Jid to = chat.getTo();
         BareJid bareAddress = to.asBareJid();
         Resourcepart resource = to.getResourceOrNull();
-        Map<Resourcepart, Boolean> map = supports.get(chat.getAccount().toString(), bareAddress.toString());
+        Map<Resourcepart, Boolean> map = supports.get(chat.getAccount(), bareAddress);
         if (map != null) {
             if (resource!= null && !resource.equals(Resourcepart.EMPTY)) {
                 Boolean value = map.get(resource);
@@ -196,7 +195,7 @@ public class ChatStateManager implements OnDisconnectListener,
             return;
         }
         message.addExtension(new ChatStateExtension(ChatState.active));
-        sent.put(chat.getAccount().toString(), chat.getUser().toString(), ChatState.active);
+        sent.put(chat.getAccount(), chat.getUser().getJid(), ChatState.active);
         cancelPauseIntent(chat.getAccount(), chat.getUser());
     }
 
@@ -206,14 +205,14 @@ public class ChatStateManager implements OnDisconnectListener,
     private void updateChatState(AccountJid account, UserJid user,
                                  ChatState chatState) {
         if (!SettingsManager.chatsStateNotification()
-                || sent.get(account.toString(), user.toString()) == chatState) {
+                || sent.get(account, user.getJid()) == chatState) {
             return;
         }
         AbstractChat chat = MessageManager.getInstance().getChat(account, user);
         if (chat == null || !isSupported(chat, false)) {
             return;
         }
-        sent.put(chat.getAccount().toString(), chat.getUser().toString(), chatState);
+        sent.put(chat.getAccount(), chat.getUser().getJid(), chatState);
         Message message = new Message();
         message.setType(chat.getType());
         message.setTo(chat.getTo());
@@ -229,7 +228,7 @@ public class ChatStateManager implements OnDisconnectListener,
      * Cancel pause intent from the schedule.
      */
     private void cancelPauseIntent(AccountJid account, UserJid user) {
-        PendingIntent pendingIntent = pauseIntents.remove(account.toString(), user.toString());
+        PendingIntent pendingIntent = pauseIntents.remove(account, user.getJid());
         if (pendingIntent != null)
             alarmManager.cancel(pendingIntent);
     }
@@ -254,18 +253,18 @@ public class ChatStateManager implements OnDisconnectListener,
         calendar.add(Calendar.MILLISECOND, PAUSE_TIMEOUT);
         alarmManager.set(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(),
                 pendingIntent);
-        pauseIntents.put(account.toString(), user.toString(), pendingIntent);
+        pauseIntents.put(account, user.getJid(), pendingIntent);
     }
 
     public void onPaused(AccountJid account, UserJid user) {
         if (account == null || user == null)
             return;
-        if (sent.get(account.toString(), user.toString()) != ChatState.composing) {
+        if (sent.get(account, user.getJid()) != ChatState.composing) {
             return;
         }
 
         updateChatState(account, user, ChatState.paused);
-        pauseIntents.remove(account.toString(), user.toString());
+        pauseIntents.remove(account, user.getJid());
     }
 
     @Override
@@ -273,28 +272,65 @@ public class ChatStateManager implements OnDisconnectListener,
         if (!(connection instanceof AccountItem))
             return;
         AccountJid account = ((AccountItem) connection).getAccount();
-        chatStates.clear(account.toString());
-        for (Map<Resourcepart, Runnable> map : stateCleaners.getNested(account.toString()).values()) {
+        chatStates.clear(account);
+        for (Map<Resourcepart, Runnable> map : stateCleaners.values(account)) {
             for (Runnable runnable : map.values()) {
                 handler.removeCallbacks(runnable);
             }
         }
-        stateCleaners.clear(account.toString());
-        supports.clear(account.toString());
-        sent.clear(account.toString());
-        for (PendingIntent pendingIntent : pauseIntents.getNested(account.toString()).values()) {
+        stateCleaners.clear(account);
+        supports.clear(account);
+        sent.clear(account);
+        for (PendingIntent pendingIntent : pauseIntents.values(account)) {
             alarmManager.cancel(pendingIntent);
         }
-        pauseIntents.clear(account.toString());
+        pauseIntents.clear(account);
     }
 
     private void removeCallback(AccountJid account, BareJid bareAddress, Resourcepart resource) {
-        Runnable runnable = stateCleaners.remove(account.toString(), bareAddress.toString(), resource);
+        Runnable runnable = remove(stateCleaners, account, bareAddress, resource);
         if (runnable != null) {
             handler.removeCallbacks(runnable);
         }
     }
 
+    private static <T> T get(EntityRegistry<Map<Resourcepart, T>> registry,
+                             AccountJid account, BareJid bareAddress, Resourcepart resource) {
+        Map<Resourcepart, T> map = registry.get(account, bareAddress);
+        return map == null ? null : map.get(resource);
+    }
+
+    private static <T> void put(EntityRegistry<Map<Resourcepart, T>> registry,
+                                AccountJid account, BareJid bareAddress, Resourcepart resource,
+                                T value) {
+        synchronized (registry) {
+            Map<Resourcepart, T> map = registry.get(account, bareAddress);
+            if (map == null) {
+                map = new ConcurrentHashMap<>();
+                registry.put(account, bareAddress, map);
+            }
+            map.put(resource, value);
+        }
+    }
+
+    /**
+     * @return removed value.
+     */
+    private static <T> T remove(EntityRegistry<Map<Resourcepart, T>> registry,
+                                AccountJid account, BareJid bareAddress, Resourcepart resource) {
+        synchronized (registry) {
+            Map<Resourcepart, T> map = registry.get(account, bareAddress);
+            if (map == null) {
+                return null;
+            }
+            T value = map.remove(resource);
+            if (map.isEmpty()) {
+                registry.remove(account, bareAddress);
+            }
+            return value;
+        }
+    }
+
     @Override
     public void onStanza(ConnectionItem connection, Stanza stanza) {
         if (stanza.getFrom() == null) {
@@ -313,36 +349,37 @@ public class ChatStateManager implements OnDisconnectListener,
         } catch (UserJid.UserJidCreateException e) {
             return;
         }
+        final BareJid bareAddress = bareUserJid.getBareJid();
 
         if (stanza instanceof Presence) {
             Presence presence = (Presence) stanza;
             if (presence.getType() != Type.unavailable) {
                 return;
             }
-            chatStates.remove(account.toString(), bareUserJid.toString(), resource);
-            removeCallback(account, bareUserJid.getBareJid(), resource);
-            supports.remove(account.toString(), bareUserJid.toString(), resource);
+            remove(chatStates, account, bareAddress, resource);
+            removeCallback(account, bareAddress, resource);
+            remove(supports, account, bareAddress, resource);
         } else if (stanza instanceof Message) {
             boolean support = false;
             for (ExtensionElement extension : stanza.getExtensions())
                 if (extension instanceof ChatStateExtension) {
-                    removeCallback(account, bareUserJid.getBareJid(), resource);
+                    removeCallback(account, bareAddress, resource);
                     ChatState chatState = ((ChatStateExtension) extension).getChatState();
-                    chatStates.put(account.toString(), bareUserJid.toString(), resource, chatState);
+                    put(chatStates, account, bareAddress, resource, chatState);
                     if (chatState != ChatState.active) {
                         Runnable runnable = new Runnable() {
                             @Override
                             public void run() {
-                                if (this != stateCleaners.get(account.toString(), bareUserJid.toString(), resource)) {
+                                if (this != get(stateCleaners, account, bareAddress, resource)) {
                                     return;
                                 }
-                                chatStates.remove(account.toString(), bareUserJid.toString(), resource);
-                                removeCallback(account, bareUserJid.getBareJid(), resource);
+                                remove(chatStates, account, bareAddress, resource);
+                                removeCallback(account, bareAddress, resource);
                                 RosterManager.onChatStateChanged(account, bareUserJid);
                             }
                         };
                         handler.postDelayed(runnable, REMOVE_STATE_DELAY);
-                        stateCleaners.put(account.toString(), bareUserJid.toString(), resource, runnable);
+                        put(stateCleaners, account, bareAddress, resource, runnable);
                     }
                     RosterManager.onChatStateChanged(account, bareUserJid);
                     support = true;
@@ -354,10 +391,10 @@ public class ChatStateManager implements OnDisconnectListener,
                 return;
             }
             if (support) {
-                supports.put(account.toString(), bareUserJid.toString(), resource, true);
-            } else if (supports.get(account.toString(), bareUserJid.toString(), resource) == null) {
+                put(supports, account, bareAddress, resource, true);
+            } else if (get(supports, account, bareAddress, resource) == null) {
                 // Disable only if there no information about support.
-                supports.put(account.toString(), bareUserJid.toString(), resource, false);
+                put(supports, account, bareAddress, resource, false);
             }
         }
     }
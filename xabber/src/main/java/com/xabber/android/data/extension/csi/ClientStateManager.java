@@ -1,5 +1,8 @@
 package com.xabber.android.data.extension.csi;
 
+import com.xabber.android.data.Application;
+import com.xabber.android.data.connection.ConnectionItem;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.account.AccountItem;
 import com.xabber.android.data.account.AccountManager;
@@ -10,24 +13,202 @@ import org.jivesoftware.smack.SmackException;
 import org.jivesoftware.smack.packet.Nonza;
 import org.jivesoftware.smackx.csi.packet.ClientStateIndication;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Client State Indication (XEP-0352) manager
+ * <p/>
+ * Client is inactive while screen is off or no activity is visible. Server is notified
+ * at once on screen off and after {@link #BACKGROUND_DELAY} when app goes to background,
+ * so switching between activities doesn't send anything.
+ * <p/>
+ * While inactive, requests that only keep UI up to date (vCards, caps, last activity)
+ * are collected by {@link #runWhenActive(String, AccountJid, Runnable)} and sent
+ * together once per {@link #BATCH_WINDOW} or when client becomes active.
  * @author Ricki Hirner (www.bitfire.at)
  */
 public class ClientStateManager {
 
     private static final String LOG_TAG = ClientStateManager.class.getSimpleName();
 
+    static final long BACKGROUND_DELAY = TimeUnit.SECONDS.toMillis(10);
+    static final long BATCH_WINDOW = TimeUnit.MINUTES.toMillis(5);
+
+    private static ClientStateManager instance;
+
+    private boolean screenOn = true;
+    private int visibleActivities;
+    private volatile boolean inactive;
+
+    /**
+     * Deferred requests by key, so request repeated while inactive is sent once.
+     */
+    private final Map<String, DeferredRequest> deferredRequests = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    private final Runnable goInactiveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            setInactive(true);
+        }
+    };
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushDeferredRequests();
+        }
+    };
+
+    private static class DeferredRequest {
+        final AccountJid account;
+        final Runnable runnable;
+
+        DeferredRequest(AccountJid account, Runnable runnable) {
+            this.account = account;
+            this.runnable = runnable;
+        }
+    }
+
+    public static ClientStateManager getInstance() {
+        if (instance == null) {
+            instance = new ClientStateManager();
+        }
+        return instance;
+    }
+
     private ClientStateManager() {
     }
 
+    /**
+     * @return whether screen is off or app is in background.
+     */
+    public boolean isInactive() {
+        return inactive;
+    }
+
+    public void onInitialized() {
+        update();
+    }
+
+    public void onScreenOn() {
+        screenOn = true;
+        update();
+    }
+
+    public void onScreenOff() {
+        screenOn = false;
+        update();
+    }
+
+    public void onActivityResumed() {
+        visibleActivities++;
+        update();
+    }
+
+    public void onActivityPaused() {
+        if (visibleActivities > 0) {
+            visibleActivities--;
+        }
+        update();
+    }
+
+    /**
+     * Repeats inactive state for new stream, as server resets it.
+     */
+    public void onAuthorized(ConnectionItem connection) {
+        if (!inactive) {
+            return;
+        }
+        AbstractXMPPConnection xmppConnection = connection.getConnection();
+        if (xmppConnection.hasFeature("csi", ClientStateIndication.NAMESPACE)) {
+            try {
+                xmppConnection.sendNonza(ClientStateIndication.Inactive.INSTANCE);
+            } catch (SmackException.NotConnectedException | InterruptedException e) {
+                LogManager.exception(LOG_TAG, e);
+            }
+        }
+    }
+
+    /**
+     * Executes request in {@link Lane#NETWORK} now or, while client is inactive,
+     * with next batch of deferred requests.
+     *
+     * @param key identifies the request, only the first of requests with the same key is executed.
+     */
+    public void runWhenActive(String key, AccountJid account, Runnable runnable) {
+        synchronized (deferredRequests) {
+            if (!inactive) {
+                Application.getInstance().runInBackground(Lane.NETWORK, account, runnable);
+                return;
+            }
+            if (!deferredRequests.containsKey(key)) {
+                deferredRequests.put(key, new DeferredRequest(account, runnable));
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                Application.getInstance().runOnUiThreadDelay(flushRunnable, BATCH_WINDOW);
+            }
+        }
+    }
 
-    public static void setInactive() {
-        sendClientState(ClientStateIndication.Inactive.INSTANCE);
+    private void update() {
+        boolean shouldBeInactive = !screenOn || visibleActivities == 0;
+        Application.getInstance().removeOnUiThread(goInactiveRunnable);
+        if (!shouldBeInactive) {
+            setInactive(false);
+        } else if (!inactive) {
+            if (screenOn) {
+                Application.getInstance().runOnUiThreadDelay(goInactiveRunnable, BACKGROUND_DELAY);
+            } else {
+                setInactive(true);
+            }
+        }
     }
 
-    public static void setActive() {
-        sendClientState(ClientStateIndication.Active.INSTANCE);
+    private void setInactive(boolean inactive) {
+        if (this.inactive == inactive) {
+            return;
+        }
+        this.inactive = inactive;
+        LogManager.i(LOG_TAG, inactive ? "inactive" : "active");
+
+        final Nonza nonza = inactive
+                ? ClientStateIndication.Inactive.INSTANCE : ClientStateIndication.Active.INSTANCE;
+        Application.getInstance().runInBackgroundUserRequest(new Runnable() {
+            @Override
+            public void run() {
+                sendClientState(nonza);
+            }
+        });
+
+        if (!inactive) {
+            Application.getInstance().removeOnUiThread(flushRunnable);
+            flushDeferredRequests();
+            for (OnClientStateListener listener
+                    : Application.getInstance().getManagers(OnClientStateListener.class)) {
+                listener.onClientActive();
+            }
+        }
+    }
+
+    private void flushDeferredRequests() {
+        List<DeferredRequest> requests;
+        synchronized (deferredRequests) {
+            flushScheduled = false;
+            requests = new ArrayList<>(deferredRequests.values());
+            deferredRequests.clear();
+        }
+        if (!requests.isEmpty()) {
+            LogManager.i(LOG_TAG, "Sending " + requests.size() + " deferred requests");
+        }
+        for (DeferredRequest request : requests) {
+            Application.getInstance().runInBackground(Lane.NETWORK, request.account, request.runnable);
+        }
     }
 
     protected static void sendClientState(Nonza nonza) {
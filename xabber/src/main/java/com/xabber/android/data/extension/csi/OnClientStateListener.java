@@ -0,0 +1,14 @@
+package com.xabber.android.data.extension.csi;
+
+import com.xabber.android.data.BaseManagerInterface;
+
+public interface OnClientStateListener extends BaseManagerInterface {
+
+    /**
+     * Client became active: screen is on and some activity is visible.
+     * <p/>
+     * Called from UI thread.
+     */
+    void onClientActive();
+
+}
@@ -0,0 +1,159 @@
+package com.xabber.android.data.extension.file;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.media.ExifInterface;
+import androidx.annotation.Nullable;
+
+import com.xabber.android.data.Application;
+import com.xabber.android.data.database.messagerealm.Attachment;
+import com.xabber.android.data.extension.httpfileupload.HttpFileUploadManager;
+import com.xabber.android.data.log.LogManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads metadata of local attachment files once, when attachment is created or downloaded,
+ * so chat binds can size image views and show preview without touching file system.
+ */
+public class AttachmentMetadata {
+
+    private static final String LOG_TAG = AttachmentMetadata.class.getSimpleName();
+
+    /**
+     * Maximum side of the preview in pixels. It is stretched on display,
+     * so it looks like blurred image.
+     */
+    static final int THUMBNAIL_SIZE = 32;
+    private static final int THUMBNAIL_QUALITY = 60;
+
+    private AttachmentMetadata() {
+    }
+
+    /**
+     * Fills size, orientation, mime type and preview of the attachment from its file.
+     * Must not be called from UI thread.
+     */
+    public static void fill(Attachment attachment, File file) {
+        attachment.setFileSize(file.length());
+        if (attachment.getMimeType() == null) {
+            attachment.setMimeType(HttpFileUploadManager.getMimeType(file.getPath()));
+        }
+        if (!attachment.isImage()) {
+            return;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return;
+        }
+        if (options.outMimeType != null) {
+            attachment.setMimeType(options.outMimeType);
+        }
+
+        int orientation = getOrientation(file);
+        attachment.setOrientation(orientation);
+        if (isTransposed(orientation)) {
+            attachment.setImageWidth(options.outHeight);
+            attachment.setImageHeight(options.outWidth);
+        } else {
+            attachment.setImageWidth(options.outWidth);
+            attachment.setImageHeight(options.outHeight);
+        }
+
+        attachment.setThumbnail(createThumbnail(file, options.outWidth, options.outHeight, orientation));
+    }
+
+    /**
+     * @return preview of the attachment or <code>null</code> if it has no preview.
+     */
+    @Nullable
+    public static Drawable getThumbnailDrawable(Attachment attachment) {
+        byte[] thumbnail = attachment.getThumbnail();
+        if (thumbnail == null) {
+            return null;
+        }
+        Bitmap bitmap = BitmapFactory.decodeByteArray(thumbnail, 0, thumbnail.length);
+        if (bitmap == null) {
+            return null;
+        }
+        return new BitmapDrawable(Application.getInstance().getResources(), bitmap);
+    }
+
+    private static int getOrientation(File file) {
+        try {
+            return new ExifInterface(file.getPath())
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED);
+        } catch (IOException e) {
+            LogManager.exception(LOG_TAG, e);
+            return ExifInterface.ORIENTATION_UNDEFINED;
+        }
+    }
+
+    private static boolean isTransposed(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+            case ExifInterface.ORIENTATION_ROTATE_90:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return rotation in degrees, mirroring is ignored for preview.
+     */
+    private static int getRotation(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    @Nullable
+    private static byte[] createThumbnail(File file, int width, int height, int orientation) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (Math.max(width, height) / (options.inSampleSize * 2) >= THUMBNAIL_SIZE) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap sampled = BitmapFactory.decodeFile(file.getPath(), options);
+        if (sampled == null) {
+            return null;
+        }
+
+        float scale = Math.min(1f, (float) THUMBNAIL_SIZE / Math.max(sampled.getWidth(), sampled.getHeight()));
+        Matrix matrix = new Matrix();
+        matrix.postScale(scale, scale);
+        matrix.postRotate(getRotation(orientation));
+        Bitmap thumbnail = Bitmap.createBitmap(sampled, 0, 0,
+                sampled.getWidth(), sampled.getHeight(), matrix, true);
+        if (thumbnail != sampled) {
+            sampled.recycle();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        thumbnail.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+        thumbnail.recycle();
+        return out.toByteArray();
+    }
+
+}
@@ -4,18 +4,22 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
 import android.graphics.BitmapFactory;
+import android.graphics.drawable.Drawable;
 import android.media.ExifInterface;
 import android.net.Uri;
 import androidx.annotation.Nullable;
 import androidx.core.content.FileProvider;
 import android.util.Log;
+import android.util.LruCache;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.RequestListener;
 import com.xabber.android.BuildConfig;
 import com.xabber.android.R;
 import com.xabber.android.data.Application;
+import com.xabber.android.data.database.messagerealm.Attachment;
 import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.extension.httpfileupload.HttpFileUploadManager;
 import com.xabber.android.data.log.LogManager;
@@ -44,6 +48,11 @@ public class FileManager {
     private static int maxImageSize;
     private static int minImageSize;
 
+    /**
+     * Results of {@link #isImageUrl(String)} by text, as the same texts are checked on every bind.
+     */
+    private static final LruCache<String, Boolean> imageUrls = new LruCache<>(256);
+
 
     static {
         instance = new FileManager();
@@ -92,11 +101,47 @@ public class FileManager {
         return true;
     }
 
+    /**
+     * Loads local image of the attachment using its stored sizes and preview,
+     * falls back to {@link #loadImageFromFile(Context, String, ImageView)} for
+     * attachments saved without them.
+     *
+     * @param listener notified when file can't be loaded.
+     */
+    public static boolean loadImageFromFile(Context context, Attachment attachment, ImageView imageView,
+                                            @Nullable RequestListener<Drawable> listener) {
+        Integer width = attachment.getImageWidth();
+        Integer height = attachment.getImageHeight();
+        if (width == null || height == null || width <= 0 || height <= 0) {
+            return loadImageFromFile(context, attachment.getFilePath(), imageView);
+        }
+
+        ViewGroup.LayoutParams layoutParams = imageView.getLayoutParams();
+        scaleImage(layoutParams, height, width);
+        imageView.setLayoutParams(layoutParams);
+        Glide.with(context)
+                .load(attachment.getFilePath())
+                .placeholder(AttachmentMetadata.getThumbnailDrawable(attachment))
+                .listener(listener)
+                .into(imageView);
+
+        return true;
+    }
+
     public static boolean isImageUrl(String text) {
         if (text == null) {
             return false;
         }
 
+        Boolean isImage = imageUrls.get(text);
+        if (isImage == null) {
+            isImage = parseImageUrl(text);
+            imageUrls.put(text, isImage);
+        }
+        return isImage;
+    }
+
+    private static boolean parseImageUrl(String text) {
         if (text.trim().contains(" ")) {
             return false;
         }
@@ -2,7 +2,6 @@ package com.xabber.android.data.extension.httpfileupload;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
@@ -40,7 +39,6 @@ import org.jxmpp.jid.BareJid;
 import org.jxmpp.jid.DomainBareJid;
 import org.jxmpp.jid.Jid;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -189,34 +187,6 @@ public class HttpFileUploadManager implements OnLoadListener, OnAccountRemovedLi
         }
     }
 
-    public static ImageSize getImageSizes(String filePath) {
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inJustDecodeBounds = true;
-        BitmapFactory.decodeFile(new File(filePath).getAbsolutePath(), options);
-        int imageHeight = options.outHeight;
-        int imageWidth = options.outWidth;
-        return new ImageSize(imageHeight, imageWidth);
-    }
-
-    public static class ImageSize {
-        private int height;
-        private int width;
-
-        public ImageSize(int height, int width) {
-            this.height = height;
-            this.width = width;
-        }
-
-        public int getHeight() {
-            return height;
-        }
-
-        public int getWidth() {
-            return width;
-        }
-    }
-
-
     public static String getMimeType(String path) {
         String extension = path.substring(path.lastIndexOf(".")).substring(1);
         String type = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
@@ -6,6 +6,7 @@ import com.xabber.android.data.connection.ConnectionItem;
 import com.xabber.android.data.connection.listeners.OnPacketListener;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.extension.csi.ClientStateManager;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.roster.RosterManager;
 
@@ -53,7 +54,16 @@ public class LastActivityInteractor implements OnPacketListener {
         else return 0;
     }
 
-    public void requestLastActivityAsync(AccountJid account, UserJid user) {
+    public void requestLastActivityAsync(final AccountJid account, final UserJid user) {
+        ClientStateManager.getInstance().runWhenActive("last " + account + " " + user, account, new Runnable() {
+            @Override
+            public void run() {
+                requestLastActivity(account, user);
+            }
+        });
+    }
+
+    private void requestLastActivity(AccountJid account, UserJid user) {
         AccountItem accountItem = AccountManager.getInstance().getAccount(account);
         if (accountItem != null) {
             LastActivity activity = new LastActivity(user.getJid());
@@ -0,0 +1,48 @@
+package com.xabber.android.data.extension.mam;
+
+import com.xabber.android.data.BaseChatEvent;
+import com.xabber.android.data.entity.BaseEntity;
+
+/**
+ * Progress of download of full chat history, posted after each chunk of pages.
+ */
+public class FullHistoryLoadProgressEvent extends BaseChatEvent {
+
+    private final int loadedPages;
+    private final long oldestTimestamp;
+    private final boolean finished;
+    private final boolean complete;
+
+    public FullHistoryLoadProgressEvent(BaseEntity entity, int loadedPages, long oldestTimestamp,
+                                        boolean finished, boolean complete) {
+        super(entity);
+        this.loadedPages = loadedPages;
+        this.oldestTimestamp = oldestTimestamp;
+        this.finished = finished;
+        this.complete = complete;
+    }
+
+    public int getLoadedPages() {
+        return loadedPages;
+    }
+
+    /**
+     * @return timestamp of the oldest loaded message, 0 if there is no messages.
+     */
+    public long getOldestTimestamp() {
+        return oldestTimestamp;
+    }
+
+    /**
+     * @return whether download is stopped. Download started in background is resumed on next
+     * connection if history is not complete.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+}
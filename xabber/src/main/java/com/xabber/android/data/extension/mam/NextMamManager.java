@@ -13,7 +13,10 @@ import com.xabber.android.data.database.messagerealm.ForwardId;
 import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.database.messagerealm.SyncInfo;
 import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.entity.EntityRegistry;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.executor.Lane;
+import com.xabber.android.data.extension.csi.ClientStateManager;
 import com.xabber.android.data.extension.file.FileManager;
 import com.xabber.android.data.extension.httpfileupload.HttpFileUploadManager;
 import com.xabber.android.data.extension.otr.OTRManager;
@@ -21,10 +24,13 @@ import com.xabber.android.data.extension.references.RefUser;
 import com.xabber.android.data.extension.references.ReferencesManager;
 import com.xabber.android.data.groupchat.GroupchatUserManager;
 import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.metrics.MetricsManager;
 import com.xabber.android.data.message.AbstractChat;
 import com.xabber.android.data.message.ForwardManager;
 import com.xabber.android.data.message.MessageManager;
+import com.xabber.android.data.message.MessageSnapshotCache;
 import com.xabber.android.data.message.NewMessageEvent;
+import com.xabber.android.data.message.search.MessageSearchManager;
 import com.xabber.android.data.notification.NotificationManager;
 import com.xabber.android.data.push.SyncManager;
 import com.xabber.android.data.roster.OnRosterReceivedListener;
@@ -42,7 +48,6 @@ import org.jivesoftware.smack.packet.IQ;
 import org.jivesoftware.smack.packet.Message;
 import org.jivesoftware.smack.packet.Stanza;
 import com.xabber.xmpp.smack.XMPPTCPConnection;
-import org.jivesoftware.smack.util.PacketParserUtils;
 import org.jivesoftware.smackx.delay.packet.DelayInformation;
 import org.jivesoftware.smackx.forward.packet.Forwarded;
 import org.jivesoftware.smackx.mam.MamManager;
@@ -67,6 +72,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -82,10 +88,32 @@ public class NextMamManager implements OnRosterReceivedListener, OnPacketListene
 
     private static NextMamManager instance;
 
+    /**
+     * Number of most recent chats which history is prefetched after connection.
+     */
+    private static final int PREFETCH_RECENT_CHATS = 3;
+    /**
+     * Pages of history loaded by one task of full history download.
+     */
+    private static final int FULL_HISTORY_PAGES_PER_CHUNK = 10;
+
     private Map<AccountJid, Boolean> supportedByAccount = new ConcurrentHashMap<>();
-    private boolean isRequested = false;
-    private final Object lock = new Object();
+    /**
+     * Queued or running history requests by chat. Chat has at most one request at a time,
+     * requests of different chats don't wait for each other.
+     */
+    private final EntityRegistry<HistoryRequest> historyRequests = new EntityRegistry<>();
+    /**
+     * Full history downloads in progress, guarded by itself.
+     */
+    private final EntityRegistry<FullHistoryLoad> fullHistoryLoads = new EntityRegistry<>();
     private Map<String, UserJid> waitingRequests = new HashMap<>();
+    /**
+     * Parsed archived messages which contain forwarded messages, by unique id of message item.
+     * Kept from parsing till saving of page, so stanza is not parsed again from original stanza.
+     * Entries of a page are removed when its processing ends, whether it is saved or not.
+     */
+    private final Map<String, Message> forwardingMessages = new ConcurrentHashMap<>();
 
     public static NextMamManager getInstance() {
         if (instance == null)
@@ -118,92 +146,331 @@ public class NextMamManager implements OnRosterReceivedListener, OnPacketListene
 
             loadLastMessagesInMissedChatsAsync(realm, accountItem);
         }
+        resumeFullChatHistoryLoads(realm, accountItem.getAccount());
         realm.close();
+        prefetchRecentChats(accountItem.getAccount());
      }
 
     public void onChatOpen(final AbstractChat chat) {
-        final AccountItem accountItem = AccountManager.getInstance().getAccount(chat.getAccount());
-        if (accountItem == null || accountItem.getLoadHistorySettings() == LoadHistorySettings.none
-                || !isSupported(accountItem.getAccount())) return;
+        final AccountItem accountItem = getAccountForHistory(chat);
+        if (accountItem == null) return;
 
-        Application.getInstance().runInBackground(new Runnable() {
+        requestHistory(chat, new Runnable() {
             @Override
             public void run() {
-                Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
-
-                // if history is empty - load last message
-                MessageItem firstMessage = getFirstMessage(chat, realm);
-                if (firstMessage == null) loadLastMessage(realm, accountItem, chat);
-
-                synchronized (lock) {
-                    if (isRequested) return;
-                    else isRequested = true;
-                }
-
-                // load prev page if history is not enough
-                if (historyIsNotEnough(realm, chat) && !chat.historyIsFull()) {
-                    EventBus.getDefault().post(new LastHistoryLoadStartedEvent(chat));
-                    loadNextHistory(realm, accountItem, chat);
-                    EventBus.getDefault().post(new LastHistoryLoadFinishedEvent(chat));
-                }
-
-                // load missed messages if need
-                List<MessageItem> messages = findMissedMessages(realm, chat);
-                if (messages != null && !messages.isEmpty() && accountItem != null) {
-                    for (MessageItem message : messages) {
-                        loadMissedMessages(realm, accountItem, chat, message);
-                    }
-                }
-
-                synchronized (lock) {
-                    isRequested = false;
-                }
-                realm.close();
+                loadChatHistory(accountItem, chat, true);
             }
         });
     }
 
+    /**
+     * Cancels history request of the chat unless it is already running.
+     * Running request stays registered and removes itself when finished.
+     */
+    public void onChatClose(AbstractChat chat) {
+        synchronized (historyRequests) {
+            HistoryRequest request = historyRequests.get(chat.getAccount(), chat.getUser().getJid());
+            if (request != null && request.future.cancel(false)) {
+                historyRequests.remove(chat.getAccount(), chat.getUser().getJid());
+            }
+        }
+    }
+
+    /**
+     * Loads previous page of history. Called when user scrolls up, before top of loaded
+     * history is reached, so the next page is usually saved before it is shown.
+     */
     public void onScrollInChat(final AbstractChat chat) {
-        final AccountItem accountItem = AccountManager.getInstance().getAccount(chat.getAccount());
-        if (accountItem == null || accountItem.getLoadHistorySettings() == LoadHistorySettings.none
-                || !isSupported(accountItem.getAccount())) return;
+        final AccountItem accountItem = getAccountForHistory(chat);
+        if (accountItem == null) return;
 
         if (chat.historyIsFull()) return;
-        Application.getInstance().runInBackground(new Runnable() {
+        requestHistory(chat, new Runnable() {
             @Override
             public void run() {
-                synchronized (lock) {
-                    if (isRequested) return;
-                    else isRequested = true;
-                }
                 EventBus.getDefault().post(new LastHistoryLoadStartedEvent(chat));
                 Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
                 loadNextHistory(realm, accountItem, chat);
                 realm.close();
                 EventBus.getDefault().post(new LastHistoryLoadFinishedEvent(chat));
-                synchronized (lock) {
-                    isRequested = false;
-                }
             }
         });
     }
 
-    public void loadFullChatHistory(AbstractChat chat) {
+    @Nullable
+    private AccountItem getAccountForHistory(AbstractChat chat) {
         final AccountItem accountItem = AccountManager.getInstance().getAccount(chat.getAccount());
-        if (accountItem == null || !isSupported(accountItem.getAccount()) || chat.historyIsFull()) return;
+        if (accountItem == null || accountItem.getLoadHistorySettings() == LoadHistorySettings.none
+                || !isSupported(accountItem.getAccount())) return null;
+        return accountItem;
+    }
 
+    /**
+     * Loads last message, first page and missed messages of the chat.
+     *
+     * @param notify whether to post history load events for opened chat.
+     */
+    private void loadChatHistory(AccountItem accountItem, AbstractChat chat, boolean notify) {
         Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
 
         // if history is empty - load last message
         MessageItem firstMessage = getFirstMessage(chat, realm);
         if (firstMessage == null) loadLastMessage(realm, accountItem, chat);
 
-        boolean complete = false;
-        while (!complete) {
-            complete = loadNextHistory(realm, accountItem, chat);
+        // load prev page if history is not enough
+        if (historyIsNotEnough(realm, chat) && !chat.historyIsFull()) {
+            if (notify) EventBus.getDefault().post(new LastHistoryLoadStartedEvent(chat));
+            loadNextHistory(realm, accountItem, chat);
+            if (notify) EventBus.getDefault().post(new LastHistoryLoadFinishedEvent(chat));
+        }
+
+        // load missed messages if need
+        List<MessageItem> messages = findMissedMessages(realm, chat);
+        if (messages != null && !messages.isEmpty()) {
+            for (MessageItem message : messages) {
+                loadMissedMessages(realm, accountItem, chat, message);
+            }
+        }
+
+        realm.close();
+    }
+
+    /**
+     * Loads first page of history of most recent chats, as they are likely to be opened.
+     * Skipped while client is inactive.
+     */
+    private void prefetchRecentChats(final AccountJid account) {
+        if (ClientStateManager.getInstance().isInactive()) return;
+
+        // last messages are bound to UI thread realm
+        Application.getInstance().runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final AccountItem accountItem = AccountManager.getInstance().getAccount(account);
+                if (accountItem == null) return;
+
+                List<AbstractChat> chats = new ArrayList<>();
+                for (AbstractChat chat : MessageManager.getInstance().getChats(account)) {
+                    if (chat.getLastMessage() != null && !chat.historyIsFull()) chats.add(chat);
+                }
+                Collections.sort(chats, new Comparator<AbstractChat>() {
+                    @Override
+                    public int compare(AbstractChat chat1, AbstractChat chat2) {
+                        long time1 = chat1.getLastMessage().getTimestamp();
+                        long time2 = chat2.getLastMessage().getTimestamp();
+                        return time1 < time2 ? 1 : (time1 > time2 ? -1 : 0);
+                    }
+                });
+
+                for (final AbstractChat chat : chats.subList(0, Math.min(PREFETCH_RECENT_CHATS, chats.size()))) {
+                    requestHistory(chat, new Runnable() {
+                        @Override
+                        public void run() {
+                            loadChatHistory(accountItem, chat, false);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Executes history request in {@link Lane#NETWORK} unless the chat already has one.
+     */
+    private void requestHistory(AbstractChat chat, Runnable runnable) {
+        synchronized (historyRequests) {
+            HistoryRequest current = historyRequests.get(chat.getAccount(), chat.getUser().getJid());
+            if (current != null && !current.future.isDone()) return;
+
+            HistoryRequest request = new HistoryRequest(chat, runnable);
+            request.future = Application.getInstance()
+                    .runInBackground(Lane.NETWORK, chat.getAccount(), request);
+            historyRequests.put(chat.getAccount(), chat.getUser().getJid(), request);
+        }
+    }
+
+    private class HistoryRequest implements Runnable {
+        private final AbstractChat chat;
+        private final Runnable runnable;
+        private Future<?> future;
+
+        HistoryRequest(AbstractChat chat, Runnable runnable) {
+            this.chat = chat;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            try {
+                runnable.run();
+            } finally {
+                synchronized (historyRequests) {
+                    if (historyRequests.get(chat.getAccount(), chat.getUser().getJid()) == this) {
+                        historyRequests.remove(chat.getAccount(), chat.getUser().getJid());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads full history of the chat in current thread. Interrupted load is not resumed.
+     */
+    public void loadFullChatHistory(AbstractChat chat) {
+        FullHistoryLoad load = new FullHistoryLoad(chat, false);
+        while (!loadFullHistoryChunk(load)) {
+            // next chunk
+        }
+    }
+
+    /**
+     * Starts download of full history of the chat, if it is not in progress.
+     * <p/>
+     * History is loaded in chunks of {@link #FULL_HISTORY_PAGES_PER_CHUNK} pages. Each chunk is
+     * separate task in {@link Lane#HISTORY} with own Realm, so download doesn't hold lane thread
+     * and Realm version for a long time. Progress and request are saved to {@link SyncInfo},
+     * interrupted download is resumed when account is connected. Progress is posted as
+     * {@link FullHistoryLoadProgressEvent}.
+     */
+    public void startFullChatHistoryLoad(AbstractChat chat) {
+        synchronized (fullHistoryLoads) {
+            FullHistoryLoad current = fullHistoryLoads.get(chat.getAccount(), chat.getUser().getJid());
+            if (current != null && !current.future.isDone()) return;
+
+            FullHistoryLoad load = new FullHistoryLoad(chat, true);
+            fullHistoryLoads.put(chat.getAccount(), chat.getUser().getJid(), load);
+            load.submit();
+        }
+    }
+
+    /**
+     * Resumes downloads started by {@link #startFullChatHistoryLoad(AbstractChat)}.
+     */
+    private void resumeFullChatHistoryLoads(Realm realm, AccountJid account) {
+        RealmResults<SyncInfo> syncInfos = realm.where(SyncInfo.class)
+                .equalTo(SyncInfo.FIELD_ACCOUNT, account.toString())
+                .equalTo(SyncInfo.FIELD_FULL_HISTORY_REQUESTED, true)
+                .findAll();
+        for (SyncInfo syncInfo : syncInfos) {
+            try {
+                AbstractChat chat = MessageManager.getInstance()
+                        .getChat(account, UserJid.from(syncInfo.getUser()));
+                if (chat != null) startFullChatHistoryLoad(chat);
+            } catch (UserJid.UserJidCreateException e) {
+                LogManager.exception(this, e);
+            }
+        }
+    }
+
+    /**
+     * Loads next chunk of full history.
+     *
+     * @return whether download is finished, because history is complete or can't be loaded now.
+     */
+    private boolean loadFullHistoryChunk(FullHistoryLoad load) {
+        AbstractChat chat = load.chat;
+        AccountItem accountItem = AccountManager.getInstance().getAccount(chat.getAccount());
+        if (accountItem == null || !isSupported(accountItem.getAccount())
+                || !accountItem.getConnection().isAuthenticated()) {
+            EventBus.getDefault().post(new FullHistoryLoadProgressEvent(chat, load.loadedPages,
+                    0, true, false));
+            return true;
         }
 
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+
+        if (load.resumable && load.loadedPages == 0) {
+            realm.beginTransaction();
+            getOrCreateSyncInfo(realm, chat).setFullHistoryRequested(true);
+            realm.commitTransaction();
+        }
+
+        // if history is empty - load last message
+        boolean archiveEmpty = false;
+        if (getFirstMessage(chat, realm) == null) archiveEmpty = loadLastMessage(realm, accountItem, chat);
+
+        boolean finished = false;
+        for (int page = 0; page < FULL_HISTORY_PAGES_PER_CHUNK && !finished; page++) {
+            finished = loadNextHistory(realm, accountItem, chat);
+            // only pages with saved messages are counted, failed request also finishes
+            if (!finished) load.loadedPages++;
+        }
+
+        // loadNextHistory also stops on failed request, so history without messages
+        // is complete only if server said so
+        MessageItem firstMessage = getFirstMessage(chat, realm);
+        boolean complete = firstMessage == null ? archiveEmpty : chat.historyIsFull()
+                || firstMessage.getArchivedId().equals(firstMessage.getPreviousId());
+        saveFullHistoryProgress(realm, chat, firstMessage, complete);
+        long oldestTimestamp = firstMessage != null ? firstMessage.getTimestamp() : 0;
         realm.close();
+
+        EventBus.getDefault().post(new FullHistoryLoadProgressEvent(chat, load.loadedPages,
+                oldestTimestamp, finished, complete));
+        return finished;
+    }
+
+    private void saveFullHistoryProgress(Realm realm, AbstractChat chat,
+                                         @Nullable MessageItem firstMessage, boolean complete) {
+        realm.beginTransaction();
+        SyncInfo syncInfo = getOrCreateSyncInfo(realm, chat);
+        if (firstMessage != null) {
+            syncInfo.setFirstMamMessageMamId(firstMessage.getArchivedId());
+            syncInfo.setFirstMamMessageStanzaId(firstMessage.getStanzaId());
+        }
+        syncInfo.setRemoteHistoryCompletelyLoaded(complete);
+        if (complete) syncInfo.setFullHistoryRequested(false);
+        realm.commitTransaction();
+    }
+
+    /**
+     * Must be called inside transaction.
+     */
+    private SyncInfo getOrCreateSyncInfo(Realm realm, AbstractChat chat) {
+        SyncInfo syncInfo = realm.where(SyncInfo.class)
+                .equalTo(SyncInfo.FIELD_ACCOUNT, chat.getAccount().toString())
+                .equalTo(SyncInfo.FIELD_USER, chat.getUser().toString())
+                .findFirst();
+        if (syncInfo == null) {
+            syncInfo = realm.createObject(SyncInfo.class);
+            syncInfo.setAccount(chat.getAccount());
+            syncInfo.setUser(chat.getUser());
+        }
+        return syncInfo;
+    }
+
+    private class FullHistoryLoad implements Runnable {
+        private final AbstractChat chat;
+        /**
+         * Whether request is saved to be resumed on next connection.
+         */
+        private final boolean resumable;
+        private int loadedPages;
+        private Future<?> future;
+
+        FullHistoryLoad(AbstractChat chat, boolean resumable) {
+            this.chat = chat;
+            this.resumable = resumable;
+        }
+
+        void submit() {
+            future = Application.getInstance().runInBackground(Lane.HISTORY, chat.getAccount(), this);
+        }
+
+        @Override
+        public void run() {
+            boolean finished = true;
+            try {
+                finished = loadFullHistoryChunk(this);
+            } finally {
+                synchronized (fullHistoryLoads) {
+                    if (fullHistoryLoads.get(chat.getAccount(), chat.getUser().getJid()) == this) {
+                        if (finished) fullHistoryLoads.remove(chat.getAccount(), chat.getUser().getJid());
+                        else submit();
+                    }
+                }
+            }
+        }
     }
 
     public void onRequestUpdatePreferences(AccountJid accountJid) {
@@ -292,14 +559,20 @@ public class NextMamManager implements OnRosterReceivedListener, OnPacketListene
         }
     }
 
-    private void loadLastMessage(Realm realm, AccountItem accountItem, AbstractChat chat) {
+    /**
+     * @return whether server has no messages of the chat, false if request failed.
+     */
+    private boolean loadLastMessage(Realm realm, AccountItem accountItem, AbstractChat chat) {
         LogManager.d(LOG_TAG, "load last messages in chat: " + chat.getUser());
         MamManager.MamQueryResult queryResult = requestLastMessage(accountItem, chat);
+        boolean empty = false;
         if (queryResult != null) {
             List<Forwarded> messages = new ArrayList<>(queryResult.forwardedMessages);
-            saveOrUpdateMessages(realm, parseMessage(accountItem, chat.getAccount(), chat.getUser(), messages, null));
+            parseAndSaveMessages(realm, accountItem, chat, messages, null);
+            empty = messages.isEmpty() && queryResult.mamFin.isComplete();
         }
         updateLastMessageId(chat, realm);
+        return empty;
     }
 
     private boolean loadAllNewMessages(Realm realm, AccountItem accountItem, String lastArchivedId) {
@@ -341,43 +614,47 @@ public class NextMamManager implements OnRosterReceivedListener, OnPacketListene
                 if (list != null) list.add(forwarded);
             }
 
-            // parse message lists
-            for (Map.Entry<String, ArrayList<Forwarded>> entry : messagesByChat.entrySet()) {
-                ArrayList<Forwarded> list = entry.getValue();
-                if (list != null) {
-                    try {
-                        AbstractChat chat = MessageManager.getInstance()
-                                .getOrCreateChat(accountItem.getAccount(), UserJid.from(entry.getKey()));
-
-                        // sort messages in list by timestamp
-                        Collections.sort(list, new Comparator<Forwarded>() {
-                            @Override
-                            public int compare(Forwarded o1, Forwarded o2) {
-                                DelayInformation delayInformation1 = o1.getDelayInformation();
-                                long time1 = delayInformation1.getStamp().getTime();
-
-                                DelayInformation delayInformation2 = o2.getDelayInformation();
-                                long time2 = delayInformation2.getStamp().getTime();
-
-                                return Long.valueOf(time1).compareTo(time2);
-                            }
-                        });
-
-                        // parse messages and set previous id
-                        parsedMessages.addAll(
-                                parseMessage(accountItem, accountItem.getAccount(),
-                                        chat.getUser(), list, chat.getLastMessageId()));
-                        chatsNeedUpdateLastMessageId.add(chat);
-
-                    } catch (UserJid.UserJidCreateException e) {
-                        LogManager.d(LOG_TAG, e.toString());
-                        continue;
+            try {
+                // parse message lists
+                for (Map.Entry<String, ArrayList<Forwarded>> entry : messagesByChat.entrySet()) {
+                    ArrayList<Forwarded> list = entry.getValue();
+                    if (list != null) {
+                        try {
+                            AbstractChat chat = MessageManager.getInstance()
+                                    .getOrCreateChat(accountItem.getAccount(), UserJid.from(entry.getKey()));
+
+                            // sort messages in list by timestamp
+                            Collections.sort(list, new Comparator<Forwarded>() {
+                                @Override
+                                public int compare(Forwarded o1, Forwarded o2) {
+                                    DelayInformation delayInformation1 = o1.getDelayInformation();
+                                    long time1 = delayInformation1.getStamp().getTime();
+
+                                    DelayInformation delayInformation2 = o2.getDelayInformation();
+                                    long time2 = delayInformation2.getStamp().getTime();
+
+                                    return Long.valueOf(time1).compareTo(time2);
+                                }
+                            });
+
+                            // parse messages and set previous id
+                            parsedMessages.addAll(
+                                    parseMessage(accountItem, accountItem.getAccount(),
+                                            chat.getUser(), list, chat.getLastMessageId()));
+                            chatsNeedUpdateLastMessageId.add(chat);
+
+                        } catch (UserJid.UserJidCreateException e) {
+                            LogManager.d(LOG_TAG, e.toString());
+                            continue;
+                        }
                     }
                 }
-            }
 
-            // save messages to Realm
-            saveOrUpdateMessages(realm, parsedMessages);
+                // save messages to Realm
+                saveOrUpdateMessages(realm, parsedMessages);
+            } finally {
+                clearForwardingMessages(parsedMessages);
+            }
             for (AbstractChat chat : chatsNeedUpdateLastMessageId) {
                 updateLastMessageId(chat, realm);
             }
@@ -394,23 +671,28 @@ public class NextMamManager implements OnRosterReceivedListener, OnPacketListene
                 return true;
             }
 
+            long startTime = System.nanoTime();
             MamManager.MamQueryResult queryResult = requestMessagesBeforeId(accountItem, chat, firstMessage.getArchivedId());
+            MetricsManager.getInstance().getHistogram("mam.page").recordNanosSince(startTime);
             if (queryResult != null) {
                 List<Forwarded> messages = new ArrayList<>(queryResult.forwardedMessages);
+                MetricsManager.getInstance().getCounter("mam.messages").add(messages.size());
                 if (!messages.isEmpty()) {
-                    List<MessageItem> savedMessages = saveOrUpdateMessages(realm,
-                            parseMessage(accountItem, chat.getAccount(), chat.getUser(), messages, null));
+                    List<MessageItem> savedMessages = parseAndSaveMessages(realm, accountItem, chat,
+                            messages, null);
 
                     if (savedMessages != null && !savedMessages.isEmpty()) {
                         realm.beginTransaction();
                         firstMessage.setPreviousId(savedMessages.get(savedMessages.size() - 1).getArchivedId());
                         realm.commitTransaction();
+                        MessageSnapshotCache.getInstance().invalidate(chat.getAccount(), chat.getUser());
                         return false;
                     }
                 } else if (queryResult.mamFin.isComplete()) {
                     realm.beginTransaction();
                     firstMessage.setPreviousId(firstMessage.getArchivedId());
                     realm.commitTransaction();
+                    MessageSnapshotCache.getInstance().invalidate(chat.getAccount(), chat.getUser());
                 }
             }
         }
@@ -437,18 +719,20 @@ public class NextMamManager implements OnRosterReceivedListener, OnPacketListene
             }
 
             if (!messages.isEmpty()) {
-                List<MessageItem> savedMessages = saveOrUpdateMessages(realm,
-                        parseMessage(accountItem, chat.getAccount(), chat.getUser(), messages, m2.getArchivedId()));
+                List<MessageItem> savedMessages = parseAndSaveMessages(realm, accountItem, chat,
+                        messages, m2.getArchivedId());
 
                 if (savedMessages != null && !savedMessages.isEmpty()) {
                     realm.beginTransaction();
                     m1.setPreviousId(savedMessages.get(savedMessages.size() - 1).getArchivedId());
                     realm.commitTransaction();
+                    MessageSnapshotCache.getInstance().invalidate(chat.getAccount(), chat.getUser());
                 }
             } else {
                 realm.beginTransaction();
                 m1.setPreviousId(m2.getArchivedId());
                 realm.commitTransaction();
+                MessageSnapshotCache.getInstance().invalidate(chat.getAccount(), chat.getUser());
             }
         }
     }
@@ -621,7 +905,11 @@ public class NextMamManager implements OnRosterReceivedListener, OnPacketListene
             AbstractChat chat = MessageManager.getInstance().getOrCreateChat(account, UserJid.from(user));
             MessageItem messageItem = parseMessage(accountItem, account, chat.getUser(), forwarded, null);
             if (messageItem != null) {
-                saveOrUpdateMessages(realm, Collections.singletonList(messageItem), true);
+                try {
+                    saveOrUpdateMessages(realm, Collections.singletonList(messageItem), true);
+                } finally {
+                    forwardingMessages.remove(messageItem.getUniqueId());
+                }
                 updateLastMessageId(chat, realm);
             }
         } catch (UserJid.UserJidCreateException e) {
@@ -629,17 +917,45 @@ public class NextMamManager implements OnRosterReceivedListener, OnPacketListene
         }
     }
 
+    /**
+     * Parses and saves page of history. Parsed forwarding messages are released even if
+     * the page is not saved.
+     *
+     * @return saved messages.
+     */
+    private List<MessageItem> parseAndSaveMessages(Realm realm, AccountItem accountItem, AbstractChat chat,
+                                                   List<Forwarded> messages, String prevID) {
+        List<MessageItem> parsedMessages = parseMessage(accountItem, chat.getAccount(), chat.getUser(),
+                messages, prevID);
+        try {
+            return saveOrUpdateMessages(realm, parsedMessages);
+        } finally {
+            clearForwardingMessages(parsedMessages);
+        }
+    }
+
+    private void clearForwardingMessages(Collection<MessageItem> messages) {
+        for (MessageItem message : messages) {
+            forwardingMessages.remove(message.getUniqueId());
+        }
+    }
+
     private List<MessageItem> parseMessage(AccountItem accountItem, AccountJid account, UserJid user,
                                            List<Forwarded> forwardedMessages, String prevID) {
         List<MessageItem> messageItems = new ArrayList<>();
         String lastOutgoingId = null;
-        for (Forwarded forwarded : forwardedMessages) {
-            MessageItem message = parseMessage(accountItem, account, user, forwarded, prevID);
-            if (message != null) {
-                messageItems.add(message);
-                prevID = message.getArchivedId();
-                if (!message.isIncoming()) lastOutgoingId = message.getUniqueId();
+        try {
+            for (Forwarded forwarded : forwardedMessages) {
+                MessageItem message = parseMessage(accountItem, account, user, forwarded, prevID);
+                if (message != null) {
+                    messageItems.add(message);
+                    prevID = message.getArchivedId();
+                    if (!message.isIncoming()) lastOutgoingId = message.getUniqueId();
+                }
             }
+        } catch (RuntimeException e) {
+            clearForwardingMessages(messageItems);
+            throw e;
         }
 
         // mark messages before outgoing as read
@@ -737,6 +1053,7 @@ public class NextMamManager implements OnRosterReceivedListener, OnPacketListene
         // forwarded
         messageItem.setOriginalStanza(message.toXML().toString());
         messageItem.setOriginalFrom(message.getFrom().toString());
+        if (ForwardManager.hasForwarded(message)) forwardingMessages.put(uid, message);
 
         // groupchat
         RefUser groupchatUser = ReferencesManager.getGroupchatUserFromReferences(message);
@@ -766,18 +1083,15 @@ public class NextMamManager implements OnRosterReceivedListener, OnPacketListene
         realm.beginTransaction();
         realm.copyToRealmOrUpdate(messagesToSave);
         realm.commitTransaction();
+        MessageSnapshotCache.getInstance().invalidate(messagesToSave);
+        MessageSearchManager.getInstance().onMessagesSaved(messagesToSave);
         SyncManager.getInstance().onMessageSaved();
         EventBus.getDefault().post(new NewMessageEvent());
         return messagesToSave;
     }
 
     private MessageItem determineSaveOrUpdate(Realm realm, final MessageItem message, boolean ui) {
-        Message originalMessage = null;
-        try {
-            originalMessage = (Message) PacketParserUtils.parseStanza(message.getOriginalStanza());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        Message originalMessage = forwardingMessages.remove(message.getUniqueId());
 
         AbstractChat chat = MessageManager.getInstance().getOrCreateChat(message.getAccount(), message.getUser());
         if (chat == null) return null;
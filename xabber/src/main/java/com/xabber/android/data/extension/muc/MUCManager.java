@@ -16,6 +16,8 @@ package com.xabber.android.data.extension.muc;
 
 import android.database.Cursor;
 
+import androidx.annotation.Nullable;
+
 import com.xabber.android.R;
 import com.xabber.android.data.Application;
 import com.xabber.android.data.NetworkException;
@@ -46,6 +48,7 @@ import org.jivesoftware.smack.packet.Message;
 import org.jivesoftware.smack.packet.Stanza;
 import org.jivesoftware.smack.packet.XMPPError;
 import org.jivesoftware.smackx.muc.HostedRoom;
+import org.jivesoftware.smackx.muc.MUCRole;
 import org.jivesoftware.smackx.muc.MultiUserChat;
 import org.jivesoftware.smackx.muc.MultiUserChatException;
 import org.jivesoftware.smackx.muc.MultiUserChatManager;
@@ -227,6 +230,29 @@ public class MUCManager implements OnLoadListener, OnPacketListener {
         return roomChat.getOccupants();
     }
 
+    /**
+     * @return occupants with the role or empty list.
+     */
+    public Collection<Occupant> getOccupantsByRole(AccountJid account, EntityBareJid room, MUCRole role) {
+        RoomChat roomChat = getRoomChat(account, room);
+        if (roomChat == null) {
+            return Collections.emptyList();
+        }
+        return roomChat.getOccupantsByRole(role);
+    }
+
+    /**
+     * @return <code>null</code> if there is no such room or occupant.
+     */
+    @Nullable
+    public Occupant getOccupant(AccountJid account, EntityBareJid room, Resourcepart nickname) {
+        RoomChat roomChat = getRoomChat(account, room);
+        if (roomChat == null) {
+            return null;
+        }
+        return roomChat.getOccupant(nickname);
+    }
+
     /**
      * @return <code>null</code> if there is no such invite.
      */
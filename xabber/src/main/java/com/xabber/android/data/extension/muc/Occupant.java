@@ -34,6 +34,8 @@ public class Occupant implements Comparable<Occupant> {
 
     private Jid jid;
 
+    private Jid realJid;
+
     private MUCRole role;
 
     private MUCAffiliation affiliation;
@@ -61,6 +63,17 @@ public class Occupant implements Comparable<Occupant> {
         this.jid = jid;
     }
 
+    /**
+     * @return real jid of occupant, <code>null</code> if room doesn't expose it.
+     */
+    public Jid getRealJid() {
+        return realJid;
+    }
+
+    public void setRealJid(Jid realJid) {
+        this.realJid = realJid;
+    }
+
     public MUCRole getRole() {
         return role;
     }
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2013, Redsolution LTD. All rights reserved.
+ *
+ * This file is part of Xabber project; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License, Version 3.
+ *
+ * Xabber is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * along with this program. If not, see http://www.gnu.org/licenses/.
+ */
+package com.xabber.android.data.extension.muc;
+
+import androidx.annotation.Nullable;
+
+import org.jivesoftware.smackx.muc.MUCRole;
+import org.jxmpp.jid.BareJid;
+import org.jxmpp.jid.Jid;
+import org.jxmpp.jid.parts.Resourcepart;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Occupants of the room indexed by nickname, real jid and role.
+ * <p/>
+ * Sorted list of occupants is built once after modification and
+ * shared between readers until next modification.
+ */
+class OccupantStore {
+
+    private final Map<Resourcepart, Occupant> byNickname;
+    private final Map<BareJid, Set<Resourcepart>> byRealJid;
+    private final Map<MUCRole, Set<Resourcepart>> byRole;
+
+    /**
+     * Sorted unmodifiable list of occupants, <code>null</code> if it must be rebuilt.
+     */
+    private List<Occupant> snapshot;
+
+    OccupantStore() {
+        byNickname = new HashMap<>();
+        byRealJid = new HashMap<>();
+        byRole = new EnumMap<>(MUCRole.class);
+    }
+
+    @Nullable
+    synchronized Occupant get(Resourcepart nickname) {
+        return byNickname.get(nickname);
+    }
+
+    /**
+     * Adds or replaces occupant with the same nickname.
+     *
+     * @return previous occupant with this nickname or <code>null</code>.
+     */
+    synchronized Occupant put(Occupant occupant) {
+        Occupant old = removeFromIndexes(occupant.getNickname());
+        byNickname.put(occupant.getNickname(), occupant);
+        if (occupant.getRealJid() != null) {
+            getOrCreate(byRealJid, occupant.getRealJid().asBareJid()).add(occupant.getNickname());
+        }
+        if (occupant.getRole() != null) {
+            getOrCreate(byRole, occupant.getRole()).add(occupant.getNickname());
+        }
+        snapshot = null;
+        return old;
+    }
+
+    @Nullable
+    synchronized Occupant remove(Resourcepart nickname) {
+        Occupant old = removeFromIndexes(nickname);
+        if (old != null) {
+            snapshot = null;
+        }
+        return old;
+    }
+
+    synchronized void clear() {
+        byNickname.clear();
+        byRealJid.clear();
+        byRole.clear();
+        snapshot = null;
+    }
+
+    synchronized int size() {
+        return byNickname.size();
+    }
+
+    /**
+     * @return occupants using this real jid. Empty if room doesn't expose real jids.
+     */
+    synchronized Collection<Occupant> getByRealJid(Jid realJid) {
+        return collect(byRealJid.get(realJid.asBareJid()));
+    }
+
+    synchronized Collection<Occupant> getByRole(MUCRole role) {
+        return collect(byRole.get(role));
+    }
+
+    /**
+     * @return unmodifiable occupants list sorted by role and nickname.
+     */
+    synchronized List<Occupant> getSorted() {
+        if (snapshot == null) {
+            List<Occupant> occupants = new ArrayList<>(byNickname.values());
+            Collections.sort(occupants);
+            snapshot = Collections.unmodifiableList(occupants);
+        }
+        return snapshot;
+    }
+
+    private Occupant removeFromIndexes(Resourcepart nickname) {
+        Occupant old = byNickname.remove(nickname);
+        if (old == null) {
+            return null;
+        }
+        if (old.getRealJid() != null) {
+            BareJid bareJid = old.getRealJid().asBareJid();
+            Set<Resourcepart> nicknames = byRealJid.get(bareJid);
+            if (nicknames != null) {
+                nicknames.remove(nickname);
+                if (nicknames.isEmpty()) {
+                    byRealJid.remove(bareJid);
+                }
+            }
+        }
+        if (old.getRole() != null) {
+            Set<Resourcepart> nicknames = byRole.get(old.getRole());
+            if (nicknames != null) {
+                nicknames.remove(nickname);
+            }
+        }
+        return old;
+    }
+
+    private Collection<Occupant> collect(Set<Resourcepart> nicknames) {
+        if (nicknames == null || nicknames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Occupant> occupants = new ArrayList<>(nicknames.size());
+        for (Resourcepart nickname : nicknames) {
+            occupants.add(byNickname.get(nickname));
+        }
+        return occupants;
+    }
+
+    private static <K> Set<Resourcepart> getOrCreate(Map<K, Set<Resourcepart>> map, K key) {
+        Set<Resourcepart> set = map.get(key);
+        if (set == null) {
+            set = new LinkedHashSet<>();
+            map.put(key, set);
+        }
+        return set;
+    }
+
+}
@@ -29,11 +29,13 @@ import com.xabber.android.data.database.messagerealm.ForwardId;
 import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.extension.httpfileupload.HttpFileUploadManager;
 import com.xabber.android.data.extension.references.ReferencesManager;
 import com.xabber.android.data.message.AbstractChat;
 import com.xabber.android.data.message.ChatAction;
 import com.xabber.android.data.message.ForwardManager;
+import com.xabber.android.data.message.MessageSnapshotCache;
 import com.xabber.android.data.message.NewIncomingMessageEvent;
 import com.xabber.android.data.message.chat.ChatManager;
 import com.xabber.android.data.roster.RosterManager;
@@ -52,13 +54,14 @@ import org.jxmpp.jid.EntityBareJid;
 import org.jxmpp.jid.parts.Resourcepart;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.realm.Realm;
 import io.realm.RealmList;
@@ -72,10 +75,19 @@ import io.realm.RealmList;
  */
 public class RoomChat extends AbstractChat {
 
+    /**
+     * Delay to collect occupant changes before notifying contact list.
+     */
+    private static final long OCCUPANTS_CHANGED_DELAY = 500;
+
     /**
      * Information about occupants for STRING-PREPed resource.
      */
-    private final Map<Resourcepart, Occupant> occupants;
+    private final OccupantStore occupants;
+    /**
+     * Whether notification about occupant changes is already scheduled.
+     */
+    private final AtomicBoolean occupantsChangedScheduled = new AtomicBoolean();
     /**
      * Invited user for the sent packet ID.
      */
@@ -108,7 +120,7 @@ public class RoomChat extends AbstractChat {
         state = RoomState.unavailable;
         subject = "";
         multiUserChat = null;
-        occupants = new HashMap<>();
+        occupants = new OccupantStore();
         invites = new HashMap<>();
     }
 
@@ -167,8 +179,20 @@ public class RoomChat extends AbstractChat {
         }
     }
 
-    Collection<Occupant> getOccupants() {
-        return Collections.unmodifiableCollection(occupants.values());
+    /**
+     * @return occupants sorted by role and nickname.
+     */
+    List<Occupant> getOccupants() {
+        return occupants.getSorted();
+    }
+
+    @Nullable
+    Occupant getOccupant(Resourcepart nickname) {
+        return occupants.get(nickname);
+    }
+
+    Collection<Occupant> getOccupantsByRole(MUCRole role) {
+        return occupants.getByRole(role);
     }
 
     String getSubject() {
@@ -315,13 +339,12 @@ public class RoomChat extends AbstractChat {
         } else if (stanza instanceof Presence) {
             Presence presence = (Presence) stanza;
             if (presence.getType() == Presence.Type.available) {
-                Occupant oldOccupant = occupants.get(resource);
                 Occupant newOccupant = createOccupant(resource, presence);
                 newOccupant.setJid(from);
-                occupants.put(resource, newOccupant);
+                Occupant oldOccupant = occupants.put(newOccupant);
                 if (oldOccupant == null) {
-                    onAvailable(resource);
-                    RosterManager.onContactChanged(account, user);
+                    onAvailable(resource, newOccupant);
+                    onOccupantsChanged();
                 } else {
                     boolean changed = false;
                     if (oldOccupant.getAffiliation() != newOccupant.getAffiliation()) {
@@ -338,11 +361,11 @@ public class RoomChat extends AbstractChat {
                         onStatusChanged(resource, newOccupant.getStatusMode(), newOccupant.getStatusText());
                     }
                     if (changed) {
-                        RosterManager.onContactChanged(account, user);
+                        onOccupantsChanged();
                     }
                 }
             } else if (presence.getType() == Presence.Type.unavailable && state == RoomState.available) {
-                occupants.remove(resource);
+                Occupant oldOccupant = occupants.remove(resource);
                 MUCUser mucUser = MUCUser.from(presence);
                 if (mucUser != null && mucUser.getStatus() != null) {
                     if (mucUser.getStatus().contains(MUCUser.Status.KICKED_307)) {
@@ -356,14 +379,14 @@ public class RoomChat extends AbstractChat {
                         }
                         onRename(resource, newNick);
                         Occupant occupant = createOccupant(newNick, presence);
-                        occupants.put(newNick, occupant);
+                        occupants.put(occupant);
                     } else if (mucUser.getStatus().contains(MUCUser.Status.REMOVED_AFFIL_CHANGE_321)) {
                         onRevoke(resource, mucUser.getItem().getActor());
                     }
                 } else {
-                    onLeave(resource);
+                    onLeave(resource, oldOccupant);
                 }
-                RosterManager.onContactChanged(account, user);
+                onOccupantsChanged();
             }
         }
         return true;
@@ -413,7 +436,7 @@ public class RoomChat extends AbstractChat {
     }
 
         private void markMessageAsDelivered(final String messageUId, final String originalFrom) {
-        Application.getInstance().runInBackground(new Runnable() {
+        Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
             @Override
             public void run() {
                 Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
@@ -426,6 +449,8 @@ public class RoomChat extends AbstractChat {
                         message.setOriginalFrom(originalFrom);
                     }
                 });
+                realm.close();
+                MessageSnapshotCache.getInstance().invalidateMessage(messageUId);
             }
         });
     }
@@ -469,7 +494,23 @@ public class RoomChat extends AbstractChat {
      * A occupant becomes available.
      * @param resource
      */
-    private void onAvailable(Resourcepart resource) {
+    /**
+     * Whether the user of occupant is present in the room with another nickname,
+     * e.g. from another device. Known only if room exposes real jids.
+     */
+    private boolean hasOtherOccupants(@Nullable Occupant occupant) {
+        if (occupant == null || occupant.getRealJid() == null) {
+            return false;
+        }
+        for (Occupant other : occupants.getByRealJid(occupant.getRealJid())) {
+            if (!other.getNickname().equals(occupant.getNickname())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onAvailable(Resourcepart resource, Occupant occupant) {
         if (isSelf(resource)) {
             setState(RoomState.available);
             if (isRequested()) {
@@ -489,7 +530,7 @@ public class RoomChat extends AbstractChat {
             }
         } else {
             if (state == RoomState.available) {
-                if (showStatusChange()) {
+                if (showStatusChange() && !hasOtherOccupants(occupant)) {
                     newAction(resource, null, ChatAction.join, true);
                 }
             }
@@ -531,6 +572,7 @@ public class RoomChat extends AbstractChat {
             statusText = "";
         }
         occupant.setJid(jid);
+        occupant.setRealJid(jid);
         occupant.setAffiliation(affiliation);
         occupant.setRole(role);
         occupant.setStatusMode(statusMode);
@@ -538,6 +580,26 @@ public class RoomChat extends AbstractChat {
         return occupant;
     }
 
+    /**
+     * Notifies contact list about changed occupants.
+     * <p/>
+     * Presences received while joining are not reported one by one, they are shown
+     * at once when join completes. Changes in joined room are collected for
+     * {@link #OCCUPANTS_CHANGED_DELAY} and reported with single notification.
+     */
+    private void onOccupantsChanged() {
+        if (state != RoomState.available || !occupantsChangedScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        Application.getInstance().runOnUiThreadDelay(new Runnable() {
+            @Override
+            public void run() {
+                occupantsChangedScheduled.set(false);
+                RosterManager.onContactChanged(account, user);
+            }
+        }, OCCUPANTS_CHANGED_DELAY);
+    }
+
     private void onAffiliationChanged(Resourcepart resource, MUCAffiliation affiliation) {
     }
 
@@ -551,8 +613,8 @@ public class RoomChat extends AbstractChat {
      * A occupant leaves room.
      * @param resource
      */
-    private void onLeave(Resourcepart resource) {
-        if (showStatusChange()) {
+    private void onLeave(Resourcepart resource, @Nullable Occupant occupant) {
+        if (showStatusChange() && !hasOtherOccupants(occupant)) {
             newAction(resource, null, ChatAction.leave, true);
         }
         if (isSelf(resource)) {
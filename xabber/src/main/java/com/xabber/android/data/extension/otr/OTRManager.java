@@ -37,9 +37,8 @@ import com.xabber.android.data.account.listeners.OnAccountRemovedListener;
 import com.xabber.android.data.connection.StanzaSender;
 import com.xabber.android.data.database.sqlite.OTRTable;
 import com.xabber.android.data.entity.AccountJid;
-import com.xabber.android.data.entity.NestedMap;
+import com.xabber.android.data.entity.ConcurrentNestedMap;
 import com.xabber.android.data.entity.NestedMap.Entry;
-import com.xabber.android.data.entity.NestedNestedMaps;
 import com.xabber.android.data.entity.UserJid;
 import com.xabber.android.data.extension.ssn.SSNManager;
 import com.xabber.android.data.message.AbstractChat;
@@ -78,6 +77,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -107,20 +107,21 @@ public class OTRManager implements OtrEngineHost, OtrEngineListener,
     private final EntityNotificationProvider<SMProgress> smProgressProvider;
     /**
      * Accepted fingerprints for user in account.
+     * Keyed by strings, as they come from {@link SessionID}.
      */
-    private final NestedNestedMaps<String, Boolean> fingerprints;
+    private final ConcurrentNestedMap<Map<String, Boolean>> fingerprints;
     /**
      * Fingerprint of encrypted or encrypted and verified session for user in account.
      */
-    private final NestedMap<String> actives;
+    private final ConcurrentNestedMap<String> actives;
     /**
      * Finished entity's sessions for users in accounts.
      */
-    private final NestedMap<Boolean> finished;
+    private final ConcurrentNestedMap<Boolean> finished;
     /**
      * Used OTR sessions for users in accounts.
      */
-    private final NestedMap<Session> sessions;
+    private final ConcurrentNestedMap<Session> sessions;
     /**
      * Service for keypair generation.
      */
@@ -138,10 +139,10 @@ public class OTRManager implements OtrEngineHost, OtrEngineListener,
         smRequestProvider = new EntityNotificationProvider<>(R.drawable.ic_stat_help);
         smProgressProvider = new EntityNotificationProvider<>(R.drawable.ic_stat_help);
         smProgressProvider.setCanClearNotifications(false);
-        fingerprints = new NestedNestedMaps<>();
-        actives = new NestedMap<>();
-        finished = new NestedMap<>();
-        sessions = new NestedMap<>();
+        fingerprints = new ConcurrentNestedMap<>();
+        actives = new ConcurrentNestedMap<>();
+        finished = new ConcurrentNestedMap<>();
+        sessions = new ConcurrentNestedMap<>();
         keyPairGenerator = Executors.newSingleThreadExecutor(new ThreadFactory() {
                     @Override
                     public Thread newThread(Runnable runnable) {
@@ -155,14 +156,14 @@ public class OTRManager implements OtrEngineHost, OtrEngineListener,
 
     @Override
     public void onLoad() {
-        final NestedNestedMaps<String, Boolean> fingerprints = new NestedNestedMaps<>();
+        final ConcurrentNestedMap<Map<String, Boolean>> fingerprints = new ConcurrentNestedMap<>();
         Cursor cursor = OTRTable.getInstance().list();
         try {
             if (cursor.moveToFirst()) {
                 do {
                     String account = OTRTable.getAccount(cursor);
                     String user = OTRTable.getUser(cursor);
-                    fingerprints.put(account, user,
+                    putFingerprint(fingerprints, account, user,
                             OTRTable.getFingerprint(cursor),
                             OTRTable.isVerified(cursor));
                 } while (cursor.moveToNext());
@@ -178,7 +179,7 @@ public class OTRManager implements OtrEngineHost, OtrEngineListener,
         });
     }
 
-    private void onLoaded(NestedNestedMaps<String, Boolean> fingerprints) {
+    private void onLoaded(ConcurrentNestedMap<Map<String, Boolean>> fingerprints) {
         this.fingerprints.addAll(fingerprints);
         NotificationManager.getInstance().registerNotificationProvider(smRequestProvider);
         NotificationManager.getInstance().registerNotificationProvider(smProgressProvider);
@@ -389,8 +390,8 @@ public class OTRManager implements OtrEngineHost, OtrEngineListener,
             }
             if (value != null) {
                 actives.put(sessionID.getAccountID(), sessionID.getUserID(), value);
-                if (fingerprints.get(sessionID.getAccountID(), sessionID.getUserID(), value) == null) {
-                    fingerprints.put(sessionID.getAccountID(), sessionID.getUserID(), value, false);
+                if (getFingerprint(sessionID.getAccountID(), sessionID.getUserID(), value) == null) {
+                    putFingerprint(fingerprints, sessionID.getAccountID(), sessionID.getUserID(), value, false);
                     requestToWrite(sessionID.getAccountID(), sessionID.getUserID(), value, false);
                 }
             }
@@ -531,13 +532,31 @@ public class OTRManager implements OtrEngineHost, OtrEngineListener,
         if (active == null) {
             return false;
         }
-        Boolean value = fingerprints.get(account, user, active);
+        Boolean value = getFingerprint(account, user, active);
         return value != null && value;
     }
 
+    @Nullable
+    private Boolean getFingerprint(String account, String user, String fingerprint) {
+        Map<String, Boolean> values = fingerprints.get(account, user);
+        return values == null ? null : values.get(fingerprint);
+    }
+
+    private static void putFingerprint(ConcurrentNestedMap<Map<String, Boolean>> fingerprints,
+                                       String account, String user, String fingerprint, boolean verified) {
+        synchronized (fingerprints) {
+            Map<String, Boolean> values = fingerprints.get(account, user);
+            if (values == null) {
+                values = new ConcurrentHashMap<>();
+                fingerprints.put(account, user, values);
+            }
+            values.put(fingerprint, verified);
+        }
+    }
+
 
     private void setVerifyWithoutNotification(String account, String user, String fingerprint, boolean value) {
-        fingerprints.put(account, user, fingerprint, value);
+        putFingerprint(fingerprints, account, user, fingerprint, value);
         requestToWrite(account, user, fingerprint, value);
     }
 
@@ -759,9 +778,7 @@ public class OTRManager implements OtrEngineHost, OtrEngineListener,
 
     private void endAllSessions() {
         LogManager.i(this, "End all sessions");
-        NestedMap<String> entities = new NestedMap<>();
-        entities.addAll(actives);
-        for (Entry<String> entry : entities) {
+        for (Entry<String> entry : actives) {
             try {
                 endSession(entry.getFirst(), entry.getSecond());
             } catch (NetworkException e) {
@@ -772,15 +789,12 @@ public class OTRManager implements OtrEngineHost, OtrEngineListener,
 
     private void refreshSessions(AccountJid accountJid) {
         LogManager.i(this, "refresh all sessions for account " + accountJid);
-        NestedMap<String> entities = new NestedMap<>();
-        entities.addAll(actives);
-        for (Entry<String> entry : entities) {
-            if (entry.getFirst().equals(accountJid.toString())) {
-                try {
-                    refreshSession(entry.getFirst(), entry.getSecond());
-                } catch (NetworkException e) {
-                    e.printStackTrace();
-                }
+        String account = accountJid.toString();
+        for (String user : actives.getNested(account).keySet()) {
+            try {
+                refreshSession(account, user);
+            } catch (NetworkException e) {
+                e.printStackTrace();
             }
         }
     }
@@ -14,13 +14,23 @@ public class RefFile {
     public static final String ELEMENT_SIZE = "size";
     public static final String ELEMENT_DURATION = "duration";
 
-    private String mediaType;
-    private String name;
-    private String desc;
-    private int height;
-    private int width;
-    private long size;
-    private long duration;
+    private final String mediaType;
+    private final String name;
+    private final String desc;
+    private final int height;
+    private final int width;
+    private final long size;
+    private final long duration;
+
+    private RefFile(Builder builder) {
+        mediaType = builder.mediaType;
+        name = builder.name;
+        desc = builder.desc;
+        height = builder.height;
+        width = builder.width;
+        size = builder.size;
+        duration = builder.duration;
+    }
 
     public String getMediaType() {
         return mediaType;
@@ -93,48 +103,70 @@ public class RefFile {
     }
 
     public static Builder newBuilder() {
-        return new RefFile().new Builder();
+        return new Builder();
     }
 
-    public class Builder {
+    /**
+     * Can be reused: {@link #build()} creates new file, {@link #clear()} resets values.
+     */
+    public static class Builder {
+        private String mediaType;
+        private String name;
+        private String desc;
+        private int height;
+        private int width;
+        private long size;
+        private long duration;
+
         private Builder() {}
 
         public RefFile build() {
-            return RefFile.this;
+            return new RefFile(this);
+        }
+
+        public Builder clear() {
+            mediaType = null;
+            name = null;
+            desc = null;
+            height = 0;
+            width = 0;
+            size = 0;
+            duration = 0;
+            return this;
         }
 
         public Builder setMediaType(String mediaType) {
-            RefFile.this.mediaType = mediaType;
+            this.mediaType = mediaType;
             return this;
         }
 
         public Builder setName(String name) {
-            RefFile.this.name = name;
+            this.name = name;
             return this;
         }
 
         public Builder setDesc(String desc) {
-            RefFile.this.desc = desc;
+            this.desc = desc;
             return this;
         }
 
         public Builder setHeight(int height) {
-            RefFile.this.height = height;
+            this.height = height;
             return this;
         }
 
         public Builder setWidth(int width) {
-            RefFile.this.width = width;
+            this.width = width;
             return this;
         }
 
         public Builder setSize(long size) {
-            RefFile.this.size = size;
+            this.size = size;
             return this;
         }
 
         public Builder setDuration(long duration) {
-            RefFile.this.duration = duration;
+            this.duration = duration;
             return this;
         }
     }
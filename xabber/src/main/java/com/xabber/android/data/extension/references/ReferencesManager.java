@@ -6,7 +6,7 @@ import android.util.Pair;
 import com.xabber.android.data.database.messagerealm.Attachment;
 import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.ui.text.ClickSpan;
-import com.xabber.android.utils.Utils;
+import com.xabber.android.utils.HtmlUtils;
 
 import org.jivesoftware.smack.packet.ExtensionElement;
 import org.jivesoftware.smack.packet.Message;
@@ -105,7 +105,7 @@ public class ReferencesManager {
         if (references.isEmpty()) return new Pair<>(body, null);
 
         // encode HTML and split into chars
-        String[] chars = stringToChars(Utils.xmlEncode(body));
+        String[] chars = stringToChars(HtmlUtils.xmlEncode(body));
 
         // modify chars with references except markup and mention
         for (ReferenceElement reference : references) {
@@ -197,7 +197,7 @@ public class ReferencesManager {
     }
 
     private static String[] quote(int begin, int end, String[] source, Quote reference) {
-        int del = Utils.xmlEncode(reference.getMarker()).length();
+        int del = HtmlUtils.xmlEncode(reference.getMarker()).length();
         int removed = 0;
         for (int i = begin; i <= end; i++) {
             if (removed < del) {
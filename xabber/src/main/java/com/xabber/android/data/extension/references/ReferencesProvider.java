@@ -12,11 +12,23 @@ import java.util.List;
 
 public class ReferencesProvider extends ExtensionElementProvider<ReferenceElement> {
 
+    /**
+     * Provider is shared by connections, each of them parses stanzas in its own thread.
+     * Media references come in pages of archive, so file builder is reused by thread.
+     */
+    private final ThreadLocal<RefFile.Builder> fileBuilder = new ThreadLocal<RefFile.Builder>() {
+        @Override
+        protected RefFile.Builder initialValue() {
+            return RefFile.newBuilder();
+        }
+    };
+
     @Override
     public ReferenceElement parse(XmlPullParser parser, int initialDepth) throws Exception {
         String type = null, beginS = null, endS = null, marker = null, uri = null;
-        List<Forwarded> forwardedMessages = new ArrayList<>();
-        List<RefMedia> mediaElements = new ArrayList<>();
+        // most of references are markup or mention, so lists are created on demand
+        List<Forwarded> forwardedMessages = null;
+        List<RefMedia> mediaElements = null;
         boolean bold = false, italic = false, underline = false, strike = false;
         RefUser user = null;
 
@@ -24,42 +36,64 @@ public class ReferencesProvider extends ExtensionElementProvider<ReferenceElemen
             int eventType = parser.getEventType();
             switch (eventType) {
                 case XmlPullParser.START_TAG:
-                    if (ReferenceElement.ELEMENT.equals(parser.getName())
-                            && ReferenceElement.NAMESPACE.equals(parser.getNamespace())) {
-                        type = parser.getAttributeValue("", ReferenceElement.ATTRIBUTE_TYPE);
-                        beginS = parser.getAttributeValue("", ReferenceElement.ATTRIBUTE_BEGIN);
-                        endS = parser.getAttributeValue("", ReferenceElement.ATTRIBUTE_END);
-                        parser.next();
-                    } else if (Forwarded.ELEMENT.equals(parser.getName())
-                            && Forwarded.NAMESPACE.equals(parser.getNamespace())) {
-                        Forwarded forwarded = ForwardedProvider.INSTANCE.parse(parser);
-                        if (forwarded != null) forwardedMessages.add(forwarded);
-                        parser.next();
-                    } else if (RefMedia.ELEMENT.equals(parser.getName())) {
-                        RefMedia media = parseMedia(parser);
-                        if (media != null) mediaElements.add(media);
-                        parser.next();
-                    } else if (RefUser.ELEMENT.equals(parser.getName())
-                            && RefUser.NAMESPACE.equals(parser.getNamespace())) {
-                        user = parseUser(parser);
-                        parser.next();
-                    } else if (ReferenceElement.ELEMENT_BOLD.equals(parser.getName())) {
-                        bold = true;
-                        parser.next();
-                    } else if (ReferenceElement.ELEMENT_ITALIC.equals(parser.getName())) {
-                        italic = true;
-                        parser.next();
-                    } else if (ReferenceElement.ELEMENT_UNDERLINE.equals(parser.getName())) {
-                        underline = true;
-                        parser.next();
-                    } else if (ReferenceElement.ELEMENT_STRIKE.equals(parser.getName())) {
-                        strike = true;
-                        parser.next();
-                    } else if (ReferenceElement.ELEMENT_URI.equals(parser.getName())) {
-                        uri = parser.nextText();
-                    } else if (ReferenceElement.ELEMENT_MARKER.equals(parser.getName())) {
-                        marker = parser.nextText();
-                    } else parser.next();
+                    switch (parser.getName()) {
+                        case ReferenceElement.ELEMENT:
+                            if (ReferenceElement.NAMESPACE.equals(parser.getNamespace())) {
+                                type = parser.getAttributeValue("", ReferenceElement.ATTRIBUTE_TYPE);
+                                beginS = parser.getAttributeValue("", ReferenceElement.ATTRIBUTE_BEGIN);
+                                endS = parser.getAttributeValue("", ReferenceElement.ATTRIBUTE_END);
+                            }
+                            parser.next();
+                            break;
+                        case Forwarded.ELEMENT:
+                            if (Forwarded.NAMESPACE.equals(parser.getNamespace())) {
+                                Forwarded forwarded = ForwardedProvider.INSTANCE.parse(parser);
+                                if (forwarded != null) {
+                                    if (forwardedMessages == null) forwardedMessages = new ArrayList<>(1);
+                                    forwardedMessages.add(forwarded);
+                                }
+                            }
+                            parser.next();
+                            break;
+                        case RefMedia.ELEMENT:
+                            RefMedia media = parseMedia(parser);
+                            if (media != null) {
+                                if (mediaElements == null) mediaElements = new ArrayList<>(1);
+                                mediaElements.add(media);
+                            }
+                            parser.next();
+                            break;
+                        case RefUser.ELEMENT:
+                            if (RefUser.NAMESPACE.equals(parser.getNamespace())) {
+                                user = parseUser(parser);
+                            }
+                            parser.next();
+                            break;
+                        case ReferenceElement.ELEMENT_BOLD:
+                            bold = true;
+                            parser.next();
+                            break;
+                        case ReferenceElement.ELEMENT_ITALIC:
+                            italic = true;
+                            parser.next();
+                            break;
+                        case ReferenceElement.ELEMENT_UNDERLINE:
+                            underline = true;
+                            parser.next();
+                            break;
+                        case ReferenceElement.ELEMENT_STRIKE:
+                            strike = true;
+                            parser.next();
+                            break;
+                        case ReferenceElement.ELEMENT_URI:
+                            uri = parser.nextText();
+                            break;
+                        case ReferenceElement.ELEMENT_MARKER:
+                            marker = parser.nextText();
+                            break;
+                        default:
+                            parser.next();
+                    }
                     break;
                 case XmlPullParser.END_TAG:
                     if (ReferenceElement.ELEMENT.equals(parser.getName())) {
@@ -72,16 +106,18 @@ public class ReferencesProvider extends ExtensionElementProvider<ReferenceElemen
         }
 
         int begin = 0, end = 0;
-        if (beginS != null && !beginS.isEmpty()) begin = Integer.valueOf(beginS);
-        if (endS != null && !endS.isEmpty()) end = Integer.valueOf(endS);
+        if (beginS != null && !beginS.isEmpty()) begin = Integer.parseInt(beginS);
+        if (endS != null && !endS.isEmpty()) end = Integer.parseInt(endS);
 
         try {
             ReferenceElement.Type refType = ReferenceElement.Type.valueOf(type);
             switch (refType) {
                 case forward:
-                    return new Forward(begin, end, forwardedMessages);
+                    return new Forward(begin, end, forwardedMessages != null
+                            ? forwardedMessages : new ArrayList<Forwarded>());
                 case media:
-                    return new Media(begin, end, mediaElements);
+                    return new Media(begin, end, mediaElements != null
+                            ? mediaElements : new ArrayList<RefMedia>());
                 case markup:
                     return new Markup(begin, end, bold, italic, underline, strike, uri);
                 case quote:
@@ -130,7 +166,7 @@ public class ReferencesProvider extends ExtensionElementProvider<ReferenceElemen
     }
 
     private RefFile parseFile(XmlPullParser parser) throws Exception {
-        RefFile.Builder builder = RefFile.newBuilder();
+        RefFile.Builder builder = fileBuilder.get().clear();
 
         parser.next();
         outerloop: while (true) {
@@ -148,16 +184,16 @@ public class ReferencesProvider extends ExtensionElementProvider<ReferenceElemen
                             builder.setDesc(parser.nextText());
                             break;
                         case RefFile.ELEMENT_HEIGHT:
-                            builder.setHeight(Integer.valueOf(parser.nextText()));
+                            builder.setHeight(Integer.parseInt(parser.nextText()));
                             break;
                         case RefFile.ELEMENT_WIDTH:
-                            builder.setWidth(Integer.valueOf(parser.nextText()));
+                            builder.setWidth(Integer.parseInt(parser.nextText()));
                             break;
                         case RefFile.ELEMENT_SIZE:
-                            builder.setSize(Long.valueOf(parser.nextText()));
+                            builder.setSize(Long.parseLong(parser.nextText()));
                             break;
                         case RefFile.ELEMENT_DURATION:
-                            builder.setDuration(Long.valueOf(parser.nextText()));
+                            builder.setDuration(Long.parseLong(parser.nextText()));
                             break;
                         default:
                             parser.next();
@@ -23,7 +23,7 @@ import com.xabber.android.data.connection.StanzaSender;
 import com.xabber.android.data.connection.TLSMode;
 import com.xabber.android.data.connection.listeners.OnPacketListener;
 import com.xabber.android.data.entity.AccountJid;
-import com.xabber.android.data.entity.NestedMap;
+import com.xabber.android.data.entity.ConcurrentNestedMap;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.xmpp.archive.OtrMode;
 import com.xabber.xmpp.ssn.DisclosureValue;
@@ -53,12 +53,12 @@ public class SSNManager implements OnPacketListener, OnAccountRemovedListener {
     /**
      * Session state for the session id in account.
      */
-    private final NestedMap<SessionState> sessionStates;
+    private final ConcurrentNestedMap<SessionState> sessionStates;
 
     /**
      * OTR encryption mode for the session id in account.
      */
-    private final NestedMap<OtrMode> sessionOtrs;
+    private final ConcurrentNestedMap<OtrMode> sessionOtrs;
 
     private static SSNManager instance;
 
@@ -71,8 +71,8 @@ public class SSNManager implements OnPacketListener, OnAccountRemovedListener {
     }
 
     private SSNManager() {
-        sessionStates = new NestedMap<>();
-        sessionOtrs = new NestedMap<>();
+        sessionStates = new ConcurrentNestedMap<>();
+        sessionOtrs = new ConcurrentNestedMap<>();
     }
 
     @Override
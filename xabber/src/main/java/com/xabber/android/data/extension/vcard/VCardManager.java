@@ -29,8 +29,10 @@ import com.xabber.android.data.connection.listeners.OnPacketListener;
 import com.xabber.android.data.database.sqlite.VCardTable;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.extension.avatar.AvatarManager;
 import com.xabber.android.data.extension.blocking.BlockingManager;
+import com.xabber.android.data.extension.csi.ClientStateManager;
 import com.xabber.android.data.extension.muc.MUCManager;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.roster.OnRosterChangedListener;
@@ -178,7 +180,7 @@ public class VCardManager implements OnLoadListener, OnPacketListener,
      * Requests vCard.
      */
     public void request(final AccountJid account, final Jid jid) {
-        Application.getInstance().runInBackground(new Runnable() {
+        ClientStateManager.getInstance().runWhenActive("vcard " + account + " " + jid, account, new Runnable() {
             @Override
             public void run() {
                 getVCard(account, jid);
@@ -252,7 +254,7 @@ public class VCardManager implements OnLoadListener, OnPacketListener,
                 .getManagers(OnRosterChangedListener.class)) {
             listener.onContactStructuredInfoChanged(rosterContact, name);
         }
-        Application.getInstance().runInBackground(new Runnable() {
+        Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
             @Override
             public void run() {
                 VCardTable.getInstance().write(bareAddress.toString(), name);
@@ -1,38 +1,98 @@
 package com.xabber.android.data.groupchat;
 
+import android.os.Looper;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
 import com.xabber.android.data.Application;
-import com.xabber.android.data.OnLoadListener;
 import com.xabber.android.data.database.RealmManager;
 import com.xabber.android.data.database.messagerealm.GroupchatUserRealm;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.extension.references.RefUser;
+import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.metrics.Gauge;
+import com.xabber.android.data.metrics.MetricsManager;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import io.realm.Realm;
-import io.realm.RealmResults;
 
-public class GroupchatUserManager implements OnLoadListener {
+/**
+ * Groupchat users by id.
+ * <p/>
+ * Only recently used users are kept in memory, others are read from Realm on demand.
+ * Changes are written in batches once per {@link #WRITE_DELAY}, repeated changes of the same
+ * user in one batch are written once.
+ */
+public class GroupchatUserManager {
+
+    private static final String LOG_TAG = GroupchatUserManager.class.getSimpleName();
+
+    private static final int CACHE_SIZE = 512;
+    private static final long WRITE_DELAY = 1000;
+
+    /**
+     * Cached result of lookup of unknown id.
+     */
+    private static final GroupchatUser MISSING = new GroupchatUser(null);
 
     private static GroupchatUserManager instance;
-    private final Map<String, GroupchatUser> users = new HashMap<>();
+
+    private final LruCache<String, GroupchatUser> users = new LruCache<>(CACHE_SIZE);
+
+    /**
+     * Users to be written by id, guarded by itself.
+     */
+    private final Map<String, GroupchatUserRealm> pendingWrites = new LinkedHashMap<>();
+    private boolean writeScheduled;
+
+    private final Runnable writeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
+                @Override
+                public void run() {
+                    writePendingUsers();
+                }
+            });
+        }
+    };
 
     public static GroupchatUserManager getInstance() {
         if (instance == null) instance = new GroupchatUserManager();
         return instance;
     }
 
-    @Override
-    public void onLoad() {
-        Realm realm = RealmManager.getInstance().getNewBackgroundRealm();
-        RealmResults<GroupchatUserRealm> users = realm.where(GroupchatUserRealm.class).findAll();
-        for (GroupchatUserRealm user : users) {
-            this.users.put(user.getUniqueId(), realmUserToUser(user));
-        }
+    private GroupchatUserManager() {
+        MetricsManager.getInstance().registerGauge("groupchat.users.cached", new Gauge() {
+            @Override
+            public long getValue() {
+                return users.size();
+            }
+        });
     }
 
-    public GroupchatUser getGroupchatUser(String id) {
-        return users.get(id);
+    @Nullable
+    public GroupchatUser getGroupchatUser(@Nullable String id) {
+        if (id == null) return null;
+
+        GroupchatUser user = users.get(id);
+        if (user == null) {
+            GroupchatUser loaded = loadUser(id);
+            // user could be saved while loading
+            synchronized (this) {
+                user = users.get(id);
+                if (user == null) {
+                    user = loaded;
+                    users.put(id, user);
+                }
+            }
+        }
+        return user == MISSING ? null : user;
     }
 
     public void saveGroupchatUser(RefUser user) {
@@ -40,30 +100,76 @@ public class GroupchatUserManager implements OnLoadListener {
     }
 
     public void saveGroupchatUser(RefUser user, long timestamp) {
-        if (!users.containsKey(user.getId())) {
-            saveUser(user, timestamp);
-        } else if (timestamp > users.get(user.getId()).getTimestamp()) {
-            saveUser(user, timestamp);
+        String id = user.getId();
+        GroupchatUser current = users.get(id);
+        // don't hold the lock while reading Realm, UI thread waits for it in getGroupchatUser
+        if (current == null) current = loadUser(id);
+
+        synchronized (this) {
+            // user could be saved or loaded by another thread meanwhile
+            GroupchatUser cached = users.get(id);
+            if (cached != null) {
+                current = cached;
+            } else {
+                users.put(id, current);
+            }
+            if (current == MISSING || timestamp > current.getTimestamp()) {
+                saveUser(user, timestamp);
+            }
         }
     }
 
     private void saveUser(RefUser user, long timestamp) {
-        users.put(user.getId(), refUserToUser(user));
-        saveGroupchatUserToRealm(refUserToRealm(user), timestamp);
+        users.put(user.getId(), refUserToUser(user, timestamp));
+
+        GroupchatUserRealm realmUser = refUserToRealm(user);
+        realmUser.setTimestamp(timestamp);
+        synchronized (pendingWrites) {
+            pendingWrites.put(user.getId(), realmUser);
+            if (!writeScheduled) {
+                writeScheduled = true;
+                Application.getInstance().runOnUiThreadDelay(writeRunnable, WRITE_DELAY);
+            }
+        }
     }
 
-    private void saveGroupchatUserToRealm(final GroupchatUserRealm user, final long timestamp) {
-        Application.getInstance().runInBackgroundUserRequest(new Runnable() {
+    private void writePendingUsers() {
+        final List<GroupchatUserRealm> realmUsers;
+        synchronized (pendingWrites) {
+            writeScheduled = false;
+            realmUsers = new ArrayList<>(pendingWrites.values());
+            pendingWrites.clear();
+        }
+        if (realmUsers.isEmpty()) return;
+
+        final long startTime = System.currentTimeMillis();
+        Realm realm = RealmManager.getInstance().getNewBackgroundRealm();
+        realm.executeTransaction(new Realm.Transaction() {
             @Override
-            public void run() {
-                user.setTimestamp(timestamp);
-                Realm realm = RealmManager.getInstance().getNewBackgroundRealm();
-                realm.beginTransaction();
-                realm.copyToRealmOrUpdate(user);
-                realm.commitTransaction();
-                realm.close();
+            public void execute(Realm realm) {
+                realm.copyToRealmOrUpdate(realmUsers);
             }
         });
+        realm.close();
+        LogManager.d(LOG_TAG, "save " + realmUsers.size() + " groupchat users: "
+                + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    private GroupchatUser loadUser(String id) {
+        synchronized (pendingWrites) {
+            GroupchatUserRealm pending = pendingWrites.get(id);
+            if (pending != null) return realmUserToUser(pending);
+        }
+
+        boolean uiThread = Looper.myLooper() == Looper.getMainLooper();
+        Realm realm = uiThread ? RealmManager.getInstance().getRealmUiThread()
+                : RealmManager.getInstance().getNewBackgroundRealm();
+        GroupchatUserRealm realmUser = realm.where(GroupchatUserRealm.class)
+                .equalTo(GroupchatUserRealm.Fields.UNIQUE_ID, id)
+                .findFirst();
+        GroupchatUser user = realmUser == null ? MISSING : realmUserToUser(realmUser);
+        if (!uiThread) realm.close();
+        return user;
     }
 
     private GroupchatUserRealm refUserToRealm(RefUser user) {
@@ -76,13 +182,14 @@ public class GroupchatUserManager implements OnLoadListener {
         return realmUser;
     }
 
-    private GroupchatUser refUserToUser(RefUser refUser) {
+    private GroupchatUser refUserToUser(RefUser refUser, long timestamp) {
         GroupchatUser user = new GroupchatUser(refUser.getId());
         user.setAvatar(refUser.getAvatar());
         user.setBadge(refUser.getBadge());
         user.setJid(refUser.getJid());
         user.setNickname(refUser.getNickname());
         user.setRole(refUser.getRole());
+        user.setTimestamp(timestamp);
         return user;
     }
 
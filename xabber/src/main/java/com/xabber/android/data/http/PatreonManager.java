@@ -9,6 +9,7 @@ import com.xabber.android.data.database.RealmManager;
 import com.xabber.android.data.database.realm.PatreonGoalRealm;
 import com.xabber.android.data.database.realm.PatreonRealm;
 import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.metrics.MetricsManager;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -112,6 +113,7 @@ public class PatreonManager implements OnLoadListener {
         realm.close();
         LogManager.d("REALM", Thread.currentThread().getName()
                 + " save patreon data: " + (System.currentTimeMillis() - startTime));
+        MetricsManager.getInstance().getHistogram("realm.patreon.save").recordMillisSince(startTime);
 
         Log.d(LOG_TAG, "Patreon was saved to Realm");
 
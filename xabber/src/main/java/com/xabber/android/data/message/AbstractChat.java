@@ -29,22 +29,25 @@ import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.BaseEntity;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.extension.carbons.CarbonManager;
 import com.xabber.android.data.extension.chat_markers.BackpressureMessageReader;
 import com.xabber.android.data.extension.cs.ChatStateManager;
+import com.xabber.android.data.extension.file.AttachmentMetadata;
 import com.xabber.android.data.extension.file.FileManager;
 import com.xabber.android.data.extension.file.UriUtils;
-import com.xabber.android.data.extension.httpfileupload.HttpFileUploadManager;
 import com.xabber.android.data.extension.muc.MUCManager;
 import com.xabber.android.data.extension.otr.OTRManager;
 import com.xabber.android.data.extension.references.ReferenceElement;
 import com.xabber.android.data.extension.references.ReferencesManager;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.message.chat.ChatManager;
+import com.xabber.android.data.message.search.MessageSearchManager;
+import com.xabber.android.data.metrics.MetricsManager;
 import com.xabber.android.data.notification.MessageNotificationManager;
 import com.xabber.android.data.notification.NotificationManager;
 import com.xabber.android.data.roster.RosterCacheManager;
-import com.xabber.android.utils.Utils;
+import com.xabber.android.utils.HtmlUtils;
 import com.xabber.xmpp.sid.OriginIdElement;
 import com.xabber.xmpp.sid.UniqStanzaHelper;
 
@@ -68,6 +71,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.realm.Realm;
 import io.realm.RealmChangeListener;
@@ -88,6 +92,11 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
      */
     public static final int PRELOADED_MESSAGES = 50;
 
+    /**
+     * Number of sent messages committed at once.
+     */
+    private static final int SEND_BATCH_SIZE = 50;
+
     /**
      * Whether chat is open and should be displayed as active chat.
      */
@@ -112,6 +121,11 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
 
     private Set<String> waitToMarkAsRead = new HashSet<>();
 
+    /**
+     * Increased on each change of last message, unread count, archived or notification state.
+     */
+    private final AtomicInteger summaryVersion = new AtomicInteger();
+
     private boolean isPrivateMucChat;
     private boolean isPrivateMucChatAccepted;
 
@@ -125,6 +139,10 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
     private boolean historyRequestedAtStart = false;
     protected boolean isGroupchat = false;
 
+    private final Object sendLock = new Object();
+    private boolean sendRunning;
+    private boolean sendRequested;
+
     protected AbstractChat(@NonNull final AccountJid account, @NonNull final UserJid user, boolean isPrivateMucChat) {
         super(account, isPrivateMucChat ? user : user.getBareUserJid());
         threadId = StringUtils.randomString(12);
@@ -318,13 +336,22 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
         if (ui) BackpressureMessageSaver.getInstance().saveMessageItem(messageItem);
         else {
             final long startTime = System.currentTimeMillis();
-            Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
-            realm.executeTransactionAsync(new Realm.Transaction() {
+            Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
                 @Override
-                public void execute(Realm realm) {
-                    realm.copyToRealm(messageItem);
+                public void run() {
+                    Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+                    realm.executeTransaction(new Realm.Transaction() {
+                        @Override
+                        public void execute(Realm realm) {
+                            realm.copyToRealm(messageItem);
+                        }
+                    });
+                    realm.close();
+                    MessageSnapshotCache.getInstance().invalidate(account, user);
+                    MessageSearchManager.getInstance().onMessagesSaved(messageItem.getUniqueId());
                     LogManager.d("REALM", Thread.currentThread().getName()
                             + " save message item: " + (System.currentTimeMillis() - startTime));
+                    MetricsManager.getInstance().getHistogram("realm.message.save").recordMillisSince(startTime);
                     EventBus.getDefault().post(new NewMessageEvent());
                 }
             });
@@ -448,13 +475,14 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
         Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
         final String messageId = UUID.randomUUID().toString();
 
+        // read metadata of files out of transaction to not block other writers
+        final RealmList<Attachment> attachments;
+        if (files != null) attachments = attachmentsFromFiles(files);
+        else attachments = attachmentsFromUris(uris);
+
         realm.executeTransaction(new Realm.Transaction() {
             @Override
             public void execute(Realm realm) {
-                RealmList<Attachment> attachments;
-                if (files != null) attachments = attachmentsFromFiles(files);
-                else attachments = attachmentsFromUris(uris);
-
                 MessageItem messageItem = new MessageItem(messageId);
                 messageItem.setAccount(account);
                 messageItem.setUser(user);
@@ -470,27 +498,25 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
                 realm.copyToRealm(messageItem);
             }
         });
+        realm.close();
+        MessageSnapshotCache.getInstance().invalidate(account, user);
+        MessageSearchManager.getInstance().onMessagesSaved(messageId);
 
         return messageId;
     }
 
-    public RealmList<Attachment> attachmentsFromFiles(List<File> files) {
+    /**
+     * @return unmanaged attachments with metadata read from files. Must not be called from UI thread.
+     */
+    public static RealmList<Attachment> attachmentsFromFiles(List<File> files) {
         RealmList<Attachment> attachments = new RealmList<>();
         for (File file : files) {
             Attachment attachment = new Attachment();
             attachment.setFilePath(file.getPath());
-            attachment.setFileSize(file.length());
             attachment.setTitle(file.getName());
             attachment.setIsImage(FileManager.fileIsImage(file));
-            attachment.setMimeType(HttpFileUploadManager.getMimeType(file.getPath()));
             attachment.setDuration((long) 0);
-
-            if (attachment.isImage()) {
-                HttpFileUploadManager.ImageSize imageSize =
-                        HttpFileUploadManager.getImageSizes(file.getPath());
-                attachment.setImageHeight(imageSize.getHeight());
-                attachment.setImageWidth(imageSize.getWidth());
-            }
+            AttachmentMetadata.fill(attachment, file);
             attachments.add(attachment);
         }
         return attachments;
@@ -601,7 +627,7 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
     }
 
     private int getSizeOfEncodedChars(String str) {
-        return Utils.xmlEncode(str).toCharArray().length;
+        return HtmlUtils.xmlEncode(str).toCharArray().length;
     }
 
     /**
@@ -614,31 +640,72 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
     }
 
 
+    /**
+     * Sends unsent messages in order of creation. Calls made while messages are being sent
+     * are merged into one more pass, so chat has at most one send task at a time.
+     */
     public void sendMessages() {
+        synchronized (sendLock) {
+            if (sendRunning) {
+                sendRequested = true;
+                return;
+            }
+            sendRunning = true;
+        }
         Application.getInstance().runInBackgroundUserRequest(new Runnable() {
             @Override
             public void run() {
-                Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+                while (true) {
+                    synchronized (sendLock) {
+                        sendRequested = false;
+                    }
+                    try {
+                        sendUnsentMessages();
+                    } catch (RuntimeException e) {
+                        LogManager.exception(this, e);
+                    }
+                    synchronized (sendLock) {
+                        if (!sendRequested) {
+                            sendRunning = false;
+                            return;
+                        }
+                    }
+                }
+            }
+        });
+    }
 
-                RealmResults<MessageItem> messagesToSend = realm.where(MessageItem.class)
-                        .equalTo(MessageItem.Fields.ACCOUNT, account.toString())
-                        .equalTo(MessageItem.Fields.USER, user.toString())
-                        .equalTo(MessageItem.Fields.SENT, false)
-                        .findAllSorted(MessageItem.Fields.TIMESTAMP, Sort.ASCENDING);
+    private void sendUnsentMessages() {
+        // usually there is nothing to send, don't open Realm and write transaction for it
+        if (!MessageSnapshotCache.getInstance().hasUnsentMessages(account, user)) return;
 
-                realm.beginTransaction();
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
 
-                for (final MessageItem messageItem : messagesToSend) {
-                    if (messageItem.isInProgress()) continue;
-                    if (!sendMessage(messageItem)) {
-                        break;
-                    }
-                }
-                realm.commitTransaction();
+        RealmResults<MessageItem> messagesToSend = realm.where(MessageItem.class)
+                .equalTo(MessageItem.Fields.ACCOUNT, account.toString())
+                .equalTo(MessageItem.Fields.USER, user.toString())
+                .equalTo(MessageItem.Fields.SENT, false)
+                .findAllSorted(MessageItem.Fields.TIMESTAMP, Sort.ASCENDING);
 
-                realm.close();
+        realm.beginTransaction();
+
+        int count = 0;
+        for (final MessageItem messageItem : messagesToSend) {
+            if (messageItem.isInProgress()) continue;
+            if (!sendMessage(realm, messageItem)) {
+                break;
             }
-        });
+            // don't hold write lock while long backlog is sent
+            if (++count % SEND_BATCH_SIZE == 0) {
+                realm.commitTransaction();
+                MessageSnapshotCache.getInstance().invalidate(account, user);
+                realm.beginTransaction();
+            }
+        }
+        realm.commitTransaction();
+
+        realm.close();
+        MessageSnapshotCache.getInstance().invalidate(account, user);
     }
 
     protected boolean canSendMessage() {
@@ -646,7 +713,7 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
     }
 
     @SuppressWarnings("WeakerAccess")
-    boolean sendMessage(MessageItem messageItem) {
+    boolean sendMessage(Realm realm, MessageItem messageItem) {
         String text = prepareText(messageItem.getText());
         messageItem.setEncrypted(OTRManager.getInstance().isEncrypted(text));
         Long timestamp = messageItem.getTimestamp();
@@ -667,7 +734,6 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
                     messageItem.getAttachments(), text);
 
         } else if (messageItem.haveForwardedMessages()) {
-            Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
             RealmResults<MessageItem> items = realm.where(MessageItem.class)
                     .in(MessageItem.Fields.UNIQUE_ID, messageItem.getForwardedIdsAsArray()).findAll();
 
@@ -704,25 +770,12 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
             }
 
             final String messageId = messageItem.getUniqueId();
+            MessageStateSaver.getInstance().onSent(messageId);
             try {
                 StanzaSender.sendStanza(account, message, new StanzaListener() {
                     @Override
                     public void processStanza(Stanza packet) throws SmackException.NotConnectedException {
-                        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
-                        realm.executeTransaction(new Realm.Transaction() {
-                                @Override
-                                public void execute(Realm realm) {
-                                    MessageItem acknowledgedMessage = realm
-                                            .where(MessageItem.class)
-                                            .equalTo(MessageItem.Fields.UNIQUE_ID, messageId)
-                                            .findFirst();
-
-                                    if (acknowledgedMessage != null) {
-                                        acknowledgedMessage.setAcknowledged(true);
-                                    }
-                                }
-                            });
-                        realm.close();
+                        MessageStateSaver.getInstance().onAcknowledged(messageId);
                     }
                 });
             } catch (NetworkException e) {
@@ -766,6 +819,9 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
 
     /**
      * Processes incoming packet.
+     * <p/>
+     * {@link MessageManager} routes packets by the chat's user, so overriding methods must call
+     * super and mustn't accept packets from other addresses.
      *
      * @param userJid
      * @param packet
@@ -803,8 +859,8 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
     @Override
     public void onChange(RealmResults<MessageItem> messageItems) {
         updateLastMessage();
-        RosterCacheManager.saveLastMessageToContact(
-                MessageDatabaseManager.getInstance().getRealmUiThread(), lastMessage);
+        summaryVersion.incrementAndGet();
+        RosterCacheManager.saveLastMessageToContact(lastMessage);
     }
 
     /** UNREAD MESSAGES */
@@ -830,6 +886,7 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
         for (String id : ids) {
             waitToMarkAsRead.remove(id);
         }
+        summaryVersion.incrementAndGet();
         EventBus.getDefault().post(new MessageUpdateEvent(account, user));
     }
 
@@ -856,6 +913,7 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
     }
 
     private void executeRead(MessageItem messageItem, boolean trySendDisplay) {
+        summaryVersion.incrementAndGet();
         EventBus.getDefault().post(new MessageUpdateEvent(account, user));
         BackpressureMessageReader.getInstance().markAsRead(messageItem, trySendDisplay);
     }
@@ -876,12 +934,20 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
 
     /** ^ UNREAD MESSAGES ^ */
 
+    /**
+     * @return stamp of last message, unread count, archived and notification state.
+     */
+    public int getSummaryVersion() {
+        return summaryVersion.get();
+    }
+
     public boolean isArchived() {
         return archived;
     }
 
     public void setArchived(boolean archived, boolean needSaveToRealm) {
         this.archived = archived;
+        summaryVersion.incrementAndGet();
         if (needSaveToRealm) ChatManager.getInstance().saveOrUpdateChatDataToRealm(this);
     }
 
@@ -891,6 +957,7 @@ public abstract class AbstractChat extends BaseEntity implements RealmChangeList
 
     public void setNotificationState(NotificationState notificationState, boolean needSaveToRealm) {
         this.notificationState = notificationState;
+        summaryVersion.incrementAndGet();
         if (notificationState.getMode() == NotificationState.NotificationMode.disabled && needSaveToRealm)
             NotificationManager.getInstance().removeMessageNotification(account, user);
         if (needSaveToRealm) ChatManager.getInstance().saveOrUpdateChatDataToRealm(this);
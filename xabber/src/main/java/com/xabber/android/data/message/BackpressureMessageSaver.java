@@ -3,6 +3,7 @@ package com.xabber.android.data.message;
 import com.xabber.android.data.database.MessageDatabaseManager;
 import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.message.search.MessageSearchManager;
 import com.xabber.android.data.push.SyncManager;
 
 import org.greenrobot.eventbus.EventBus;
@@ -59,6 +60,8 @@ public class BackpressureMessageSaver {
                         }, new Realm.Transaction.OnSuccess() {
                             @Override
                             public void onSuccess() {
+                                MessageSnapshotCache.getInstance().invalidate(messageItems);
+                                MessageSearchManager.getInstance().onMessagesSaved(messageItems);
                                 EventBus.getDefault().post(new NewMessageEvent());
                                 SyncManager.getInstance().onMessageSaved();
                             }
@@ -6,6 +6,7 @@ import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
 import com.xabber.android.data.extension.forward.ForwardComment;
+import com.xabber.android.data.extension.references.ReferencesManager;
 
 import org.greenrobot.eventbus.EventBus;
 import org.jivesoftware.smack.packet.ExtensionElement;
@@ -40,12 +41,25 @@ public class ForwardManager {
                     @Override
                     public void execute(Realm realm) {
                         realm.copyToRealm(messageItem);
+                    }
+                }, new Realm.Transaction.OnSuccess() {
+                    @Override
+                    public void onSuccess() {
+                        MessageSnapshotCache.getInstance().invalidate(chat.getAccount(), chat.getUser());
                         EventBus.getDefault().post(new NewMessageEvent());
                         chat.sendMessages();
                     }
                 });
     }
 
+    /**
+     * @return whether stanza contains forwarded messages, in references or as extensions.
+     */
+    public static boolean hasForwarded(Stanza packet) {
+        return packet.hasExtension(Forwarded.ELEMENT, Forwarded.NAMESPACE)
+                || !ReferencesManager.getForwardedFromReferences(packet).isEmpty();
+    }
+
     public static String parseForwardComment(Stanza packet) {
         ExtensionElement comment = packet.getExtension(ForwardComment.ELEMENT, ForwardComment.NAMESPACE);
         if (comment instanceof ForwardComment) {
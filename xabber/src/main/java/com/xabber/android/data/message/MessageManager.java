@@ -41,12 +41,11 @@ import com.xabber.android.data.database.messagerealm.ForwardId;
 import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.BaseEntity;
-import com.xabber.android.data.entity.NestedMap;
+import com.xabber.android.data.entity.EntityRegistry;
 import com.xabber.android.data.entity.UserJid;
 import com.xabber.android.data.extension.captcha.Captcha;
 import com.xabber.android.data.extension.captcha.CaptchaManager;
 import com.xabber.android.data.extension.carbons.CarbonManager;
-import com.xabber.android.data.extension.file.FileManager;
 import com.xabber.android.data.extension.httpfileupload.HttpFileUploadManager;
 import com.xabber.android.data.extension.muc.MUCManager;
 import com.xabber.android.data.extension.muc.RoomChat;
@@ -55,13 +54,17 @@ import com.xabber.android.data.extension.references.ReferencesManager;
 import com.xabber.android.data.groupchat.GroupchatUserManager;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.message.chat.ChatManager;
+import com.xabber.android.data.message.search.MessageSearchManager;
 import com.xabber.android.data.message.chat.MucPrivateChatNotification;
+import com.xabber.android.data.metrics.Gauge;
+import com.xabber.android.data.metrics.MetricsManager;
 import com.xabber.android.data.notification.EntityNotificationProvider;
 import com.xabber.android.data.notification.NotificationManager;
 import com.xabber.android.data.roster.OnRosterReceivedListener;
 import com.xabber.android.data.roster.OnStatusChangeListener;
 import com.xabber.android.data.roster.PresenceManager;
 import com.xabber.android.data.roster.RosterManager;
+import com.xabber.android.utils.HtmlUtils;
 import com.xabber.android.utils.StringUtils;
 
 import org.jivesoftware.smack.packet.ExtensionElement;
@@ -107,7 +110,7 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
     /**
      * Registered chats for bareAddresses in accounts.
      */
-    private final NestedMap<AbstractChat> chats;
+    private final EntityRegistry<AbstractChat> chats;
     /**
      * Visible chat.
      * <p/>
@@ -124,7 +127,13 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
     }
 
     private MessageManager() {
-        chats = new NestedMap<>();
+        chats = new EntityRegistry<>();
+        MetricsManager.getInstance().registerGauge("chats.open", new Gauge() {
+            @Override
+            public long getValue() {
+                return chats.values().size();
+            }
+        });
 
         mucPrivateChatRequestProvider = new EntityNotificationProvider<>
                 (R.drawable.ic_stat_muc_private_chat_request_white_24dp);
@@ -166,7 +175,7 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
     @Nullable
     public AbstractChat getChat(AccountJid account, UserJid user) {
         if (account != null && user != null) {
-            return chats.get(account.toString(), user.getBareJid().toString());
+            return chats.get(account, user.getBareJid());
         } else {
             return null;
         }
@@ -180,7 +189,7 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
         enabledAccounts.addAll(AccountManager.getInstance().getCachedEnabledAccounts());
 
         for (AccountJid accountJid : enabledAccounts) {
-            chats.addAll(this.chats.getNested(accountJid.toString()).values());
+            chats.addAll(this.chats.values(accountJid));
         }
         return chats;
     }
@@ -188,15 +197,16 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
     public Collection<AbstractChat> getChats() {
         List<AbstractChat> chats = new ArrayList<>();
         for (AccountJid accountJid : AccountManager.getInstance().getAllAccounts()) {
-            chats.addAll(this.chats.getNested(accountJid.toString()).values());
+            chats.addAll(this.chats.values(accountJid));
         }
         return chats;
     }
 
+    /**
+     * @return unmodifiable snapshot of account's chats.
+     */
     public Collection<AbstractChat> getChats(AccountJid account) {
-        List<AbstractChat> chats = new ArrayList<>();
-        chats.addAll(this.chats.getNested(account.toString()).values());
-        return chats;
+        return chats.values(account);
     }
 
     /**
@@ -241,7 +251,7 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
         if (getChat(chat.getAccount(), chat.getUser()) != null) {
             return;
         }
-        chats.put(chat.getAccount().toString(), chat.getUser().toString(), chat);
+        chats.put(chat.getAccount(), chat.getUser().getJid(), chat);
     }
 
     /**
@@ -252,7 +262,7 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
     public void removeChat(AbstractChat chat) {
         chat.closeChat();
         LogManager.i(this, "removeChat " + chat.getUser());
-        chats.remove(chat.getAccount().toString(), chat.getUser().toString());
+        chats.remove(chat.getAccount(), chat.getUser().getJid());
     }
 
     /**
@@ -271,12 +281,21 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
     }
 
     private void sendMessage(final String text, final AbstractChat chat) {
+        // id of created message, it is read after transaction is committed
+        final String[] messageId = new String[1];
         MessageDatabaseManager.getInstance().getRealmUiThread()
                 .executeTransactionAsync(new Realm.Transaction() {
             @Override
             public void execute(Realm realm) {
                 MessageItem newMessageItem = chat.createNewMessageItem(text);
                 realm.copyToRealm(newMessageItem);
+                messageId[0] = newMessageItem.getUniqueId();
+            }
+        }, new Realm.Transaction.OnSuccess() {
+            @Override
+            public void onSuccess() {
+                MessageSnapshotCache.getInstance().invalidate(chat.getAccount(), chat.getUser());
+                MessageSearchManager.getInstance().onMessagesSaved(messageId[0]);
                 if (chat.canSendMessage())
                     chat.sendMessages();
             }
@@ -341,10 +360,14 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
         });
 
         realm.close();
+        MessageSnapshotCache.getInstance().invalidate(account, user);
+        MessageSearchManager.getInstance().onMessagesSaved(messageId);
         chat.sendMessages();
     }
 
     public void updateMessageWithNewAttachments(final String messageId, final List<File> files) {
+        // read metadata of files out of transaction to not block other writers
+        final RealmList<Attachment> newAttachments = AbstractChat.attachmentsFromFiles(files);
         Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
         realm.executeTransaction(new Realm.Transaction() {
             @Override
@@ -359,27 +382,12 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
                     // remove temporary attachments created from uri
                     // to replace it with attachments created from files
                     attachments.deleteAllFromRealm();
-
-                    for (File file : files) {
-                        Attachment attachment = new Attachment();
-                        attachment.setFilePath(file.getPath());
-                        attachment.setFileSize(file.length());
-                        attachment.setTitle(file.getName());
-                        attachment.setIsImage(FileManager.fileIsImage(file));
-                        attachment.setMimeType(HttpFileUploadManager.getMimeType(file.getPath()));
-                        attachment.setDuration((long) 0);
-
-                        if (attachment.isImage()) {
-                            HttpFileUploadManager.ImageSize imageSize =
-                                    HttpFileUploadManager.getImageSizes(file.getPath());
-                            attachment.setImageHeight(imageSize.getHeight());
-                            attachment.setImageWidth(imageSize.getWidth());
-                        }
-                        attachments.add(attachment);
-                    }
+                    attachments.addAll(newAttachments);
                 }
             }
         });
+        realm.close();
+        MessageSnapshotCache.getInstance().invalidateMessage(messageId);
     }
 
     public void updateMessageWithError(final String messageId, final String errorDescription) {
@@ -390,6 +398,11 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
                 public void execute(Realm realm) {
                     updateMessageWithError(realm, messageId, errorDescription);
                 }
+            }, new Realm.Transaction.OnSuccess() {
+                @Override
+                public void onSuccess() {
+                    MessageSnapshotCache.getInstance().invalidateMessage(messageId);
+                }
             });
         } else {
             Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
@@ -399,6 +412,8 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
                     updateMessageWithError(realm, messageId, errorDescription);
                 }
             });
+            realm.close();
+            MessageSnapshotCache.getInstance().invalidateMessage(messageId);
         }
     }
 
@@ -437,6 +452,7 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
         });
 
         realm.close();
+        MessageSnapshotCache.getInstance().invalidate(account, user);
         chat.sendMessages();
     }
 
@@ -570,6 +586,13 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
                         .findAll().deleteAllFromRealm();
                 LogManager.d("REALM", Thread.currentThread().getName()
                         + " clear history: " + (System.currentTimeMillis() - startTime));
+                MetricsManager.getInstance().getHistogram("realm.history.clear").recordMillisSince(startTime);
+            }
+        }, new Realm.Transaction.OnSuccess() {
+            @Override
+            public void onSuccess() {
+                MessageSnapshotCache.getInstance().invalidate(account, user);
+                MessageSearchManager.getInstance().onHistoryCleared(account, user);
             }
         });
     }
@@ -593,6 +616,8 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
                 }
 
                 realm.close();
+                MessageSnapshotCache.getInstance().invalidateMessage(messageItemId);
+                MessageSearchManager.getInstance().onMessagesRemoved(Collections.singletonList(messageItemId));
             }
         });
     }
@@ -616,6 +641,10 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
                     realm.commitTransaction();
                 }
                 realm.close();
+                for (String id : ids) {
+                    MessageSnapshotCache.getInstance().invalidateMessage(id);
+                }
+                MessageSearchManager.getInstance().onMessagesRemoved(messageIDs);
             }
         });
     }
@@ -641,17 +670,10 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
         } catch (UserJid.UserJidCreateException e) {
             return;
         }
-        boolean processed = false;
-        List<AbstractChat> chatsCopy = new ArrayList<>();
-        chatsCopy.addAll(chats.getNested(account.toString()).values());
-        for (AbstractChat chat : chatsCopy) {
-            if (chat.onPacket(user, stanza, false)) {
-                processed = true;
-                break;
-            }
-        }
-
+        // chat accepts stanzas only from its own address, so it is looked up by key
+        // instead of offering stanza to every chat of the account
         final AbstractChat chat = getChat(account, user);
+        boolean processed = chat != null && chat.onPacket(user, stanza, false);
 
         if (chat != null && stanza instanceof Message) {
             if (chat.isPrivateMucChat() && !chat.isPrivateMucChatAccepted()) {
@@ -850,7 +872,7 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
         }
 
         boolean processed = false;
-        for (AbstractChat chat : chats.getNested(account.toString()).values()) {
+        for (AbstractChat chat : chats.values(account)) {
             if (chat.onPacket(companion, message, true)) {
                 processed = true;
                 break;
@@ -871,7 +893,7 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
     }
     @Override
     public void onRosterReceived(AccountItem accountItem) {
-        for (AbstractChat chat : chats.getNested(accountItem.getAccount().toString()).values()) {
+        for (AbstractChat chat : chats.values(accountItem.getAccount())) {
             chat.onComplete();
         }
     }
@@ -882,19 +904,20 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
             return;
         }
         AccountJid account = connection.getAccount();
-        for (AbstractChat chat : chats.getNested(account.toString()).values()) {
+        for (AbstractChat chat : chats.values(account)) {
             chat.onDisconnect();
         }
     }
 
     @Override
     public void onAccountRemoved(AccountItem accountItem) {
-        chats.clear(accountItem.getAccount().toString());
+        chats.clear(accountItem.getAccount());
+        MessageSnapshotCache.getInstance().invalidateAll();
     }
 
     @Override
     public void onAccountDisabled(AccountItem accountItem) {
-        chats.clear(accountItem.getAccount().toString());
+        chats.clear(accountItem.getAccount());
     }
 
     /**
@@ -911,7 +934,7 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
             BufferedWriter out = new BufferedWriter(new FileWriter(file));
             final String titleName = RosterManager.getInstance().getName(account, user) + " (" + user + ")";
             out.write("<html><head><title>");
-            out.write(StringUtils.escapeHtml(titleName));
+            out.write(HtmlUtils.escapeHtml(titleName));
             out.write("</title></head><body>");
             final AbstractChat abstractChat = getChat(account, user);
             if (abstractChat != null) {
@@ -937,11 +960,11 @@ public class MessageManager implements OnLoadListener, OnPacketListener, OnDisco
                         }
                     }
                     out.write("<b>");
-                    out.write(StringUtils.escapeHtml(name));
+                    out.write(HtmlUtils.escapeHtml(name));
                     out.write("</b>&nbsp;(");
                     out.write(StringUtils.getDateTimeText(new Date(messageItem.getTimestamp())));
                     out.write(")<br />\n<p>");
-                    out.write(StringUtils.escapeHtml(messageItem.getText()));
+                    out.write(HtmlUtils.escapeHtml(messageItem.getText()));
                     out.write("</p><hr />\n");
                 }
                 realm.close();
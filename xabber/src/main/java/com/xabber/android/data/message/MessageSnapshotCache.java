@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2013, Redsolution LTD. All rights reserved.
+ *
+ * This file is part of Xabber project; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License, Version 3.
+ *
+ * Xabber is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * along with this program. If not, see http://www.gnu.org/licenses/.
+ */
+package com.xabber.android.data.message;
+
+import com.xabber.android.data.database.MessageDatabaseManager;
+import com.xabber.android.data.database.messagerealm.MessageItem;
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.entity.UserJid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+import io.realm.Sort;
+
+/**
+ * Unmanaged copies of the most recent messages of recently used chats.
+ * <p/>
+ * Lets background consumers read recent history without opening own Realm.
+ * Snapshot of the chat is dropped by the write paths of its messages and is loaded
+ * again on next request. Returned items are shared and must not be modified.
+ */
+public class MessageSnapshotCache {
+
+    /**
+     * Number of chats to keep snapshots for.
+     */
+    static final int MAX_CHATS = 16;
+
+    /**
+     * Number of last messages in the chat snapshot.
+     */
+    static final int MAX_MESSAGES = 50;
+
+    private static MessageSnapshotCache instance;
+
+    private final Map<String, ChatSnapshot> snapshots;
+
+    /**
+     * Incremented on each invalidation, so snapshot loaded concurrently
+     * with a write is not stored.
+     */
+    private long generation;
+
+    public static MessageSnapshotCache getInstance() {
+        if (instance == null) {
+            instance = new MessageSnapshotCache();
+        }
+
+        return instance;
+    }
+
+    private MessageSnapshotCache() {
+        snapshots = new LinkedHashMap<String, ChatSnapshot>(MAX_CHATS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ChatSnapshot> eldest) {
+                return size() > MAX_CHATS;
+            }
+        };
+    }
+
+    /**
+     * Whether the chat has messages which are not sent yet, in any part of its history.
+     * Must not be called from UI thread.
+     */
+    public boolean hasUnsentMessages(AccountJid account, UserJid user) {
+        return getSnapshot(account, user).hasUnsent;
+    }
+
+    /**
+     * Messages that are not in the snapshot are read from Realm and are not cached.
+     * Must not be called from UI thread.
+     *
+     * @return found messages sorted by timestamp.
+     */
+    public List<MessageItem> getMessages(AccountJid account, UserJid user, String[] uniqueIds) {
+        ChatSnapshot snapshot = getSnapshot(account, user);
+        List<MessageItem> result = new ArrayList<>(uniqueIds.length);
+        List<String> missing = null;
+        for (String uniqueId : uniqueIds) {
+            MessageItem messageItem = snapshot.byUniqueId.get(uniqueId);
+            if (messageItem != null) {
+                result.add(messageItem);
+            } else {
+                if (missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(uniqueId);
+            }
+        }
+        if (missing != null) {
+            result.addAll(loadMessages(missing.toArray(new String[missing.size()])));
+        }
+        Collections.sort(result, new Comparator<MessageItem>() {
+            @Override
+            public int compare(MessageItem first, MessageItem second) {
+                long firstTimestamp = first.getTimestamp() == null ? 0 : first.getTimestamp();
+                long secondTimestamp = second.getTimestamp() == null ? 0 : second.getTimestamp();
+                return firstTimestamp < secondTimestamp ? -1 : (firstTimestamp == secondTimestamp ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    public void invalidate(AccountJid account, UserJid user) {
+        synchronized (snapshots) {
+            generation++;
+            snapshots.remove(getKey(account, user));
+        }
+    }
+
+    /**
+     * Drops snapshots of the chats of the messages.
+     */
+    public void invalidate(Collection<MessageItem> messageItems) {
+        synchronized (snapshots) {
+            generation++;
+            for (MessageItem messageItem : messageItems) {
+                if (messageItem.getAccount() != null && messageItem.getUser() != null) {
+                    snapshots.remove(getKey(messageItem.getAccount(), messageItem.getUser()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops snapshots containing message with given id.
+     * Used by write paths that know only id of the message.
+     */
+    public void invalidateMessage(String uniqueId) {
+        synchronized (snapshots) {
+            generation++;
+            Iterator<ChatSnapshot> iterator = snapshots.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().byUniqueId.containsKey(uniqueId)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (snapshots) {
+            generation++;
+            snapshots.clear();
+        }
+    }
+
+    private ChatSnapshot getSnapshot(AccountJid account, UserJid user) {
+        String key = getKey(account, user);
+        long loadGeneration;
+        synchronized (snapshots) {
+            ChatSnapshot snapshot = snapshots.get(key);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            loadGeneration = generation;
+        }
+
+        ChatSnapshot snapshot = load(account, user);
+        synchronized (snapshots) {
+            if (generation == loadGeneration) {
+                snapshots.put(key, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    private static ChatSnapshot load(AccountJid account, UserJid user) {
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        try {
+            RealmResults<MessageItem> results = MessageDatabaseManager
+                    .getChatMessagesQuery(realm, account, user)
+                    .findAllSorted(MessageItem.Fields.TIMESTAMP, Sort.ASCENDING);
+            int from = Math.max(0, results.size() - MAX_MESSAGES);
+            List<MessageItem> messages = realm.copyFromRealm(results.subList(from, results.size()));
+
+            List<MessageItem> forwarded = Collections.emptyList();
+            String[] ids = new String[messages.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = messages.get(i).getUniqueId();
+            }
+            if (ids.length > 0) {
+                forwarded = realm.copyFromRealm(realm.where(MessageItem.class)
+                        .in(MessageItem.Fields.PARENT_MESSAGE_ID, ids)
+                        .findAll());
+            }
+            boolean hasUnsent = realm.where(MessageItem.class)
+                    .equalTo(MessageItem.Fields.ACCOUNT, account.toString())
+                    .equalTo(MessageItem.Fields.USER, user.toString())
+                    .equalTo(MessageItem.Fields.SENT, false)
+                    .count() > 0;
+            return new ChatSnapshot(messages, forwarded, hasUnsent);
+        } finally {
+            realm.close();
+        }
+    }
+
+    private static List<MessageItem> loadMessages(String[] uniqueIds) {
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        try {
+            return realm.copyFromRealm(realm.where(MessageItem.class)
+                    .in(MessageItem.Fields.UNIQUE_ID, uniqueIds)
+                    .findAll());
+        } finally {
+            realm.close();
+        }
+    }
+
+    private static String getKey(AccountJid account, UserJid user) {
+        return account.toString() + '/' + user.toString();
+    }
+
+    /**
+     * Immutable snapshot of the chat.
+     */
+    private static class ChatSnapshot {
+        final Map<String, MessageItem> byUniqueId;
+        final boolean hasUnsent;
+
+        ChatSnapshot(List<MessageItem> messages, List<MessageItem> forwarded, boolean hasUnsent) {
+            this.hasUnsent = hasUnsent;
+            Map<String, MessageItem> byUniqueId = new HashMap<>(messages.size() + forwarded.size());
+            for (MessageItem messageItem : messages) {
+                byUniqueId.put(messageItem.getUniqueId(), messageItem);
+            }
+            for (MessageItem messageItem : forwarded) {
+                byUniqueId.put(messageItem.getUniqueId(), messageItem);
+            }
+            this.byUniqueId = Collections.unmodifiableMap(byUniqueId);
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.xabber.android.data.message;
+
+import com.xabber.android.data.Application;
+import com.xabber.android.data.database.MessageDatabaseManager;
+import com.xabber.android.data.database.messagerealm.MessageItem;
+import com.xabber.android.data.executor.Lane;
+import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.metrics.Counter;
+import com.xabber.android.data.metrics.LatencyHistogram;
+import com.xabber.android.data.metrics.MetricsManager;
+
+import org.greenrobot.eventbus.EventBus;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+import rx.functions.Action1;
+import rx.subjects.PublishSubject;
+
+/**
+ * Groups state changes of outgoing messages: acknowledgements of stanzas by server
+ * and delivery receipts. Changes collected within {@link #BUFFER_TIME} are written in one
+ * transaction, instead of one transaction per message.
+ * <p/>
+ * Also counts time between sending of message and its acknowledgement.
+ */
+public class MessageStateSaver {
+
+    private static final long BUFFER_TIME = 500;
+    /**
+     * Send time of message without acknowledgement is forgotten after this time.
+     */
+    private static final long SENT_EXPIRE = TimeUnit.MINUTES.toMillis(10);
+
+    private static MessageStateSaver instance;
+
+    private PublishSubject<StateChange> subject;
+
+    /**
+     * Send time by message unique id.
+     */
+    private final Map<String, Long> sentTimes = new ConcurrentHashMap<>();
+    private final Counter sent = MetricsManager.getInstance().getCounter("message.sent");
+    private final LatencyHistogram acknowledgeTime = MetricsManager.getInstance().getHistogram("message.ack");
+
+    private static class StateChange {
+        /**
+         * Unique id for acknowledgements, stanza id for receipts.
+         */
+        final String id;
+        final boolean delivered;
+
+        StateChange(String id, boolean delivered) {
+            this.id = id;
+            this.delivered = delivered;
+        }
+    }
+
+    public static MessageStateSaver getInstance() {
+        if (instance == null) instance = new MessageStateSaver();
+        return instance;
+    }
+
+    private MessageStateSaver() {
+        createSubject();
+    }
+
+    /**
+     * Message was passed to connection.
+     */
+    public void onSent(String uniqueId) {
+        sent.increment();
+        sentTimes.put(uniqueId, System.currentTimeMillis());
+    }
+
+    /**
+     * Server acknowledged stanza of message.
+     */
+    public void onAcknowledged(String uniqueId) {
+        Long sentTime = sentTimes.remove(uniqueId);
+        if (sentTime != null) acknowledgeTime.recordMillisSince(sentTime);
+        subject.onNext(new StateChange(uniqueId, false));
+    }
+
+    /**
+     * Delivery receipt was received for message.
+     */
+    public void onDelivered(String stanzaId) {
+        subject.onNext(new StateChange(stanzaId, true));
+    }
+
+    private void createSubject() {
+        subject = PublishSubject.create();
+        subject.buffer(BUFFER_TIME, TimeUnit.MILLISECONDS)
+                .onBackpressureBuffer(50)
+                .subscribe(new Action1<List<StateChange>>() {
+                    @Override
+                    public void call(final List<StateChange> changes) {
+                        if (changes == null || changes.isEmpty()) return;
+                        Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
+                            @Override
+                            public void run() {
+                                save(changes);
+                            }
+                        });
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        LogManager.exception(this, throwable);
+                        LogManager.d(this, "Exception is thrown. Created new publish subject.");
+                        createSubject();
+                    }
+                });
+    }
+
+    private void save(List<StateChange> changes) {
+        final Set<String> acknowledgedIds = new LinkedHashSet<>();
+        final Set<String> deliveredIds = new LinkedHashSet<>();
+        for (StateChange change : changes) {
+            if (change.delivered) deliveredIds.add(change.id);
+            else acknowledgedIds.add(change.id);
+        }
+
+        final List<String> uniqueIds = new ArrayList<>();
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        realm.executeTransaction(new Realm.Transaction() {
+            @Override
+            public void execute(Realm realm) {
+                if (!acknowledgedIds.isEmpty()) {
+                    RealmResults<MessageItem> items = realm.where(MessageItem.class)
+                            .in(MessageItem.Fields.UNIQUE_ID, acknowledgedIds.toArray(new String[0]))
+                            .findAll();
+                    for (MessageItem item : items) {
+                        item.setAcknowledged(true);
+                        uniqueIds.add(item.getUniqueId());
+                    }
+                }
+                if (!deliveredIds.isEmpty()) {
+                    RealmResults<MessageItem> items = realm.where(MessageItem.class)
+                            .in(MessageItem.Fields.STANZA_ID, deliveredIds.toArray(new String[0]))
+                            .findAll();
+                    for (MessageItem item : items) {
+                        item.setDelivered(true);
+                        uniqueIds.add(item.getUniqueId());
+                    }
+                }
+            }
+        });
+        realm.close();
+
+        for (String uniqueId : uniqueIds) {
+            MessageSnapshotCache.getInstance().invalidateMessage(uniqueId);
+        }
+        if (!deliveredIds.isEmpty()) {
+            EventBus.getDefault().post(new MessageUpdateEvent());
+        }
+        removeExpiredSentTimes();
+    }
+
+    private void removeExpiredSentTimes() {
+        long expired = System.currentTimeMillis() - SENT_EXPIRE;
+        for (Iterator<Long> iterator = sentTimes.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next() < expired) {
+                iterator.remove();
+            }
+        }
+    }
+
+}
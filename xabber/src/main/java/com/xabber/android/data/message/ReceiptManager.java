@@ -125,7 +125,9 @@ public class ReceiptManager implements OnPacketListener, ReceiptReceivedListener
         MessageItem first = realm.where(MessageItem.class)
                 .equalTo(MessageItem.Fields.ACCOUNT, account.toString())
                 .equalTo(MessageItem.Fields.STANZA_ID, AbstractChat.getStanzaId(message)).findFirst();
+        String uniqueId = null;
         if (first != null) {
+            uniqueId = first.getUniqueId();
             first.setError(true);
             XMPPError error = message.getError();
             if (error != null) {
@@ -136,6 +138,7 @@ public class ReceiptManager implements OnPacketListener, ReceiptReceivedListener
         }
         realm.commitTransaction();
         realm.close();
+        if (uniqueId != null) MessageSnapshotCache.getInstance().invalidateMessage(uniqueId);
         EventBus.getDefault().post(new MessageUpdateEvent(account));
     }
 
@@ -151,15 +154,6 @@ public class ReceiptManager implements OnPacketListener, ReceiptReceivedListener
     }
 
     private void markAsDelivered(final Jid toJid, final String receiptId) {
-        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
-        realm.beginTransaction();
-        MessageItem first = realm.where(MessageItem.class)
-                .equalTo(MessageItem.Fields.STANZA_ID, receiptId).findFirst();
-        if (first != null) {
-            first.setDelivered(true);
-        }
-        realm.commitTransaction();
-        realm.close();
-        EventBus.getDefault().post(new MessageUpdateEvent());
+        MessageStateSaver.getInstance().onDelivered(receiptId);
     }
 }
@@ -0,0 +1,296 @@
+package com.xabber.android.data.message.backup;
+
+import com.xabber.android.data.database.messagerealm.Attachment;
+import com.xabber.android.data.database.messagerealm.ForwardId;
+import com.xabber.android.data.database.messagerealm.MessageItem;
+import com.xabber.android.data.database.realm.ChatDataRealm;
+import com.xabber.android.data.database.realm.NotificationStateRealm;
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.message.NotificationState;
+
+import org.jxmpp.jid.parts.Resourcepart;
+import org.jxmpp.stringprep.XmppStringprepException;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.realm.RealmList;
+
+/**
+ * Binary records of history backup.
+ * <p/>
+ * Chunk file is gzipped stream of {@link #MAGIC}, {@link #VERSION}, number of records
+ * and records. Strings are written as length of UTF-8 bytes (-1 for <code>null</code>)
+ * followed by bytes, as message stanzas can exceed limit of {@link DataOutputStream#writeUTF}.
+ */
+class BackupFormat {
+
+    static final int MAGIC = 0x58484250; // "XHBP"
+    static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int NULL_LONG_FLAG = 0;
+    private static final int HAS_LONG_FLAG = 1;
+
+    /**
+     * Parsed jids are reused, as backup usually contains few chats and many messages.
+     */
+    private final Map<String, AccountJid> accounts = new HashMap<>();
+    private final Map<String, UserJid> users = new HashMap<>();
+
+    static void writeHeader(DataOutputStream out, int records) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(records);
+    }
+
+    /**
+     * @return number of records.
+     */
+    static int readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a history backup");
+        }
+        int version = in.readInt();
+        if (version > VERSION) {
+            throw new IOException("Unsupported backup version " + version);
+        }
+        return in.readInt();
+    }
+
+    static void writeMessage(DataOutputStream out, MessageItem messageItem) throws IOException {
+        writeString(out, messageItem.getUniqueId());
+        writeString(out, messageItem.getAccount().toString());
+        writeString(out, messageItem.getUser().toString());
+        writeString(out, messageItem.getResource().toString());
+        writeString(out, messageItem.getText());
+        writeString(out, messageItem.getMarkupText());
+        writeString(out, messageItem.getAction());
+        writeLong(out, messageItem.getTimestamp());
+        writeLong(out, messageItem.getDelayTimestamp());
+        writeString(out, messageItem.getStanzaId());
+        writeString(out, messageItem.getErrorDescription());
+        writeString(out, messageItem.getOriginalStanza());
+        writeString(out, messageItem.getOriginalFrom());
+        writeString(out, messageItem.getParentMessageId());
+        writeString(out, messageItem.getPreviousId());
+        writeString(out, messageItem.getArchivedId());
+        writeString(out, messageItem.getGroupchatUserId());
+
+        int flags = 0;
+        flags |= messageItem.isIncoming() ? 1 : 0;
+        flags |= messageItem.isEncrypted() ? 1 << 1 : 0;
+        flags |= messageItem.isOffline() ? 1 << 2 : 0;
+        flags |= messageItem.isError() ? 1 << 3 : 0;
+        flags |= messageItem.isDelivered() ? 1 << 4 : 0;
+        flags |= messageItem.isDisplayed() ? 1 << 5 : 0;
+        flags |= messageItem.isSent() ? 1 << 6 : 0;
+        flags |= messageItem.isRead() ? 1 << 7 : 0;
+        flags |= messageItem.isReceivedFromMessageArchive() ? 1 << 8 : 0;
+        flags |= messageItem.isForwarded() ? 1 << 9 : 0;
+        flags |= messageItem.isAcknowledged() ? 1 << 10 : 0;
+        flags |= messageItem.isFromMUC() ? 1 << 11 : 0;
+        out.writeInt(flags);
+
+        RealmList<Attachment> attachments = messageItem.getAttachments();
+        out.writeInt(attachments == null ? 0 : attachments.size());
+        if (attachments != null) {
+            for (Attachment attachment : attachments) {
+                writeString(out, attachment.getTitle());
+                writeString(out, attachment.getFilePath());
+                writeString(out, attachment.getFileUrl());
+                writeString(out, attachment.getMimeType());
+                writeLong(out, attachment.getFileSize());
+                writeLong(out, attachment.getDuration());
+                writeLong(out, attachment.getImageWidth() == null ? null : (long) attachment.getImageWidth());
+                writeLong(out, attachment.getImageHeight() == null ? null : (long) attachment.getImageHeight());
+                out.writeBoolean(attachment.isImage());
+            }
+        }
+
+        RealmList<ForwardId> forwardIds = messageItem.getForwardedIds();
+        out.writeInt(forwardIds == null ? 0 : forwardIds.size());
+        if (forwardIds != null) {
+            for (ForwardId forwardId : forwardIds) {
+                writeString(out, forwardId.getForwardMessageId());
+            }
+        }
+    }
+
+    /**
+     * @return unmanaged message.
+     */
+    MessageItem readMessage(DataInputStream in) throws IOException {
+        MessageItem messageItem = new MessageItem(readString(in));
+        messageItem.setAccount(getAccount(readString(in)));
+        messageItem.setUser(getUser(readString(in)));
+        String resource = readString(in);
+        try {
+            messageItem.setResource(resource == null || resource.isEmpty()
+                    ? Resourcepart.EMPTY : Resourcepart.from(resource));
+        } catch (XmppStringprepException e) {
+            messageItem.setResource(Resourcepart.EMPTY);
+        }
+        messageItem.setText(readString(in));
+        messageItem.setMarkupText(readString(in));
+        messageItem.setAction(readString(in));
+        messageItem.setTimestamp(readLong(in));
+        messageItem.setDelayTimestamp(readLong(in));
+        messageItem.setStanzaId(readString(in));
+        messageItem.setErrorDescription(readString(in));
+        messageItem.setOriginalStanza(readString(in));
+        messageItem.setOriginalFrom(readString(in));
+        messageItem.setParentMessageId(readString(in));
+        messageItem.setPreviousId(readString(in));
+        messageItem.setArchivedId(readString(in));
+        messageItem.setGroupchatUserId(readString(in));
+
+        int flags = in.readInt();
+        messageItem.setIncoming((flags & 1) != 0);
+        messageItem.setEncrypted((flags & 1 << 1) != 0);
+        messageItem.setOffline((flags & 1 << 2) != 0);
+        messageItem.setError((flags & 1 << 3) != 0);
+        messageItem.setDelivered((flags & 1 << 4) != 0);
+        messageItem.setDisplayed((flags & 1 << 5) != 0);
+        messageItem.setSent((flags & 1 << 6) != 0);
+        messageItem.setRead((flags & 1 << 7) != 0);
+        messageItem.setReceivedFromMessageArchive((flags & 1 << 8) != 0);
+        messageItem.setForwarded((flags & 1 << 9) != 0);
+        messageItem.setAcknowledged((flags & 1 << 10) != 0);
+        messageItem.setFromMUC((flags & 1 << 11) != 0);
+
+        int attachmentCount = in.readInt();
+        if (attachmentCount > 0) {
+            RealmList<Attachment> attachments = new RealmList<>();
+            for (int i = 0; i < attachmentCount; i++) {
+                Attachment attachment = new Attachment();
+                attachment.setTitle(readString(in));
+                attachment.setFilePath(readString(in));
+                attachment.setFileUrl(readString(in));
+                attachment.setMimeType(readString(in));
+                attachment.setFileSize(readLong(in));
+                attachment.setDuration(readLong(in));
+                Long width = readLong(in);
+                Long height = readLong(in);
+                attachment.setImageWidth(width == null ? null : width.intValue());
+                attachment.setImageHeight(height == null ? null : height.intValue());
+                attachment.setIsImage(in.readBoolean());
+                attachments.add(attachment);
+            }
+            messageItem.setAttachments(attachments);
+        }
+
+        int forwardCount = in.readInt();
+        if (forwardCount > 0) {
+            RealmList<ForwardId> forwardIds = new RealmList<>();
+            for (int i = 0; i < forwardCount; i++) {
+                forwardIds.add(new ForwardId(readString(in)));
+            }
+            messageItem.setForwardedIds(forwardIds);
+        }
+        return messageItem;
+    }
+
+    static void writeChat(DataOutputStream out, ChatDataRealm chat) throws IOException {
+        writeString(out, chat.getAccountJid());
+        writeString(out, chat.getUserJid());
+        writeString(out, chat.getSubject());
+        out.writeBoolean(chat.isArchived());
+        out.writeInt(chat.getLastPosition());
+        out.writeBoolean(chat.isHistoryRequestedAtStart());
+        NotificationStateRealm notificationState = chat.getNotificationState();
+        out.writeBoolean(notificationState != null);
+        if (notificationState != null) {
+            writeString(out, notificationState.getMode().name());
+            out.writeInt(notificationState.getTimestamp());
+        }
+    }
+
+    /**
+     * @return unmanaged chat data.
+     */
+    static ChatDataRealm readChat(DataInputStream in) throws IOException {
+        ChatDataRealm chat = new ChatDataRealm(readString(in), readString(in));
+        chat.setSubject(readString(in));
+        chat.setArchived(in.readBoolean());
+        chat.setLastPosition(in.readInt());
+        chat.setHistoryRequestedAtStart(in.readBoolean());
+        if (in.readBoolean()) {
+            NotificationStateRealm notificationState = new NotificationStateRealm();
+            try {
+                notificationState.setMode(NotificationState.NotificationMode.valueOf(readString(in)));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                notificationState.setMode(NotificationState.NotificationMode.bydefault);
+            }
+            notificationState.setTimestamp(in.readInt());
+            chat.setNotificationState(notificationState);
+        }
+        return chat;
+    }
+
+    private AccountJid getAccount(String account) throws IOException {
+        AccountJid accountJid = accounts.get(account);
+        if (accountJid == null) {
+            try {
+                accountJid = AccountJid.from(account);
+            } catch (XmppStringprepException | NullPointerException e) {
+                throw new IOException("Invalid account " + account);
+            }
+            accounts.put(account, accountJid);
+        }
+        return accountJid;
+    }
+
+    private UserJid getUser(String user) throws IOException {
+        UserJid userJid = users.get(user);
+        if (userJid == null) {
+            try {
+                userJid = UserJid.from(user);
+            } catch (UserJid.UserJidCreateException | NullPointerException e) {
+                throw new IOException("Invalid user " + user);
+            }
+            users.put(user, userJid);
+        }
+        return userJid;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_LONG_FLAG);
+        } else {
+            out.writeByte(HAS_LONG_FLAG);
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readByte() == NULL_LONG_FLAG ? null : in.readLong();
+    }
+
+}
@@ -0,0 +1,438 @@
+package com.xabber.android.data.message.backup;
+
+import androidx.annotation.Nullable;
+
+import com.xabber.android.data.Application;
+import com.xabber.android.data.database.MessageDatabaseManager;
+import com.xabber.android.data.database.RealmManager;
+import com.xabber.android.data.database.messagerealm.MessageItem;
+import com.xabber.android.data.database.realm.ChatDataRealm;
+import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.message.MessageSnapshotCache;
+import com.xabber.android.data.message.search.MessageSearchManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+import io.realm.Sort;
+
+/**
+ * Backup and restore of the whole message history.
+ * <p/>
+ * Backup is a directory with manifest and gzipped chunks of messages in timestamp
+ * order of all chats, followed by settings of the chats. Messages are read one by one
+ * from lazy query results and are written chunk by chunk, so memory usage doesn't
+ * depend on history size. Manifest is updated after each chunk, interrupted backup
+ * is continued from the last written chunk. If messages with timestamps before the
+ * last written chunk were added or removed since interruption, e.g. by loading of
+ * older history from archive, backup is started again.
+ * <p/>
+ * All methods are blocking and must not be called from UI thread.
+ */
+public class HistoryBackupManager {
+
+    private static final String LOG_TAG = HistoryBackupManager.class.getSimpleName();
+
+    /**
+     * Number of messages in chunk. Messages with the same timestamp are never split
+     * between chunks, so chunk can be a bit larger.
+     */
+    static final int CHUNK_SIZE = 1000;
+
+    private static final String BACKUP_DIRECTORY = "backup";
+    private static final String MANIFEST_FILE = "manifest.properties";
+    private static final String CHATS_FILE = "chats.bin.gz";
+    private static final String CHUNK_FILE_FORMAT = "messages-%05d.bin.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_CHUNKS = "chunks";
+    private static final String KEY_MESSAGES = "messages";
+    private static final String KEY_CURSOR = "cursor";
+    private static final String KEY_COMPLETE = "complete";
+
+    /**
+     * Cursor value before messages without timestamp are written.
+     */
+    private static final long NO_CURSOR = -1;
+
+    private static HistoryBackupManager instance;
+
+    public static HistoryBackupManager getInstance() {
+        if (instance == null) {
+            instance = new HistoryBackupManager();
+        }
+
+        return instance;
+    }
+
+    private HistoryBackupManager() {
+    }
+
+    /**
+     * @return directory for backups in application's external files, <code>null</code>
+     * if external storage is not available.
+     */
+    @Nullable
+    public File getBackupDirectory() {
+        File sdCard = Application.getInstance().getApplicationContext().getExternalFilesDir(null);
+        if (sdCard == null) {
+            return null;
+        }
+        return new File(sdCard, BACKUP_DIRECTORY);
+    }
+
+    /**
+     * Writes backup to the directory, continues interrupted backup if there is one.
+     *
+     * @return total number of messages in the backup.
+     */
+    public long exportHistory(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+
+        long startTime = System.currentTimeMillis();
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        try {
+            Manifest manifest = Manifest.read(directory);
+            if (manifest == null || manifest.complete || !canContinue(realm, manifest)) {
+                manifest = new Manifest();
+                deleteChunks(directory);
+            } else {
+                LogManager.i(LOG_TAG, "continue backup from chunk " + manifest.chunks);
+            }
+
+            if (manifest.cursor == NO_CURSOR) {
+                RealmResults<MessageItem> messageItems = realm.where(MessageItem.class)
+                        .isNull(MessageItem.Fields.TIMESTAMP).findAll();
+                writeChunks(directory, manifest, messageItems);
+                manifest.cursor = Long.MIN_VALUE;
+                manifest.write(directory);
+            }
+
+            RealmResults<MessageItem> messageItems = realm.where(MessageItem.class)
+                    .greaterThan(MessageItem.Fields.TIMESTAMP, manifest.cursor)
+                    .findAllSorted(MessageItem.Fields.TIMESTAMP, Sort.ASCENDING);
+            writeChunks(directory, manifest, messageItems);
+
+            writeChats(directory);
+            manifest.complete = true;
+            manifest.write(directory);
+            LogManager.i(LOG_TAG, "backup of " + manifest.messages + " messages in " + manifest.chunks
+                    + " chunks written in " + (System.currentTimeMillis() - startTime) + " ms");
+            return manifest.messages;
+        } finally {
+            realm.close();
+        }
+    }
+
+    /**
+     * Interrupted backup can be continued only if messages without timestamp were written
+     * and history before the cursor still has the same number of messages as written.
+     */
+    private static boolean canContinue(Realm realm, Manifest manifest) {
+        if (manifest.cursor == NO_CURSOR) {
+            return false;
+        }
+        long messages = realm.where(MessageItem.class).isNull(MessageItem.Fields.TIMESTAMP).count()
+                + realm.where(MessageItem.class)
+                .lessThanOrEqualTo(MessageItem.Fields.TIMESTAMP, manifest.cursor).count();
+        if (messages != manifest.messages) {
+            LogManager.i(LOG_TAG, "history was changed since backup was interrupted");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds messages from complete backup to the history. Messages that are already
+     * in the history are skipped, so import can be repeated after interruption.
+     *
+     * @return number of added messages.
+     */
+    public long importHistory(File directory) throws IOException {
+        Manifest manifest = Manifest.read(directory);
+        if (manifest == null || !manifest.complete) {
+            throw new IOException("Backup is incomplete");
+        }
+
+        long startTime = System.currentTimeMillis();
+        long imported = 0;
+        BackupFormat format = new BackupFormat();
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        try {
+            for (int chunk = 0; chunk < manifest.chunks; chunk++) {
+                List<MessageItem> messageItems = new ArrayList<>();
+                DataInputStream in = openInput(getChunkFile(directory, chunk));
+                try {
+                    int count = BackupFormat.readHeader(in);
+                    for (int i = 0; i < count; i++) {
+                        messageItems.add(format.readMessage(in));
+                    }
+                } finally {
+                    in.close();
+                }
+                imported += insertMessages(realm, messageItems);
+            }
+        } finally {
+            realm.close();
+        }
+
+        importChats(directory);
+        MessageSnapshotCache.getInstance().invalidateAll();
+        LogManager.i(LOG_TAG, imported + " messages imported in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+        return imported;
+    }
+
+    /**
+     * Writes messages to new chunks starting with the chunk after the last written one.
+     */
+    private void writeChunks(File directory, Manifest manifest,
+                             RealmResults<MessageItem> messageItems) throws IOException {
+        int size = messageItems.size();
+        int position = 0;
+        while (position < size) {
+            int end = Math.min(position + CHUNK_SIZE, size);
+            Long lastTimestamp = messageItems.get(end - 1).getTimestamp();
+            if (lastTimestamp != null) {
+                while (end < size && lastTimestamp.equals(messageItems.get(end).getTimestamp())) {
+                    end++;
+                }
+            }
+
+            File file = getChunkFile(directory, manifest.chunks);
+            File temp = new File(file.getPath() + TEMP_SUFFIX);
+            DataOutputStream out = openOutput(temp);
+            try {
+                BackupFormat.writeHeader(out, end - position);
+                for (int i = position; i < end; i++) {
+                    BackupFormat.writeMessage(out, messageItems.get(i));
+                }
+            } finally {
+                out.close();
+            }
+            rename(temp, file);
+
+            manifest.chunks++;
+            manifest.messages += end - position;
+            if (lastTimestamp != null) {
+                manifest.cursor = lastTimestamp;
+            }
+            manifest.write(directory);
+            position = end;
+        }
+    }
+
+    private static int insertMessages(Realm realm, List<MessageItem> messageItems) {
+        if (messageItems.isEmpty()) {
+            return 0;
+        }
+        String[] ids = new String[messageItems.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = messageItems.get(i).getUniqueId();
+        }
+        Set<String> existing = new HashSet<>();
+        for (MessageItem messageItem : realm.where(MessageItem.class)
+                .in(MessageItem.Fields.UNIQUE_ID, ids).findAll()) {
+            existing.add(messageItem.getUniqueId());
+        }
+
+        List<MessageItem> newItems = new ArrayList<>(messageItems.size() - existing.size());
+        for (MessageItem messageItem : messageItems) {
+            if (!existing.contains(messageItem.getUniqueId())) {
+                newItems.add(messageItem);
+            }
+        }
+        if (newItems.isEmpty()) {
+            return 0;
+        }
+
+        realm.beginTransaction();
+        realm.insert(newItems);
+        realm.commitTransaction();
+        MessageSearchManager.getInstance().onMessagesSaved(newItems);
+        return newItems.size();
+    }
+
+    private void writeChats(File directory) throws IOException {
+        File file = new File(directory, CHATS_FILE);
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        Realm realm = RealmManager.getInstance().getNewBackgroundRealm();
+        try {
+            RealmResults<ChatDataRealm> chats = realm.where(ChatDataRealm.class).findAll();
+            DataOutputStream out = openOutput(temp);
+            try {
+                BackupFormat.writeHeader(out, chats.size());
+                for (ChatDataRealm chat : chats) {
+                    BackupFormat.writeChat(out, chat);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            realm.close();
+        }
+        rename(temp, file);
+    }
+
+    /**
+     * Restores settings of chats that have no settings yet.
+     */
+    private void importChats(File directory) throws IOException {
+        File file = new File(directory, CHATS_FILE);
+        if (!file.exists()) {
+            return;
+        }
+
+        List<ChatDataRealm> chats = new ArrayList<>();
+        DataInputStream in = openInput(file);
+        try {
+            int count = BackupFormat.readHeader(in);
+            for (int i = 0; i < count; i++) {
+                chats.add(BackupFormat.readChat(in));
+            }
+        } finally {
+            in.close();
+        }
+
+        Realm realm = RealmManager.getInstance().getNewBackgroundRealm();
+        realm.beginTransaction();
+        for (ChatDataRealm chat : chats) {
+            if (realm.where(ChatDataRealm.class).equalTo("accountJid", chat.getAccountJid())
+                    .equalTo("userJid", chat.getUserJid()).findFirst() == null) {
+                realm.copyToRealm(chat);
+            }
+        }
+        realm.commitTransaction();
+        realm.close();
+    }
+
+    private static void deleteChunks(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith("messages-") || file.getName().equals(CHATS_FILE)
+                    || file.getName().endsWith(TEMP_SUFFIX)) {
+                if (!file.delete()) {
+                    LogManager.w(LOG_TAG, "can't delete " + file);
+                }
+            }
+        }
+    }
+
+    private static File getChunkFile(File directory, int chunk) {
+        return new File(directory, String.format(Locale.US, CHUNK_FILE_FORMAT, chunk));
+    }
+
+    private static DataOutputStream openOutput(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            return new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(out)));
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    private static DataInputStream openInput(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        if (to.exists() && !to.delete()) {
+            throw new IOException("Can't replace " + to);
+        }
+        if (!from.renameTo(to)) {
+            throw new IOException("Can't rename " + from + " to " + to);
+        }
+    }
+
+    /**
+     * State of the backup.
+     */
+    private static class Manifest {
+        int chunks;
+        long messages;
+        long cursor = NO_CURSOR;
+        boolean complete;
+
+        /**
+         * @return <code>null</code> if directory contains no backup.
+         */
+        static Manifest read(File directory) throws IOException {
+            File file = new File(directory, MANIFEST_FILE);
+            if (!file.exists()) {
+                return null;
+            }
+            Properties properties = new Properties();
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            if (Integer.parseInt(properties.getProperty(KEY_VERSION, "0")) > BackupFormat.VERSION) {
+                throw new IOException("Unsupported backup version");
+            }
+
+            Manifest manifest = new Manifest();
+            try {
+                manifest.chunks = Integer.parseInt(properties.getProperty(KEY_CHUNKS, "0"));
+                manifest.messages = Long.parseLong(properties.getProperty(KEY_MESSAGES, "0"));
+                manifest.cursor = Long.parseLong(properties.getProperty(KEY_CURSOR, String.valueOf(NO_CURSOR)));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid backup manifest");
+            }
+            manifest.complete = Boolean.parseBoolean(properties.getProperty(KEY_COMPLETE));
+            return manifest;
+        }
+
+        void write(File directory) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty(KEY_VERSION, String.valueOf(BackupFormat.VERSION));
+            properties.setProperty(KEY_CHUNKS, String.valueOf(chunks));
+            properties.setProperty(KEY_MESSAGES, String.valueOf(messages));
+            properties.setProperty(KEY_CURSOR, String.valueOf(cursor));
+            properties.setProperty(KEY_COMPLETE, String.valueOf(complete));
+
+            File file = new File(directory, MANIFEST_FILE);
+            File temp = new File(file.getPath() + TEMP_SUFFIX);
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                properties.store(out, null);
+            } finally {
+                out.close();
+            }
+            rename(temp, file);
+        }
+    }
+
+}
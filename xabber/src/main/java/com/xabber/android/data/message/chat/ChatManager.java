@@ -33,20 +33,17 @@ import com.xabber.android.data.database.sqlite.SoundTable;
 import com.xabber.android.data.database.sqlite.Suppress100Table;
 import com.xabber.android.data.database.sqlite.VibroTable;
 import com.xabber.android.data.entity.AccountJid;
-import com.xabber.android.data.entity.BaseEntity;
-import com.xabber.android.data.entity.NestedMap;
+import com.xabber.android.data.entity.EntityRegistry;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.message.AbstractChat;
 import com.xabber.android.data.message.ChatData;
 import com.xabber.android.data.message.NotificationState;
-import com.xabber.android.data.roster.RosterManager;
+import com.xabber.android.data.metrics.MetricsManager;
 
 import org.jxmpp.stringprep.XmppStringprepException;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import io.realm.Realm;
 import io.realm.RealmObject;
 import io.realm.RealmResults;
@@ -67,32 +64,32 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
     /**
      * Stored input for user in account.
      */
-    private final NestedMap<ChatInput> chatInputs;
+    private final EntityRegistry<ChatInput> chatInputs;
     /**
      * List of chats whose messages mustn't be saved for user in account.
      */
-    private final NestedMap<Object> privateChats;
+    private final EntityRegistry<Object> privateChats;
     /**
      * Whether notification in visible chat should be used for user in account.
      */
-    private final NestedMap<Boolean> notifyVisible;
+    private final EntityRegistry<Boolean> notifyVisible;
     /**
      * Whether text of incoming message should be shown in notification bar for
      * user in account.
      */
-    private final NestedMap<ShowMessageTextInNotification> showText;
+    private final EntityRegistry<ShowMessageTextInNotification> showText;
     /**
      * Whether vibro notification should be used for user in account.
      */
-    private final NestedMap<Boolean> makeVibro;
+    private final EntityRegistry<Boolean> makeVibro;
     /**
      * Sound, associated with chat for user in account.
      */
-    private final NestedMap<Uri> sounds;
+    private final EntityRegistry<Uri> sounds;
     /**
      * Whether 'This room is not anonymous'-messages (Status Code 100) should be suppressed
      */
-    private final NestedMap<Boolean> suppress100;
+    private final EntityRegistry<Boolean> suppress100;
 
     /**
      * chat scroll states - position of message list
@@ -107,37 +104,25 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
     }
 
     private ChatManager() {
-        chatInputs = new NestedMap<>();
-        privateChats = new NestedMap<>();
-        sounds = new NestedMap<>();
-        showText = new NestedMap<>();
-        makeVibro = new NestedMap<>();
-        notifyVisible = new NestedMap<>();
-        suppress100 = new NestedMap<>();
+        chatInputs = new EntityRegistry<>();
+        privateChats = new EntityRegistry<>();
+        sounds = new EntityRegistry<>();
+        showText = new EntityRegistry<>();
+        makeVibro = new EntityRegistry<>();
+        notifyVisible = new EntityRegistry<>();
+        suppress100 = new EntityRegistry<>();
     }
 
     @Override
     public void onLoad() {
-        final Set<BaseEntity> privateChats = new HashSet<>();
-        final NestedMap<Boolean> notifyVisible = new NestedMap<>();
-        final NestedMap<ShowMessageTextInNotification> showText = new NestedMap<>();
-        final NestedMap<Boolean> makeVibro = new NestedMap<>();
-        final NestedMap<Uri> sounds = new NestedMap<>();
-        final NestedMap<Boolean> suppress100 = new NestedMap<>();
+        // registries are concurrent, so loaded values are put from this thread
         Cursor cursor;
         cursor = PrivateChatTable.getInstance().list();
         try {
             if (cursor.moveToFirst()) {
                 do {
-                    try {
-                        privateChats.add(RosterManager.getInstance().getAbstractContact(
-                                AccountJid.from(PrivateChatTable.getAccount(cursor)),
-                                UserJid.from(PrivateChatTable.getUser(cursor))
-                        ));
-
-                    } catch (UserJid.UserJidCreateException | XmppStringprepException e) {
-                        LogManager.exception(this, e);
-                    }
+                    putLoaded(privateChats, PrivateChatTable.getAccount(cursor),
+                            PrivateChatTable.getUser(cursor), PRIVATE_CHAT);
                 } while (cursor.moveToNext());
             }
         } finally {
@@ -148,7 +133,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
         try {
             if (cursor.moveToFirst()) {
                 do {
-                    notifyVisible.put(NotifyVisibleTable.getAccount(cursor),
+                    putLoaded(notifyVisible, NotifyVisibleTable.getAccount(cursor),
                             NotifyVisibleTable.getUser(cursor),
                             NotifyVisibleTable.getValue(cursor));
                 } while (cursor.moveToNext());
@@ -161,7 +146,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
         try {
             if (cursor.moveToFirst()) {
                 do {
-                    showText.put(ShowTextTable.getAccount(cursor),
+                    putLoaded(showText, ShowTextTable.getAccount(cursor),
                             ShowTextTable.getUser(cursor),
                             ShowTextTable.getValue(cursor));
                 } while (cursor.moveToNext());
@@ -174,7 +159,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
         try {
             if (cursor.moveToFirst()) {
                 do {
-                    makeVibro.put(VibroTable.getAccount(cursor),
+                    putLoaded(makeVibro, VibroTable.getAccount(cursor),
                             VibroTable.getUser(cursor),
                             VibroTable.getValue(cursor));
                 } while (cursor.moveToNext());
@@ -187,7 +172,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
         try {
             if (cursor.moveToFirst()) {
                 do {
-                    sounds.put(SoundTable.getAccount(cursor),
+                    putLoaded(sounds, SoundTable.getAccount(cursor),
                             SoundTable.getUser(cursor),
                             SoundTable.getValue(cursor));
                 } while (cursor.moveToNext());
@@ -200,7 +185,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
         try {
             if (cursor.moveToFirst()) {
                 do {
-                    makeVibro.put(Suppress100Table.getAccount(cursor),
+                    putLoaded(suppress100, Suppress100Table.getAccount(cursor),
                             Suppress100Table.getUser(cursor),
                             Suppress100Table.getValue(cursor));
                 } while (cursor.moveToNext());
@@ -210,39 +195,29 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
         }
 
         clearUnusedNotificationStateFromRealm();
-
-        Application.getInstance().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                onLoaded(privateChats, notifyVisible, showText, makeVibro,
-                        sounds, suppress100);
-            }
-        });
     }
 
-    private void onLoaded(Set<BaseEntity> privateChats,
-                          NestedMap<Boolean> notifyVisible, NestedMap<ShowMessageTextInNotification> showText,
-                          NestedMap<Boolean> vibro, NestedMap<Uri> sounds, NestedMap<Boolean> suppress100) {
-        for (BaseEntity baseEntity : privateChats) {
-            this.privateChats.put(baseEntity.getAccount().toString(),
-                    baseEntity.getUser().toString(), PRIVATE_CHAT);
+    private <T> void putLoaded(EntityRegistry<T> registry, String account, String user,
+                               @Nullable T value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            registry.put(AccountJid.from(account), UserJid.from(user).getJid(), value);
+        } catch (UserJid.UserJidCreateException | XmppStringprepException e) {
+            LogManager.exception(this, e);
         }
-        this.notifyVisible.addAll(notifyVisible);
-        this.showText.addAll(showText);
-        this.makeVibro.addAll(vibro);
-        this.sounds.addAll(sounds);
-        this.suppress100.addAll(suppress100);
     }
 
     @Override
     public void onAccountRemoved(AccountItem accountItem) {
-        chatInputs.clear(accountItem.getAccount().toString());
-        privateChats.clear(accountItem.getAccount().toString());
-        sounds.clear(accountItem.getAccount().toString());
-        showText.clear(accountItem.getAccount().toString());
-        makeVibro.clear(accountItem.getAccount().toString());
-        notifyVisible.clear(accountItem.getAccount().toString());
-        suppress100.clear(accountItem.getAccount().toString());
+        chatInputs.clear(accountItem.getAccount());
+        privateChats.clear(accountItem.getAccount());
+        sounds.clear(accountItem.getAccount());
+        showText.clear(accountItem.getAccount());
+        makeVibro.clear(accountItem.getAccount());
+        notifyVisible.clear(accountItem.getAccount());
+        suppress100.clear(accountItem.getAccount());
     }
 
     /**
@@ -253,7 +228,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
      * @return
      */
     public boolean isSaveMessages(AccountJid account, UserJid user) {
-        return privateChats.get(account.toString(), user.toString()) != PRIVATE_CHAT;
+        return privateChats.get(account, user.getJid()) != PRIVATE_CHAT;
     }
 
     /**
@@ -266,9 +241,9 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
     public void setSaveMessages(final AccountJid account, final UserJid user,
                                 final boolean save) {
         if (save) {
-            privateChats.remove(account.toString(), user.toString());
+            privateChats.remove(account, user.getJid());
         } else {
-            privateChats.put(account.toString(), user.toString(), PRIVATE_CHAT);
+            privateChats.put(account, user.getJid(), PRIVATE_CHAT);
         }
         Application.getInstance().runInBackgroundUserRequest(new Runnable() {
             @Override
@@ -288,7 +263,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
      * @return typed but not sent message.
      */
     public String getTypedMessage(AccountJid account, UserJid user) {
-        ChatInput chat = chatInputs.get(account.toString(), user.toString());
+        ChatInput chat = chatInputs.get(account, user.getJid());
         if (chat == null) {
             return "";
         }
@@ -301,7 +276,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
      * @return Start selection position.
      */
     public int getSelectionStart(AccountJid account, UserJid user) {
-        ChatInput chat = chatInputs.get(account.toString(), user.toString());
+        ChatInput chat = chatInputs.get(account, user.getJid());
         if (chat == null) {
             return 0;
         }
@@ -314,7 +289,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
      * @return End selection position.
      */
     public int getSelectionEnd(AccountJid account, UserJid user) {
-        ChatInput chat = chatInputs.get(account.toString(), user.toString());
+        ChatInput chat = chatInputs.get(account, user.getJid());
         if (chat == null) {
             return 0;
         }
@@ -332,10 +307,9 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
      */
     public void setTyped(AccountJid account, UserJid user, String typedMessage,
                          int selectionStart, int selectionEnd) {
-        ChatInput chat = chatInputs.get(account.toString(), user.toString());
+        ChatInput chat = chatInputs.get(account, user.getJid());
         if (chat == null) {
-            chat = new ChatInput();
-            chatInputs.put(account.toString(), user.toString(), chat);
+            chat = chatInputs.putIfAbsent(account, user.getJid(), new ChatInput());
         }
         chat.setTyped(typedMessage, selectionStart, selectionEnd);
     }
@@ -347,7 +321,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
      * if there is no user specific value.
      */
     public boolean isNotifyVisible(AccountJid account, UserJid user) {
-        Boolean value = notifyVisible.get(account.toString(), user.toString());
+        Boolean value = notifyVisible.get(account, user.getJid());
         if (value == null) {
             return SettingsManager.eventsVisibleChat();
         }
@@ -355,7 +329,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
     }
 
     public void setNotifyVisible(final AccountJid account, final UserJid user, final boolean value) {
-        notifyVisible.put(account.toString(), user.toString(), value);
+        notifyVisible.put(account, user.getJid(), value);
         Application.getInstance().runInBackgroundUserRequest(new Runnable() {
             @Override
             public void run() {
@@ -395,7 +369,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
     }
 
     public ShowMessageTextInNotification getShowText(AccountJid account, UserJid user) {
-        ShowMessageTextInNotification showMessageTextInNotification = showText.get(account.toString(), user.toString());
+        ShowMessageTextInNotification showMessageTextInNotification = showText.get(account, user.getJid());
         if (showMessageTextInNotification == null) {
             return ShowMessageTextInNotification.default_settings;
         } else {
@@ -404,7 +378,11 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
     }
 
     public void setShowText(final AccountJid account, final UserJid user, final ShowMessageTextInNotification value) {
-        showText.put(account.toString(), user.toString(), value);
+        if (value == null) {
+            showText.remove(account, user.getJid());
+        } else {
+            showText.put(account, user.getJid(), value);
+        }
         Application.getInstance().runInBackgroundUserRequest(new Runnable() {
             @Override
             public void run() {
@@ -420,7 +398,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
      * there is no user specific value.
      */
     public boolean isMakeVibro(AccountJid account, UserJid user) {
-        Boolean value = makeVibro.get(account.toString(), user.toString());
+        Boolean value = makeVibro.get(account, user.getJid());
         if (value == null) {
             return true;
         }
@@ -428,7 +406,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
     }
 
     public void setMakeVibro(final AccountJid account, final UserJid user, final boolean value) {
-        makeVibro.put(account.toString(), user.toString(), value);
+        makeVibro.put(account, user.getJid(), value);
         Application.getInstance().runInBackgroundUserRequest(new Runnable() {
             @Override
             public void run() {
@@ -444,7 +422,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
      * value.
      */
     public Uri getSound(AccountJid account, UserJid user, boolean isMUC) {
-        Uri value = sounds.get(account.toString(), user.toString());
+        Uri value = sounds.get(account, user.getJid());
         if (value == null) {
             if (isMUC) return SettingsManager.eventsSoundMuc();
             return SettingsManager.eventsSound();
@@ -456,7 +434,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
     }
 
     public void setSound(final AccountJid account, final UserJid user, final Uri value) {
-        sounds.put(account.toString(), user.toString(), value == null ? EMPTY_SOUND : value);
+        sounds.put(account, user.getJid(), value == null ? EMPTY_SOUND : value);
         Application.getInstance().runInBackgroundUserRequest(new Runnable() {
             @Override
             public void run() {
@@ -472,7 +450,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
      * @return Whether 'This Room is not Anonymous'-messages (Status Code 100) should be suppressed.
      */
     public boolean isSuppress100(AccountJid account, UserJid user) {
-        Boolean value = suppress100.get(account.toString(), user.toString());
+        Boolean value = suppress100.get(account, user.getJid());
         if (value == null)
             return SettingsManager.eventsSuppress100();
         return value;
@@ -480,7 +458,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
 
     public void setSuppress100(final AccountJid account, final UserJid user,
                              final boolean value) {
-        suppress100.put(account.toString(), user.toString(), value);
+        suppress100.put(account, user.getJid(), value);
         Application.getInstance().runInBackgroundUserRequest(new Runnable() {
             @Override
             public void run() {
@@ -491,7 +469,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
 
     public void saveOrUpdateChatDataToRealm(final AbstractChat chat) {
         final long startTime = System.currentTimeMillis();
-        Application.getInstance().runInBackground(new Runnable() {
+        Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
             @Override
             public void run() {
                 Realm realm = RealmManager.getInstance().getNewRealm();
@@ -528,6 +506,7 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
         });
         LogManager.d("REALM", Thread.currentThread().getName()
                 + " save chat data: " + (System.currentTimeMillis() - startTime));
+        MetricsManager.getInstance().getHistogram("realm.chat.save").recordMillisSince(startTime);
     }
 
     @Nullable
@@ -584,5 +563,6 @@ public class ChatManager implements OnLoadListener, OnAccountRemovedListener {
         realm.close();
         LogManager.d("REALM", Thread.currentThread().getName()
                 + " clear unused notif. state: " + (System.currentTimeMillis() - startTime));
+        MetricsManager.getInstance().getHistogram("realm.notificationState.clear").recordMillisSince(startTime);
     }
 }
@@ -0,0 +1,584 @@
+package com.xabber.android.data.message.search;
+
+import androidx.annotation.Nullable;
+
+import com.xabber.android.data.OnLoadListener;
+import com.xabber.android.data.SettingsManager;
+import com.xabber.android.data.database.MessageDatabaseManager;
+import com.xabber.android.data.database.messagerealm.MessageItem;
+import com.xabber.android.data.database.messagerealm.SearchToken;
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.log.LogManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.Realm;
+import io.realm.RealmQuery;
+import io.realm.RealmResults;
+import io.realm.Sort;
+
+/**
+ * Local full text search in message history.
+ * <p/>
+ * Index is stored in message realm as {@link SearchToken} entries. New messages
+ * are indexed shortly after they were saved, existing history is indexed by
+ * background rebuild that survives application restarts.
+ */
+public class MessageSearchManager implements OnLoadListener {
+
+    private static final String LOG_TAG = MessageSearchManager.class.getSimpleName();
+
+    /**
+     * Delay to collect saved messages before indexing them.
+     */
+    private static final long INDEX_DELAY = 1000;
+
+    /**
+     * Number of attempts to find saved message, as it can be written asynchronously.
+     */
+    private static final int MAX_INDEX_ATTEMPTS = 3;
+
+    /**
+     * Number of messages indexed in one transaction.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Initial time span of messages processed by rebuild at once.
+     */
+    private static final long REBUILD_WINDOW = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Maximum number of messages containing the rarest query term to be ranked.
+     * Most recent ones are taken.
+     */
+    private static final int MAX_CANDIDATES = 2000;
+
+    private static final int SNIPPET_RADIUS = 40;
+    private static final String ELLIPSIS = "…";
+
+    private static MessageSearchManager instance;
+
+    private final ScheduledExecutorService indexerExecutor;
+
+    /**
+     * Number of indexing attempts by id of message waiting to be indexed.
+     */
+    private final Map<String, Integer> pendingMessages;
+    private boolean indexScheduled;
+
+    public static MessageSearchManager getInstance() {
+        if (instance == null) {
+            instance = new MessageSearchManager();
+        }
+
+        return instance;
+    }
+
+    private MessageSearchManager() {
+        pendingMessages = new LinkedHashMap<>();
+        indexerExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Message search indexer");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void onLoad() {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                rebuildIfNeeded();
+            }
+        });
+    }
+
+    /**
+     * Schedules indexing of saved or changed messages.
+     */
+    public void onMessagesSaved(Collection<MessageItem> messageItems) {
+        List<String> ids = new ArrayList<>(messageItems.size());
+        for (MessageItem messageItem : messageItems) {
+            ids.add(messageItem.getUniqueId());
+        }
+        onMessagesSaved(ids.toArray(new String[0]));
+    }
+
+    public void onMessagesSaved(String... messageIds) {
+        synchronized (pendingMessages) {
+            for (String messageId : messageIds) {
+                if (!pendingMessages.containsKey(messageId)) {
+                    pendingMessages.put(messageId, 0);
+                }
+            }
+            if (indexScheduled) {
+                return;
+            }
+            indexScheduled = true;
+        }
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                indexPendingMessages();
+            }
+        }, INDEX_DELAY);
+    }
+
+    public void onMessagesRemoved(Collection<String> messageIds) {
+        final String[] ids = messageIds.toArray(new String[0]);
+        if (ids.length == 0) {
+            return;
+        }
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+                realm.beginTransaction();
+                realm.where(SearchToken.class).in(SearchToken.Fields.MESSAGE_ID, ids)
+                        .findAll().deleteAllFromRealm();
+                realm.commitTransaction();
+                realm.close();
+            }
+        });
+    }
+
+    public void onHistoryCleared(final AccountJid account, final UserJid user) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+                realm.beginTransaction();
+                realm.where(SearchToken.class)
+                        .equalTo(SearchToken.Fields.ACCOUNT, account.toString())
+                        .equalTo(SearchToken.Fields.USER, user.toString())
+                        .findAll().deleteAllFromRealm();
+                realm.commitTransaction();
+                realm.close();
+            }
+        });
+    }
+
+    /**
+     * Drops the index and builds it again from message history in background.
+     */
+    public void rebuildIndex() {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                SettingsManager.setSearchIndexVersion(0);
+                SettingsManager.setSearchIndexRebuildCursor(-1);
+                rebuildIfNeeded();
+            }
+        });
+    }
+
+    /**
+     * @return whether all messages saved before the last application start are indexed.
+     */
+    public boolean isIndexReady() {
+        return SettingsManager.getSearchIndexVersion() == SearchTokenizer.VERSION;
+    }
+
+    /**
+     * Searches messages containing all words of the query, last word can be incomplete.
+     * Must not be called from UI thread.
+     *
+     * @param account <code>null</code> to search in all accounts.
+     * @param user    <code>null</code> to search in all chats of the account.
+     * @return page of results ordered by relevance and then by time.
+     */
+    public List<MessageSearchResult> search(String query, @Nullable AccountJid account,
+                                            @Nullable UserJid user, int offset, int limit) {
+        List<String> terms = new ArrayList<>();
+        for (SearchTokenizer.Token token : SearchTokenizer.tokenize(query)) {
+            if (!terms.contains(token.term)) {
+                terms.add(token.term);
+            }
+        }
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        if (account == null) {
+            user = null;
+        }
+
+        long startTime = System.currentTimeMillis();
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        try {
+            List<Candidate> candidates = findCandidates(realm, terms, account, user);
+            Collections.sort(candidates, new Comparator<Candidate>() {
+                @Override
+                public int compare(Candidate first, Candidate second) {
+                    if (first.score != second.score) {
+                        return first.score > second.score ? -1 : 1;
+                    }
+                    return first.timestamp > second.timestamp ? -1
+                            : (first.timestamp == second.timestamp ? 0 : 1);
+                }
+            });
+
+            List<MessageSearchResult> results = createResults(realm,
+                    candidates.subList(Math.min(offset, candidates.size()),
+                            Math.min(offset + limit, candidates.size())), terms);
+            LogManager.d(LOG_TAG, "search " + terms.size() + " terms: " + candidates.size()
+                    + " found in " + (System.currentTimeMillis() - startTime) + " ms");
+            return results;
+        } finally {
+            realm.close();
+        }
+    }
+
+    /** SEARCH */
+
+    /**
+     * Message matching the query.
+     */
+    private static class Candidate {
+        final String messageId;
+        final long timestamp;
+        double score;
+        boolean matched;
+
+        Candidate(String messageId, long timestamp) {
+            this.messageId = messageId;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static List<Candidate> findCandidates(Realm realm, List<String> terms,
+                                                  @Nullable AccountJid account, @Nullable UserJid user) {
+        long totalMessages = Math.max(1, realm.where(MessageItem.class).count());
+
+        // start from the rarest term to keep intersection small
+        final Map<String, Long> frequencies = new HashMap<>();
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            frequencies.put(term, termQuery(realm, term, i == terms.size() - 1, account, user).count());
+        }
+        final String lastTerm = terms.get(terms.size() - 1);
+        List<String> orderedTerms = new ArrayList<>(terms);
+        Collections.sort(orderedTerms, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                return frequencies.get(first).compareTo(frequencies.get(second));
+            }
+        });
+        if (frequencies.get(orderedTerms.get(0)) == 0) {
+            return new ArrayList<>();
+        }
+
+        Map<String, Candidate> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < orderedTerms.size(); i++) {
+            String term = orderedTerms.get(i);
+            boolean prefix = term.equals(lastTerm);
+            double idf = Math.log(1 + (double) totalMessages / frequencies.get(term));
+            RealmQuery<SearchToken> query = termQuery(realm, term, prefix, account, user);
+
+            if (i == 0) {
+                RealmResults<SearchToken> tokens = query.findAllSorted(
+                        SearchToken.Fields.TIMESTAMP, Sort.DESCENDING);
+                for (SearchToken token : tokens) {
+                    Candidate candidate = candidates.get(token.getMessageId());
+                    if (candidate == null) {
+                        if (candidates.size() >= MAX_CANDIDATES) {
+                            break;
+                        }
+                        candidate = new Candidate(token.getMessageId(), token.getTimestamp());
+                        candidates.put(candidate.messageId, candidate);
+                    }
+                    candidate.score += weight(token.getCount()) * idf;
+                }
+                continue;
+            }
+
+            for (Candidate candidate : candidates.values()) {
+                candidate.matched = false;
+            }
+            List<String> ids = new ArrayList<>(candidates.keySet());
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                String[] batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()))
+                        .toArray(new String[0]);
+                RealmResults<SearchToken> tokens = termQuery(realm, term, prefix, account, user)
+                        .in(SearchToken.Fields.MESSAGE_ID, batch).findAll();
+                for (SearchToken token : tokens) {
+                    Candidate candidate = candidates.get(token.getMessageId());
+                    candidate.score += weight(token.getCount()) * idf;
+                    candidate.matched = true;
+                }
+            }
+            Iterator<Candidate> iterator = candidates.values().iterator();
+            while (iterator.hasNext()) {
+                if (!iterator.next().matched) {
+                    iterator.remove();
+                }
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+        }
+        return new ArrayList<>(candidates.values());
+    }
+
+    private static RealmQuery<SearchToken> termQuery(Realm realm, String term, boolean prefix,
+                                                     @Nullable AccountJid account, @Nullable UserJid user) {
+        RealmQuery<SearchToken> query = realm.where(SearchToken.class);
+        if (prefix && term.length() >= SearchToken.PREFIX_LENGTH) {
+            // indexed prefix limits terms compared by beginsWith,
+            // shorter query words are matched as whole words
+            query.equalTo(SearchToken.Fields.PREFIX, SearchToken.getPrefix(term))
+                    .beginsWith(SearchToken.Fields.TERM, term);
+        } else {
+            query.equalTo(SearchToken.Fields.TERM, term);
+        }
+        if (account != null) {
+            query.equalTo(SearchToken.Fields.ACCOUNT, account.toString());
+        }
+        if (user != null) {
+            query.equalTo(SearchToken.Fields.USER, user.toString());
+        }
+        return query;
+    }
+
+    private static double weight(int count) {
+        return 1 + Math.log(Math.max(1, count));
+    }
+
+    private List<MessageSearchResult> createResults(Realm realm, List<Candidate> page, List<String> terms) {
+        if (page.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String[] ids = new String[page.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = page.get(i).messageId;
+        }
+        Map<String, MessageItem> messages = new HashMap<>();
+        for (MessageItem messageItem : realm.where(MessageItem.class)
+                .in(MessageItem.Fields.UNIQUE_ID, ids).findAll()) {
+            messages.put(messageItem.getUniqueId(), realm.copyFromRealm(messageItem));
+        }
+
+        List<MessageSearchResult> results = new ArrayList<>(page.size());
+        List<String> removed = new ArrayList<>();
+        for (Candidate candidate : page) {
+            MessageItem messageItem = messages.get(candidate.messageId);
+            if (messageItem == null) {
+                // message was deleted without updating the index
+                removed.add(candidate.messageId);
+                continue;
+            }
+            results.add(createResult(messageItem, candidate.score, terms));
+        }
+        if (!removed.isEmpty()) {
+            onMessagesRemoved(removed);
+        }
+        return results;
+    }
+
+    static MessageSearchResult createResult(MessageItem messageItem, double score, List<String> terms) {
+        String text = messageItem.getText() == null ? "" : messageItem.getText();
+        String lastTerm = terms.get(terms.size() - 1);
+
+        List<SearchTokenizer.Token> matches = new ArrayList<>();
+        for (SearchTokenizer.Token token : SearchTokenizer.tokenize(text)) {
+            if (terms.contains(token.term) || token.term.startsWith(lastTerm)) {
+                matches.add(token);
+            }
+        }
+
+        int start = 0;
+        int end = text.length();
+        if (!matches.isEmpty()) {
+            start = Math.max(0, matches.get(0).start - SNIPPET_RADIUS);
+            end = Math.min(text.length(), matches.get(0).end + SNIPPET_RADIUS);
+        } else {
+            end = Math.min(text.length(), 2 * SNIPPET_RADIUS);
+        }
+        // don't cut surrogate pairs
+        if (start > 0 && Character.isLowSurrogate(text.charAt(start))) start--;
+        if (end < text.length() && Character.isLowSurrogate(text.charAt(end))) end++;
+
+        StringBuilder snippet = new StringBuilder();
+        if (start > 0) snippet.append(ELLIPSIS);
+        int shift = snippet.length() - start;
+        snippet.append(text, start, end);
+        if (end < text.length()) snippet.append(ELLIPSIS);
+
+        List<MessageSearchResult.Highlight> highlights = new ArrayList<>();
+        for (SearchTokenizer.Token token : matches) {
+            if (token.start >= start && token.end <= end) {
+                highlights.add(new MessageSearchResult.Highlight(token.start + shift, token.end + shift));
+            }
+        }
+        return new MessageSearchResult(messageItem, score, snippet.toString(), highlights);
+    }
+
+    /** INDEXING */
+
+    private void indexPendingMessages() {
+        Map<String, Integer> messageIds;
+        synchronized (pendingMessages) {
+            messageIds = new HashMap<>(pendingMessages);
+            pendingMessages.clear();
+            indexScheduled = false;
+        }
+        if (messageIds.isEmpty()) {
+            return;
+        }
+
+        List<String> notFound = new ArrayList<>();
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        List<String> ids = new ArrayList<>(messageIds.keySet());
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<String> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            RealmResults<MessageItem> messageItems = realm.where(MessageItem.class)
+                    .in(MessageItem.Fields.UNIQUE_ID, batch.toArray(new String[0])).findAll();
+
+            realm.beginTransaction();
+            List<String> found = new ArrayList<>(messageItems.size());
+            for (MessageItem messageItem : messageItems) {
+                indexMessage(realm, messageItem);
+                found.add(messageItem.getUniqueId());
+            }
+            realm.commitTransaction();
+
+            for (String id : batch) {
+                if (!found.contains(id)) notFound.add(id);
+            }
+        }
+        realm.close();
+
+        // message can be saved by asynchronous transaction, try again later
+        for (String id : notFound) {
+            int attempts = messageIds.get(id) + 1;
+            if (attempts < MAX_INDEX_ATTEMPTS) {
+                synchronized (pendingMessages) {
+                    pendingMessages.put(id, attempts);
+                }
+            }
+        }
+        if (!notFound.isEmpty()) {
+            onMessagesSaved();
+        }
+    }
+
+    private void rebuildIfNeeded() {
+        if (isIndexReady()) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        try {
+            long cursor = SettingsManager.getSearchIndexRebuildCursor();
+            if (cursor < 0) {
+                realm.beginTransaction();
+                realm.delete(SearchToken.class);
+                realm.commitTransaction();
+
+                Number min = realm.where(MessageItem.class).min(MessageItem.Fields.TIMESTAMP);
+                cursor = min == null ? 0 : min.longValue();
+                indexMessages(realm, realm.where(MessageItem.class)
+                        .isNull(MessageItem.Fields.TIMESTAMP).findAll());
+                SettingsManager.setSearchIndexRebuildCursor(cursor);
+            }
+            LogManager.i(LOG_TAG, "rebuild index from " + cursor);
+
+            // messages are processed by time windows, size of window is adjusted
+            // to get about one batch of messages in it
+            long window = REBUILD_WINDOW;
+            Number max = realm.where(MessageItem.class).max(MessageItem.Fields.TIMESTAMP);
+            while (max != null && cursor <= max.longValue()) {
+                RealmResults<MessageItem> messageItems = realm.where(MessageItem.class)
+                        .between(MessageItem.Fields.TIMESTAMP, cursor, cursor + window - 1)
+                        .findAll();
+                indexMessages(realm, messageItems);
+
+                cursor += window;
+                SettingsManager.setSearchIndexRebuildCursor(cursor);
+
+                if (messageItems.size() > 2 * BATCH_SIZE && window > 1) {
+                    window /= 2;
+                } else if (messageItems.size() < BATCH_SIZE / 2) {
+                    window *= 2;
+                }
+                max = realm.where(MessageItem.class).max(MessageItem.Fields.TIMESTAMP);
+            }
+
+            SettingsManager.setSearchIndexVersion(SearchTokenizer.VERSION);
+            SettingsManager.setSearchIndexRebuildCursor(-1);
+            LogManager.i(LOG_TAG, "index rebuilt in " + (System.currentTimeMillis() - startTime) + " ms");
+        } finally {
+            realm.close();
+        }
+    }
+
+    private static void indexMessages(Realm realm, RealmResults<MessageItem> messageItems) {
+        for (int from = 0; from < messageItems.size(); from += BATCH_SIZE) {
+            realm.beginTransaction();
+            for (int i = from; i < Math.min(from + BATCH_SIZE, messageItems.size()); i++) {
+                indexMessage(realm, messageItems.get(i));
+            }
+            realm.commitTransaction();
+        }
+    }
+
+    /**
+     * Replaces index entries of the message. Must be called inside transaction.
+     */
+    private static void indexMessage(Realm realm, MessageItem messageItem) {
+        String messageId = messageItem.getUniqueId();
+        realm.where(SearchToken.class).equalTo(SearchToken.Fields.MESSAGE_ID, messageId)
+                .findAll().deleteAllFromRealm();
+        if (messageItem.getAction() != null) {
+            return;
+        }
+
+        String account = messageItem.getAccount() == null ? null : messageItem.getAccount().toString();
+        String user = messageItem.getUser() == null ? null : messageItem.getUser().toString();
+        long timestamp = messageItem.getTimestamp() == null ? 0 : messageItem.getTimestamp();
+        for (Map.Entry<String, Integer> entry : SearchTokenizer.countTerms(messageItem.getText()).entrySet()) {
+            SearchToken token = new SearchToken(entry.getKey(), messageId);
+            token.setAccount(account);
+            token.setUser(user);
+            token.setTimestamp(timestamp);
+            token.setCount(entry.getValue());
+            realm.copyToRealmOrUpdate(token);
+        }
+    }
+
+    private void submit(Runnable runnable) {
+        schedule(runnable, 0);
+    }
+
+    private void schedule(final Runnable runnable, long delay) {
+        indexerExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Exception e) {
+                    LogManager.exception(LOG_TAG, e);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+}
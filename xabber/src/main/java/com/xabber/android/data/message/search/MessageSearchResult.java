@@ -0,0 +1,64 @@
+package com.xabber.android.data.message.search;
+
+import com.xabber.android.data.database.messagerealm.MessageItem;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Found message with its relevance and text fragment around matched words.
+ */
+public class MessageSearchResult {
+
+    /**
+     * Position of matched word in the snippet.
+     */
+    public static class Highlight {
+        private final int start;
+        private final int end;
+
+        Highlight(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    private final MessageItem messageItem;
+    private final double score;
+    private final String snippet;
+    private final List<Highlight> highlights;
+
+    MessageSearchResult(MessageItem messageItem, double score, String snippet, List<Highlight> highlights) {
+        this.messageItem = messageItem;
+        this.score = score;
+        this.snippet = snippet;
+        this.highlights = Collections.unmodifiableList(highlights);
+    }
+
+    /**
+     * @return unmanaged copy of the message.
+     */
+    public MessageItem getMessageItem() {
+        return messageItem;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public List<Highlight> getHighlights() {
+        return highlights;
+    }
+}
@@ -0,0 +1,98 @@
+package com.xabber.android.data.message.search;
+
+import java.text.BreakIterator;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Splits text into search terms.
+ * <p/>
+ * Words are found with {@link BreakIterator}, so scripts without spaces
+ * are segmented too. Terms are NFKC normalized and lower cased.
+ */
+class SearchTokenizer {
+
+    /**
+     * Changing of tokenization rules or index fields requires rebuild of the index.
+     */
+    static final int VERSION = 2;
+
+    static final int MAX_TERM_LENGTH = 64;
+
+    /**
+     * Tokens after this number are not indexed.
+     */
+    static final int MAX_TOKENS = 2000;
+
+    /**
+     * Word in the text.
+     */
+    static class Token {
+        final String term;
+        final int start;
+        final int end;
+
+        Token(String term, int start, int end) {
+            this.term = term;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private SearchTokenizer() {
+    }
+
+    static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        BreakIterator iterator = BreakIterator.getWordInstance(Locale.getDefault());
+        iterator.setText(text);
+        int start = iterator.first();
+        for (int end = iterator.next(); end != BreakIterator.DONE && tokens.size() < MAX_TOKENS;
+             start = end, end = iterator.next()) {
+            if (!isWord(text, start, end)) {
+                continue;
+            }
+            String term = normalize(text.substring(start, end));
+            if (!term.isEmpty() && term.length() <= MAX_TERM_LENGTH) {
+                tokens.add(new Token(term, start, end));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @return number of occurrences by term in order of first occurrence.
+     */
+    static Map<String, Integer> countTerms(String text) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Token token : tokenize(text)) {
+            Integer count = counts.get(token.term);
+            counts.put(token.term, count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    static String normalize(String word) {
+        return Normalizer.normalize(word, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isWord(String text, int start, int end) {
+        for (int i = start; i < end; ) {
+            int codePoint = text.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                return true;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return false;
+    }
+
+}
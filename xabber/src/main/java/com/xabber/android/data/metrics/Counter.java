@@ -0,0 +1,29 @@
+package com.xabber.android.data.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic counter of events.
+ */
+public class Counter {
+
+    private final AtomicLong value = new AtomicLong();
+
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+    public void add(long delta) {
+        value.addAndGet(delta);
+    }
+
+    public long getValue() {
+        return value.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value.get());
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.xabber.android.data.metrics;
+
+/**
+ * Current value calculated on request, e.g. size of queue.
+ */
+public interface Gauge {
+
+    long getValue();
+
+}
@@ -0,0 +1,116 @@
+package com.xabber.android.data.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in microseconds with relative error of about 12%.
+ * <p/>
+ * Each power of two range is split into {@link #SUB_BUCKETS} linear buckets, like in
+ * HdrHistogram, so memory is fixed and recording is a few atomic increments.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Values above 2^40 us (about 12 days) are counted in the last bucket.
+     */
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros) {
+        if (micros < 0) micros = 0;
+        counts.incrementAndGet(getIndex(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long current;
+        do {
+            current = max.get();
+        } while (micros > current && !max.compareAndSet(current, micros));
+    }
+
+    /**
+     * Records time passed since given {@link System#nanoTime()}.
+     */
+    public void recordNanosSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * Records time passed since given {@link System#currentTimeMillis()}.
+     */
+    public void recordMillisSince(long startMillis) {
+        record((System.currentTimeMillis() - startMillis) * 1000);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMean() {
+        long count = this.count.get();
+        return count == 0 ? 0 : sum.get() / count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile from 0 to 100.
+     * @return upper bound of bucket containing the percentile, but not more than maximum.
+     */
+    public long getPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * percentile / 100);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += counts.get(index);
+            if (seen >= rank) {
+                return index == BUCKETS - 1 ? max.get() : Math.min(getUpperBound(index), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int getIndex(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long getUpperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * @return count, mean, median, 95th and 99th percentiles and maximum in milliseconds.
+     */
+    @Override
+    public String toString() {
+        return "count " + getCount()
+                + ", mean " + format(getMean())
+                + ", p50 " + format(getPercentile(50))
+                + ", p95 " + format(getPercentile(95))
+                + ", p99 " + format(getPercentile(99))
+                + ", max " + format(getMax()) + " ms";
+    }
+
+    private static String format(long micros) {
+        return micros / 1000 + "." + (micros % 1000) / 100;
+    }
+
+}
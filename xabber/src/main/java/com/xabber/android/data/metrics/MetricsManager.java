@@ -0,0 +1,140 @@
+package com.xabber.android.data.metrics;
+
+import com.xabber.android.data.Application;
+import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.time.FastDateFormat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Registry of in-process performance metrics: counters, gauges and latency histograms.
+ * <p/>
+ * Metrics are created on first use by name and live until process is killed.
+ * Names are dot separated, e.g. "realm.message.save".
+ */
+public class MetricsManager {
+
+    private static final String LOG_TAG = MetricsManager.class.getSimpleName();
+
+    private static final MetricsManager instance = new MetricsManager();
+
+    private static final FastDateFormat FILE_DATE_FORMAT
+            = FastDateFormat.getInstance("dd_MM_yyyy_HH_mm_ss", Locale.US);
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final long startTime = System.currentTimeMillis();
+
+    public static MetricsManager getInstance() {
+        return instance;
+    }
+
+    private MetricsManager() {
+    }
+
+    public Counter getCounter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter();
+            Counter previous = counters.putIfAbsent(name, counter);
+            if (previous != null) counter = previous;
+        }
+        return counter;
+    }
+
+    public LatencyHistogram getHistogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram previous = histograms.putIfAbsent(name, histogram);
+            if (previous != null) histogram = previous;
+        }
+        return histogram;
+    }
+
+    /**
+     * Registers gauge, previous gauge with the same name will be replaced.
+     */
+    public void registerGauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * @return all metrics sorted by name and state of background lanes.
+     */
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("uptime ").append((System.currentTimeMillis() - startTime) / 1000).append(" s\n");
+
+        builder.append("\ncounters:\n");
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+
+        builder.append("\ngauges:\n");
+        for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+            builder.append(entry.getKey()).append(": ");
+            try {
+                builder.append(entry.getValue().getValue());
+            } catch (RuntimeException e) {
+                builder.append(e);
+            }
+            builder.append("\n");
+        }
+
+        builder.append("\nhistograms:\n");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+
+        builder.append("\nlanes:\n").append(Application.getInstance().dumpBackgroundTasks());
+        return builder.toString();
+    }
+
+    /**
+     * Writes {@link #dump()} to the directory with log files, so it can be shared from log screen.
+     * Must be called from background thread.
+     *
+     * @return created file or null on error.
+     */
+    @Nullable
+    public File dumpToFile() {
+        File sdCard = Application.getInstance().getApplicationContext().getExternalFilesDir(null);
+        if (sdCard == null) {
+            return null;
+        }
+        File dir = new File(sdCard.getAbsolutePath() + "/logs");
+        dir.mkdirs();
+        String date = FILE_DATE_FORMAT.format(System.currentTimeMillis());
+        File file = new File(dir, "metrics_" + date + ".txt");
+
+        FileWriter writer = null;
+        try {
+            writer = new FileWriter(file);
+            writer.write(dump());
+            return file;
+        } catch (IOException e) {
+            LogManager.exception(LOG_TAG, e);
+            return null;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    LogManager.exception(LOG_TAG, e);
+                }
+            }
+        }
+    }
+
+}
@@ -19,23 +19,12 @@ public class DelayedNotificationActionManager implements OnConnectedListener {
 
     @Override
     public void onConnected(ConnectionItem connection) {
-        Application.getInstance().runInBackground(new Runnable() {
+        Application.getInstance().runOnUiThreadDelay(new Runnable() {
             @Override
             public void run() {
-                try {
-                    Thread.sleep(3000);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-
-                Application.getInstance().runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        onLoaded();
-                    }
-                });
+                onLoaded();
             }
-        });
+        }, 3000);
     }
 
     private void onLoaded() {
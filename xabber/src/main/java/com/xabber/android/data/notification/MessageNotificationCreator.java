@@ -5,10 +5,12 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Build;
+import android.util.LruCache;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.Person;
 import androidx.core.app.RemoteInput;
@@ -49,11 +51,23 @@ public class MessageNotificationCreator {
 
     private final static String MESSAGE_GROUP_ID = "MESSAGE_GROUP";
     private final static int MESSAGE_BUNDLE_NOTIFICATION_ID = 2;
+    private final static int LARGE_ICON_CACHE_SIZE = 32;
+    private final static int PERSON_CACHE_SIZE = 128;
 
     private final Application context;
     private final NotificationManager notificationManager;
     private CharSequence messageHidden;
 
+    /**
+     * Large icons by {@link #getIconKey(MessageNotificationManager.Chat)}. Key contains avatar
+     * hash and name, so changed avatar gets new entry.
+     */
+    private final LruCache<String, Bitmap> largeIcons = new LruCache<>(LARGE_ICON_CACHE_SIZE);
+    /**
+     * Message authors by icon key and author name.
+     */
+    private final LruCache<String, Person> persons = new LruCache<>(PERSON_CACHE_SIZE);
+
     public MessageNotificationCreator(Application context, NotificationManager notificationManager) {
         this.context = context;
         this.notificationManager = notificationManager;
@@ -62,12 +76,14 @@ public class MessageNotificationCreator {
 
     public void createNotification(MessageNotificationManager.Chat chat, boolean alert) {
         boolean inForeground = isAppInForeground(context);
+        String iconKey = getIconKey(chat);
+        Bitmap largeIcon = getLargeIcon(chat, iconKey);
 
         NotificationCompat.Builder builder = new NotificationCompat.Builder(context, getChannelID(chat))
                 .setColor(context.getResources().getColor(R.color.persistent_notification_color))
                 .setWhen(chat.getLastMessageTimestamp())
                 .setSmallIcon(R.drawable.ic_stat_chat)
-                .setLargeIcon(getLargeIcon(chat))
+                .setLargeIcon(largeIcon)
                 .setGroup(MESSAGE_GROUP_ID)
                 .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_CHILDREN)
                 .setOnlyAlertOnce(!alert)
@@ -80,7 +96,7 @@ public class MessageNotificationCreator {
         boolean showText = isNeedShowTextInNotification(chat);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
             builder.addAction(createReplyAction(chat.getNotificationId(), chat.getAccountJid()))
-                    .setStyle(createMessageStyle(chat, showText));
+                    .setStyle(createMessageStyle(chat, showText, iconKey, largeIcon));
         } else {
             builder.setContentTitle(createTitleSingleChat(chat.getMessages().size(), chat.getChatTitle()))
                     .setContentText(createMessageLine(chat.getLastMessage(), chat.isGroupChat(), showText))
@@ -184,16 +200,22 @@ public class MessageNotificationCreator {
                 StringUtils.getQuantityString(context.getResources(), R.array.chat_message_quantity, messageCount), chatTitle);
     }
 
-    private NotificationCompat.Style createMessageStyle(MessageNotificationManager.Chat chat, boolean showText) {
+    private NotificationCompat.Style createMessageStyle(MessageNotificationManager.Chat chat, boolean showText,
+                                                        String iconKey, Bitmap largeIcon) {
         NotificationCompat.MessagingStyle messageStyle = new NotificationCompat.MessagingStyle(
                 new Person.Builder().setName(context.getString(R.string.sender_is_you)).build());
         for (MessageNotificationManager.Message message : chat.getMessages()) {
             Person person = null;
             if (message.getAuthor() != null && message.getAuthor().length() > 0) {
-                person = new Person.Builder()
-                        .setName(message.getAuthor())
-                        .setIcon(IconCompat.createWithBitmap(getLargeIcon(chat)))
-                        .build();
+                String personKey = iconKey + "\n" + message.getAuthor();
+                person = persons.get(personKey);
+                if (person == null) {
+                    person = new Person.Builder()
+                            .setName(message.getAuthor())
+                            .setIcon(IconCompat.createWithBitmap(largeIcon))
+                            .build();
+                    persons.put(personKey, person);
+                }
             }
             messageStyle.addMessage(new NotificationCompat.MessagingStyle.Message(
                             showText ? message.getMessageText() : messageHidden,
@@ -231,11 +253,22 @@ public class MessageNotificationCreator {
         return result;
     }
 
-    private android.graphics.Bitmap getLargeIcon(MessageNotificationManager.Chat chat) {
+    private String getIconKey(MessageNotificationManager.Chat chat) {
+        String name = RosterManager.getInstance().getName(chat.getAccountJid(), chat.getUserJid());
+        String hash = AvatarManager.getInstance().getHash(chat.getUserJid().getBareJid());
+        return chat.getAccountJid() + "\n" + chat.getUserJid() + "\n" + hash + "\n" + name;
+    }
+
+    private Bitmap getLargeIcon(MessageNotificationManager.Chat chat, String iconKey) {
+        Bitmap bitmap = largeIcons.get(iconKey);
+        if (bitmap != null) return bitmap;
+
         String name = RosterManager.getInstance().getName(chat.getAccountJid(), chat.getUserJid());
         if (MUCManager.getInstance().hasRoom(chat.getAccountJid(), chat.getUserJid().getJid().asEntityBareJidIfPossible()))
-            return AvatarManager.getInstance().getRoomBitmap(chat.getUserJid());
-        else return AvatarManager.getInstance().getUserBitmap(chat.getUserJid(), name);
+            bitmap = AvatarManager.getInstance().getRoomBitmap(chat.getUserJid());
+        else bitmap = AvatarManager.getInstance().getUserBitmap(chat.getUserJid(), name);
+        largeIcons.put(iconKey, bitmap);
+        return bitmap;
     }
 
     private NotificationCompat.Style createInboxStyle(MessageNotificationManager.Chat chat, boolean showText) {
@@ -16,6 +16,7 @@ import com.xabber.android.data.database.realm.NotifChatRealm;
 import com.xabber.android.data.database.realm.NotifMessageRealm;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.filedownload.FileCategory;
 import com.xabber.android.data.message.AbstractChat;
 import com.xabber.android.data.message.MessageManager;
@@ -27,7 +28,9 @@ import com.xabber.android.data.roster.RosterManager;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import io.realm.Realm;
@@ -37,6 +40,10 @@ import io.realm.RealmResults;
 public class MessageNotificationManager implements OnLoadListener {
 
     private final static int MESSAGE_BUNDLE_NOTIFICATION_ID = 2;
+    /**
+     * Messages received within this time are shown by one notification update.
+     */
+    private final static long UPDATE_DELAY = 300;
     private final Application context;
     private final NotificationManager notificationManager;
     private final MessageNotificationCreator creator;
@@ -46,6 +53,17 @@ public class MessageNotificationManager implements OnLoadListener {
     private HashMap<Integer, Action> delayedActions = new HashMap<>();
     private long lastNotificationTime = 0;
 
+    /**
+     * Chats with new messages not shown yet. Accessed from UI thread.
+     */
+    private final Set<Chat> pendingChats = new LinkedHashSet<>();
+    private final Runnable updateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updatePendingNotifications();
+        }
+    };
+
     private MessageNotificationManager() {
         context = Application.getInstance();
         notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
@@ -121,18 +139,36 @@ public class MessageNotificationManager implements OnLoadListener {
 
     /** PUBLIC METHODS */
 
+    /**
+     * Adds message to notification of its chat. Messages received in a burst
+     * are shown and saved together after {@link #UPDATE_DELAY}.
+     */
     public void onNewMessage(MessageItem messageItem) {
-        boolean isMUC = messageItem.isFromMUC();
-        String chatTitle = RosterManager.getInstance().getBestContact(messageItem.getAccount(), messageItem.getUser()).getName();
-        String author = isMUC ? messageItem.getResource().toString() : chatTitle;
-        Chat chat = getChat(messageItem.getAccount(), messageItem.getUser());
-        if (chat == null) {
-            chat = new Chat(messageItem.getAccount(), messageItem.getUser(),
-                    getNextChatNotificationId(), chatTitle, isMUC);
-            chats.add(chat);
-        }
-        addMessage(chat, author, getNotificationText(messageItem), true);
-        saveNotifChatToRealm(chat);
+        final AccountJid account = messageItem.getAccount();
+        final UserJid user = messageItem.getUser();
+        final boolean isMUC = messageItem.isFromMUC();
+        final String chatTitle = RosterManager.getInstance().getBestContact(account, user).getName();
+        final String author = isMUC ? messageItem.getResource().toString() : chatTitle;
+        final String text = getNotificationText(messageItem);
+
+        Application.getInstance().runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                Chat chat = getChat(account, user);
+                if (chat == null) {
+                    chat = new Chat(account, user, getNextChatNotificationId(), chatTitle, isMUC);
+                    chats.add(chat);
+                }
+                lastMessage = new Message(author, text, System.currentTimeMillis());
+                chat.addMessage(lastMessage);
+                chat.stopRemoveTimer();
+
+                if (pendingChats.isEmpty()) {
+                    Application.getInstance().runOnUiThreadDelay(updateRunnable, UPDATE_DELAY);
+                }
+                pendingChats.add(chat);
+            }
+        });
     }
 
     public void removeChatWithTimer(final AccountJid account, final UserJid user) {
@@ -252,6 +288,24 @@ public class MessageNotificationManager implements OnLoadListener {
         }
     }
 
+    private void updatePendingNotifications() {
+        List<Chat> updatedChats = new ArrayList<>();
+        for (Chat chat : pendingChats) {
+            // chat could be removed while waiting
+            if (chats.contains(chat)) updatedChats.add(chat);
+        }
+        pendingChats.clear();
+        if (updatedChats.isEmpty()) return;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            if (chats.size() > 1) creator.createBundleNotification(chats, true);
+            for (Chat chat : updatedChats) creator.createNotification(chat, true);
+        } else {
+            addNotification(updatedChats.get(updatedChats.size() - 1), true);
+        }
+        saveNotifChatsToRealm(updatedChats);
+    }
+
     private void addMessage(Chat notification, CharSequence author, CharSequence messageText, boolean alert) {
         lastMessage = new Message(author, messageText, System.currentTimeMillis());
         notification.addMessage(lastMessage);
@@ -408,26 +462,39 @@ public class MessageNotificationManager implements OnLoadListener {
         realm.commitTransaction();
     }
 
-    private void saveNotifChatToRealm(final Chat chat) {
-        Application.getInstance().runInBackgroundUserRequest(new Runnable() {
+    private void saveNotifChatToRealm(Chat chat) {
+        List<Chat> chats = new ArrayList<>();
+        chats.add(chat);
+        saveNotifChatsToRealm(chats);
+    }
+
+    /** Saves chats in one transaction */
+    private void saveNotifChatsToRealm(List<Chat> chats) {
+        // copy on UI thread, as chats are changed there
+        final List<NotifChatRealm> chatRealms = new ArrayList<>();
+        for (Chat chat : chats) {
+            NotifChatRealm chatRealm = new NotifChatRealm(chat.getId());
+            chatRealm.setAccount(chat.getAccountJid());
+            chatRealm.setUser(chat.getUserJid());
+            chatRealm.setChatTitle(chat.getChatTitle().toString());
+            chatRealm.setNotificationID(chat.getNotificationId());
+            chatRealm.setGroupChat(chat.isGroupChat);
+            RealmList<NotifMessageRealm> messages = new RealmList<>();
+            for (Message message : chat.getMessages()) {
+                messages.add(messageToRealm(message));
+            }
+            chatRealm.setMessages(messages);
+            chatRealms.add(chatRealm);
+        }
+
+        Application.getInstance().runInBackground(Lane.DATABASE_WRITE, new Runnable() {
             @Override
             public void run() {
-                NotifChatRealm chatRealm = new NotifChatRealm(chat.getId());
-                chatRealm.setAccount(chat.getAccountJid());
-                chatRealm.setUser(chat.getUserJid());
-                chatRealm.setChatTitle(chat.getChatTitle().toString());
-                chatRealm.setNotificationID(chat.getNotificationId());
-                chatRealm.setGroupChat(chat.isGroupChat);
-                RealmList<NotifMessageRealm> messages = new RealmList<>();
-                for (Message message : chat.getMessages()) {
-                    messages.add(messageToRealm(message));
-                }
-                chatRealm.setMessages(messages);
-
                 Realm realm = RealmManager.getInstance().getNewRealm();
                 realm.beginTransaction();
-                NotifChatRealm result = realm.copyToRealmOrUpdate(chatRealm);
+                realm.copyToRealmOrUpdate(chatRealms);
                 realm.commitTransaction();
+                realm.close();
             }
         });
     }
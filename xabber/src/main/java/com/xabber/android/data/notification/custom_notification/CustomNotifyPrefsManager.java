@@ -12,6 +12,7 @@ import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
 import com.xabber.android.data.notification.MessageNotificationCreator;
 import com.xabber.android.data.notification.NotificationChannelUtils;
+import com.xabber.android.data.roster.ContactVersions;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -44,6 +45,7 @@ public class CustomNotifyPrefsManager implements OnLoadListener {
 
     public void onLoaded(List<NotifyPrefs> prefs) {
         this.preferences.addAll(prefs);
+        ContactVersions.bumpAll();
     }
 
     public void createNotifyPrefs(Context context, NotificationManager notificationManager, Key key,
@@ -68,6 +70,7 @@ public class CustomNotifyPrefsManager implements OnLoadListener {
                         MessageNotificationCreator.getVibroValue(vibro, context), null));
         }
         saveOrUpdateToRealm(prefs);
+        ContactVersions.bumpAll();
     }
 
     public boolean isPrefsExist(Key key) {
@@ -99,6 +102,7 @@ public class CustomNotifyPrefsManager implements OnLoadListener {
             it.remove();
         }
         removeAllFromRealm();
+        ContactVersions.bumpAll();
     }
 
     public void deleteNotifyPrefs(NotificationManager notificationManager, String id) {
@@ -113,6 +117,7 @@ public class CustomNotifyPrefsManager implements OnLoadListener {
             }
         }
         removeFromRealm(id);
+        ContactVersions.bumpAll();
     }
 
     // REALM
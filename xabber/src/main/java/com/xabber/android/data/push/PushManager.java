@@ -17,6 +17,7 @@ import com.xabber.android.data.database.RealmManager;
 import com.xabber.android.data.database.realm.PushLogRecord;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.http.PushApiClient;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.utils.ExternalAPIs;
@@ -69,7 +70,7 @@ public class PushManager implements OnConnectedListener, OnPacketListener {
 
     @Override
     public void onConnected(final ConnectionItem connection) {
-        Application.getInstance().runInBackground(new Runnable() {
+        Application.getInstance().runInBackground(Lane.NETWORK, connection.getAccount(), new Runnable() {
             @Override
             public void run() {
                 try {
@@ -0,0 +1,69 @@
+package com.xabber.android.data.roster;
+
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.entity.UserJid;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version stamps of contacts.
+ * <p/>
+ * Stamp of the contact is increased each time its roster entry, presence, vCard, avatar,
+ * blocking or custom notification settings change, so view objects built from the contact
+ * can be reused until its stamp changes.
+ * Changes without particular contact increase stamps of all contacts.
+ */
+public class ContactVersions {
+
+    private static final AtomicLong counter = new AtomicLong();
+    private static final Map<AccountJid, Map<UserJid, Long>> versions = new HashMap<>();
+    private static long globalVersion;
+
+    private ContactVersions() {
+    }
+
+    public static void bump(AccountJid account, UserJid user) {
+        long version = counter.incrementAndGet();
+        synchronized (versions) {
+            Map<UserJid, Long> users = versions.get(account);
+            if (users == null) {
+                users = new HashMap<>();
+                versions.put(account, users);
+            }
+            users.put(user, version);
+        }
+    }
+
+    /**
+     * Increases stamps of given contacts or of all contacts if collection is empty.
+     */
+    public static void bump(Collection<? extends AbstractContact> contacts) {
+        if (contacts.isEmpty()) {
+            bumpAll();
+            return;
+        }
+        for (AbstractContact contact : contacts) {
+            bump(contact.getAccount(), contact.getUser());
+        }
+    }
+
+    public static void bumpAll() {
+        long version = counter.incrementAndGet();
+        synchronized (versions) {
+            versions.clear();
+            globalVersion = version;
+        }
+    }
+
+    public static long get(AccountJid account, UserJid user) {
+        synchronized (versions) {
+            Map<UserJid, Long> users = versions.get(account);
+            Long version = users == null ? null : users.get(user);
+            return version == null ? globalVersion : Math.max(version, globalVersion);
+        }
+    }
+
+}
@@ -25,7 +25,7 @@ import com.xabber.android.data.account.AccountManager;
 import com.xabber.android.data.account.listeners.OnAccountRemovedListener;
 import com.xabber.android.data.database.sqlite.GroupTable;
 import com.xabber.android.data.entity.AccountJid;
-import com.xabber.android.data.entity.NestedMap;
+import com.xabber.android.data.entity.ConcurrentNestedMap;
 import com.xabber.android.data.entity.NestedMap.Entry;
 
 import org.jxmpp.stringprep.XmppStringprepException;
@@ -72,7 +72,7 @@ public class GroupManager implements OnLoadListener, OnAccountRemovedListener,
     /**
      * List of settings for roster groups in accounts.
      */
-    private final NestedMap<GroupConfiguration> groupConfigurations;
+    private final ConcurrentNestedMap<GroupConfiguration> groupConfigurations;
 
     public static GroupManager getInstance() {
         if (instance == null) {
@@ -83,12 +83,12 @@ public class GroupManager implements OnLoadListener, OnAccountRemovedListener,
     }
 
     private GroupManager() {
-        groupConfigurations = new NestedMap<>();
+        groupConfigurations = new ConcurrentNestedMap<>();
     }
 
     @Override
     public void onLoad() {
-        final NestedMap<GroupConfiguration> groupConfigurations = new NestedMap<>();
+        final ConcurrentNestedMap<GroupConfiguration> groupConfigurations = new ConcurrentNestedMap<>();
         Cursor cursor = GroupTable.getInstance().list();
         try {
             if (cursor.moveToFirst()) {
@@ -113,7 +113,7 @@ public class GroupManager implements OnLoadListener, OnAccountRemovedListener,
         });
     }
 
-    private void onLoaded(NestedMap<GroupConfiguration> groupConfigurations) {
+    private void onLoaded(ConcurrentNestedMap<GroupConfiguration> groupConfigurations) {
         this.groupConfigurations.addAll(groupConfigurations);
     }
 
@@ -52,7 +52,6 @@ import org.jxmpp.jid.EntityBareJid;
 import org.jxmpp.jid.parts.Resourcepart;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -202,16 +201,7 @@ public class PresenceManager implements OnLoadListener, OnAccountDisabledListene
             return null;
         }
 
-        if (MUCManager.getInstance().hasRoom(account, userEntityBareJid)) {
-            final Collection<Occupant> occupants = MUCManager.getInstance().getOccupants(account,
-                    userEntityBareJid);
-            for (Occupant occupant : occupants) {
-                if (occupant.getNickname().equals(resourcepart)) {
-                    return occupant;
-                }
-            }
-        }
-        return null;
+        return MUCManager.getInstance().getOccupant(account, userEntityBareJid, resourcepart);
     }
 
     public String getStatusText(AccountJid account, UserJid bareAddress) {
@@ -5,121 +5,395 @@ import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.database.realm.ContactGroup;
 import com.xabber.android.data.database.realm.ContactRealm;
 import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.log.LogManager;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import io.realm.Realm;
 import io.realm.RealmList;
-import io.realm.RealmResults;
 
+/**
+ * Persists roster contacts to realm so contact list can be shown before connection.
+ * <p/>
+ * All writes are performed on a dedicated background thread. Roster changes are
+ * compared with the last written state and only changed rows are written,
+ * last message updates are coalesced per contact.
+ */
 public class RosterCacheManager {
 
-    private static RosterCacheManager instance;
+    private static final String LOG_TAG = RosterCacheManager.class.getSimpleName();
+
+    /**
+     * Delay to collect last message updates before writing them.
+     */
+    private static final long LAST_MESSAGE_FLUSH_DELAY = 500;
+
+    private static final RosterCacheManager instance = new RosterCacheManager();
     private Map<Long, String> lastActivityCache = new HashMap<>();
 
+    /**
+     * Thread to write roster cache.
+     */
+    private final ScheduledExecutorService writerExecutor;
+
+    /**
+     * Last written state by contact id. Accessed only from writer thread.
+     */
+    private final Map<String, CachedContact> cachedContacts;
+    private boolean cacheLoaded;
+
+    /**
+     * Unique id of last message by contact id waiting to be written.
+     */
+    private final Map<String, String> pendingLastMessages;
+    private boolean lastMessagesFlushScheduled;
+
     public static RosterCacheManager getInstance() {
-        if (instance == null)
-            instance = new RosterCacheManager();
         return instance;
     }
 
+    private RosterCacheManager() {
+        cachedContacts = new HashMap<>();
+        pendingLastMessages = new LinkedHashMap<>();
+        writerExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Roster cache writer");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     public static List<ContactRealm> loadContacts() {
         Realm realm = MessageDatabaseManager.getInstance().getRealmUiThread();
         return realm.where(ContactRealm.class).findAll();
     }
 
+    /**
+     * Saves changed contacts from roster push.
+     */
     public static void saveContact(AccountJid accountJid, Collection<RosterContact> contacts) {
-        Realm realm = MessageDatabaseManager.getInstance().getRealmUiThread();
+        saveContacts(accountJid, contacts, false);
+    }
+
+    /**
+     * Saves changed contacts of loaded roster, cached contacts missing in it are removed.
+     */
+    public static void saveRoster(AccountJid accountJid, Collection<RosterContact> contacts) {
+        saveContacts(accountJid, contacts, true);
+    }
 
-        realm.beginTransaction();
-        if (contacts.size() > 1) {
-            RealmResults<ContactRealm> results = realm.where(ContactRealm.class)
-                    .equalTo(ContactRealm.Fields.ACCOUNT,
-                            accountJid.getFullJid().asBareJid().toString()).findAll();
-            results.deleteAllFromRealm();
+    private static void saveContacts(AccountJid accountJid, Collection<RosterContact> contacts,
+                                     final boolean fullRoster) {
+        final String account = accountJid.getFullJid().asBareJid().toString();
+        final List<CachedContact> snapshots = new ArrayList<>(contacts.size());
+        for (RosterContact contact : contacts) {
+            snapshots.add(new CachedContact(contact));
         }
+        getInstance().submit(new Runnable() {
+            @Override
+            public void run() {
+                getInstance().writeContacts(account, snapshots, fullRoster);
+            }
+        });
+    }
 
-        List<ContactRealm> newContacts = new ArrayList<>();
+    public static void removeContact(Collection<RosterContact> contacts) {
+        final List<String> ids = new ArrayList<>(contacts.size());
         for (RosterContact contact : contacts) {
-            String account = contact.getAccount().getFullJid().asBareJid().toString();
-            String user = contact.getUser().getBareJid().toString();
+            ids.add(getContactId(contact.getAccount().getFullJid().asBareJid().toString(),
+                    contact.getUser().getBareJid().toString()));
+        }
+        getInstance().submit(new Runnable() {
+            @Override
+            public void run() {
+                getInstance().deleteContacts(ids);
+            }
+        });
+    }
 
-            ContactRealm contactRealm = realm.where(ContactRealm.class).equalTo(ContactRealm.Fields.ID,
-                    account + "/" + user).findFirst();
-            if (contactRealm == null) {
-                contactRealm = new ContactRealm(account + "/" + user);
+    public static void removeContacts(AccountJid account) {
+        final String accountJid = account.getFullJid().asBareJid().toString();
+        getInstance().submit(new Runnable() {
+            @Override
+            public void run() {
+                getInstance().deleteAccountContacts(accountJid);
             }
+        });
+    }
+
+    public static void saveLastMessageToContact(MessageItem messageItem) {
+        if (messageItem == null || !messageItem.isValid()) return;
+        final String account = messageItem.getAccount().getFullJid().asBareJid().toString();
+        final String user = messageItem.getUser().getBareJid().toString();
+        getInstance().scheduleLastMessage(getContactId(account, user), messageItem.getUniqueId());
+    }
+
+    public String getCachedLastActivityString(long lastActivityTime) {
+        return lastActivityCache.get(lastActivityTime);
+    }
+
+    public void putLastActivityStringToCache(long lastActivityTime, String string) {
+        lastActivityCache.put(lastActivityTime, string);
+    }
+
+    private static String getContactId(String account, String user) {
+        return account + "/" + user;
+    }
 
-            RealmList<ContactGroup> groups = new RealmList<>();
-            for (String groupName : contact.getGroupNames()) {
-                ContactGroup group = realm.copyToRealmOrUpdate(new ContactGroup(groupName));
-                if (group.isManaged() && group.isValid())
-                    groups.add(group);
+    private void submit(final Runnable runnable) {
+        writerExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Exception e) {
+                    LogManager.exception(LOG_TAG, e);
+                }
             }
+        });
+    }
 
-            contactRealm.setGroups(groups);
-            contactRealm.setAccount(account);
-            contactRealm.setUser(user);
-            contactRealm.setName(contact.getName());
-            contactRealm.setAccountResource(contact.getAccount().getFullJid().getResourcepart().toString());
-            newContacts.add(contactRealm);
+    private void scheduleLastMessage(String contactId, String messageId) {
+        synchronized (pendingLastMessages) {
+            pendingLastMessages.put(contactId, messageId);
+            if (lastMessagesFlushScheduled) return;
+            lastMessagesFlushScheduled = true;
         }
-        realm.copyToRealmOrUpdate(newContacts);
-        realm.commitTransaction();
+        writerExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushLastMessages();
+                } catch (Exception e) {
+                    LogManager.exception(LOG_TAG, e);
+                }
+            }
+        }, LAST_MESSAGE_FLUSH_DELAY, TimeUnit.MILLISECONDS);
     }
 
-    public static void removeContact(Collection<RosterContact> contacts) {
-        Realm realm = MessageDatabaseManager.getInstance().getRealmUiThread();
-        realm.beginTransaction();
-        for (RosterContact contact : contacts) {
-            String account = contact.getAccount().getFullJid().asBareJid().toString();
-            String user = contact.getUser().getBareJid().toString();
-
-            ContactRealm contactRealm = realm.where(ContactRealm.class).equalTo(ContactRealm.Fields.ID,
-                    account + "/" + user).findFirst();
-            if (contactRealm != null)
-                contactRealm.deleteFromRealm();
+    /**
+     * Loads current cache state. Must be called from writer thread.
+     */
+    private void loadCacheIfNeeded(Realm realm) {
+        if (cacheLoaded) return;
+        for (ContactRealm contactRealm : realm.where(ContactRealm.class).findAll()) {
+            cachedContacts.put(contactRealm.getId(), new CachedContact(contactRealm));
         }
-        realm.commitTransaction();
+        cacheLoaded = true;
     }
 
-    public static void removeContacts(AccountJid account) {
-        String accountJid = account.getFullJid().asBareJid().toString();
-        Realm realm = MessageDatabaseManager.getInstance().getRealmUiThread();
-        RealmResults<ContactRealm> results = realm.where(ContactRealm.class)
-                .equalTo(ContactRealm.Fields.ACCOUNT, accountJid).findAll();
-        realm.beginTransaction();
-        results.deleteAllFromRealm();
-        realm.commitTransaction();
+    private void writeContacts(final String account, final List<CachedContact> contacts,
+                               final boolean fullRoster) {
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        loadCacheIfNeeded(realm);
+
+        final List<CachedContact> changed = new ArrayList<>();
+        final Set<String> removed = new HashSet<>();
+        if (fullRoster) {
+            String prefix = account + "/";
+            for (String id : cachedContacts.keySet()) {
+                if (id.startsWith(prefix)) removed.add(id);
+            }
+        }
+        for (CachedContact contact : contacts) {
+            removed.remove(contact.id);
+            if (!contact.equalsState(cachedContacts.get(contact.id))) changed.add(contact);
+        }
+
+        if (!changed.isEmpty() || !removed.isEmpty()) {
+            realm.executeTransaction(new Realm.Transaction() {
+                @Override
+                public void execute(Realm realm) {
+                    Map<String, ContactRealm> existing = new HashMap<>();
+                    for (ContactRealm contactRealm : realm.where(ContactRealm.class)
+                            .equalTo(ContactRealm.Fields.ACCOUNT, account).findAll()) {
+                        existing.put(contactRealm.getId(), contactRealm);
+                    }
+
+                    for (String id : removed) {
+                        ContactRealm contactRealm = existing.get(id);
+                        if (contactRealm != null) contactRealm.deleteFromRealm();
+                    }
+
+                    Map<String, ContactGroup> groups = new HashMap<>();
+                    for (CachedContact contact : changed) {
+                        ContactRealm contactRealm = existing.get(contact.id);
+                        if (contactRealm == null) {
+                            contactRealm = realm.createObject(ContactRealm.class, contact.id);
+                        }
+
+                        RealmList<ContactGroup> contactGroups = new RealmList<>();
+                        for (String groupName : contact.groups) {
+                            ContactGroup group = groups.get(groupName);
+                            if (group == null) {
+                                group = realm.copyToRealmOrUpdate(new ContactGroup(groupName));
+                                groups.put(groupName, group);
+                            }
+                            contactGroups.add(group);
+                        }
+
+                        contactRealm.setGroups(contactGroups);
+                        contactRealm.setAccount(contact.account);
+                        contactRealm.setUser(contact.user);
+                        contactRealm.setName(contact.name);
+                        contactRealm.setAccountResource(contact.accountResource);
+                    }
+                }
+            });
+
+            for (String id : removed) {
+                cachedContacts.remove(id);
+            }
+            for (CachedContact contact : changed) {
+                CachedContact cached = cachedContacts.get(contact.id);
+                if (cached != null) contact.lastMessageId = cached.lastMessageId;
+                cachedContacts.put(contact.id, contact);
+            }
+        }
+        realm.close();
     }
 
-    public static void saveLastMessageToContact(Realm realm, MessageItem messageItem) {
-        if (messageItem == null) return;
-        final String account = messageItem.getAccount().getFullJid().asBareJid().toString();
-        final String user = messageItem.getUser().getBareJid().toString();
-        final String messageID = messageItem.getUniqueId();
-        realm.executeTransactionAsync(new Realm.Transaction() {
+    private void deleteContacts(final Collection<String> ids) {
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        realm.executeTransaction(new Realm.Transaction() {
             @Override
             public void execute(Realm realm) {
-                ContactRealm contactRealm = realm.where(ContactRealm.class).equalTo(ContactRealm.Fields.ID, account + "/" + user).findFirst();
-                MessageItem message = realm.where(MessageItem.class).equalTo(MessageItem.Fields.UNIQUE_ID, messageID).findFirst();
-                if (contactRealm != null && message.isValid() && message.isManaged()) {
-                    contactRealm.setLastMessage(message);
-                    realm.copyToRealmOrUpdate(contactRealm);
+                for (String id : ids) {
+                    ContactRealm contactRealm = realm.where(ContactRealm.class)
+                            .equalTo(ContactRealm.Fields.ID, id).findFirst();
+                    if (contactRealm != null)
+                        contactRealm.deleteFromRealm();
                 }
             }
         });
+        realm.close();
+        for (String id : ids) {
+            cachedContacts.remove(id);
+        }
     }
 
-    public String getCachedLastActivityString(long lastActivityTime) {
-        return lastActivityCache.get(lastActivityTime);
+    private void deleteAccountContacts(final String account) {
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        realm.executeTransaction(new Realm.Transaction() {
+            @Override
+            public void execute(Realm realm) {
+                realm.where(ContactRealm.class)
+                        .equalTo(ContactRealm.Fields.ACCOUNT, account)
+                        .findAll().deleteAllFromRealm();
+            }
+        });
+        realm.close();
+
+        String prefix = account + "/";
+        Iterator<String> iterator = cachedContacts.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(prefix)) iterator.remove();
+        }
     }
 
-    public void putLastActivityStringToCache(long lastActivityTime, String string) {
-        lastActivityCache.put(lastActivityTime, string);
+    private void flushLastMessages() {
+        final Map<String, String> lastMessages;
+        synchronized (pendingLastMessages) {
+            lastMessages = new HashMap<>(pendingLastMessages);
+            pendingLastMessages.clear();
+            lastMessagesFlushScheduled = false;
+        }
+
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        loadCacheIfNeeded(realm);
+
+        Iterator<Map.Entry<String, String>> iterator = lastMessages.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, String> entry = iterator.next();
+            CachedContact cached = cachedContacts.get(entry.getKey());
+            if (cached == null || entry.getValue().equals(cached.lastMessageId))
+                iterator.remove();
+        }
+
+        if (!lastMessages.isEmpty()) {
+            realm.executeTransaction(new Realm.Transaction() {
+                @Override
+                public void execute(Realm realm) {
+                    for (Map.Entry<String, String> entry : lastMessages.entrySet()) {
+                        ContactRealm contactRealm = realm.where(ContactRealm.class)
+                                .equalTo(ContactRealm.Fields.ID, entry.getKey()).findFirst();
+                        MessageItem message = realm.where(MessageItem.class)
+                                .equalTo(MessageItem.Fields.UNIQUE_ID, entry.getValue()).findFirst();
+                        if (contactRealm != null && message != null) {
+                            contactRealm.setLastMessage(message);
+                        }
+                    }
+                }
+            });
+            for (Map.Entry<String, String> entry : lastMessages.entrySet()) {
+                cachedContacts.get(entry.getKey()).lastMessageId = entry.getValue();
+            }
+        }
+        realm.close();
+    }
+
+    /**
+     * Unmanaged copy of contact state stored in realm.
+     */
+    private static class CachedContact {
+
+        private final String id;
+        private final String account;
+        private final String user;
+        private final String name;
+        private final String accountResource;
+        private final Set<String> groups;
+        private String lastMessageId;
+
+        CachedContact(RosterContact contact) {
+            account = contact.getAccount().getFullJid().asBareJid().toString();
+            user = contact.getUser().getBareJid().toString();
+            id = getContactId(account, user);
+            name = contact.getName();
+            accountResource = contact.getAccount().getFullJid().getResourcepart().toString();
+            groups = new HashSet<>(contact.getGroupNames());
+        }
+
+        CachedContact(ContactRealm contactRealm) {
+            id = contactRealm.getId();
+            account = contactRealm.getAccount();
+            user = contactRealm.getUser();
+            name = contactRealm.getName();
+            accountResource = contactRealm.getAccountResource();
+            groups = new HashSet<>();
+            if (contactRealm.getGroups() != null) {
+                for (ContactGroup group : contactRealm.getGroups()) {
+                    groups.add(group.getGroupName());
+                }
+            }
+            MessageItem lastMessage = contactRealm.getLastMessage();
+            lastMessageId = lastMessage != null ? lastMessage.getUniqueId() : null;
+        }
+
+        boolean equalsState(CachedContact other) {
+            return other != null
+                    && equals(name, other.name)
+                    && equals(accountResource, other.accountResource)
+                    && groups.equals(other.groups);
+        }
+
+        private static boolean equals(String first, String second) {
+            return first == null ? second == null : first.equals(second);
+        }
     }
 }
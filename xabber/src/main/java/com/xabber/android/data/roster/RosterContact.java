@@ -18,7 +18,7 @@ import android.text.TextUtils;
 
 import com.xabber.android.data.account.StatusMode;
 import com.xabber.android.data.entity.AccountJid;
-import com.xabber.android.data.entity.NestedMap;
+import com.xabber.android.data.entity.ConcurrentNestedMap;
 import com.xabber.android.data.entity.UserJid;
 import com.xabber.android.data.extension.iqlast.LastActivityInteractor;
 import com.xabber.android.utils.StringUtils;
@@ -58,7 +58,7 @@ public class RosterContact extends AbstractContact {
      */
     protected boolean enabled;
 
-    private static final  NestedMap<WeakReference<RosterContact>> instances = new NestedMap<>();
+    private static final ConcurrentNestedMap<WeakReference<RosterContact>> instances = new ConcurrentNestedMap<>();
 
     static RosterContact getRosterContact(AccountJid account, UserJid user, String name) {
         WeakReference<RosterContact> contactWeakReference = instances.get(account.toString(), user.toString());
@@ -32,8 +32,10 @@ import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.database.realm.ContactGroup;
 import com.xabber.android.data.database.realm.ContactRealm;
 import com.xabber.android.data.entity.AccountJid;
-import com.xabber.android.data.entity.NestedMap;
+import com.xabber.android.data.entity.EntityRegistry;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.extension.csi.ClientStateManager;
+import com.xabber.android.data.extension.csi.OnClientStateListener;
 import com.xabber.android.data.extension.iqlast.LastActivityInteractor;
 import com.xabber.android.data.extension.muc.MUCManager;
 import com.xabber.android.data.extension.muc.RoomChat;
@@ -59,7 +61,7 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -69,19 +71,26 @@ import java.util.Set;
  * @author alexander.ivanov
  */
 public class RosterManager implements OnDisconnectListener, OnAccountEnabledListener,
-        OnAccountDisabledListener {
+        OnAccountDisabledListener, OnClientStateListener {
 
     private static final String LOG_TAG = RosterManager.class.getSimpleName();
 
     private static RosterManager instance;
 
-    private NestedMap<RosterContact> rosterContacts;
+    private final EntityRegistry<RosterContact> rosterContacts;
 
-    private final NestedMap<WeakReference<AbstractContact>> contactsCache;
+    /**
+     * Contacts changed while client is inactive, UI is notified about them at once
+     * when client becomes active.
+     */
+    private final Set<RosterContact> inactiveChangedContacts = new HashSet<>();
+    private boolean inactiveAllContactsChanged;
+
+    private final EntityRegistry<WeakReference<AbstractContact>> contactsCache;
 
     private RosterManager() {
-        rosterContacts = new NestedMap<>();
-        contactsCache = new NestedMap<>();
+        rosterContacts = new EntityRegistry<>();
+        contactsCache = new EntityRegistry<>();
     }
 
     public static RosterManager getInstance() {
@@ -104,8 +113,7 @@ public class RosterManager implements OnDisconnectListener, OnAccountEnabledList
                     contact.addGroupReference(new RosterGroupReference(new RosterGroup(account, group.getGroupName())));
                 }
 
-                rosterContacts.put(contact.getAccount().toString(),
-                        contact.getUser().getBareJid().toString(), contact);
+                rosterContacts.put(contact.getAccount(), contact.getUser().getBareJid(), contact);
 
                 MessageItem lastMessage = contactRealm.getLastMessage();
                 if (lastMessage != null) {
@@ -161,28 +169,21 @@ public class RosterManager implements OnDisconnectListener, OnAccountEnabledList
     }
 
     public Collection<RosterContact> getAccountRosterContacts(final AccountJid accountJid) {
-        List<RosterContact> contactsCopy = new ArrayList<>(rosterContacts.getNested(accountJid.toString()).values());
-        return Collections.unmodifiableCollection(contactsCopy);
+        return rosterContacts.values(accountJid);
     }
 
     public Collection<RosterContact> getAllContacts() {
-        List<RosterContact> contactsCopy = new ArrayList<>();
-        for (Iterator<String> it = rosterContacts.keySet().iterator(); it.hasNext(); ) {
-            String key = it.next();
-            contactsCopy.addAll(rosterContacts.getNested(key).values());
-        }
-        return Collections.unmodifiableCollection(contactsCopy);
+        return rosterContacts.values();
     }
 
-    void onContactsAdded(final AccountJid account, Collection<Jid> addresses) {
+    void onContactsAdded(AccountJid account, Collection<Jid> addresses) {
         final Roster roster = RosterManager.getInstance().getRoster(account);
         final Collection<RosterContact> newContacts = new ArrayList<>(addresses.size());
         for (Jid jid : addresses) {
             RosterEntry entry = roster.getEntry(jid.asBareJid());
             try {
                 RosterContact contact = convertRosterEntryToRosterContact(account, roster, entry);
-                rosterContacts.put(account.toString(),
-                        contact.getUser().getBareJid().toString(), contact);
+                rosterContacts.put(account, contact.getUser().getBareJid(), contact);
                 newContacts.add(contact);
 
                 LastActivityInteractor.getInstance().requestLastActivityAsync(account, UserJid.from(jid));
@@ -191,12 +192,7 @@ public class RosterManager implements OnDisconnectListener, OnAccountEnabledList
             }
         }
 
-        Application.getInstance().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                RosterCacheManager.saveContact(account, newContacts);
-            }
-        });
+        RosterCacheManager.saveContact(account, newContacts);
         onContactsChanged(newContacts);
     }
 
@@ -204,21 +200,30 @@ public class RosterManager implements OnDisconnectListener, OnAccountEnabledList
         onContactsAdded(account, addresses);
     }
 
+    /**
+     * Called after roster was received, contacts are already added by {@link #onContactsAdded}.
+     */
+    void onRosterLoaded(AccountJid account, Roster roster) {
+        Collection<RosterContact> contacts = new ArrayList<>();
+        for (RosterEntry entry : roster.getEntries()) {
+            RosterContact contact = rosterContacts.get(account, entry.getJid());
+            if (contact != null) {
+                contacts.add(contact);
+            }
+        }
+        RosterCacheManager.saveRoster(account, contacts);
+    }
+
     void onContactsDeleted(AccountJid account, Collection<Jid> addresses) {
-        final Collection<RosterContact> removedContacts = new ArrayList<>(addresses.size());
+        Collection<RosterContact> removedContacts = new ArrayList<>(addresses.size());
 
         for (Jid jid : addresses) {
-            RosterContact contact = rosterContacts.remove(account.toString(), jid.asBareJid().toString());
+            RosterContact contact = rosterContacts.remove(account, jid.asBareJid());
             if (contact != null) {
                 removedContacts.add(contact);
             }
         }
-        Application.getInstance().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                RosterCacheManager.removeContact(removedContacts);
-            }
-        });
+        RosterCacheManager.removeContact(removedContacts);
 
         onContactsChanged(removedContacts);
     }
@@ -244,19 +249,19 @@ public class RosterManager implements OnDisconnectListener, OnAccountEnabledList
     }
 
     public AbstractContact getAbstractContact(@NonNull AccountJid accountJid, @NonNull UserJid userJid) {
-        WeakReference<AbstractContact> contactWeakReference = contactsCache.get(accountJid.toString(), userJid.toString());
+        WeakReference<AbstractContact> contactWeakReference = contactsCache.get(accountJid, userJid.getJid());
         if (contactWeakReference != null && contactWeakReference.get() != null) {
             return contactWeakReference.get();
         }
 
         AbstractContact newContact = new AbstractContact(accountJid, userJid);
-        contactsCache.put(accountJid.toString(), userJid.toString(), new WeakReference<>(newContact));
+        contactsCache.put(accountJid, userJid.getJid(), new WeakReference<>(newContact));
         return newContact;
     }
 
     @Nullable
     public RosterContact getRosterContact(AccountJid accountJid, BareJid bareJid) {
-        return rosterContacts.get(accountJid.toString(), bareJid.toString());
+        return rosterContacts.get(accountJid, bareJid);
     }
 
     @Nullable
@@ -596,7 +601,7 @@ public class RosterManager implements OnDisconnectListener, OnAccountEnabledList
         }
 
         Collection<RosterContact> accountContacts
-                = rosterContacts.getNested(connection.getAccount().toString()).values();
+                = rosterContacts.values(connection.getAccount());
 
         for (RosterContact contact : accountContacts) {
             contact.setConnected(false);
@@ -618,7 +623,7 @@ public class RosterManager implements OnDisconnectListener, OnAccountEnabledList
      */
     private void setEnabled(AccountJid account, boolean enabled) {
         Collection<RosterContact> accountContacts
-                = rosterContacts.getNested(account.toString()).values();
+                = rosterContacts.values(account);
 
         for (RosterContact contact : accountContacts) {
             contact.setEnabled(enabled);
@@ -631,6 +636,15 @@ public class RosterManager implements OnDisconnectListener, OnAccountEnabledList
      * @param entities
      */
     public static void onContactsChanged(final Collection<RosterContact> entities) {
+        ContactVersions.bump(entities);
+        dispatchContactsChanged(entities);
+    }
+
+    private static void dispatchContactsChanged(final Collection<RosterContact> entities) {
+        if (ClientStateManager.getInstance().isInactive()) {
+            getInstance().deferContactsChanged(entities);
+            return;
+        }
         Application.getInstance().runOnUiThread(new Runnable() {
             @Override
             public void run() {
@@ -642,6 +656,33 @@ public class RosterManager implements OnDisconnectListener, OnAccountEnabledList
         });
     }
 
+    private void deferContactsChanged(Collection<RosterContact> entities) {
+        synchronized (inactiveChangedContacts) {
+            if (entities.isEmpty()) {
+                inactiveAllContactsChanged = true;
+                inactiveChangedContacts.clear();
+            } else if (!inactiveAllContactsChanged) {
+                inactiveChangedContacts.addAll(entities);
+            }
+        }
+    }
+
+    @Override
+    public void onClientActive() {
+        Collection<RosterContact> entities;
+        synchronized (inactiveChangedContacts) {
+            if (!inactiveAllContactsChanged && inactiveChangedContacts.isEmpty()) {
+                return;
+            }
+            entities = inactiveAllContactsChanged
+                    ? Collections.<RosterContact>emptyList()
+                    : new ArrayList<>(inactiveChangedContacts);
+            inactiveAllContactsChanged = false;
+            inactiveChangedContacts.clear();
+        }
+        dispatchContactsChanged(entities);
+    }
+
     /**
      * Notifies registered {@link OnContactChangedListener}.
      */
@@ -651,13 +692,18 @@ public class RosterManager implements OnDisconnectListener, OnAccountEnabledList
         if (rosterContact != null) {
             entities.add(rosterContact);
         }
-        onContactsChanged(entities);
+        ContactVersions.bump(account, bareAddress);
+        dispatchContactsChanged(entities);
     }
 
     /**
      * Notifies registered {@link OnChatStateListener}.
      */
     public static void onChatStateChanged(AccountJid account, UserJid bareAddress) {
+        // chat states are not kept for later, UI reads current states when shown
+        if (ClientStateManager.getInstance().isInactive()) {
+            return;
+        }
         final Collection<RosterContact> entities = new ArrayList<>();
         RosterContact rosterContact = getInstance().getRosterContact(account, bareAddress);
         if (rosterContact != null) {
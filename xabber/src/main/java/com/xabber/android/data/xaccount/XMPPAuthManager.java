@@ -11,6 +11,7 @@ import com.xabber.android.data.connection.listeners.OnConnectedListener;
 import com.xabber.android.data.connection.listeners.OnPacketListener;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.extension.privatestorage.PrivateStorageManager;
 import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.roster.PresenceManager;
@@ -75,7 +76,7 @@ public class XMPPAuthManager implements OnPacketListener, OnConnectedListener {
     public void onConnected(final ConnectionItem connection) {
 
 
-        Application.getInstance().runInBackground(new Runnable() {
+        Application.getInstance().runInBackground(Lane.NETWORK, connection.getAccount(), new Runnable() {
             @Override
             public void run() {
                 XabberAccount xabberAccount = XabberAccountManager.getInstance().getAccount();
@@ -18,6 +18,7 @@ import com.xabber.android.data.database.realm.XMPPUserRealm;
 import com.xabber.android.data.database.realm.XabberAccountRealm;
 import com.xabber.android.data.entity.AccountJid;
 import com.xabber.android.data.log.LogManager;
+import com.xabber.android.data.metrics.MetricsManager;
 import com.xabber.android.ui.color.ColorManager;
 import com.xabber.android.utils.ExternalAPIs;
 import com.xabber.android.utils.RetrofitErrorConverter;
@@ -700,6 +701,7 @@ public class XabberAccountManager implements OnLoadListener {
         realm.close();
         LogManager.d("REALM", Thread.currentThread().getName()
                 + " save sync state: " + (System.currentTimeMillis() - startTime));
+        MetricsManager.getInstance().getHistogram("realm.xaccount.syncState.save").recordMillisSince(startTime);
 
         Log.d(LOG_TAG, resultRealm.size() + " syncState items was saved to Realm");
     }
@@ -24,6 +24,7 @@ import com.xabber.android.data.message.CrowdfundingChat;
 import com.xabber.android.data.message.MessageManager;
 import com.xabber.android.data.message.MessageUpdateEvent;
 import com.xabber.android.data.message.NewMessageEvent;
+import com.xabber.android.data.metrics.MetricsManager;
 import com.xabber.android.data.roster.AbstractContact;
 import com.xabber.android.data.roster.CrowdfundingContact;
 import com.xabber.android.data.roster.GroupManager;
@@ -40,7 +41,6 @@ import com.xabber.android.presentation.ui.contactlist.viewobjects.ChatVO;
 import com.xabber.android.presentation.ui.contactlist.viewobjects.ChatWithButtonVO;
 import com.xabber.android.presentation.ui.contactlist.viewobjects.ContactVO;
 import com.xabber.android.presentation.ui.contactlist.viewobjects.CrowdfundingChatVO;
-import com.xabber.android.presentation.ui.contactlist.viewobjects.ExtContactVO;
 import com.xabber.android.presentation.ui.contactlist.viewobjects.GroupVO;
 import com.xabber.android.presentation.ui.contactlist.viewobjects.ToolbarVO;
 import com.xabber.android.ui.adapter.ChatComparator;
@@ -58,7 +58,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -80,7 +79,13 @@ public class ContactListPresenter implements OnContactChangedListener, OnAccount
     private UpdateBackpressure updateBackpressure;
 
     private String filterString = null;
-    protected Locale locale = Locale.getDefault();
+    private final ContactSearchIndex searchIndex = new ContactSearchIndex();
+    private final ContactVOCache contactVOCache = new ContactVOCache(new ContactVOCache.Listener() {
+        @Override
+        public void onItemsRebuilt() {
+            updateContactList();
+        }
+    });
     private ChatListState currentChatsState = ChatListState.recent;
 
     public static ContactListPresenter getInstance() {
@@ -94,6 +99,7 @@ public class ContactListPresenter implements OnContactChangedListener, OnAccount
 
     public void bindView(ContactListView view) {
         this.view = view;
+        contactVOCache.clear();
         Application.getInstance().addUIListener(OnAccountChangedListener.class, this);
         Application.getInstance().addUIListener(OnContactChangedListener.class, this);
         EventBus.getDefault().register(this);
@@ -196,6 +202,7 @@ public class ContactListPresenter implements OnContactChangedListener, OnAccount
 
     @Override
     public void onAccountsChanged(Collection<AccountJid> accounts) {
+        contactVOCache.clear();
         updateBackpressure.refreshRequest();
     }
 
@@ -217,8 +224,10 @@ public class ContactListPresenter implements OnContactChangedListener, OnAccount
     @Override
     public void update() {
 //        listener.hidePlaceholder();
+        final long startTime = System.nanoTime();
 
         List<IFlexible> items = new ArrayList<>();
+        contactVOCache.startUpdate();
 
         final Collection<RosterContact> allRosterContacts = RosterManager.getInstance().getAllContacts();
 
@@ -440,12 +449,14 @@ public class ContactListPresenter implements OnContactChangedListener, OnAccount
             items.clear();
 
             items.add(new CategoryVO(Application.getInstance().getApplicationContext().getString(R.string.category_title_contacts)));
-            items.addAll(SettingsManager.contactsShowMessages()
-                    ? ExtContactVO.convert(baseEntities, this)
-                    : ContactVO.convert(baseEntities, this));
+            items.addAll(contactVOCache.get(baseEntities,
+                    SettingsManager.contactsShowMessages(), this));
             hasVisibleContacts = baseEntities.size() > 0;
         }
 
+        if (filterString == null || filterString.isEmpty()) contactVOCache.removeStaleEntries();
+        contactVOCache.finishUpdate();
+
         if (view != null) view.onContactListChanged(commonState, hasContacts, hasVisibleContacts,
                     filterString != null);
 
@@ -459,6 +470,7 @@ public class ContactListPresenter implements OnContactChangedListener, OnAccount
             view.updateItems(items);
         }
         updateUnreadCount();
+        MetricsManager.getInstance().getHistogram("contactlist.rebuild").recordNanosSince(startTime);
     }
 
     /**
@@ -542,9 +554,7 @@ public class ContactListPresenter implements OnContactChangedListener, OnAccount
                 rosterConfiguration.sortAbstractContacts(comparator);
 
                 for (AbstractContact contact : rosterConfiguration.getAbstractContacts()) {
-                    group.addSubItem(SettingsManager.contactsShowMessages()
-                            ? ExtContactVO.convert(contact, this)
-                            : ContactVO.convert(contact, this));
+                    group.addSubItem(contactVOCache.get(contact, SettingsManager.contactsShowMessages(), this));
                 }
                 account.addSubItem(group);
             }
@@ -558,9 +568,7 @@ public class ContactListPresenter implements OnContactChangedListener, OnAccount
         rosterAccount.sortAbstractContacts(comparator);
 
         for (AbstractContact contact : rosterAccount.getAbstractContacts()) {
-            account.addSubItem(SettingsManager.contactsShowMessages()
-                    ? ExtContactVO.convert(contact, this)
-                    : ContactVO.convert(contact, this));
+            account.addSubItem(contactVOCache.get(contact, SettingsManager.contactsShowMessages(), this));
         }
         items.add(account);
     }
@@ -574,9 +582,7 @@ public class ContactListPresenter implements OnContactChangedListener, OnAccount
                 rosterConfiguration.sortAbstractContacts(comparator);
 
                 for (AbstractContact contact : rosterConfiguration.getAbstractContacts()) {
-                    group.addSubItem(SettingsManager.contactsShowMessages()
-                            ? ExtContactVO.convert(contact, this)
-                            : ContactVO.convert(contact, this));
+                    group.addSubItem(contactVOCache.get(contact, SettingsManager.contactsShowMessages(), this));
                 }
                 items.add(group);
             }
@@ -586,45 +592,13 @@ public class ContactListPresenter implements OnContactChangedListener, OnAccount
     private void createContactList(List<IFlexible> items, List<AbstractContact> contacts,
                                    Comparator<AbstractContact> comparator) {
         Collections.sort(contacts, comparator);
-        items.addAll(SettingsManager.contactsShowMessages()
-                ? ExtContactVO.convert(contacts, this)
-                : ContactVO.convert(contacts, this));
+        items.addAll(contactVOCache.get(contacts, SettingsManager.contactsShowMessages(), this));
     }
 
     private ArrayList<AbstractContact> getSearchResults(Collection<RosterContact> rosterContacts,
                                                         Comparator<AbstractContact> comparator,
                                                         Map<AccountJid, Map<UserJid, AbstractChat>> abstractChats) {
-        final ArrayList<AbstractContact> baseEntities = new ArrayList<>();
-
-        // Build structure.
-        for (RosterContact rosterContact : rosterContacts) {
-            if (!rosterContact.isEnabled()) {
-                continue;
-            }
-            final AccountJid account = rosterContact.getAccount();
-            final Map<UserJid, AbstractChat> users = abstractChats.get(account);
-            if (users != null) {
-                users.remove(rosterContact.getUser());
-            }
-            if (rosterContact.getName().toLowerCase(locale).contains(filterString)) {
-                baseEntities.add(rosterContact);
-            }
-        }
-        for (Map<UserJid, AbstractChat> users : abstractChats.values()) {
-            for (AbstractChat abstractChat : users.values()) {
-                final AbstractContact abstractContact;
-                if (abstractChat instanceof RoomChat) {
-                    abstractContact = new RoomContact((RoomChat) abstractChat);
-                } else {
-                    abstractContact = new ChatContact(abstractChat);
-                }
-                if (abstractContact.getName().toLowerCase(locale).contains(filterString)) {
-                    baseEntities.add(abstractContact);
-                }
-            }
-        }
-        Collections.sort(baseEntities, comparator);
-        return baseEntities;
+        return searchIndex.search(filterString, rosterContacts, abstractChats, comparator);
     }
 
     public ChatListState getCurrentChatsState() {
@@ -0,0 +1,347 @@
+package com.xabber.android.presentation.mvp.contactlist;
+
+import androidx.annotation.Nullable;
+
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.extension.muc.RoomChat;
+import com.xabber.android.data.extension.muc.RoomContact;
+import com.xabber.android.data.extension.vcard.VCardManager;
+import com.xabber.android.data.message.AbstractChat;
+import com.xabber.android.data.message.ChatContact;
+import com.xabber.android.data.roster.AbstractContact;
+import com.xabber.android.data.roster.RosterContact;
+import com.xabber.android.data.roster.StructuredName;
+
+import org.jxmpp.jid.Jid;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search index of contacts, rooms and chats for the contact list filter.
+ * <p/>
+ * Name, vCard names and bare jid of each contact are split into words, folded
+ * (case, diacritics) and transliterated once. Entry is rebuilt only when name or
+ * vCard of the contact changes, so typing doesn't lowercase the whole roster.
+ * Every word of the query must be a prefix of some word of the contact.
+ * <p/>
+ * Must be used from UI thread only.
+ */
+class ContactSearchIndex {
+
+    private static final int SCORE_EXACT = 3;
+    private static final int SCORE_PREFIX = 2;
+    private static final int SCORE_FIRST_WORD = 1;
+    private static final int SCORE_RECENT_DAY = 2;
+    private static final int SCORE_RECENT_WEEK = 1;
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long WEEK = TimeUnit.DAYS.toMillis(7);
+
+    private static final Map<Character, String> TRANSLITERATION = new HashMap<>();
+
+    static {
+        String[] pairs = {
+                "а", "a", "б", "b", "в", "v", "г", "g", "д", "d", "е", "e", "ж", "zh",
+                "з", "z", "и", "i", "к", "k", "л", "l", "м", "m", "н", "n", "о", "o",
+                "п", "p", "р", "r", "с", "s", "т", "t", "у", "u", "ф", "f", "х", "kh",
+                "ц", "ts", "ч", "ch", "ш", "sh", "щ", "shch", "ъ", "", "ы", "y", "ь", "",
+                "э", "e", "ю", "yu", "я", "ya", "і", "i", "є", "ye", "ґ", "g",
+        };
+        for (int i = 0; i < pairs.length; i += 2) {
+            TRANSLITERATION.put(pairs[i].charAt(0), pairs[i + 1]);
+        }
+    }
+
+    private static class Entry {
+        AbstractContact contact;
+        AbstractChat chat;
+        String name;
+        StructuredName structuredName;
+        String[] words;
+        /**
+         * Number of words made from the first word of the name.
+         */
+        int leadingWords;
+        int generation;
+    }
+
+    private static class Result {
+        final AbstractContact contact;
+        final int score;
+
+        Result(AbstractContact contact, int score) {
+            this.contact = contact;
+            this.score = score;
+        }
+    }
+
+    private final Map<AccountJid, Map<UserJid, Entry>> entries = new HashMap<>();
+    private int generation;
+
+    /**
+     * @param chats rooms and active chats, chats of roster contacts are removed from it.
+     * @return matched contacts, best matches first.
+     */
+    ArrayList<AbstractContact> search(String query, Collection<RosterContact> rosterContacts,
+                                      Map<AccountJid, Map<UserJid, AbstractChat>> chats,
+                                      final Comparator<AbstractContact> comparator) {
+        generation++;
+        int touched = 0;
+        String[] queryWords = getQueryWords(query);
+        List<Result> results = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        for (RosterContact rosterContact : rosterContacts) {
+            if (!rosterContact.isEnabled()) {
+                continue;
+            }
+            final Map<UserJid, AbstractChat> users = chats.get(rosterContact.getAccount());
+            AbstractChat chat = users == null ? null : users.remove(rosterContact.getUser());
+
+            Entry entry = getEntry(rosterContact.getAccount(), rosterContact.getUser());
+            if (entry.contact != rosterContact) {
+                entry.contact = rosterContact;
+                entry.words = null;
+            }
+            entry.chat = chat;
+            touched++;
+            match(entry, queryWords, now, results);
+        }
+
+        for (Map<UserJid, AbstractChat> users : chats.values()) {
+            for (AbstractChat chat : users.values()) {
+                Entry entry = getEntry(chat.getAccount(), chat.getUser());
+                if (entry.chat != chat || entry.contact instanceof RosterContact) {
+                    entry.contact = chat instanceof RoomChat
+                            ? new RoomContact((RoomChat) chat) : new ChatContact(chat);
+                    entry.chat = chat;
+                    entry.words = null;
+                }
+                touched++;
+                match(entry, queryWords, now, results);
+            }
+        }
+
+        removeStaleEntries(touched);
+
+        Collections.sort(results, new Comparator<Result>() {
+            @Override
+            public int compare(Result o1, Result o2) {
+                if (o1.score != o2.score) {
+                    return o2.score - o1.score;
+                }
+                return comparator.compare(o1.contact, o2.contact);
+            }
+        });
+        ArrayList<AbstractContact> contacts = new ArrayList<>(results.size());
+        for (Result result : results) {
+            contacts.add(result.contact);
+        }
+        return contacts;
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    private Entry getEntry(AccountJid account, UserJid user) {
+        Map<UserJid, Entry> users = entries.get(account);
+        if (users == null) {
+            users = new HashMap<>();
+            entries.put(account, users);
+        }
+        Entry entry = users.get(user);
+        if (entry == null) {
+            entry = new Entry();
+            users.put(user, entry);
+        }
+        entry.generation = generation;
+        return entry;
+    }
+
+    private void removeStaleEntries(int touched) {
+        int size = 0;
+        for (Map<UserJid, Entry> users : entries.values()) {
+            size += users.size();
+        }
+        if (size == touched) {
+            return;
+        }
+        for (Iterator<Map<UserJid, Entry>> accounts = entries.values().iterator(); accounts.hasNext(); ) {
+            Map<UserJid, Entry> users = accounts.next();
+            for (Iterator<Entry> iterator = users.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().generation != generation) {
+                    iterator.remove();
+                }
+            }
+            if (users.isEmpty()) {
+                accounts.remove();
+            }
+        }
+    }
+
+    private static void match(Entry entry, String[] queryWords, long now, List<Result> results) {
+        updateWords(entry);
+
+        int score = 0;
+        for (String queryWord : queryWords) {
+            int wordScore = 0;
+            for (int i = 0; i < entry.words.length && wordScore < SCORE_EXACT + SCORE_FIRST_WORD; i++) {
+                String word = entry.words[i];
+                if (word.startsWith(queryWord)) {
+                    int value = word.length() == queryWord.length() ? SCORE_EXACT : SCORE_PREFIX;
+                    if (i < entry.leadingWords) {
+                        value += SCORE_FIRST_WORD;
+                    }
+                    wordScore = Math.max(wordScore, value);
+                }
+            }
+            if (wordScore == 0) {
+                return;
+            }
+            score += wordScore;
+        }
+
+        if (entry.chat != null) {
+            score += getRecentScore(entry.chat.getLastTime(), now);
+        }
+        results.add(new Result(entry.contact, score));
+    }
+
+    /**
+     * @return bonus for chats with recent messages.
+     */
+    static int getRecentScore(@Nullable Date lastTime, long now) {
+        if (lastTime == null) {
+            return 0;
+        }
+        long age = now - lastTime.getTime();
+        if (age < DAY) {
+            return SCORE_RECENT_DAY;
+        } else if (age < WEEK) {
+            return SCORE_RECENT_WEEK;
+        }
+        return 0;
+    }
+
+    /**
+     * Rebuilds words of the entry if it is new or name of the contact has changed.
+     */
+    private static void updateWords(Entry entry) {
+        AbstractContact contact = entry.contact;
+        Jid jid = contact.getUser().getBareJid();
+        String name = contact.getName();
+        StructuredName structuredName = VCardManager.getInstance().getStructuredName(jid);
+        if (entry.words != null && name.equals(entry.name) && structuredName == entry.structuredName) {
+            return;
+        }
+
+        Set<String> words = new LinkedHashSet<>();
+        List<String> nameWords = split(fold(name));
+        if (!nameWords.isEmpty()) {
+            words.add(nameWords.get(0));
+            words.add(transliterate(nameWords.get(0)));
+        }
+        entry.leadingWords = words.size();
+        addWords(words, name);
+        if (structuredName != null) {
+            addWords(words, structuredName.getNickName());
+            addWords(words, structuredName.getFormattedName());
+        }
+        addWords(words, jid.toString());
+
+        entry.name = name;
+        entry.structuredName = structuredName;
+        entry.words = words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * Adds folded and transliterated words of the text.
+     */
+    private static void addWords(Set<String> words, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        for (String word : split(fold(text))) {
+            words.add(word);
+            words.add(transliterate(word));
+        }
+    }
+
+    /**
+     * @return folded words of the query, words with transliteration are matched as transliterated.
+     */
+    static String[] getQueryWords(String query) {
+        List<String> words = split(fold(query));
+        String[] result = new String[words.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = transliterate(words.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return lower case text without diacritical marks.
+     */
+    static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder builder = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return latin transliteration of cyrillic letters in the folded word.
+     */
+    static String transliterate(String word) {
+        StringBuilder builder = null;
+        for (int i = 0; i < word.length(); i++) {
+            String latin = TRANSLITERATION.get(word.charAt(i));
+            if (latin != null && builder == null) {
+                builder = new StringBuilder(word.length() + 4);
+                builder.append(word, 0, i);
+            }
+            if (builder != null) {
+                builder.append(latin != null ? latin : String.valueOf(word.charAt(i)));
+            }
+        }
+        return builder == null ? word : builder.toString();
+    }
+
+    /**
+     * @return words separated by any character except letters and digits.
+     */
+    private static List<String> split(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+}
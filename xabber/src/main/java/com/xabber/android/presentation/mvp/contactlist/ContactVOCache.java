@@ -0,0 +1,269 @@
+package com.xabber.android.presentation.mvp.contactlist;
+
+import com.xabber.android.data.Application;
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.executor.Lane;
+import com.xabber.android.data.message.AbstractChat;
+import com.xabber.android.data.message.MessageManager;
+import com.xabber.android.data.roster.AbstractContact;
+import com.xabber.android.data.roster.ContactVersions;
+import com.xabber.android.presentation.ui.contactlist.viewobjects.ContactVO;
+import com.xabber.android.presentation.ui.contactlist.viewobjects.ExtContactVO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import eu.davidea.flexibleadapter.items.IFlexible;
+
+/**
+ * Contact list items by account and user.
+ * <p/>
+ * Item is reused while {@link ContactVersions} stamp of the contact and
+ * {@link AbstractChat#getSummaryVersion()} of its chat are the same as on creation.
+ * Items are also rebuilt after {@link #MAX_AGE}, as last activity and global
+ * notification settings have no stamp.
+ * <p/>
+ * Outdated item is rebuilt in background, old item is returned until new one is
+ * published and {@link Listener#onItemsRebuilt()} is called.
+ * <p/>
+ * Must be used from UI thread only.
+ */
+class ContactVOCache {
+
+    private static final long MAX_AGE = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Message status of outgoing message that is neither sent nor failed yet.
+     * It becomes failed with time, so item built before that is rebuilt after it.
+     */
+    private static final int MESSAGE_STATUS_PENDING = 0;
+
+    /**
+     * Time after which not sent message is shown as failed.
+     */
+    private static final long PENDING_FAIL_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    interface Listener {
+
+        /**
+         * Called in UI thread after items rebuilt in background were stored.
+         */
+        void onItemsRebuilt();
+
+    }
+
+    private static class Entry {
+        ContactVO item;
+        boolean ext;
+        Class<? extends AbstractContact> contactClass;
+        long contactVersion;
+        AbstractChat chat;
+        int chatVersion;
+        long created;
+        int generation;
+        /**
+         * Whether new item is being built in background.
+         */
+        boolean rebuilding;
+    }
+
+    /**
+     * Item to be rebuilt in background with stamps taken in UI thread.
+     */
+    private static class Request {
+        final Entry entry;
+        final AbstractContact contact;
+        final ContactVO.ChatSummary summary;
+        final boolean ext;
+        final ContactVO.ContactClickListener listener;
+        final long contactVersion;
+        final AbstractChat chat;
+        final int chatVersion;
+        final long created;
+        ContactVO item;
+
+        Request(Entry entry, AbstractContact contact, boolean ext,
+                ContactVO.ContactClickListener listener, long contactVersion, long created) {
+            this.entry = entry;
+            this.contact = contact;
+            this.summary = ContactVO.ChatSummary.get(contact);
+            this.ext = ext;
+            this.listener = listener;
+            this.contactVersion = contactVersion;
+            this.chat = MessageManager.getInstance().getChat(contact.getAccount(), contact.getUser());
+            this.chatVersion = chat == null ? 0 : chat.getSummaryVersion();
+            this.created = created;
+        }
+    }
+
+    private final Listener cacheListener;
+    private final Map<AccountJid, Map<UserJid, Entry>> entries = new HashMap<>();
+    private List<Request> requests = new ArrayList<>();
+    private int generation;
+
+    ContactVOCache(Listener cacheListener) {
+        this.cacheListener = cacheListener;
+    }
+
+    /**
+     * Starts new contact list build. Contact added to the list twice (e.g. in two groups)
+     * gets new item for the second time, as items are compared by id.
+     */
+    void startUpdate() {
+        generation++;
+    }
+
+    ContactVO get(AbstractContact contact, boolean ext, ContactVO.ContactClickListener listener) {
+        AccountJid account = contact.getAccount();
+        UserJid user = contact.getUser();
+        Map<UserJid, Entry> users = entries.get(account);
+        if (users == null) {
+            users = new HashMap<>();
+            entries.put(account, users);
+        }
+        Entry entry = users.get(user);
+        long contactVersion = ContactVersions.get(account, user);
+        long now = System.currentTimeMillis();
+
+        if (entry != null && entry.generation == generation) {
+            return convert(contact, ext, listener);
+        }
+
+        if (entry != null && isValid(entry, contact, ext, contactVersion, now)) {
+            entry.generation = generation;
+            return entry.item;
+        }
+
+        if (entry != null && entry.ext == ext && entry.contactClass == contact.getClass()) {
+            if (!entry.rebuilding) {
+                entry.rebuilding = true;
+                requests.add(new Request(entry, contact, ext, listener, contactVersion, now));
+            }
+            entry.generation = generation;
+            return entry.item;
+        }
+
+        // there is no item of the same kind to show until rebuild is finished
+        if (entry == null) {
+            entry = new Entry();
+            users.put(user, entry);
+        }
+        entry.item = convert(contact, ext, listener);
+        entry.ext = ext;
+        entry.contactClass = contact.getClass();
+        entry.contactVersion = contactVersion;
+        entry.chat = MessageManager.getInstance().getChat(account, user);
+        entry.chatVersion = entry.chat == null ? 0 : entry.chat.getSummaryVersion();
+        entry.created = now;
+        entry.generation = generation;
+        return entry.item;
+    }
+
+    ArrayList<IFlexible> get(Collection<AbstractContact> contacts, boolean ext,
+                             ContactVO.ContactClickListener listener) {
+        ArrayList<IFlexible> items = new ArrayList<>(contacts.size());
+        for (AbstractContact contact : contacts) {
+            items.add(get(contact, ext, listener));
+        }
+        return items;
+    }
+
+    /**
+     * Removes items of contacts that were not requested since last {@link #startUpdate()}.
+     */
+    void removeStaleEntries() {
+        for (Iterator<Map<UserJid, Entry>> accounts = entries.values().iterator(); accounts.hasNext(); ) {
+            Map<UserJid, Entry> users = accounts.next();
+            for (Iterator<Entry> iterator = users.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().generation != generation) {
+                    iterator.remove();
+                }
+            }
+            if (users.isEmpty()) {
+                accounts.remove();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds outdated items requested since last {@link #startUpdate()} in background.
+     */
+    void finishUpdate() {
+        if (requests.isEmpty()) {
+            return;
+        }
+        final List<Request> pending = requests;
+        requests = new ArrayList<>();
+        Application.getInstance().runInBackground(Lane.CPU, new Runnable() {
+            @Override
+            public void run() {
+                for (Request request : pending) {
+                    request.item = request.ext
+                            ? ExtContactVO.convert(request.contact, request.summary, request.listener)
+                            : ContactVO.convert(request.contact, request.summary, request.listener);
+                }
+                Application.getInstance().runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        publish(pending);
+                    }
+                });
+            }
+        });
+    }
+
+    void clear() {
+        entries.clear();
+        requests.clear();
+    }
+
+    private void publish(List<Request> pending) {
+        boolean changed = false;
+        for (Request request : pending) {
+            Entry entry = request.entry;
+            entry.rebuilding = false;
+            Map<UserJid, Entry> users = entries.get(request.contact.getAccount());
+            if (users == null || users.get(request.contact.getUser()) != entry
+                    || entry.ext != request.ext || entry.contactClass != request.contact.getClass()) {
+                continue;
+            }
+            entry.item = request.item;
+            entry.contactVersion = request.contactVersion;
+            entry.chat = request.chat;
+            entry.chatVersion = request.chatVersion;
+            entry.created = request.created;
+            changed = true;
+        }
+        if (changed) {
+            cacheListener.onItemsRebuilt();
+        }
+    }
+
+    private static boolean isValid(Entry entry, AbstractContact contact, boolean ext,
+                                   long contactVersion, long now) {
+        if (entry.ext != ext || entry.contactClass != contact.getClass()
+                || entry.contactVersion != contactVersion || now - entry.created > MAX_AGE) {
+            return false;
+        }
+        if (entry.item.isOutgoing() && entry.item.getMessageStatus() == MESSAGE_STATUS_PENDING
+                && entry.item.getTime() != null
+                && entry.created - entry.item.getTime().getTime() <= PENDING_FAIL_DELAY
+                && now - entry.item.getTime().getTime() > PENDING_FAIL_DELAY) {
+            return false;
+        }
+        AbstractChat chat = MessageManager.getInstance().getChat(contact.getAccount(), contact.getUser());
+        return chat != null && chat == entry.chat && chat.getSummaryVersion() == entry.chatVersion;
+    }
+
+    private static ContactVO convert(AbstractContact contact, boolean ext,
+                                     ContactVO.ContactClickListener listener) {
+        return ext ? ExtContactVO.convert(contact, listener) : ContactVO.convert(contact, listener);
+    }
+
+}
@@ -22,6 +22,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.xabber.android.R;
 import com.xabber.android.data.SettingsManager;
+import com.xabber.android.data.database.MessageDatabaseManager;
 import com.xabber.android.data.database.messagerealm.Attachment;
 import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.entity.AccountJid;
@@ -124,6 +125,14 @@ public class ContactVO extends AbstractFlexibleItem<ContactVO.ViewHolder> {
     }
 
     public static ContactVO convert(AbstractContact contact, ContactClickListener listener) {
+        return convert(contact, ChatSummary.get(contact), listener);
+    }
+
+    /**
+     * Can be called from any thread, state of the chat is taken from the summary.
+     */
+    public static ContactVO convert(AbstractContact contact, ChatSummary summary,
+                                    ContactClickListener listener) {
         int accountColorIndicator;
         int accountColorIndicatorBack;
         Drawable avatar;
@@ -140,7 +149,7 @@ public class ContactVO extends AbstractFlexibleItem<ContactVO.ViewHolder> {
                 .getAccountMainColor(contact.getAccount());
         accountColorIndicatorBack = ColorManager.getInstance().getAccountPainter()
                 .getAccountIndicatorBackColor(contact.getAccount());
-        avatar = contact.getAvatar();
+        avatar = summary.avatar;
 
 
         String name = contact.getName();
@@ -162,9 +171,7 @@ public class ContactVO extends AbstractFlexibleItem<ContactVO.ViewHolder> {
         if (contact instanceof RosterContact)
              lastActivity = ((RosterContact) contact).getLastActivity();
 
-        MessageManager messageManager = MessageManager.getInstance();
-        AbstractChat chat = messageManager.getOrCreateChat(contact.getAccount(), contact.getUser());
-        MessageItem lastMessage = chat.getLastMessage();
+        MessageItem lastMessage = summary.lastMessage;
 
         if (lastMessage == null || lastMessage.getText() == null) {
             messageText = statusText;
@@ -214,11 +221,7 @@ public class ContactVO extends AbstractFlexibleItem<ContactVO.ViewHolder> {
             }
         }
 
-        if (!isOutgoing) unreadCount = chat.getUnreadMessageCount();
-
-        // notification icon
-        NotificationState.NotificationMode mode =
-                chat.getNotificationState().determineModeByGlobalSettings(chat instanceof RoomChat);
+        if (!isOutgoing) unreadCount = summary.unreadCount;
 
         // custom notification
         boolean isCustomNotification = CustomNotifyPrefsManager.getInstance().
@@ -227,9 +230,9 @@ public class ContactVO extends AbstractFlexibleItem<ContactVO.ViewHolder> {
         return new ContactVO(accountColorIndicator, accountColorIndicatorBack,
                 name, statusText, statusId,
                 statusLevel, avatar, mucIndicatorLevel, contact.getUser(), contact.getAccount(),
-                unreadCount, !chat.notifyAboutMessage(), mode, messageText, isOutgoing, time,
-                messageStatus, messageOwner, chat.isArchived(), lastActivity, listener, forwardedCount,
-                isCustomNotification, chat.isGroupchat() );
+                unreadCount, summary.mute, summary.notificationMode, messageText, isOutgoing, time,
+                messageStatus, messageOwner, summary.archived, lastActivity, listener, forwardedCount,
+                isCustomNotification, summary.groupchat);
     }
 
     public static ArrayList<IFlexible> convert(Collection<AbstractContact> contacts, ContactClickListener listener) {
@@ -538,4 +541,51 @@ public class ContactVO extends AbstractFlexibleItem<ContactVO.ViewHolder> {
     public void setArchived(boolean archived) {
         this.archived = archived;
     }
+
+    /**
+     * State of the chat and avatar of the contact. Chat keeps Realm objects of UI thread
+     * and avatar cache is not synchronized, so summary is taken in UI thread and item
+     * can be converted from it in background.
+     */
+    public static class ChatSummary {
+        private final Drawable avatar;
+        /**
+         * Unmanaged copy of the last message.
+         */
+        private final MessageItem lastMessage;
+        private final int unreadCount;
+        private final boolean mute;
+        private final NotificationState.NotificationMode notificationMode;
+        private final boolean archived;
+        private final boolean groupchat;
+
+        private ChatSummary(Drawable avatar, MessageItem lastMessage, int unreadCount, boolean mute,
+                            NotificationState.NotificationMode notificationMode,
+                            boolean archived, boolean groupchat) {
+            this.avatar = avatar;
+            this.lastMessage = lastMessage;
+            this.unreadCount = unreadCount;
+            this.mute = mute;
+            this.notificationMode = notificationMode;
+            this.archived = archived;
+            this.groupchat = groupchat;
+        }
+
+        /**
+         * Must be called from UI thread.
+         */
+        public static ChatSummary get(AbstractContact contact) {
+            AbstractChat chat = MessageManager.getInstance()
+                    .getOrCreateChat(contact.getAccount(), contact.getUser());
+            MessageItem lastMessage = chat.getLastMessage();
+            if (lastMessage != null && lastMessage.isManaged()) {
+                lastMessage = lastMessage.isValid() ? MessageDatabaseManager.getInstance()
+                        .getRealmUiThread().copyFromRealm(lastMessage) : null;
+            }
+            return new ChatSummary(contact.getAvatar(), lastMessage, chat.getUnreadMessageCount(),
+                    !chat.notifyAboutMessage(),
+                    chat.getNotificationState().determineModeByGlobalSettings(chat instanceof RoomChat),
+                    chat.isArchived(), chat.isGroupchat());
+        }
+    }
 }
@@ -42,7 +42,15 @@ public class ExtContactVO extends ContactVO {
     }
 
     public static ExtContactVO convert(AbstractContact contact, ContactClickListener listener) {
-        ContactVO contactVO = ContactVO.convert(contact, listener);
+        return convert(contact, ChatSummary.get(contact), listener);
+    }
+
+    /**
+     * Can be called from any thread, state of the chat is taken from the summary.
+     */
+    public static ExtContactVO convert(AbstractContact contact, ChatSummary summary,
+                                       ContactClickListener listener) {
+        ContactVO contactVO = ContactVO.convert(contact, summary, listener);
         return new ExtContactVO(
                 contactVO.getAccountColorIndicator(), contactVO.getAccountColorIndicatorBack(),
                 contactVO.getName(), contactVO.getStatus(), contactVO.getStatusId(),
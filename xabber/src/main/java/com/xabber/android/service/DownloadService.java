@@ -11,6 +11,7 @@ import android.util.Log;
 import com.xabber.android.data.database.MessageDatabaseManager;
 import com.xabber.android.data.database.messagerealm.Attachment;
 import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.extension.file.AttachmentMetadata;
 import com.xabber.android.data.extension.file.FileManager;
 import com.xabber.android.utils.HttpClientWithMTM;
 
@@ -125,7 +126,7 @@ public class DownloadService extends IntentService {
                 fos.close();
 
                 // save path to realm
-                saveAttachmentPathToRealm(file.getPath());
+                saveAttachmentPathToRealm(file);
             } else publishError("File not created");
 
         } catch (IOException e) {
@@ -134,16 +135,41 @@ public class DownloadService extends IntentService {
         }
     }
 
-    private void saveAttachmentPathToRealm(final String path) {
-        MessageDatabaseManager.getInstance().getNewBackgroundRealm().executeTransaction(new Realm.Transaction() {
+    private void saveAttachmentPathToRealm(final File file) {
+        Realm realm = MessageDatabaseManager.getInstance().getNewBackgroundRealm();
+        Attachment saved = realm.where(Attachment.class)
+                .equalTo(Attachment.Fields.UNIQUE_ID, attachmentId).findFirst();
+        if (saved == null) {
+            realm.close();
+            publishError("Attachment not found");
+            return;
+        }
+
+        // read metadata out of transaction to not block other writers
+        final Attachment metadata = new Attachment();
+        metadata.setIsImage(saved.isImage());
+        metadata.setMimeType(saved.getMimeType());
+        AttachmentMetadata.fill(metadata, file);
+
+        realm.executeTransaction(new Realm.Transaction() {
             @Override
             public void execute(Realm realm) {
                 Attachment attachment = realm.where(Attachment.class)
                         .equalTo(Attachment.Fields.UNIQUE_ID, attachmentId).findFirst();
-                attachment.setFilePath(path);
-                publishCompleted();
+                if (attachment == null) return;
+                attachment.setFilePath(file.getPath());
+                attachment.setFileSize(metadata.getFileSize());
+                attachment.setMimeType(metadata.getMimeType());
+                attachment.setOrientation(metadata.getOrientation());
+                attachment.setThumbnail(metadata.getThumbnail());
+                if (metadata.getImageWidth() != null && metadata.getImageHeight() != null) {
+                    attachment.setImageWidth(metadata.getImageWidth());
+                    attachment.setImageHeight(metadata.getImageHeight());
+                }
             }
         });
+        realm.close();
+        publishCompleted();
     }
 
     private void publishProgress(long downloadedBytes, long fileSize) {
@@ -53,6 +53,7 @@ import com.xabber.android.data.extension.attention.AttentionManager;
 import com.xabber.android.data.extension.blocking.BlockingManager;
 import com.xabber.android.data.extension.blocking.OnBlockedListChangedListener;
 import com.xabber.android.data.extension.httpfileupload.HttpFileUploadManager;
+import com.xabber.android.data.extension.mam.NextMamManager;
 import com.xabber.android.data.extension.muc.MUCManager;
 import com.xabber.android.data.extension.muc.RoomChat;
 import com.xabber.android.data.extension.muc.RoomState;
@@ -826,6 +827,10 @@ public class ChatActivity extends ManagedActivity implements OnContactChangedLis
         // mute chat
         menu.findItem(R.id.action_mute_chat).setVisible(abstractChat.notifyAboutMessage());
         menu.findItem(R.id.action_unmute_chat).setVisible(!abstractChat.notifyAboutMessage());
+
+        // full history download
+        menu.findItem(R.id.action_download_full_history).setVisible(!abstractChat.historyIsFull()
+                && NextMamManager.getInstance().isSupported(abstractChat.getAccount()));
     }
 
     private void setUpMUCInfoMenu(Menu menu, AbstractChat abstractChat) {
@@ -963,6 +968,13 @@ public class ChatActivity extends ManagedActivity implements OnContactChangedLis
                     chatFragment.clearHistory(account, user);
                 return true;
 
+            case R.id.action_download_full_history:
+                if (abstractChat != null) {
+                    NextMamManager.getInstance().startFullChatHistoryLoad(abstractChat);
+                    Toast.makeText(this, R.string.download_full_history_started, Toast.LENGTH_SHORT).show();
+                }
+                return true;
+
             case R.id.action_export_chat:
                 if (chatFragment != null)
                     chatFragment.onExportChatClick();
@@ -26,6 +26,7 @@ import com.xabber.android.data.database.MessageDatabaseManager;
 import com.xabber.android.data.database.messagerealm.Attachment;
 import com.xabber.android.data.database.messagerealm.MessageItem;
 import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.extension.csi.ClientStateManager;
 import com.xabber.android.data.extension.file.FileManager;
 import com.xabber.android.data.filedownload.DownloadManager;
 import com.xabber.android.ui.fragment.ImageViewerFragment;
@@ -175,6 +176,7 @@ public class ImageViewerActivity extends AppCompatActivity implements Toolbar.On
     @Override
     protected void onResume() {
         super.onResume();
+        ClientStateManager.getInstance().onActivityResumed();
         updateToolbar();
         subscribeForDownloadProgress();
     }
@@ -182,6 +184,7 @@ public class ImageViewerActivity extends AppCompatActivity implements Toolbar.On
     @Override
     protected void onPause() {
         super.onPause();
+        ClientStateManager.getInstance().onActivityPaused();
         unsubscribeAll();
         showProgress(false);
     }
@@ -39,6 +39,7 @@ import com.xabber.android.data.roster.RosterManager;
 import com.xabber.android.ui.adapter.OccupantListAdapter;
 import com.xabber.android.ui.color.BarPainter;
 
+import org.jivesoftware.smackx.muc.MUCRole;
 import org.jxmpp.jid.EntityBareJid;
 import org.jxmpp.jid.impl.JidCreate;
 
@@ -55,6 +56,7 @@ public class OccupantListActivity extends ManagedListActivity implements
     private AccountJid account;
     private EntityBareJid room;
     private OccupantListAdapter listAdapter;
+    private Toolbar toolbar;
 
     public static Intent createIntent(Context context, AccountJid account, UserJid room) {
         return new EntityIntentBuilder(context, OccupantListActivity.class)
@@ -84,7 +86,7 @@ public class OccupantListActivity extends ManagedListActivity implements
             return;
         }
         setContentView(R.layout.list);
-        final Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar_default);
+        toolbar = (Toolbar) findViewById(R.id.toolbar_default);
         toolbar.setNavigationIcon(R.drawable.ic_arrow_left_white_24dp);
         toolbar.setNavigationOnClickListener(new View.OnClickListener() {
             @Override
@@ -109,7 +111,7 @@ public class OccupantListActivity extends ManagedListActivity implements
         super.onResume();
         Application.getInstance().addUIListener(OnAccountChangedListener.class, this);
         Application.getInstance().addUIListener(OnContactChangedListener.class, this);
-        listAdapter.onChange();
+        onOccupantsChanged();
     }
 
     @Override
@@ -123,7 +125,7 @@ public class OccupantListActivity extends ManagedListActivity implements
     public void onContactsChanged(Collection<RosterContact> entities) {
         try {
             if (entities.contains(RosterManager.getInstance().getAbstractContact(account, UserJid.from(room)))) {
-                listAdapter.onChange();
+                onOccupantsChanged();
             }
         } catch (UserJid.UserJidCreateException e) {
             LogManager.exception(this, e);
@@ -133,10 +135,17 @@ public class OccupantListActivity extends ManagedListActivity implements
     @Override
     public void onAccountsChanged(Collection<AccountJid> accounts) {
         if (accounts.contains(account)) {
-            listAdapter.onChange();
+            onOccupantsChanged();
         }
     }
 
+    private void onOccupantsChanged() {
+        listAdapter.onChange();
+        int moderators = MUCManager.getInstance()
+                .getOccupantsByRole(account, room, MUCRole.moderator).size();
+        toolbar.setSubtitle(getString(R.string.occupant_list_subtitle, listAdapter.getCount(), moderators));
+    }
+
     @Override
     public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
         com.xabber.android.data.extension.muc.Occupant occupant
@@ -38,7 +38,6 @@ import org.jxmpp.jid.impl.JidCreate;
 import org.jxmpp.jid.parts.Resourcepart;
 
 import java.util.ArrayList;
-import java.util.Collections;
 
 /**
  * Adapter for {@link OccupantListActivity}.
@@ -65,7 +64,6 @@ public class OccupantListAdapter extends BaseAdapter implements
     public void onChange() {
         occupants.clear();
         occupants.addAll(MUCManager.getInstance().getOccupants(account, room));
-        Collections.sort(occupants);
         notifyDataSetChanged();
     }
 
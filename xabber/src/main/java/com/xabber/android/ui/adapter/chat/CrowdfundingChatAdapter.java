@@ -27,7 +27,6 @@ import com.xabber.android.ui.widget.CorrectlyMeasuringTextView;
 import com.xabber.android.utils.StringUtils;
 import com.xabber.android.utils.Utils;
 
-import java.util.Date;
 
 import io.realm.RealmRecyclerViewAdapter;
 import io.realm.RealmResults;
@@ -143,7 +142,7 @@ public class CrowdfundingChatAdapter extends RealmRecyclerViewAdapter<Crowdfundi
         } else holder.messageHeader.setVisibility(View.GONE);
 
         // time
-        String time = StringUtils.getTimeText(new Date((long)message.getTimestamp()*1000));
+        String time = StringUtils.getTimeText((long) message.getTimestamp() * 1000);
         holder.messageTime.setText(time);
 
         // status
@@ -28,7 +28,6 @@ import com.xabber.android.ui.widget.CorrectlyMeasuringTextView;
 import com.xabber.android.utils.StringUtils;
 
 import java.util.Arrays;
-import java.util.Date;
 
 import io.realm.RealmResults;
 import io.realm.Sort;
@@ -126,12 +125,12 @@ public class MessageVH extends BasicMessageVH implements View.OnClickListener, V
         }
         messageText.setMovementMethod(CorrectlyMeasuringTextView.LocalLinkMovementMethod.getInstance());
 
-        String time = StringUtils.getTimeText(new Date(messageItem.getTimestamp()));
+        String time = StringUtils.getTimeText(messageItem.getTimestamp());
 
         Long delayTimestamp = messageItem.getDelayTimestamp();
         if (delayTimestamp != null) {
             String delay = extraData.getContext().getString(messageItem.isIncoming() ? R.string.chat_delay : R.string.chat_typed,
-                    StringUtils.getTimeText(new Date(delayTimestamp)));
+                    StringUtils.getTimeText(delayTimestamp));
             time += " (" + delay + ")";
         }
 
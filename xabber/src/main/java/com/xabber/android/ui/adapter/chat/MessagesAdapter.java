@@ -210,9 +210,7 @@ public class MessagesAdapter extends RealmRecyclerViewAdapter<MessageItem, Basic
         } else if (groupchatUser != null) {
             MessageItem nextMessage = getMessageItem(position + 1);
             if (nextMessage != null) {
-                GroupchatUser user2 = GroupchatUserManager.getInstance().getGroupchatUser(nextMessage.getGroupchatUserId());
-                if (user2 != null) needTail = !groupchatUser.getId().equals(user2.getId());
-                else needTail = true;
+                needTail = !groupchatUser.getId().equals(nextMessage.getGroupchatUserId());
             } else needTail = true;
         } else if (viewType != VIEW_TYPE_ACTION_MESSAGE) {
             needTail = getSimpleType(viewType) != getSimpleType(getItemViewType(position + 1));
@@ -126,6 +126,11 @@ public class ChatFragment extends FileInteractionFragment implements PopupMenu.O
     private static final String LOG_TAG = ChatFragment.class.getSimpleName();
     private final long STOP_TYPING_DELAY = 4000; // in ms
     private static final int PERMISSIONS_REQUEST_EXPORT_CHAT = 22;
+    /**
+     * Number of not visible messages above the screen at which previous page of history
+     * is requested. Equals to page size, so the page is usually loaded before it is reached.
+     */
+    private static final int HISTORY_PREFETCH_DISTANCE = 50;
 
     private EditText inputView;
     private ImageButton sendButton;
@@ -417,6 +422,8 @@ public class ChatFragment extends FileInteractionFragment implements PopupMenu.O
     public void onStop() {
         super.onStop();
         EventBus.getDefault().unregister(this);
+        AbstractChat chat = MessageManager.getInstance().getChat(account, user);
+        if (chat != null) NextMamManager.getInstance().onChatClose(chat);
     }
 
     @Override
@@ -599,7 +606,7 @@ public class ChatFragment extends FileInteractionFragment implements PopupMenu.O
     private void loadHistoryIfNeed() {
         if (!historyIsLoading) {
             int invisibleMessagesCount = layoutManager.findFirstVisibleItemPosition();
-            if (invisibleMessagesCount <= 15) {
+            if (invisibleMessagesCount <= HISTORY_PREFETCH_DISTANCE) {
                 AbstractChat chat = getChat();
                 if (chat != null) NextMamManager.getInstance().onScrollInChat(chat);
             }
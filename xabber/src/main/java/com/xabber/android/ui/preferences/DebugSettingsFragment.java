@@ -1,25 +1,41 @@
 package com.xabber.android.ui.preferences;
 
+import android.app.AlertDialog;
 import android.app.ProgressDialog;
+import android.content.DialogInterface;
 import android.os.Bundle;
 import android.preference.Preference;
 import android.preference.PreferenceScreen;
+import android.widget.EditText;
 import android.widget.Toast;
 
 import com.xabber.android.BuildConfig;
 import com.xabber.android.R;
 import com.xabber.android.data.Application;
 import com.xabber.android.data.SettingsManager;
+import com.xabber.android.data.executor.Lane;
 import com.xabber.android.data.extension.mam.NextMamManager;
 import com.xabber.android.data.http.CrowdfundingManager;
 import com.xabber.android.data.message.AbstractChat;
+import com.xabber.android.data.log.LogManager;
 import com.xabber.android.data.message.MessageManager;
+import com.xabber.android.data.message.backup.HistoryBackupManager;
+import com.xabber.android.data.message.search.MessageSearchManager;
+import com.xabber.android.data.message.search.MessageSearchResult;
+import com.xabber.android.data.metrics.MetricsManager;
 import com.xabber.android.ui.activity.PreferenceSummaryHelperActivity;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 public class DebugSettingsFragment extends android.preference.PreferenceFragment {
 
+    private static final String LOG_TAG = DebugSettingsFragment.class.getSimpleName();
+
+    private static final int SEARCH_RESULTS_LIMIT = 50;
+
     private ProgressDialog progressDialog;
 
     @Override
@@ -43,6 +59,53 @@ public class DebugSettingsFragment extends android.preference.PreferenceFragment
             }
         });
 
+        preferenceScreen.findPreference(getString(R.string.debug_metrics_key))
+                .setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(Preference preference) {
+                showMetricsDialog();
+                return true;
+            }
+        });
+
+        preferenceScreen.findPreference(getString(R.string.debug_search_messages_key))
+                .setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(Preference preference) {
+                showSearchDialog();
+                return true;
+            }
+        });
+
+        preferenceScreen.findPreference(getString(R.string.debug_rebuild_search_index_key))
+                .setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(Preference preference) {
+                MessageSearchManager.getInstance().rebuildIndex();
+                Toast.makeText(getActivity(), R.string.debug_rebuild_search_index_started,
+                        Toast.LENGTH_SHORT).show();
+                return true;
+            }
+        });
+
+        preferenceScreen.findPreference(getString(R.string.debug_backup_history_key))
+                .setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(Preference preference) {
+                runBackup(false);
+                return true;
+            }
+        });
+
+        preferenceScreen.findPreference(getString(R.string.debug_restore_history_key))
+                .setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(Preference preference) {
+                runBackup(true);
+                return true;
+            }
+        });
+
         Preference prefFetchCrowdfundingFeed = preferenceScreen.findPreference(getString(R.string.debug_fetch_crowdfunding_feed_key));
         if (prefFetchCrowdfundingFeed != null) {
             prefFetchCrowdfundingFeed.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
@@ -66,6 +129,133 @@ public class DebugSettingsFragment extends android.preference.PreferenceFragment
         PreferenceSummaryHelperActivity.updateSummary(preferenceScreen);
     }
 
+    private void showMetricsDialog() {
+        new AlertDialog.Builder(getActivity())
+                .setTitle(R.string.debug_metrics_title)
+                .setMessage(MetricsManager.getInstance().dump())
+                .setPositiveButton(R.string.debug_metrics_save, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        saveMetrics();
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    private void saveMetrics() {
+        Application.getInstance().runInBackground(Lane.DISK, new Runnable() {
+            @Override
+            public void run() {
+                if (MetricsManager.getInstance().dumpToFile() != null) {
+                    Application.getInstance().runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Toast.makeText(Application.getInstance(), R.string.debug_metrics_saved,
+                                    Toast.LENGTH_SHORT).show();
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void showSearchDialog() {
+        final EditText queryView = new EditText(getActivity());
+        queryView.setSingleLine();
+        new AlertDialog.Builder(getActivity())
+                .setTitle(R.string.debug_search_messages_title)
+                .setView(queryView)
+                .setPositiveButton(R.string.debug_search_messages_action, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        searchMessages(queryView.getText().toString());
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    private void searchMessages(final String query) {
+        Application.getInstance().runInBackground(Lane.DATABASE_READ, new Runnable() {
+            @Override
+            public void run() {
+                final List<MessageSearchResult> results = MessageSearchManager.getInstance()
+                        .search(query, null, null, 0, SEARCH_RESULTS_LIMIT);
+                final boolean indexReady = MessageSearchManager.getInstance().isIndexReady();
+                Application.getInstance().runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        showSearchResults(results, indexReady);
+                    }
+                });
+            }
+        });
+    }
+
+    private void showSearchResults(List<MessageSearchResult> results, boolean indexReady) {
+        if (getActivity() == null) {
+            return;
+        }
+        if (!indexReady) {
+            Toast.makeText(getActivity(), R.string.debug_search_messages_index_not_ready,
+                    Toast.LENGTH_SHORT).show();
+        }
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity())
+                .setTitle(R.string.debug_search_messages_title)
+                .setPositiveButton(android.R.string.ok, null);
+        if (results.isEmpty()) {
+            builder.setMessage(R.string.debug_search_messages_nothing_found);
+        } else {
+            CharSequence[] items = new CharSequence[results.size()];
+            for (int i = 0; i < items.length; i++) {
+                MessageSearchResult result = results.get(i);
+                items[i] = result.getMessageItem().getUser() + ": " + result.getSnippet();
+            }
+            builder.setItems(items, null);
+        }
+        builder.show();
+    }
+
+    /**
+     * Writes backup of message history or restores it from the backup directory.
+     */
+    private void runBackup(final boolean restore) {
+        Application.getInstance().runInBackground(Lane.DISK, new Runnable() {
+            @Override
+            public void run() {
+                String result;
+                try {
+                    File directory = HistoryBackupManager.getInstance().getBackupDirectory();
+                    if (directory == null) {
+                        throw new IOException("External storage is not available");
+                    }
+                    if (restore) {
+                        long messages = HistoryBackupManager.getInstance().importHistory(directory);
+                        result = Application.getInstance().getString(
+                                R.string.debug_restore_history_done, messages);
+                    } else {
+                        long messages = HistoryBackupManager.getInstance().exportHistory(directory);
+                        result = Application.getInstance().getString(
+                                R.string.debug_backup_history_done, messages);
+                    }
+                } catch (IOException e) {
+                    LogManager.exception(LOG_TAG, e);
+                    result = Application.getInstance().getString(
+                            R.string.debug_backup_history_error, e.getMessage());
+                }
+
+                final String message = result;
+                Application.getInstance().runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(Application.getInstance(), message, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        });
+    }
+
     private void showDownloadArchiveDialog() {
         if (getActivity() != null) {
             progressDialog = new ProgressDialog(getActivity());
@@ -97,7 +287,7 @@ public class DebugSettingsFragment extends android.preference.PreferenceFragment
     }
 
     private void startMessageArchiveDownload() {
-        Application.getInstance().runInBackground(new Runnable() {
+        Application.getInstance().runInBackground(Lane.NETWORK, new Runnable() {
             @Override
             public void run() {
                 Collection<AbstractChat> chats = MessageManager.getInstance().getChats();
@@ -12,11 +12,16 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.target.CustomTarget;
+import com.bumptech.glide.request.target.Target;
 import com.bumptech.glide.request.transition.Transition;
 import com.xabber.android.R;
 import com.xabber.android.data.database.MessageDatabaseManager;
 import com.xabber.android.data.database.messagerealm.Attachment;
+import com.xabber.android.data.extension.file.AttachmentMetadata;
 import com.xabber.android.data.extension.file.FileManager;
 import com.xabber.android.data.message.MessageManager;
 
@@ -67,12 +72,22 @@ public class ImageGridBuilder {
         if (uri == null || uri.isEmpty())
             uri = attachment.getFileUrl();
 
-        Glide.with(parent.getContext())
-                .load(uri)
-                .centerCrop()
-                .placeholder(R.drawable.ic_recent_image_placeholder)
-                .error(R.drawable.ic_recent_image_placeholder)
-                .into(imageView);
+        Drawable thumbnail = AttachmentMetadata.getThumbnailDrawable(attachment);
+        if (thumbnail != null) {
+            Glide.with(parent.getContext())
+                    .load(uri)
+                    .centerCrop()
+                    .placeholder(thumbnail)
+                    .error(R.drawable.ic_recent_image_placeholder)
+                    .into(imageView);
+        } else {
+            Glide.with(parent.getContext())
+                    .load(uri)
+                    .centerCrop()
+                    .placeholder(R.drawable.ic_recent_image_placeholder)
+                    .error(R.drawable.ic_recent_image_placeholder)
+                    .into(imageView);
+        }
     }
 
     private void bindOneImage(final Attachment attachment, View parent, final ImageView imageView) {
@@ -83,7 +98,22 @@ public class ImageGridBuilder {
         final String uniqId = attachment.getUniqueId();
 
         if (imagePath != null) {
-            boolean result = FileManager.loadImageFromFile(parent.getContext(), imagePath, imageView);
+            boolean result = FileManager.loadImageFromFile(parent.getContext(), attachment, imageView,
+                    new RequestListener<Drawable>() {
+                        @Override
+                        public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                                    Target<Drawable> target, boolean isFirstResource) {
+                            MessageManager.setAttachmentLocalPathToNull(uniqId);
+                            return false;
+                        }
+
+                        @Override
+                        public boolean onResourceReady(Drawable resource, Object model,
+                                                       Target<Drawable> target, DataSource dataSource,
+                                                       boolean isFirstResource) {
+                            return false;
+                        }
+                    });
 
             if (!result) {
                 MessageManager.setAttachmentLocalPathToNull(uniqId);
@@ -0,0 +1,73 @@
+package com.xabber.android.utils;
+
+/**
+ * Escaping of text to be put into HTML and XML markup.
+ * <p/>
+ * Doesn't depend on Android, so it's used by benchmarks as is.
+ */
+public class HtmlUtils {
+
+    private HtmlUtils() {
+    }
+
+    /**
+     * Escape input chars to be shown in html.
+     *
+     * @param input
+     * @return
+     */
+    public static String escapeHtml(String input) {
+        StringBuilder builder = new StringBuilder();
+        int pos = 0;
+        int len = input.length();
+        while (pos < len) {
+            int codePoint = Character.codePointAt(input, pos);
+            if (codePoint == '"')
+                builder.append("&quot;");
+            else if (codePoint == '&')
+                builder.append("&amp;");
+            else if (codePoint == '<')
+                builder.append("&lt;");
+            else if (codePoint == '>')
+                builder.append("&gt;");
+            else if (codePoint == '\n')
+                builder.append("<br />");
+            else if (codePoint >= 0 && codePoint < 160)
+                builder.append(Character.toChars(codePoint));
+            else
+                builder.append("&#").append(codePoint).append(';');
+            pos += Character.charCount(codePoint);
+        }
+        return builder.toString();
+    }
+
+    public static String xmlEncode(String s) {
+        StringBuilder sb = new StringBuilder();
+        char c;
+        for (int i = 0; i < s.length(); i++) {
+            c = s.charAt(i);
+            switch (c) {
+                case '<':
+                    sb.append("&lt;"); //$NON-NLS-1$
+                    break;
+                case '>':
+                    sb.append("&gt;"); //$NON-NLS-1$
+                    break;
+                case '&':
+                    sb.append("&amp;"); //$NON-NLS-1$
+                    break;
+                case '\'':
+                    // In this implementation we use &apos; instead of &#39; because we encode XML, not HTML.
+                    sb.append("&apos;"); //$NON-NLS-1$
+                    break;
+                case '"':
+                    sb.append("&quot;"); //$NON-NLS-1$
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -7,9 +7,7 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.TimeUnit;
 
-import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.X509TrustManager;
 
 import de.duenndns.ssl.MemorizingTrustManager;
 import okhttp3.OkHttpClient;
@@ -20,13 +18,11 @@ public class HttpClientWithMTM {
 
         // create ssl verification factory
         SSLSocketFactory sslSocketFactory = null;
-        MemorizingTrustManager mtm = CertificateManager.getInstance().getNewFileUploadManager(accountJid);
+        MemorizingTrustManager mtm = CertificateManager.getInstance().getFileUploadManager(accountJid);
 
-        final SSLContext sslContext;
         try {
-            sslContext = SSLContext.getInstance("SSL");
-            sslContext.init(null, new X509TrustManager[]{mtm}, new java.security.SecureRandom());
-            sslSocketFactory = sslContext.getSocketFactory();
+            sslSocketFactory = CertificateManager.getInstance()
+                    .getFileUploadSSLContext(accountJid).getSocketFactory();
         } catch (NoSuchAlgorithmException | KeyManagementException e) {
             return null;
         }
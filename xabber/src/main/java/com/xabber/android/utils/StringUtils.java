@@ -16,18 +16,20 @@ package com.xabber.android.utils;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.util.LruCache;
 
 import com.xabber.android.R;
 import com.xabber.android.data.Application;
 import com.xabber.android.data.roster.RosterCacheManager;
+import com.xabber.android.data.time.FastDateFormat;
 
 import java.text.DateFormat;
-import java.text.DateFormatSymbols;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.Locale;
+import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -37,19 +39,38 @@ import java.util.concurrent.TimeUnit;
  */
 public class StringUtils {
 
-    private static final DateFormat DATE_TIME;
-    private static final DateFormat TIME;
+    private static final FastDateFormat DATE_TIME;
+    private static final FastDateFormat TIME;
     private static final String LOG_DATE_TIME_FORMAT = "HH:mm:ss yyyy-MM-dd";
 
+    /**
+     * Number of days which texts are kept for each kind of day text.
+     */
+    private static final int DAY_CACHE_SIZE = 64;
+
     static {
-        DATE_TIME = DateFormat.getDateTimeInstance(DateFormat.MEDIUM,
-                DateFormat.SHORT);
-        TIME = new SimpleDateFormat("HH:mm:ss");
-        timeFormat = android.text.format.DateFormat.getTimeFormat(Application.getInstance());
+        DATE_TIME = FastDateFormat.getDateTimeInstance(FastDateFormat.MEDIUM,
+                FastDateFormat.SHORT);
+        TIME = FastDateFormat.getInstance("HH:mm:ss");
+        timeFormat = getFastDateFormat(
+                android.text.format.DateFormat.getTimeFormat(Application.getInstance()),
+                FastDateFormat.getTimeInstance(FastDateFormat.SHORT));
     }
 
     private static SimpleDateFormat logDateTimeFormat;
-    private static DateFormat timeFormat;
+    private static FastDateFormat timeFormat;
+
+    /**
+     * Texts of days by local day number. Texts depend on current day and locale,
+     * so caches are cleared when any of them changes.
+     */
+    private static final LruCache<Long, String> smartDates = new LruCache<>(DAY_CACHE_SIZE);
+    private static final LruCache<Long, String> rosterDates = new LruCache<>(DAY_CACHE_SIZE);
+    private static final LruCache<Long, String> messageDates = new LruCache<>(DAY_CACHE_SIZE);
+    private static long todayStart = Long.MAX_VALUE;
+    private static long tomorrowStart = Long.MIN_VALUE;
+    private static Locale dayCacheLocale;
+    private static String dayCacheTimeZone;
 
     private StringUtils() {
     }
@@ -91,51 +112,22 @@ public class StringUtils {
         }
     }
 
-    /**
-     * Escape input chars to be shown in html.
-     *
-     * @param input
-     * @return
-     */
-    public static String escapeHtml(String input) {
-        StringBuilder builder = new StringBuilder();
-        int pos = 0;
-        int len = input.length();
-        while (pos < len) {
-            int codePoint = Character.codePointAt(input, pos);
-            if (codePoint == '"')
-                builder.append("&quot;");
-            else if (codePoint == '&')
-                builder.append("&amp;");
-            else if (codePoint == '<')
-                builder.append("&lt;");
-            else if (codePoint == '>')
-                builder.append("&gt;");
-            else if (codePoint == '\n')
-                builder.append("<br />");
-            else if (codePoint >= 0 && codePoint < 160)
-                builder.append(Character.toChars(codePoint));
-            else
-                builder.append("&#").append(codePoint).append(';');
-            pos += Character.charCount(codePoint);
-        }
-        return builder.toString();
-    }
-
     /**
      * @param timeStamp
      * @return String with date and time to be display.
      */
     public static String getDateTimeText(Date timeStamp) {
-        synchronized (DATE_TIME) {
-            return DATE_TIME.format(timeStamp);
-        }
+        return DATE_TIME.format(timeStamp);
     }
 
     public static String getTimeText(Date timeStamp) {
         return timeFormat.format(timeStamp);
     }
 
+    public static String getTimeText(long timeStamp) {
+        return timeFormat.format(timeStamp);
+    }
+
     public static String getTimeTextWithSeconds(Date timeStamp) {
         return TIME.format(timeStamp);
     }
@@ -149,19 +141,18 @@ public class StringUtils {
             return "";
         }
 
-        // today
-        Calendar midnight = new GregorianCalendar();
-        // reset hour, minutes, seconds and millis
-        midnight.set(Calendar.HOUR_OF_DAY, 0);
-        midnight.set(Calendar.MINUTE, 0);
-        midnight.set(Calendar.SECOND, 0);
-        midnight.set(Calendar.MILLISECOND, 0);
-
-        if (timeStamp.getTime() > midnight.getTimeInMillis()) {
+        Locale locale = context.getResources().getConfiguration().locale;
+        if (timeStamp.getTime() > getTodayStart(locale)) {
             return timeFormat.format(timeStamp);
         } else {
-            DateFormat dateFormat = android.text.format.DateFormat.getDateFormat(context);
-            return dateFormat.format(timeStamp) + " " + timeFormat.format(timeStamp);
+            long day = getDay(timeStamp.getTime());
+            String date = smartDates.get(day);
+            if (date == null) {
+                date = getFastDateFormat(android.text.format.DateFormat.getDateFormat(context),
+                        FastDateFormat.getDateInstance(FastDateFormat.SHORT, locale)).format(timeStamp);
+                smartDates.put(day, date);
+            }
+            return date + " " + timeFormat.format(timeStamp);
         }
     }
 
@@ -170,20 +161,17 @@ public class StringUtils {
             return "";
         }
 
-        // today
-        Calendar midnight = new GregorianCalendar();
-        // reset hour, minutes, seconds and millis
-        midnight.set(Calendar.HOUR_OF_DAY, 0);
-        midnight.set(Calendar.MINUTE, 0);
-        midnight.set(Calendar.SECOND, 0);
-        midnight.set(Calendar.MILLISECOND, 0);
-
-        if (timeStamp.getTime() > midnight.getTimeInMillis()) {
+        Locale locale = context.getResources().getConfiguration().locale;
+        if (timeStamp.getTime() > getTodayStart(locale)) {
             return timeFormat.format(timeStamp);
         } else {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("d MMM",
-                    context.getResources().getConfiguration().locale);
-            return dateFormat.format(timeStamp);
+            long day = getDay(timeStamp.getTime());
+            String date = rosterDates.get(day);
+            if (date == null) {
+                date = FastDateFormat.getInstance("d MMM", locale).format(timeStamp);
+                rosterDates.put(day, date);
+            }
+            return date;
         }
     }
 
@@ -219,28 +207,28 @@ public class StringUtils {
                     result = Application.getInstance().getString(R.string.last_seen_hours);
 
                 } else if (isToday(date)) {
-                    SimpleDateFormat pattern = new SimpleDateFormat("HH:mm", locale);
+                    FastDateFormat pattern = FastDateFormat.getInstance("HH:mm", locale);
                     sTime = pattern.format(date);
                     result = Application.getInstance().getString(R.string.last_seen_today, sTime);
 
                 } else if (isYesterday(date)) {
-                    SimpleDateFormat pattern = new SimpleDateFormat("HH:mm", locale);
+                    FastDateFormat pattern = FastDateFormat.getInstance("HH:mm", locale);
                     sTime = pattern.format(date);
                     result = Application.getInstance().getString(R.string.last_seen_yesterday, sTime);
 
                 } else if (timeAgo < TimeUnit.DAYS.toSeconds(7)) {
-                    SimpleDateFormat pattern = new SimpleDateFormat("HH:mm", locale);
+                    FastDateFormat pattern = FastDateFormat.getInstance("HH:mm", locale);
                     sTime = pattern.format(date);
                     result = Application.getInstance().getString(R.string.last_seen_on_week,
                             getDayOfWeek(date, locale), sTime);
 
                 } else if (date.getYear() == today.getYear()) {
-                    SimpleDateFormat pattern = new SimpleDateFormat("d MMMM", locale);
+                    FastDateFormat pattern = FastDateFormat.getInstance("d MMMM", locale);
                     sTime = pattern.format(date);
                     result = Application.getInstance().getString(R.string.last_seen_date, sTime);
 
                 } else if (date.getYear() < today.getYear()) {
-                    SimpleDateFormat pattern = new SimpleDateFormat("d MMMM yyyy", locale);
+                    FastDateFormat pattern = FastDateFormat.getInstance("d MMMM yyyy", locale);
                     sTime = pattern.format(date);
                     result = Application.getInstance().getString(R.string.last_seen_date, sTime);
                 }
@@ -272,29 +260,74 @@ public class StringUtils {
     }
 
     public static String getDayOfWeek(Date date, Locale locale) {
-        DateFormatSymbols symbols = new DateFormatSymbols(locale);
-        Calendar c = Calendar.getInstance();
-        c.setTime(date);
-        return symbols.getWeekdays()[c.get(Calendar.DAY_OF_WEEK)];
+        return FastDateFormat.getInstance("EEEE", locale).format(date);
     }
 
     public static String getDateStringForMessage(Long timestamp) {
-        Date date = new Date(timestamp);
-        String strPattern = "d MMMM";
-        if (date.getYear() != new Date().getYear()) strPattern = "d MMMM yyyy";
-
-        SimpleDateFormat pattern = new SimpleDateFormat(strPattern,
-                Application.getInstance().getResources().getConfiguration().locale);
-        return pattern.format(date);
+        Locale locale = Application.getInstance().getResources().getConfiguration().locale;
+        getTodayStart(locale);
+        long day = getDay(timestamp);
+        String result = messageDates.get(day);
+        if (result == null) {
+            Date date = new Date(timestamp);
+            String strPattern = "d MMMM";
+            if (date.getYear() != new Date().getYear()) strPattern = "d MMMM yyyy";
+
+            result = FastDateFormat.getInstance(strPattern, locale).format(date);
+            messageDates.put(day, result);
+        }
+        return result;
     }
 
     public static String getDateStringForClipboard(Long timestamp) {
-        Date date = new Date(timestamp);
         String strPattern = "EEEE, d MMMM, yyyy";
 
-        SimpleDateFormat pattern = new SimpleDateFormat(strPattern,
-                Application.getInstance().getResources().getConfiguration().locale);
-        return pattern.format(date);
+        return FastDateFormat.getInstance(strPattern,
+                Application.getInstance().getResources().getConfiguration().locale).format(timestamp);
+    }
+
+    /**
+     * @return start of the current day, clears day caches when day, locale or time zone changed.
+     */
+    private static synchronized long getTodayStart(Locale locale) {
+        long now = System.currentTimeMillis();
+        String timeZone = TimeZone.getDefault().getID();
+        if (now < todayStart || now >= tomorrowStart || !locale.equals(dayCacheLocale)
+                || !timeZone.equals(dayCacheTimeZone)) {
+            Calendar midnight = new GregorianCalendar();
+            // reset hour, minutes, seconds and millis
+            midnight.set(Calendar.HOUR_OF_DAY, 0);
+            midnight.set(Calendar.MINUTE, 0);
+            midnight.set(Calendar.SECOND, 0);
+            midnight.set(Calendar.MILLISECOND, 0);
+            todayStart = midnight.getTimeInMillis();
+            midnight.add(Calendar.DAY_OF_MONTH, 1);
+            tomorrowStart = midnight.getTimeInMillis();
+            dayCacheLocale = locale;
+            dayCacheTimeZone = timeZone;
+
+            smartDates.evictAll();
+            rosterDates.evictAll();
+            messageDates.evictAll();
+        }
+        return todayStart;
+    }
+
+    /**
+     * @return number of the local day.
+     */
+    private static long getDay(long timestamp) {
+        return (timestamp + TimeZone.getDefault().getOffset(timestamp)) / TimeUnit.DAYS.toMillis(1);
+    }
+
+    /**
+     * @return thread safe equivalent of the platform format.
+     */
+    private static FastDateFormat getFastDateFormat(DateFormat dateFormat, FastDateFormat fallback) {
+        if (dateFormat instanceof SimpleDateFormat) {
+            return FastDateFormat.getInstance(((SimpleDateFormat) dateFormat).toPattern());
+        }
+        return fallback;
     }
 
     public static String getColoredText(String text, String hexColor) {
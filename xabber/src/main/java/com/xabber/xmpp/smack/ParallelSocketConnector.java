@@ -0,0 +1,175 @@
+package com.xabber.xmpp.smack;
+
+import org.jivesoftware.smack.util.dns.HostAddress;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.SocketFactory;
+
+/**
+ * Establishes TCP connection to the first responding address ("happy eyeballs").
+ * <p/>
+ * Addresses are tried in the given order. If an attempt neither succeeds nor fails
+ * within {@link #ATTEMPT_DELAY_MILLIS}, the next address is tried in parallel,
+ * so slow or unreachable SRV targets don't delay connection by full timeout.
+ * Failed attempts start the next one immediately.
+ */
+class ParallelSocketConnector {
+
+    static final long ATTEMPT_DELAY_MILLIS = 300;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Socket connector");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Single address to connect to.
+     */
+    static class Candidate {
+        final HostAddress hostAddress;
+        final InetAddress inetAddress;
+
+        Candidate(HostAddress hostAddress, InetAddress inetAddress) {
+            this.hostAddress = hostAddress;
+            this.inetAddress = inetAddress;
+        }
+    }
+
+    /**
+     * Connected socket and address it was connected to.
+     */
+    static class Result {
+        final Socket socket;
+        final Candidate candidate;
+
+        Result(Socket socket, Candidate candidate) {
+            this.socket = socket;
+            this.candidate = candidate;
+        }
+    }
+
+    private ParallelSocketConnector() {
+    }
+
+    /**
+     * @return all addresses of host addresses in order of preference.
+     */
+    static List<Candidate> getCandidates(List<HostAddress> hostAddresses) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (HostAddress hostAddress : hostAddresses) {
+            for (InetAddress inetAddress : hostAddress.getInetAddresses()) {
+                candidates.add(new Candidate(hostAddress, inetAddress));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Connects to the first responding candidate. Failures are recorded
+     * in corresponding {@link HostAddress}.
+     *
+     * @return <code>null</code> if all candidates failed.
+     */
+    static Result connect(List<Candidate> candidates, final SocketFactory socketFactory,
+                          final int timeout) throws InterruptedException {
+        CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
+        final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>());
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        List<Future<Result>> futures = new ArrayList<>();
+        Result winner = null;
+        int next = 0;
+        int running = 0;
+
+        try {
+            while (true) {
+                if (next < candidates.size()) {
+                    final Candidate candidate = candidates.get(next++);
+                    futures.add(completionService.submit(new Callable<Result>() {
+                        @Override
+                        public Result call() throws Exception {
+                            Socket socket = socketFactory.createSocket();
+                            sockets.add(socket);
+                            try {
+                                socket.connect(new InetSocketAddress(candidate.inetAddress,
+                                        candidate.hostAddress.getPort()), timeout);
+                            } catch (IOException e) {
+                                synchronized (candidate.hostAddress) {
+                                    candidate.hostAddress.setException(candidate.inetAddress, e);
+                                }
+                                throw e;
+                            }
+                            if (finished.get()) {
+                                // another attempt has already won
+                                socket.close();
+                                throw new IOException("Connection attempt cancelled");
+                            }
+                            return new Result(socket, candidate);
+                        }
+                    }));
+                    running++;
+                }
+
+                if (running == 0) {
+                    return null;
+                }
+
+                Future<Result> future;
+                if (next < candidates.size()) {
+                    future = completionService.poll(ATTEMPT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                } else {
+                    future = completionService.take();
+                }
+                if (future == null) {
+                    // no answer yet, start next attempt in parallel
+                    continue;
+                }
+
+                running--;
+                try {
+                    winner = future.get();
+                    return winner;
+                } catch (ExecutionException e) {
+                    // attempt failed, exception is already recorded
+                }
+            }
+        } finally {
+            finished.set(true);
+            for (Future<Result> future : futures) {
+                future.cancel(false);
+            }
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    if (winner == null || socket != winner.socket) {
+                        try {
+                            socket.close();
+                        } catch (IOException e) {
+                            // ignore
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+}
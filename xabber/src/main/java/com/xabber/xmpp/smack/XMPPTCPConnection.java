@@ -95,12 +95,11 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.lang.reflect.Constructor;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
@@ -114,7 +113,6 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -556,69 +554,61 @@ public class XMPPTCPConnection extends AbstractXMPPConnection {
         if (socketFactory == null) {
             socketFactory = SocketFactory.getDefault();
         }
-        for (HostAddress hostAddress : hostAddresses) {
-            Iterator<InetAddress> inetAddresses = null;
-            String host = hostAddress.getFQDN();
-            int port = hostAddress.getPort();
-            if (proxyInfo == null) {
-                inetAddresses = hostAddress.getInetAddresses().iterator();
-                assert (inetAddresses.hasNext());
-
-                innerloop: while (inetAddresses.hasNext()) {
-                    // Create a *new* Socket before every connection attempt, i.e. connect() call, since Sockets are not
-                    // re-usable after a failed connection attempt. See also SMACK-724.
-                    socket = socketFactory.createSocket();
-
-                    final InetAddress inetAddress = inetAddresses.next();
-                    final String inetAddressAndPort = inetAddress + " at port " + port;
-                    LOGGER.finer("Trying to establish TCP connection to " + inetAddressAndPort);
-                    try {
-                        socket.connect(new InetSocketAddress(inetAddress, port), timeout);
-                    } catch (Exception e) {
-                        hostAddress.setException(inetAddress, e);
-                        if (inetAddresses.hasNext()) {
-                            continue innerloop;
-                        } else {
-                            break innerloop;
-                        }
-                    }
+        if (proxyInfo == null) {
+            ParallelSocketConnector.Result result;
+            try {
+                result = ParallelSocketConnector.connect(
+                        ParallelSocketConnector.getCandidates(hostAddresses), socketFactory, timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while connecting");
+            }
+            if (result == null) {
+                failedAddresses.addAll(hostAddresses);
+                throw ConnectionException.from(failedAddresses);
+            }
 
-                    // support legacy SSL
-                    if (ConnectionConfiguration.SecurityMode.legacy == config.getSecurityMode()) {
-                        try {
-                            proceedTLSReceived();
-                        } catch (Exception e) {
-                            String errorMessage = "Could not enable SSL encryption while connecting to "
-                                    + host + ":" + port + ".";
-                            throw ConnectionException.from(failedAddresses);
-                        }
-                    }
-                    //
+            socket = result.socket;
+            String host = result.candidate.hostAddress.getFQDN();
+            int port = result.candidate.hostAddress.getPort();
 
-                    LOGGER.finer("Established TCP connection to " + inetAddressAndPort);
-                    // We found a host to connect to, return here
-                    this.host = host;
-                    this.port = port;
-                    return;
-                }
-                failedAddresses.add(hostAddress);
-            } else {
-                socket = socketFactory.createSocket();
-                StringUtils.requireNotNullOrEmpty(host, "Host of HostAddress " + hostAddress + " must not be null when using a Proxy");
-                final String hostAndPort = host + " at port " + port;
-                LOGGER.finer("Trying to establish TCP connection via Proxy to " + hostAndPort);
+            // support legacy SSL
+            if (ConnectionConfiguration.SecurityMode.legacy == config.getSecurityMode()) {
                 try {
-                    proxyInfo.getProxySocketConnection().connect(socket, host, port, timeout);
-                } catch (IOException e) {
-                    hostAddress.setException(e);
-                    continue;
+                    proceedTLSReceived();
+                } catch (Exception e) {
+                    String errorMessage = "Could not enable SSL encryption while connecting to "
+                            + host + ":" + port + ".";
+                    throw ConnectionException.from(failedAddresses);
                 }
-                LOGGER.finer("Established TCP connection to " + hostAndPort);
-                // We found a host to connect to, return here
-                this.host = host;
-                this.port = port;
-                return;
             }
+            //
+
+            LOGGER.finer("Established TCP connection to " + result.candidate.inetAddress + " at port " + port);
+            // We found a host to connect to, return here
+            this.host = host;
+            this.port = port;
+            return;
+        }
+
+        for (HostAddress hostAddress : hostAddresses) {
+            String host = hostAddress.getFQDN();
+            int port = hostAddress.getPort();
+            socket = socketFactory.createSocket();
+            StringUtils.requireNotNullOrEmpty(host, "Host of HostAddress " + hostAddress + " must not be null when using a Proxy");
+            final String hostAndPort = host + " at port " + port;
+            LOGGER.finer("Trying to establish TCP connection via Proxy to " + hostAndPort);
+            try {
+                proxyInfo.getProxySocketConnection().connect(socket, host, port, timeout);
+            } catch (IOException e) {
+                hostAddress.setException(e);
+                continue;
+            }
+            LOGGER.finer("Established TCP connection to " + hostAndPort);
+            // We found a host to connect to, return here
+            this.host = host;
+            this.port = port;
+            return;
         }
         // There are no more host addresses to try
         // throw an exception and report all tried
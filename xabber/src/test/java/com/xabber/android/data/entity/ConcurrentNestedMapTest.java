@@ -0,0 +1,140 @@
+package com.xabber.android.data.entity;
+
+import com.xabber.android.data.TestApplication;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = TestApplication.class)
+public class ConcurrentNestedMapTest {
+
+    private static final String ACCOUNT = "account@example.com/xabber";
+    private static final String OTHER_ACCOUNT = "other@example.com/xabber";
+    private static final int USERS = 200;
+
+    @Test
+    public void putNull_removesValue() {
+        ConcurrentNestedMap<String> map = new ConcurrentNestedMap<>();
+        map.put(ACCOUNT, "user", "value");
+        assertEquals("value", map.get(ACCOUNT, "user"));
+
+        map.put(ACCOUNT, "user", null);
+
+        assertNull(map.get(ACCOUNT, "user"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void remove_dropsEmptyNestedMap() {
+        ConcurrentNestedMap<String> map = new ConcurrentNestedMap<>();
+        map.put(ACCOUNT, "first", "1");
+        map.put(ACCOUNT, "second", "2");
+        map.put(OTHER_ACCOUNT, "first", "3");
+
+        assertEquals("1", map.remove(ACCOUNT, "first"));
+        assertEquals(2, map.keySet().size());
+        map.remove(ACCOUNT, "second");
+        assertEquals(1, map.keySet().size());
+        assertTrue(map.getNested(ACCOUNT).isEmpty());
+
+        map.clear(OTHER_ACCOUNT);
+        assertTrue(map.isEmpty());
+        assertTrue(map.values().isEmpty());
+    }
+
+    @Test
+    public void iteration_allowsChangesOfIteratedMap() {
+        ConcurrentNestedMap<Integer> map = new ConcurrentNestedMap<>();
+        for (int index = 0; index < USERS; index++) {
+            map.put(ACCOUNT, "user" + index, index);
+        }
+
+        int count = 0;
+        for (NestedMap.Entry<Integer> entry : map) {
+            map.remove(entry.getFirst(), entry.getSecond());
+            count++;
+        }
+
+        assertEquals(USERS, count);
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void concurrentWritesAndIteration_doNotFail() throws Exception {
+        final ConcurrentNestedMap<Integer> map = new ConcurrentNestedMap<>();
+        final int writers = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch writersDone = new CountDownLatch(writers);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int writer = 0; writer < writers; writer++) {
+            final int first = writer * USERS / writers;
+            final int last = (writer + 1) * USERS / writers;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int round = 0; round < 50; round++) {
+                            for (int index = first; index < last; index++) {
+                                map.put(ACCOUNT, "user" + index, index);
+                            }
+                            for (int index = first; index < last; index += 2) {
+                                map.remove(ACCOUNT, "user" + index);
+                            }
+                        }
+                        for (int index = first; index < last; index++) {
+                            map.put(ACCOUNT, "user" + index, index);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        writersDone.countDown();
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    while (writersDone.getCount() > 0) {
+                        for (NestedMap.Entry<Integer> entry : map) {
+                            assertEquals("user" + entry.getValue(), entry.getSecond());
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }));
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(USERS, map.getNested(ACCOUNT).size());
+    }
+
+}
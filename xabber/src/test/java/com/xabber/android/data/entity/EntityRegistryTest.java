@@ -0,0 +1,152 @@
+package com.xabber.android.data.entity;
+
+import com.xabber.android.data.TestApplication;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.jxmpp.jid.Jid;
+import org.jxmpp.jid.impl.JidCreate;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = TestApplication.class)
+public class EntityRegistryTest {
+
+    private static final int USERS = 200;
+
+    private AccountJid account;
+    private AccountJid otherAccount;
+    private List<Jid> users;
+
+    @Before
+    public void setUp() throws Exception {
+        account = AccountJid.from("account@example.com/xabber");
+        otherAccount = AccountJid.from("other@example.com/xabber");
+        users = new ArrayList<>();
+        for (int index = 0; index < USERS; index++) {
+            users.add(JidCreate.bareFrom("user" + index + "@example.com"));
+        }
+    }
+
+    @Test
+    public void get_findsValueByEqualJid() throws Exception {
+        EntityRegistry<String> registry = new EntityRegistry<>();
+        registry.put(account, users.get(0), "value");
+
+        assertEquals("value", registry.get(account, JidCreate.bareFrom("user0@example.com")));
+        assertNull(registry.get(otherAccount, users.get(0)));
+        assertNull(registry.get(account, users.get(1)));
+    }
+
+    @Test
+    public void values_returnsSameSnapshotUntilChanged() {
+        EntityRegistry<String> registry = new EntityRegistry<>();
+        registry.put(account, users.get(0), "first");
+        registry.put(otherAccount, users.get(0), "other");
+
+        List<String> snapshot = registry.values(account);
+        assertSame(snapshot, registry.values(account));
+        assertEquals(2, registry.values().size());
+
+        registry.put(account, users.get(1), "second");
+        assertEquals(1, snapshot.size());
+        assertEquals(2, registry.values(account).size());
+        assertEquals(3, registry.values().size());
+
+        registry.remove(account, users.get(0));
+        registry.remove(account, users.get(1));
+        assertTrue(registry.values(account).isEmpty());
+        assertEquals(1, registry.getAccounts().size());
+
+        registry.clear(otherAccount);
+        assertTrue(registry.isEmpty());
+        assertTrue(registry.values().isEmpty());
+    }
+
+    @Test
+    public void concurrentWritesAndReads_keepSnapshotsConsistent() throws Exception {
+        final EntityRegistry<Integer> registry = new EntityRegistry<>();
+        final int writers = 4;
+        final int readers = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch writersDone = new CountDownLatch(writers);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int writer = 0; writer < writers; writer++) {
+            final int first = writer * USERS / writers;
+            final int last = (writer + 1) * USERS / writers;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int round = 0; round < 50; round++) {
+                            for (int index = first; index < last; index++) {
+                                registry.put(account, users.get(index), index);
+                            }
+                            for (int index = first; index < last; index += 2) {
+                                registry.remove(account, users.get(index));
+                            }
+                        }
+                        for (int index = first; index < last; index++) {
+                            registry.put(account, users.get(index), index);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        writersDone.countDown();
+                    }
+                }
+            }));
+        }
+        for (int reader = 0; reader < readers; reader++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        while (writersDone.getCount() > 0) {
+                            for (Integer value : registry.values(account)) {
+                                Integer current = registry.get(account, users.get(value));
+                                if (current != null) {
+                                    assertEquals(value, current);
+                                }
+                            }
+                            assertTrue(registry.values().size() <= USERS);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(USERS, registry.values(account).size());
+        assertEquals(USERS, registry.values().size());
+    }
+
+}
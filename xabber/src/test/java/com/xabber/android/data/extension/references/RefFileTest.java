@@ -27,4 +27,13 @@ public class RefFileTest {
     public void toXML() {
         assertEquals(xml, builder.build().toXML().toString());
     }
+
+    @Test
+    public void buildAfterClear() {
+        RefFile first = builder.build();
+        RefFile second = builder.clear().setName("notes.txt").build();
+
+        assertEquals(xml, first.toXML().toString());
+        assertEquals("<file><name>notes.txt</name></file>", second.toXML().toString());
+    }
 }
\ No newline at end of file
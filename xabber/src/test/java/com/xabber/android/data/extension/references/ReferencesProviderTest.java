@@ -201,6 +201,29 @@ public class ReferencesProviderTest {
         assertEquals("http://xabber.org/images/d7072b2bc4652580911649870699787b18.jpeg", user.getAvatar());
     }
 
+    @Test
+    public void parse9() {
+        // file builder is reused, values of image must not get to the next file
+        String source = "<reference xmlns='urn:xmpp:reference:0' type='media' begin='0' end='20'>" +
+                "<media><file><media-type>image/png</media-type><name>image.png</name><size>251184</size>" +
+                "<height>1280</height><width>720</width><desc>Screenshot</desc></file>" +
+                "<uri>https://upload02.xabber.org/image.png</uri></media>" +
+                "<media><file><media-type>application/pdf</media-type><name>doc.pdf</name></file>" +
+                "<uri>https://upload02.xabber.org/doc.pdf</uri></media></reference>";
+
+        Media element = (Media) parseString(source);
+        assertNotNull(element);
+        assertEquals(2, element.getMedia().size());
+        assertEquals(1280, element.getMedia().get(0).getFile().getHeight());
+
+        RefFile file = element.getMedia().get(1).getFile();
+        assertEquals("doc.pdf", file.getName());
+        assertEquals(0, file.getSize());
+        assertEquals(0, file.getHeight());
+        assertEquals(0, file.getWidth());
+        assertNull(file.getDesc());
+    }
+
     private ReferenceElement parseString(String source) {
         ReferenceElement result = null;
         try {
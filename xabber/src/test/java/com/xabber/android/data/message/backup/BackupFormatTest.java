@@ -0,0 +1,138 @@
+package com.xabber.android.data.message.backup;
+
+import com.xabber.android.data.TestApplication;
+import com.xabber.android.data.database.messagerealm.Attachment;
+import com.xabber.android.data.database.messagerealm.ForwardId;
+import com.xabber.android.data.database.messagerealm.MessageItem;
+import com.xabber.android.data.database.realm.ChatDataRealm;
+import com.xabber.android.data.database.realm.NotificationStateRealm;
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.message.NotificationState;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.jxmpp.jid.parts.Resourcepart;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import io.realm.RealmList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = TestApplication.class)
+public class BackupFormatTest {
+
+    @Test
+    public void message_roundTrip() throws Exception {
+        MessageItem messageItem = new MessageItem("id");
+        messageItem.setAccount(AccountJid.from("account@example.com/xabber"));
+        messageItem.setUser(UserJid.from("user@example.com"));
+        messageItem.setResource(Resourcepart.from("phone"));
+        messageItem.setText("Привет 👋");
+        messageItem.setTimestamp(1500000000000L);
+        messageItem.setStanzaId("stanza");
+        messageItem.setIncoming(true);
+        messageItem.setRead(true);
+        messageItem.setFromMUC(true);
+
+        Attachment attachment = new Attachment();
+        attachment.setTitle("photo.jpg");
+        attachment.setFileUrl("https://example.com/photo.jpg");
+        attachment.setFileSize(1024L);
+        attachment.setImageWidth(640);
+        attachment.setIsImage(true);
+        RealmList<Attachment> attachments = new RealmList<>();
+        attachments.add(attachment);
+        messageItem.setAttachments(attachments);
+
+        RealmList<ForwardId> forwardIds = new RealmList<>();
+        forwardIds.add(new ForwardId("forwarded"));
+        messageItem.setForwardedIds(forwardIds);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        BackupFormat.writeHeader(out, 1);
+        BackupFormat.writeMessage(out, messageItem);
+        out.close();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(1, BackupFormat.readHeader(in));
+        MessageItem result = new BackupFormat().readMessage(in);
+
+        assertEquals("id", result.getUniqueId());
+        assertEquals(messageItem.getAccount(), result.getAccount());
+        assertEquals(messageItem.getUser(), result.getUser());
+        assertEquals("phone", result.getResource().toString());
+        assertEquals("Привет 👋", result.getText());
+        assertNull(result.getMarkupText());
+        assertEquals(Long.valueOf(1500000000000L), result.getTimestamp());
+        assertNull(result.getDelayTimestamp());
+        assertEquals("stanza", result.getStanzaId());
+        assertTrue(result.isIncoming());
+        assertTrue(result.isRead());
+        assertTrue(result.isFromMUC());
+        assertFalse(result.isSent());
+
+        assertEquals(1, result.getAttachments().size());
+        Attachment resultAttachment = result.getAttachments().get(0);
+        assertEquals("photo.jpg", resultAttachment.getTitle());
+        assertEquals("https://example.com/photo.jpg", resultAttachment.getFileUrl());
+        assertNull(resultAttachment.getFilePath());
+        assertEquals(Long.valueOf(1024L), resultAttachment.getFileSize());
+        assertEquals(Integer.valueOf(640), resultAttachment.getImageWidth());
+        assertNull(resultAttachment.getImageHeight());
+        assertTrue(resultAttachment.isImage());
+
+        assertEquals(1, result.getForwardedIds().size());
+        assertEquals("forwarded", result.getForwardedIds().get(0).getForwardMessageId());
+    }
+
+    @Test
+    public void chat_roundTrip() throws Exception {
+        ChatDataRealm chat = new ChatDataRealm("account@example.com", "user@example.com");
+        chat.setArchived(true);
+        chat.setLastPosition(42);
+        NotificationStateRealm notificationState = new NotificationStateRealm();
+        notificationState.setMode(NotificationState.NotificationMode.disabled);
+        notificationState.setTimestamp(100);
+        chat.setNotificationState(notificationState);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        BackupFormat.writeChat(out, chat);
+        out.close();
+
+        ChatDataRealm result = BackupFormat.readChat(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals("account@example.com", result.getAccountJid());
+        assertEquals("user@example.com", result.getUserJid());
+        assertNull(result.getSubject());
+        assertTrue(result.isArchived());
+        assertEquals(42, result.getLastPosition());
+        assertEquals(NotificationState.NotificationMode.disabled, result.getNotificationState().getMode());
+        assertEquals(100, result.getNotificationState().getTimestamp());
+    }
+
+    @Test(expected = IOException.class)
+    public void readHeader_rejectsOtherFiles() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.close();
+
+        BackupFormat.readHeader(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+}
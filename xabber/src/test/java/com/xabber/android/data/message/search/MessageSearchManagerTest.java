@@ -0,0 +1,54 @@
+package com.xabber.android.data.message.search;
+
+import com.xabber.android.data.TestApplication;
+import com.xabber.android.data.database.messagerealm.MessageItem;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = TestApplication.class)
+public class MessageSearchManagerTest {
+
+    @Test
+    public void createResult_highlightsMatchesInSnippet() {
+        MessageItem messageItem = new MessageItem("id");
+        messageItem.setText("Let's meet at the station tomorrow morning");
+
+        MessageSearchResult result = MessageSearchManager.createResult(messageItem, 1,
+                Arrays.asList("meet", "stat"));
+
+        assertEquals(messageItem.getText(), result.getSnippet());
+        assertEquals(2, result.getHighlights().size());
+        assertEquals("meet", result.getSnippet().substring(
+                result.getHighlights().get(0).getStart(), result.getHighlights().get(0).getEnd()));
+        assertEquals("station", result.getSnippet().substring(
+                result.getHighlights().get(1).getStart(), result.getHighlights().get(1).getEnd()));
+    }
+
+    @Test
+    public void createResult_cutsLongText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) text.append("word ");
+        text.append("needle");
+        for (int i = 0; i < 20; i++) text.append(" word");
+        MessageItem messageItem = new MessageItem("id");
+        messageItem.setText(text.toString());
+
+        MessageSearchResult result = MessageSearchManager.createResult(messageItem, 1,
+                Arrays.asList("needle"));
+
+        assertTrue(result.getSnippet().startsWith("…"));
+        assertTrue(result.getSnippet().endsWith("…"));
+        MessageSearchResult.Highlight highlight = result.getHighlights().get(0);
+        assertEquals("needle", result.getSnippet().substring(highlight.getStart(), highlight.getEnd()));
+    }
+
+}
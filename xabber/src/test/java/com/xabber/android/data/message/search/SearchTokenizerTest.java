@@ -0,0 +1,49 @@
+package com.xabber.android.data.message.search;
+
+import com.xabber.android.data.TestApplication;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = TestApplication.class)
+public class SearchTokenizerTest {
+
+    @Test
+    public void tokenize_foldsCaseAndSkipsPunctuation() {
+        List<SearchTokenizer.Token> tokens = SearchTokenizer.tokenize("Hello, WORLD! Привет, Мир...");
+
+        assertEquals(4, tokens.size());
+        assertEquals("hello", tokens.get(0).term);
+        assertEquals("world", tokens.get(1).term);
+        assertEquals("привет", tokens.get(2).term);
+        assertEquals("мир", tokens.get(3).term);
+        assertEquals(7, tokens.get(1).start);
+        assertEquals(12, tokens.get(1).end);
+    }
+
+    @Test
+    public void tokenize_normalizesCompatibilityCharacters() {
+        List<SearchTokenizer.Token> tokens = SearchTokenizer.tokenize("ＸＡＢＢＥＲ");
+
+        assertEquals(1, tokens.size());
+        assertEquals("xabber", tokens.get(0).term);
+    }
+
+    @Test
+    public void countTerms_countsRepeatedWords() {
+        Map<String, Integer> counts = SearchTokenizer.countTerms("one two One three one");
+
+        assertEquals(3, counts.size());
+        assertEquals(Integer.valueOf(3), counts.get("one"));
+        assertEquals(Integer.valueOf(1), counts.get("two"));
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.xabber.android.data.roster;
+
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.entity.UserJid;
+
+/**
+ * Gives tests in other packages access to roster contacts.
+ */
+public class TestRosterContacts {
+
+    private TestRosterContacts() {
+    }
+
+    public static RosterContact create(AccountJid account, UserJid user, String name) {
+        return RosterContact.getRosterContact(account, user, name);
+    }
+
+    public static void rename(RosterContact rosterContact, String name) {
+        rosterContact.setName(name);
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.xabber.android.presentation.mvp.contactlist;
+
+import com.xabber.android.data.TestApplication;
+import com.xabber.android.data.entity.AccountJid;
+import com.xabber.android.data.entity.UserJid;
+import com.xabber.android.data.message.AbstractChat;
+import com.xabber.android.data.roster.AbstractContact;
+import com.xabber.android.data.roster.RosterContact;
+import com.xabber.android.data.roster.TestRosterContacts;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = TestApplication.class)
+public class ContactSearchIndexTest {
+
+    private static final Comparator<AbstractContact> BY_NAME = new Comparator<AbstractContact>() {
+        @Override
+        public int compare(AbstractContact o1, AbstractContact o2) {
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+
+    private AccountJid account;
+    private ContactSearchIndex index;
+    private int users;
+
+    @Before
+    public void setUp() throws Exception {
+        account = AccountJid.from("account@example.com/xabber");
+        index = new ContactSearchIndex();
+    }
+
+    @Test
+    public void fold_removesDiacritics() {
+        assertEquals("emilie nono", ContactSearchIndex.fold("Émilie Ñoño"));
+        assertEquals("francois muller", ContactSearchIndex.fold("François Müller"));
+    }
+
+    @Test
+    public void fold_keepsCyrillicLetters() {
+        assertEquals("щукин", ContactSearchIndex.fold("Щукин"));
+    }
+
+    @Test
+    public void transliterate_convertsCyrillic() {
+        assertEquals("shchukin", ContactSearchIndex.transliterate("щукин"));
+        assertEquals("zhenya", ContactSearchIndex.transliterate("женя"));
+        assertEquals("obem", ContactSearchIndex.transliterate("объем"));
+    }
+
+    @Test
+    public void transliterate_returnsLatinUnchanged() {
+        String word = "alice";
+        assertSame(word, ContactSearchIndex.transliterate(word));
+    }
+
+    @Test
+    public void getQueryWords_foldsAndTransliterates() {
+        assertArrayEquals(new String[] {"shchukin", "emilie"},
+                ContactSearchIndex.getQueryWords("Щукин Émilie"));
+    }
+
+    @Test
+    public void emptyQuery() {
+        assertEquals("", ContactSearchIndex.fold(""));
+        assertEquals("", ContactSearchIndex.transliterate(""));
+        assertEquals(0, ContactSearchIndex.getQueryWords("").length);
+        assertEquals(0, ContactSearchIndex.getQueryWords("   ").length);
+    }
+
+    @Test
+    public void search_ranksExactAndFirstWordMatchesHigher() throws Exception {
+        RosterContact annaSmith = createContact("Anna Smith");
+        RosterContact bobAnna = createContact("Bob Anna");
+        RosterContact annabelLee = createContact("Annabel Lee");
+        RosterContact carlAnnabel = createContact("Carl Annabel");
+        RosterContact daveJones = createContact("Dave Jones");
+
+        List<AbstractContact> result = search("anna",
+                daveJones, carlAnnabel, bobAnna, annabelLee, annaSmith);
+
+        // equal scores of "Annabel Lee" and "Bob Anna" are ordered by the comparator
+        assertEquals(Arrays.<AbstractContact>asList(annaSmith, annabelLee, bobAnna, carlAnnabel), result);
+    }
+
+    @Test
+    public void search_matchesAllQueryWords() throws Exception {
+        RosterContact annaSmith = createContact("Anna Smith");
+        RosterContact annaJones = createContact("Anna Jones");
+
+        assertEquals(Collections.<AbstractContact>singletonList(annaJones),
+                search("jo an", annaSmith, annaJones));
+    }
+
+    @Test
+    public void search_matchesTransliteratedName() throws Exception {
+        RosterContact contact = createContact("Женя Щукин");
+
+        assertEquals(Collections.<AbstractContact>singletonList(contact), search("shchuk", contact));
+        assertEquals(Collections.<AbstractContact>singletonList(contact), search("щук", contact));
+    }
+
+    @Test
+    public void search_refreshesEntryAfterRename() throws Exception {
+        RosterContact contact = createContact("Bob");
+        assertEquals(Collections.<AbstractContact>singletonList(contact), search("bob", contact));
+
+        TestRosterContacts.rename(contact, "Robert");
+
+        assertTrue(search("bob", contact).isEmpty());
+        assertEquals(Collections.<AbstractContact>singletonList(contact), search("robert", contact));
+    }
+
+    @Test
+    public void search_dropsRemovedContacts() throws Exception {
+        RosterContact alice = createContact("Alice");
+        RosterContact alex = createContact("Alex");
+        assertEquals(Arrays.<AbstractContact>asList(alex, alice), search("al", alice, alex));
+
+        assertEquals(Collections.<AbstractContact>singletonList(alex), search("al", alex));
+    }
+
+    @Test
+    public void getRecentScore_prefersRecentChats() {
+        long now = System.currentTimeMillis();
+        int hourAgo = ContactSearchIndex.getRecentScore(
+                new Date(now - TimeUnit.HOURS.toMillis(1)), now);
+        int daysAgo = ContactSearchIndex.getRecentScore(
+                new Date(now - TimeUnit.DAYS.toMillis(3)), now);
+        int monthAgo = ContactSearchIndex.getRecentScore(
+                new Date(now - TimeUnit.DAYS.toMillis(30)), now);
+
+        assertTrue(hourAgo > daysAgo);
+        assertTrue(daysAgo > monthAgo);
+        assertEquals(0, monthAgo);
+        assertEquals(0, ContactSearchIndex.getRecentScore(null, now));
+    }
+
+    private RosterContact createContact(String name) throws Exception {
+        users++;
+        return TestRosterContacts.create(account, UserJid.from("u" + users + "@example.com"), name);
+    }
+
+    private List<AbstractContact> search(String query, RosterContact... contacts) {
+        Map<AccountJid, Map<UserJid, AbstractChat>> chats = new HashMap<>();
+        return new ArrayList<>(index.search(query, Arrays.asList(contacts), chats, BY_NAME));
+    }
+
+}